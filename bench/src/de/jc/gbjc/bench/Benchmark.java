@@ -0,0 +1,55 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+/**
+ * A single benchmarked operation of the compiler<br>
+ * Only run() is measured, setup() and prepare() are not
+ *
+ * @author robbi-blechdose
+ *
+ */
+public abstract class Benchmark
+{
+    private String name;
+
+    /**
+     * Constructor
+     *
+     * @param name The name shown in the results, e.g. "Lexer.lex"
+     */
+    public Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Called once per corpus, before any iteration
+     *
+     * @param corpusPath The path to the .gbj file the benchmark works on
+     */
+    public abstract void setup(String corpusPath);
+
+    /**
+     * Called before every single run(), for operations that change their input (e.g. the optimizer)
+     */
+    public void prepare()
+    {
+    }
+
+    /**
+     * The measured operation
+     *
+     * @return The result of the operation, consumed by the runner so it can't be optimized away
+     */
+    public abstract Object run();
+
+    public String getName()
+    {
+        return name;
+    }
+}
\ No newline at end of file
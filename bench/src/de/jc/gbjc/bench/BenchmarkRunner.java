@@ -0,0 +1,272 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import de.jc.gbjc.main.Util.Logger;
+import de.jc.gbjc.main.Util.Timings;
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Runs the compiler benchmarks on the corpora in bench/corpus (in the style of JMH)<br>
+ * Every benchmark is run on every corpus: first the warmup iterations, then the measured iterations<br>
+ * Reports the throughput (ops/s) and, like the JMH gc profiler, the allocation rate, the allocated bytes per operation
+ * and the garbage collections during the measured iterations
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class BenchmarkRunner
+{
+    private static final double MB = 1024 * 1024;
+
+    private static volatile Object sink; //Results are written here, so the JIT can't remove the benchmarked code
+
+    private int warmupIterations = 3;
+    private int iterations = 5;
+    private long iterationMillis = 1000;
+    private String corpusDir = "bench/corpus";
+    private List<String> corpusNames = new ArrayList<String>(); //Empty means all corpora
+    private List<String> filters = new ArrayList<String>(); //Empty means all benchmarks
+
+    /**
+     * Usage: BenchmarkRunner [-wi n] [-i n] [-t ms] [-dir corpusDir] [-corpus name,...] [benchmark name filter ...]
+     *
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        BenchmarkRunner runner = new BenchmarkRunner();
+        for(int i = 0; i < args.length; i++)
+        {
+            String s = args[i];
+            if(s.equals("-wi"))
+            {
+                runner.warmupIterations = Integer.parseInt(args[++i]);
+            }
+            else if(s.equals("-i"))
+            {
+                runner.iterations = Integer.parseInt(args[++i]);
+            }
+            else if(s.equals("-t"))
+            {
+                runner.iterationMillis = Long.parseLong(args[++i]);
+            }
+            else if(s.equals("-dir"))
+            {
+                runner.corpusDir = args[++i];
+            }
+            else if(s.equals("-corpus"))
+            {
+                runner.corpusNames.addAll(Arrays.asList(args[++i].split(",")));
+            }
+            else
+            {
+                runner.filters.add(s);
+            }
+        }
+
+        //The compiler's own progress messages would drown the results
+        Logger.getInstance().setMinLevel(Logger.WARNING);
+        runner.run();
+    }
+
+    private void run()
+    {
+        List<File> corpora = findCorpora();
+        if(Timings.getThreadAllocatedBytes() < 0)
+        {
+            System.out.println("This JVM can't measure allocations, allocation columns will be empty.");
+        }
+
+        List<String> results = new ArrayList<String>();
+        for(Benchmark benchmark : CompilerBenchmarks.getAll())
+        {
+            if(!matchesFilters(benchmark.getName()))
+            {
+                continue;
+            }
+            for(File corpus : corpora)
+            {
+                results.add(runBenchmark(benchmark, corpus));
+            }
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-31s %-8s %12s %10s %12s %14s %8s %8s",
+                "Benchmark", "Corpus", "ops/s", "sd", "alloc MB/s", "alloc B/op", "gc.count", "gc.ms"));
+        for(String result : results)
+        {
+            System.out.println(result);
+        }
+    }
+
+    /**
+     * @return The selected corpora, smallest first
+     */
+    private List<File> findCorpora()
+    {
+        File[] files = new File(corpusDir).listFiles();
+        if(files == null)
+        {
+            System.out.println("Corpus directory " + corpusDir + " not found.");
+            System.exit(1);
+        }
+
+        List<File> corpora = new ArrayList<File>();
+        for(File f : files)
+        {
+            String name = f.getName();
+            if(name.endsWith(".gbj") && (corpusNames.isEmpty() || corpusNames.contains(name.substring(0, name.length() - 4))))
+            {
+                corpora.add(f);
+            }
+        }
+        corpora.sort(new Comparator<File>()
+        {
+            @Override
+            public int compare(File a, File b)
+            {
+                return Long.compare(a.length(), b.length());
+            }
+        });
+        return corpora;
+    }
+
+    private boolean matchesFilters(String name)
+    {
+        if(filters.isEmpty())
+        {
+            return true;
+        }
+        for(String filter : filters)
+        {
+            if(name.contains(filter))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the warmup and measured iterations of a benchmark on one corpus
+     *
+     * @return The result line for the summary
+     */
+    private String runBenchmark(Benchmark benchmark, File corpus)
+    {
+        String corpusName = corpus.getName().substring(0, corpus.getName().length() - 4);
+        System.out.println("# " + benchmark.getName() + " on " + corpusName);
+        benchmark.setup(corpus.getPath());
+
+        for(int i = 0; i < warmupIterations; i++)
+        {
+            Iteration it = runIteration(benchmark);
+            System.out.println(String.format("Warmup    %2d: %12.3f ops/s", i + 1, it.getOpsPerSecond()));
+        }
+
+        double[] opsPerSecond = new double[iterations];
+        long ops = 0;
+        long nanos = 0;
+        long allocated = 0;
+        long gcCount = getGcCount();
+        long gcTime = getGcTime();
+        for(int i = 0; i < iterations; i++)
+        {
+            Iteration it = runIteration(benchmark);
+            opsPerSecond[i] = it.getOpsPerSecond();
+            ops += it.ops;
+            nanos += it.nanos;
+            allocated += it.allocated;
+            System.out.println(String.format("Iteration %2d: %12.3f ops/s %10.1f MB/s", i + 1, opsPerSecond[i], it.allocated / MB / (it.nanos / 1e9)));
+        }
+        gcCount = getGcCount() - gcCount;
+        gcTime = getGcTime() - gcTime;
+
+        double mean = 0;
+        for(double d : opsPerSecond)
+        {
+            mean += d;
+        }
+        mean /= iterations;
+        double variance = 0;
+        for(double d : opsPerSecond)
+        {
+            variance += (d - mean) * (d - mean);
+        }
+        double sd = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+        boolean measuresAllocations = Timings.getThreadAllocatedBytes() >= 0;
+        return String.format("%-31s %-8s %12.3f %10.3f %12s %14s %8d %8d", benchmark.getName(), corpusName, mean, sd,
+                measuresAllocations ? String.format("%.1f", allocated / MB / (nanos / 1e9)) : "",
+                measuresAllocations ? Long.toString(ops == 0 ? 0 : allocated / ops) : "",
+                gcCount, gcTime);
+    }
+
+    /**
+     * Runs the benchmark for (at least) the iteration time<br>
+     * Only run() is timed, prepare() is excluded from the time and the allocations
+     */
+    private Iteration runIteration(Benchmark benchmark)
+    {
+        Iteration it = new Iteration();
+        long end = System.nanoTime() + iterationMillis * 1000000;
+        while(System.nanoTime() < end || it.ops == 0)
+        {
+            benchmark.prepare();
+
+            long allocatedBefore = Timings.getThreadAllocatedBytes();
+            long start = System.nanoTime();
+            sink = benchmark.run();
+            it.nanos += System.nanoTime() - start;
+            it.allocated += Timings.getThreadAllocatedBytes() - allocatedBefore;
+            it.ops++;
+        }
+        return it;
+    }
+
+    private static long getGcCount()
+    {
+        long count = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long getGcTime()
+    {
+        long time = 0;
+        for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+        {
+            time += Math.max(0, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * The measurements of a single iteration
+     */
+    private static class Iteration
+    {
+        private long ops;
+        private long nanos; //Time spent in run() only
+        private long allocated;
+
+        public double getOpsPerSecond()
+        {
+            return ops / (nanos / 1e9);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import de.jc.gbjc.main.Codegen.CodeGenerator;
+import de.jc.gbjc.main.Codegen.InstructionList;
+import de.jc.gbjc.main.Codegen.Optimizer;
+import de.jc.gbjc.main.Codegen.OptimizerStats;
+import de.jc.gbjc.main.Lexer;
+import de.jc.gbjc.main.ParsedModule;
+import de.jc.gbjc.main.Parsing.Parser;
+import de.jc.gbjc.main.Symbols.Resolver;
+import de.jc.gbjc.main.TokenStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The benchmarks of the single compiler phases<br>
+ * Every benchmark prepares the output of the previous phases in setup(), so only its own phase is measured
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class CompilerBenchmarks
+{
+    private static final int MBC_VARIANT = 5;
+
+    /**
+     * @return All benchmarks, in the order of the compiler phases
+     */
+    public static List<Benchmark> getAll()
+    {
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+        benchmarks.add(new Benchmark("Lexer.lex")
+        {
+            private String path;
+
+            @Override
+            public void setup(String corpusPath)
+            {
+                path = corpusPath;
+            }
+
+            @Override
+            public Object run()
+            {
+                return Lexer.lex(path);
+            }
+        });
+
+        benchmarks.add(new Benchmark("Parser.parse")
+        {
+            private String path;
+            private TokenStream tokens;
+
+            @Override
+            public void setup(String corpusPath)
+            {
+                path = corpusPath;
+                tokens = Lexer.lex(corpusPath);
+            }
+
+            @Override
+            public Object run()
+            {
+                //Collects the symbols of the file while building the AST
+                return new Parser(tokens, new ParsedModule(path), false).parse();
+            }
+        });
+
+        benchmarks.add(new Benchmark("Parser.parse (streaming)")
+        {
+            private String path;
+
+            @Override
+            public void setup(String corpusPath)
+            {
+                path = corpusPath;
+            }
+
+            @Override
+            public Object run()
+            {
+                //Lexes the file on demand, only a window of the tokens is kept
+                return new Parser(Lexer.stream(path), new ParsedModule(path), false).parse();
+            }
+        });
+
+        benchmarks.add(new Benchmark("CodeGenerator.generateAsmFile")
+        {
+            private ParsedModule module;
+
+            @Override
+            public void setup(String corpusPath)
+            {
+                module = parseAndResolve(corpusPath);
+            }
+
+            @Override
+            public Object run()
+            {
+                CodeGenerator cg = new CodeGenerator(module.getAst(), "bench", module, 0, MBC_VARIANT, new NullWriter());
+                cg.generateAsmFile(true);
+                return cg.getCode();
+            }
+        });
+
+        benchmarks.add(new Benchmark("Optimizer.optimize")
+        {
+            private ParsedModule module;
+            private InstructionList code;
+
+            @Override
+            public void setup(String corpusPath)
+            {
+                module = parseAndResolve(corpusPath);
+            }
+
+            @Override
+            public void prepare()
+            {
+                //The optimizer changes the code, so every run needs freshly generated code
+                CodeGenerator cg = new CodeGenerator(module.getAst(), "bench", module, 0, MBC_VARIANT, new NullWriter());
+                cg.generateAsmFile(true);
+                code = cg.getCode();
+            }
+
+            @Override
+            public Object run()
+            {
+                new Optimizer(code, new OptimizerStats("bench")).optimize();
+                return code;
+            }
+        });
+
+        return benchmarks;
+    }
+
+    private static ParsedModule parseAndResolve(String corpusPath)
+    {
+        ParsedModule module = new ParsedModule(corpusPath);
+        module.setAst(new Parser(Lexer.lex(corpusPath), module, false).parse());
+        module.addStdlibMethods();
+        new Resolver(module.getSymbolTable()).resolve(module.getAst());
+        return module;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,50 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import java.io.Writer;
+
+/**
+ * Writer that discards everything, so the code generator can be measured without disk I/O
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class NullWriter extends Writer
+{
+    private long written;
+
+    @Override
+    public void write(char[] cbuf, int off, int len)
+    {
+        written += len;
+    }
+
+    @Override
+    public void write(String str, int off, int len)
+    {
+        written += len;
+    }
+
+    @Override
+    public void flush()
+    {
+    }
+
+    @Override
+    public void close()
+    {
+    }
+
+    /**
+     * @return The number of characters that were written (and discarded)
+     */
+    public long getWritten()
+    {
+        return written;
+    }
+}
\ No newline at end of file
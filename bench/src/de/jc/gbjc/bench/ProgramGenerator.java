@@ -0,0 +1,398 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Generates valid GB-J programs of a given size for benchmarks<br>
+ * The program consists of main.gbj and a number of modules (mod0.gbj, mod1.gbj, ...), which are all imported by main.gbj
+ * and each import the previous module<br>
+ * Every module is made of units: a section with variables, arrays and functions, and (for some of them) a class with
+ * a constructor and a method that the section uses<br>
+ * The functions contain assignments, arithmetic, arrays, if/else, while, switch and calls in a seeded random mix,
+ * so the same options always generate the same program
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class ProgramGenerator
+{
+    private static final String USAGE = "Usage: ProgramGenerator [-lines n] [-modules n] [-functions n] [-statements n] [-classEvery n] [-seed n] [-out dir]";
+
+    private int lines; //The approximate number of lines of the whole program
+    private int modules;
+    private int functionsPerSection;
+    private int statementsPerFunction;
+    private int classEvery; //Every n-th unit has a class, 0 for no classes
+    private long seed;
+
+    private Random random;
+    private StringBuilder out;
+    private int lineCount;
+
+    /**
+     * Constructor with the default shape: 4 modules, 4 functions per section, 12 statements per function, a class every 2nd unit
+     *
+     * @param lines The approximate number of lines of the whole program
+     */
+    public ProgramGenerator(int lines)
+    {
+        this.lines = lines;
+        this.modules = 4;
+        this.functionsPerSection = 4;
+        this.statementsPerFunction = 12;
+        this.classEvery = 2;
+        this.seed = 1;
+    }
+
+    /**
+     * Usage: ProgramGenerator [-lines n] [-modules n] [-functions n] [-statements n] [-classEvery n] [-seed n] [-out dir] [-help]
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException
+    {
+        ProgramGenerator generator = new ProgramGenerator(10000);
+        String dir = "build/generated";
+        for(int i = 0; i < args.length; i++)
+        {
+            String s = args[i];
+            if(s.equals("-help"))
+            {
+                System.out.println(USAGE);
+                return;
+            }
+            if(i + 1 >= args.length)
+            {
+                System.out.println("Missing value for option " + s);
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+            if(s.equals("-out"))
+            {
+                dir = args[++i];
+            }
+            else if(!generator.parseOption(s, args[i + 1]))
+            {
+                System.out.println("Unknown option: " + s);
+                System.out.println(USAGE);
+                System.exit(1);
+            }
+            else
+            {
+                i++;
+            }
+        }
+
+        int written = generator.generate(new File(dir));
+        System.out.println("Generated " + written + " lines into " + dir + ".");
+    }
+
+    /**
+     * Sets one of the shape options (-lines, -modules, -functions, -statements, -classEvery, -seed)
+     *
+     * @param option The option, including the -
+     * @param value The value
+     * @return False if the option is unknown
+     */
+    public boolean parseOption(String option, String value)
+    {
+        switch(option)
+        {
+            case "-lines":
+                lines = Integer.parseInt(value);
+                return true;
+            case "-modules":
+                modules = Math.max(1, Integer.parseInt(value));
+                return true;
+            case "-functions":
+                functionsPerSection = Math.max(1, Integer.parseInt(value));
+                return true;
+            case "-statements":
+                statementsPerFunction = Math.max(1, Integer.parseInt(value));
+                return true;
+            case "-classEvery":
+                classEvery = Integer.parseInt(value);
+                return true;
+            case "-seed":
+                seed = Long.parseLong(value);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public void setLines(int lines)
+    {
+        this.lines = lines;
+    }
+
+    /**
+     * Writes main.gbj and all modules into a directory
+     *
+     * @param dir The directory, created if necessary
+     * @return The number of lines written
+     */
+    public int generate(File dir) throws IOException
+    {
+        dir.mkdirs();
+        random = new Random(seed);
+        int total = 0;
+
+        int linesPerModule = Math.max(1, lines / modules);
+        for(int m = 0; m < modules; m++)
+        {
+            begin();
+            generateModule(m, linesPerModule);
+            total += write(new File(dir, "mod" + m + ".gbj"));
+        }
+
+        begin();
+        generateMain();
+        total += write(new File(dir, "main.gbj"));
+        return total;
+    }
+
+    private void begin()
+    {
+        out = new StringBuilder();
+        lineCount = 0;
+    }
+
+    private int write(File file) throws IOException
+    {
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "utf-8")))
+        {
+            writer.write(out.toString());
+        }
+        return lineCount;
+    }
+
+    private void line(String s)
+    {
+        out.append(s).append('\n');
+        lineCount++;
+    }
+
+    private void generateMain()
+    {
+        for(int m = 0; m < modules; m++)
+        {
+            line("import \"mod" + m + ".gbj\";");
+        }
+        line("");
+        line("section Main");
+        line("{");
+        line("    package \"ROM0\";");
+        line("    char frames;");
+        line("");
+        line("    void main()");
+        line("    {");
+        line("        char a;");
+        line("        a = 1;");
+        for(int m = 0; m < modules; m++)
+        {
+            line("        a = " + functionName(m, 0, 0) + "(a, " + m + ");");
+        }
+        line("        waitVBlank();");
+        line("    }");
+        line("");
+        line("    void VBlank()");
+        line("    {");
+        line("        frames = frames + 1;");
+        line("    }");
+        line("}");
+    }
+
+    private void generateModule(int m, int targetLines)
+    {
+        if(m > 0)
+        {
+            line("import \"mod" + (m - 1) + ".gbj\";");
+            line("");
+        }
+
+        //Every module has at least one unit, so main() always has something to call
+        for(int u = 0; u == 0 || lineCount < targetLines; u++)
+        {
+            boolean hasClass = classEvery > 0 && u % classEvery == 0;
+            if(hasClass)
+            {
+                generateClass(m, u);
+            }
+            generateSection(m, u, hasClass);
+        }
+    }
+
+    private void generateClass(int m, int u)
+    {
+        String name = className(m, u);
+        line("class " + name);
+        line("{");
+        line("    package \"ROMX\";");
+        line("    char px;");
+        line("    char py;");
+        line("    int hp;");
+        line("");
+        line("    " + name + "(char x, char y)");
+        line("    {");
+        line("        px = x;");
+        line("        py = y;");
+        line("        hp = 100;");
+        line("    }");
+        line("");
+        line("    void move" + m + "_" + u + "(char dx)");
+        line("    {");
+        line("        px = px + dx;");
+        line("        if(px > 100)");
+        line("        {");
+        line("            px = 0;");
+        line("        }");
+        line("        hp = hp - 1;");
+        line("    }");
+        line("}");
+        line("");
+    }
+
+    private void generateSection(int m, int u, boolean hasClass)
+    {
+        String suffix = m + "_" + u;
+        line("section S" + suffix);
+        line("{");
+        line("    package \"ROMX\";");
+        line("    char v" + suffix + ";");
+        line("    int w" + suffix + ";");
+        line("    char[16] arr" + suffix + ";");
+        if(hasClass)
+        {
+            line("    " + className(m, u) + " obj" + suffix + ";");
+        }
+
+        for(int f = 0; f < functionsPerSection; f++)
+        {
+            line("");
+            line("    char " + functionName(m, u, f) + "(char p, char q)");
+            line("    {");
+            line("        char a;");
+            line("        char b;");
+            line("        int w;");
+            line("        a = p;");
+            line("        b = q;");
+            line("        w = 0;");
+            if(hasClass && f == 0)
+            {
+                line("        obj" + suffix + " = new " + className(m, u) + "(a, b);");
+            }
+            for(int s = 0; s < statementsPerFunction; s++)
+            {
+                generateStatement(m, u, f, hasClass);
+            }
+            line("        return a;");
+            line("    }");
+        }
+        line("}");
+        line("");
+    }
+
+    private void generateStatement(int m, int u, int f, boolean hasClass)
+    {
+        String suffix = m + "_" + u;
+        int c = random.nextInt(100);
+        switch(random.nextInt(hasClass ? 11 : 10))
+        {
+            case 0:
+                line("        a = b + " + c + ";");
+                break;
+            case 1:
+                line("        v" + suffix + " = a;");
+                line("        b = v" + suffix + " - 1;");
+                break;
+            case 2:
+                line("        w = w + " + (c * 7) + ";");
+                line("        w" + suffix + " = w;");
+                break;
+            case 3:
+                line("        if(a < " + c + ")");
+                line("        {");
+                line("            a = " + c + ";");
+                line("        }");
+                line("        else");
+                line("        {");
+                line("            b = a - 1;");
+                line("        }");
+                break;
+            case 4:
+                line("        while(b != 0)");
+                line("        {");
+                line("            b = b - 1;");
+                line("        }");
+                break;
+            case 5:
+                line("        switch(a)");
+                line("        {");
+                line("            case 0:");
+                line("            {");
+                line("                b = 1;");
+                line("            }");
+                line("            case " + (c % 8 + 1) + ":");
+                line("            {");
+                line("                b = 2;");
+                line("            }");
+                line("        }");
+                break;
+            case 6:
+                line("        arr" + suffix + "[" + (c % 16) + "] = a;");
+                line("        b = arr" + suffix + "[a];");
+                break;
+            case 7:
+                line("        a = a * " + (c % 4 + 1) + ";");
+                line("        b = b / " + (c % 3 + 1) + ";");
+                break;
+            case 8:
+                //Call an earlier function of this section, or one of the previous module
+                if(f > 0)
+                {
+                    line("        a = " + functionName(m, u, random.nextInt(f)) + "(a, b);");
+                }
+                else if(m > 0)
+                {
+                    line("        a = " + functionName(m - 1, 0, 0) + "(a, b);");
+                }
+                else
+                {
+                    line("        a = a + b;");
+                }
+                break;
+            case 9:
+                line("        if(w >= " + (c * 10) + ")");
+                line("        {");
+                line("            w = 0;");
+                line("        }");
+                break;
+            case 10:
+                line("        obj" + suffix + ".move" + suffix + "(a);");
+                break;
+        }
+    }
+
+    private static String functionName(int m, int u, int f)
+    {
+        return "f" + m + "_" + u + "_" + f;
+    }
+
+    private static String className(int m, int u)
+    {
+        return "C" + m + "_" + u;
+    }
+}
\ No newline at end of file
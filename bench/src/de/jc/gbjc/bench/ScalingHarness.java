@@ -0,0 +1,312 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how the whole compiler (with -noasm) scales with the size of the program<br>
+ * For every size a program is generated by the ProgramGenerator and compiled in a fresh JVM (see ScalingProbe)<br>
+ * Prints time and peak heap per size as a table and a plot, and warns if they grow much faster than the input,
+ * which usually means an accidental O(n^2) somewhere
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class ScalingHarness
+{
+    private static final double SUPERLINEAR_EXPONENT = 1.5; //Growth faster than n^1.5 is reported
+    private static final int PLOT_WIDTH = 50;
+
+    private List<Integer> sizes = new ArrayList<Integer>();
+    private String workDir = "build/scaling";
+    private String maxHeap = "4g";
+    private long timeoutSeconds = 600;
+    private String csvFile = null;
+    private List<String> compilerArgs = new ArrayList<String>();
+    private ProgramGenerator generator = new ProgramGenerator(0);
+
+    /**
+     * Usage: ScalingHarness [-sizes n,n,...] [-dir workDir] [-xmx heap] [-timeout seconds] [-csv file] [-compilerArgs "-a -b ..."]
+     * [ProgramGenerator options]
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        ScalingHarness harness = new ScalingHarness();
+        for(int i = 0; i < args.length; i++)
+        {
+            String s = args[i];
+            if(i + 1 >= args.length)
+            {
+                System.out.println("Missing value for option " + s);
+                System.exit(1);
+            }
+            if(s.equals("-sizes"))
+            {
+                for(String size : args[++i].split(","))
+                {
+                    harness.sizes.add(Integer.parseInt(size.trim()));
+                }
+            }
+            else if(s.equals("-dir"))
+            {
+                harness.workDir = args[++i];
+            }
+            else if(s.equals("-xmx"))
+            {
+                harness.maxHeap = args[++i];
+            }
+            else if(s.equals("-timeout"))
+            {
+                harness.timeoutSeconds = Long.parseLong(args[++i]);
+            }
+            else if(s.equals("-csv"))
+            {
+                harness.csvFile = args[++i];
+            }
+            else if(s.equals("-compilerArgs"))
+            {
+                for(String arg : args[++i].trim().split("\\s+"))
+                {
+                    harness.compilerArgs.add(arg);
+                }
+            }
+            else if(harness.generator.parseOption(s, args[i + 1]))
+            {
+                i++;
+            }
+            else
+            {
+                System.out.println("Unknown option: " + s);
+                System.exit(1);
+            }
+        }
+        if(harness.sizes.isEmpty())
+        {
+            harness.sizes.add(10000);
+            harness.sizes.add(100000);
+            harness.sizes.add(1000000);
+        }
+
+        harness.run();
+    }
+
+    private void run() throws IOException, InterruptedException
+    {
+        List<Result> results = new ArrayList<Result>();
+        for(int size : sizes)
+        {
+            Result result = measure(size);
+            if(result == null)
+            {
+                //Bigger programs would fail (or take even longer) too
+                break;
+            }
+            results.add(result);
+        }
+
+        printTable(results);
+        printPlot("Time (ms)", results, false);
+        printPlot("Peak heap (MB)", results, true);
+        if(csvFile != null)
+        {
+            writeCsv(results);
+        }
+    }
+
+    /**
+     * Generates a program of the given size and compiles it in a new JVM
+     *
+     * @return The measurement, null if the compiler failed or timed out
+     */
+    private Result measure(int size) throws IOException, InterruptedException
+    {
+        File dir = new File(workDir, Integer.toString(size));
+        deleteGbjFiles(dir);
+        generator.setLines(size);
+        int lines = generator.generate(dir);
+        new File(dir, "build").mkdirs();
+        System.out.println("Compiling " + lines + " lines in " + dir + "...");
+
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-Xmx" + maxHeap);
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        command.add(ScalingProbe.class.getName());
+        command.add("-noObjWarn");
+        command.add("-noasm");
+        command.addAll(compilerArgs);
+        command.add("main.gbj");
+
+        File log = new File(dir, "compiler.log");
+        Process process = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).redirectOutput(log).start();
+        if(!process.waitFor(timeoutSeconds, TimeUnit.SECONDS))
+        {
+            process.destroyForcibly();
+            System.out.println("Timed out after " + timeoutSeconds + "s, skipping the bigger sizes.");
+            return null;
+        }
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(log), "utf-8")))
+        {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+                if(line.startsWith(ScalingProbe.PREFIX))
+                {
+                    String[] parts = line.substring(ScalingProbe.PREFIX.length()).split(" ");
+                    return new Result(lines, Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                }
+            }
+        }
+        System.out.println("The compiler failed, see " + log + ". Skipping the bigger sizes.");
+        return null;
+    }
+
+    /**
+     * The working directory of the probe is the generated program, so relative class path entries have to be made absolute
+     */
+    private static String absoluteClassPath()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            if(sb.length() > 0)
+            {
+                sb.append(File.pathSeparator);
+            }
+            sb.append(new File(entry).getAbsolutePath());
+        }
+        return sb.toString();
+    }
+
+    private static void deleteGbjFiles(File dir)
+    {
+        File[] files = dir.listFiles();
+        if(files != null)
+        {
+            for(File f : files)
+            {
+                if(f.getName().endsWith(".gbj"))
+                {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private void printTable(List<Result> results)
+    {
+        System.out.println();
+        System.out.println(String.format("%10s %12s %14s %10s %10s", "Lines", "Time (ms)", "Peak heap (MB)", "Time exp", "Heap exp"));
+        Result previous = null;
+        for(Result r : results)
+        {
+            String timeExponent = "";
+            String heapExponent = "";
+            if(previous != null)
+            {
+                double time = exponent(previous.lines, r.lines, previous.nanos, r.nanos);
+                double heap = exponent(previous.lines, r.lines, previous.peakHeap, r.peakHeap);
+                timeExponent = String.format("%.2f", time);
+                heapExponent = String.format("%.2f", heap);
+                if(time > SUPERLINEAR_EXPONENT)
+                {
+                    timeExponent += " !";
+                }
+                if(heap > SUPERLINEAR_EXPONENT)
+                {
+                    heapExponent += " !";
+                }
+            }
+            System.out.println(String.format("%10d %12.1f %14.1f %10s %10s", r.lines, r.nanos / 1e6, r.peakHeap / 1024.0 / 1024.0,
+                    timeExponent, heapExponent));
+            previous = r;
+        }
+        System.out.println("(exp: growth compared to the previous size as a power of the input growth, 1 is linear, "
+                + "! marks more than " + SUPERLINEAR_EXPONENT + ")");
+    }
+
+    /**
+     * @return k so that value2 / value1 = (size2 / size1)^k
+     */
+    private static double exponent(long size1, long size2, long value1, long value2)
+    {
+        if(size1 == size2 || value1 <= 0 || value2 <= 0)
+        {
+            return 0;
+        }
+        return Math.log((double) value2 / value1) / Math.log((double) size2 / size1);
+    }
+
+    private void printPlot(String title, List<Result> results, boolean heap)
+    {
+        double max = 0;
+        for(Result r : results)
+        {
+            max = Math.max(max, heap ? r.peakHeap / 1024.0 / 1024.0 : r.nanos / 1e6);
+        }
+
+        System.out.println();
+        System.out.println(title + ":");
+        for(Result r : results)
+        {
+            double value = heap ? r.peakHeap / 1024.0 / 1024.0 : r.nanos / 1e6;
+            int width = max == 0 ? 0 : (int) Math.round(value / max * PLOT_WIDTH);
+            StringBuilder bar = new StringBuilder();
+            for(int i = 0; i < width; i++)
+            {
+                bar.append('#');
+            }
+            System.out.println(String.format("%10d | %-" + PLOT_WIDTH + "s %.1f", r.lines, bar, value));
+        }
+    }
+
+    private void writeCsv(List<Result> results) throws IOException
+    {
+        try(PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(csvFile), "utf-8")))
+        {
+            writer.println("lines,timeMs,peakHeapBytes");
+            for(Result r : results)
+            {
+                writer.println(r.lines + "," + (r.nanos / 1e6) + "," + r.peakHeap);
+            }
+        }
+        System.out.println();
+        System.out.println("Results written to " + csvFile + ".");
+    }
+
+    /**
+     * The measurement of one program size
+     */
+    private static class Result
+    {
+        private int lines;
+        private long nanos;
+        private long peakHeap;
+
+        public Result(int lines, long nanos, long peakHeap)
+        {
+            this.lines = lines;
+            this.nanos = nanos;
+            this.peakHeap = peakHeap;
+        }
+    }
+}
\ No newline at end of file
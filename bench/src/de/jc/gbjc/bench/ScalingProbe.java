@@ -0,0 +1,48 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.bench;
+
+import de.jc.gbjc.main.Main;
+import de.jc.gbjc.main.Util.Logger;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Runs the compiler once (in its own JVM, started by the ScalingHarness) and prints how long it took and the peak heap usage<br>
+ * Output: "SCALING {@literal <}nanoseconds{@literal >} {@literal <}peak heap bytes{@literal >}"
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class ScalingProbe
+{
+    public static final String PREFIX = "SCALING ";
+
+    /**
+     * @param args The arguments for the compiler
+     */
+    public static void main(String[] args)
+    {
+        Logger.getInstance().setMinLevel(Logger.WARNING);
+
+        long start = System.nanoTime();
+        Main.main(args);
+        long time = System.nanoTime() - start;
+
+        //The sum of the peaks of all heap pools, which can be a bit more than the real peak (they don't peak at the same time)
+        long peakHeap = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if(pool.getType() == MemoryType.HEAP)
+            {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        System.out.println(PREFIX + time + " " + peakHeap);
+    }
+}
\ No newline at end of file
@@ -7,20 +7,58 @@
 package de.jc.gbjc.main;
 
 import de.jc.gbjc.main.Util.Logger;
-import java.io.BufferedReader;
+import de.jc.gbjc.main.Util.ProcessRunner;
+import de.jc.gbjc.main.Util.Timings;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
+ * Runs the RGBDS toolchain<br>
+ * Files are assembled on a pool of a fixed size as soon as their .asm files are written (see ModuleCompiler),
+ * while other files are still being compiled. The linker is run once all of them are assembled<br>
+ * With an ObjectCache, files that are unchanged since an earlier build aren't assembled at all
  *
  * @author robbi-blechdose
  * 
  */
 public class AssemblerRunner
 {
+    private ExecutorService executor;
+    private String compilerDir;
+    private ProcessRunner processRunner;
+    private Map<String, AssemblyTask> assemblies; //By file name, every file is only assembled once
+    private ObjectCache cache; //null if every file is assembled
+    
+    /**
+     * Constructor
+     * 
+     * @param threads The maximum number of assemblers running at the same time
+     */
+    public AssemblerRunner(int threads)
+    {
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.compilerDir = getCompilerDir();
+        this.processRunner = new ProcessRunner(compilerDir + "/RGBDS");
+        this.assemblies = new HashMap<String, AssemblyTask>();
+    }
+    
+    /**
+     * Makes the assembler copy unchanged objects from a cache instead of assembling them again
+     * 
+     * @param directory The directory the objects are stored in
+     */
+    public void setCache(String directory)
+    {
+        this.cache = new ObjectCache(directory, processRunner);
+    }
+    
     /**
      * Derived from the equates in hardware.inc<br>
      * Parses a cartridge type as string to an int that can be passed to rbgfix
@@ -110,18 +148,34 @@ public class AssemblerRunner
     }
     
     /**
-     * Runs the entire RGBDS toolchain
+     * Starts assembling build/{@literal <}file name{@literal >}.asm into build/{@literal <}file name{@literal >}.o on the pool,
+     * the .asm file (and every file it includes) has to be written completely<br>
+     * Every file is only assembled once
      * 
-     * @param filenames The names of the compiled .asm files to be assembled
+     * @param fileName The name of the file without the .gbj ending
+     */
+    public synchronized void assemble(String fileName)
+    {
+        if(!assemblies.containsKey(fileName))
+        {
+            AssemblyTask task = new AssemblyTask(fileName);
+            assemblies.put(fileName, task);
+            executor.execute(task);
+        }
+    }
+    
+    /**
+     * Waits for all assemblies, then links and fixes the ROM<br>
+     * Files that haven't been assembled yet are assembled first
+     * 
+     * @param filenames The names of the compiled .asm files to be linked
      * @param romname The name of the ROM to be produced
      * @param cartType The cartridge type set in the ROM
      * @param ramSize The catridge RAM size set in the ROM
      * @param gbcCompat Compatability flag for GBC
      */
-    public static void runAssembler(String[] filenames, String romname, String cartType, String ramSize, String gbcCompat)
+    public void link(String[] filenames, String romname, String cartType, String ramSize, String gbcCompat)
     {
-        String compilerDir = getCompilerDir();
-        
         int cart = parseCartType(cartType);
         int ram = parseRamSize(ramSize);
         int gbc = 0;
@@ -141,20 +195,26 @@ public class AssemblerRunner
             gbc = 2;
         }
         
+        //The messages of every assembly are printed in the order of the files, no matter which one finished first
         for(String s : filenames)
         {
-            List<String> assemblerCommand = new ArrayList<String>();
-            assemblerCommand.add("\"" + compilerDir + "/RGBDS/rgbasm.exe\"");
-            assemblerCommand.add("\"-i" + compilerDir + "/\"");
-            assemblerCommand.add("-obuild/" + s + ".o");
-            assemblerCommand.add("build/" + s + ".asm");
-            int exitCode = runProcess(assemblerCommand, Logger.INFO);
-            
+            assemble(s);
+        }
+        for(String s : filenames)
+        {
+            AssemblyTask task;
+            synchronized(this)
+            {
+                task = assemblies.get(s);
+            }
+            int exitCode = task.join();
+            Logger.getInstance().print(task.log);
             if(exitCode != 0)
             {
                 success = false;
             }
         }
+        executor.shutdown();
         
         String fileEnding = ".gb";
         if(gbc == 2)
@@ -163,7 +223,6 @@ public class AssemblerRunner
         }
         
         List<String> linkerCommand = new ArrayList<String>();
-        linkerCommand.add("\"" + compilerDir + "/RGBDS/rgblink.exe\"");
         linkerCommand.add("-nbuild/" + romname + ".sym");
         linkerCommand.add("-obuild/" + romname + fileEnding);
 
@@ -172,14 +231,15 @@ public class AssemblerRunner
             linkerCommand.add("build/" + s + ".o");
         }
 
-        int exitCode = runProcess(linkerCommand, Logger.INFO);
-        if(exitCode != 0)
+        Timings.Phase phase = Timings.getInstance().begin("rgblink", romname);
+        int exitCodeLink = runTool("rgblink", linkerCommand);
+        phase.count("objects", filenames.length).end();
+        if(exitCodeLink != 0)
         {
             success = false;
         }
         
         List<String> fixerCommand = new ArrayList<String>();
-        fixerCommand.add("\"" + compilerDir + "/RGBDS/rgbfix.exe\"");
         fixerCommand.add("-p0xFF");
         fixerCommand.add("-v");
         fixerCommand.add("-m" + cart);
@@ -195,8 +255,10 @@ public class AssemblerRunner
         
         fixerCommand.add("build/" + romname + fileEnding);
         
-        int exitCodeLink = runProcess(fixerCommand, Logger.INFO);
-        if(exitCodeLink != 0)
+        phase = Timings.getInstance().begin("rgbfix", romname);
+        int exitCodeFix = runTool("rgbfix", fixerCommand);
+        phase.end();
+        if(exitCodeFix != 0)
         {
             success = false;
         }
@@ -208,33 +270,6 @@ public class AssemblerRunner
         }
     }
     
-    /**
-     * Runs the GB-J compiler on another .gbj file<br>
-     * Used for .gbj includes
-     * 
-     * @param name The name of the file to run the compiler on
-     */
-    public static void runCompiler(String name)
-    {
-        Logger.getInstance().log(Logger.INFO, "Attempting to run compiler on file " + name + ".");
-        
-        List<String> command = new ArrayList<String>();
-        command.add("java");
-        command.add("-jar");
-        command.add("\"" + getCompilerDir() + "/GB-J-Compiler.jar\"");
-        command.add("-n" + name.substring(0, name.length() - 4));
-        command.add("-noasm");
-        command.add(name);
-        
-        int exitCode = runProcess(command, Logger.DIRECT);
-        
-        if(exitCode != 0)
-        {
-            Logger.getInstance().log(Logger.ERROR, "Running compiler on file " + name + " failed.");
-            System.exit(0);
-        }
-    }
-    
     /**
      * Returns the directory the GB-J Compiler is located in
      * 
@@ -256,93 +291,120 @@ public class AssemblerRunner
     }
     
     /**
-     * Basic idea taken from https://stackoverflow.com/questions/13991007/execute-external-program-in-java (Solution by Steven)<br>
-     * Runs a process, captures its output and logs it
+     * Runs a tool of the RGBDS toolchain and logs its output
      * 
-     * @param command
-     * @param logLevel
-     * @return 
+     * @param tool The name of the tool, e.g. "rgbasm"
+     * @param arguments
+     * @return The exit code of the tool
      */
-    private static int runProcess(List<String> command, int logLevel)
+    private int runTool(String tool, List<String> arguments)
     {
-        if(!System.getProperty("os.name").toLowerCase().contains("win"))
+        Logger.getInstance().log(Logger.INFO, "Attempting to execute command:");
+        String str = processRunner.findTool(tool);
+        for(String s : arguments)
         {
-            String str = "";
-            for(String s : command)
+            str += " " + s;
+        }
+        Logger.getInstance().log(Logger.INFO, str);
+        
+        try
+        {
+            ProcessRunner.Result result = processRunner.run(tool, arguments);
+            
+            //The messages of a failed tool are its error messages
+            for(String line : result.getOutput())
             {
-                str += " " + s.replace(".exe", "");
+                Logger.getInstance().log(result.isSuccess() ? Logger.INFO : Logger.ERROR, line);
             }
-            command.clear();
             
-            command.add(0, "bash");
-            command.add(1, "-c");
-            command.add(2, str);
+            return result.getExitCode();
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.ERROR, "Failed to invoke RGBDS.");
+            Logger.getInstance().log(Logger.ERROR, e);
+            System.exit(0);
+            return 0;
         }
+    }
+    
+    /**
+     * Assembles a single file, its messages are collected until the linker is run
+     */
+    private class AssemblyTask implements Runnable
+    {
+        private String fileName;
+        private int exitCode;
+        private List<String> log;
+        private CountDownLatch done;
         
-        Logger.getInstance().log(Logger.INFO, "Attempting to execute command:");
-        String str = "";
-        for(String s : command)
+        private AssemblyTask(String fileName)
         {
-            str += s + " ";
+            this.fileName = fileName;
+            this.done = new CountDownLatch(1);
         }
-        Logger.getInstance().log(Logger.INFO, str);
         
-        try
+        @Override
+        public void run()
         {
-            Process process = new ProcessBuilder(command).start();
-            
-            new Thread(new Runnable()
+            Logger.getInstance().startBuffering();
+            try
             {
-                public void run()
+                String asmFile = "build/" + fileName + ".asm";
+                String objectFile = "build/" + fileName + ".o";
+                
+                String key = null;
+                if(cache != null)
                 {
-                    BufferedReader input = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                    String line = null; 
-
-                    try
+                    Timings.Phase phase = Timings.getInstance().begin("object cache", fileName);
+                    key = cache.getKey(asmFile, compilerDir + "/");
+                    boolean hit = key != null && cache.load(key, objectFile);
+                    phase.end();
+                    if(hit)
                     {
-                        while((line = input.readLine()) != null)
-                        {
-                            Logger.getInstance().log(logLevel, line);
-                        }
-                    }
-                    catch (IOException e)
-                    {
-                        Logger.getInstance().log(Logger.ERROR, e);
+                        Logger.getInstance().log(Logger.INFO, "Reusing the cached object of " + asmFile + ".");
+                        exitCode = 0;
+                        return;
                     }
                 }
-            }).start();
-            
-            new Thread(new Runnable()
-            {
-                public void run()
+                
+                List<String> assemblerCommand = new ArrayList<String>();
+                assemblerCommand.add("-i" + compilerDir + "/");
+                assemblerCommand.add("-o" + objectFile);
+                assemblerCommand.add(asmFile);
+                Timings.Phase phase = Timings.getInstance().begin("rgbasm", fileName);
+                exitCode = runTool("rgbasm", assemblerCommand);
+                phase.end();
+                
+                if(exitCode == 0 && key != null)
                 {
-                    BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                    String line = null; 
-
-                    try
-                    {
-                        while((line = input.readLine()) != null)
-                        {
-                            Logger.getInstance().log(logLevel, line);
-                        }
-                    }
-                    catch (IOException e)
-                    {
-                        Logger.getInstance().log(Logger.ERROR, e);
-                    }
+                    cache.store(key, objectFile);
                 }
-            }).start();
-
-            process.waitFor();
-            
-            return process.exitValue();
+            }
+            finally
+            {
+                log = Logger.getInstance().stopBuffering();
+                done.countDown();
+            }
         }
-        catch(Exception e)
+        
+        /**
+         * Waits for the assembler to finish
+         * 
+         * @return The exit code of the assembler
+         */
+        private int join()
         {
-            Logger.getInstance().log(Logger.ERROR, "Failed to invoke RGBDS.");
-            Logger.getInstance().log(Logger.ERROR, e);
-            System.exit(0);
-            return 0;
+            try
+            {
+                done.await();
+            }
+            catch(InterruptedException e)
+            {
+                Logger.getInstance().log(Logger.ERROR, e);
+                System.exit(0);
+            }
+            return exitCode;
         }
     }
 }
\ No newline at end of file
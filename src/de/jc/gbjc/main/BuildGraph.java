@@ -0,0 +1,286 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Util.Logger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The dependency graph of the last build (-incremental)<br>
+ * Holds the hash of the source and of the generated .asm file of every compiled .gbj file together with the .gbj files it imports
+ * and the hashes of their symbols (see ParsedModule.getInterfaceHash()).
+ * A file is up to date if neither of them changed and the files it imports still have the same symbols, so it doesn't have to be compiled again.
+ * Imported files are linked, so a changed import only has to be compiled again itself as long as its symbols stay the same<br>
+ * The graph belongs to a configuration (the compiler itself, -O, -mbc and -g), a different one invalidates all files.
+ * Included .asm files and the stdlib only change the assembled objects, those are taken care of by the ObjectCache
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class BuildGraph
+{
+    private static final int MAGIC = 0x47424A47; //"GBJG"
+    private static final int FORMAT_VERSION = 2;
+    
+    private File file;
+    private String configuration;
+    private Map<String, Node> nodes; //By absolute path
+    private Map<String, Boolean> upToDate; //Files that have already been checked in this build
+    
+    /**
+     * Constructor, reads the graph of the last build
+     * 
+     * @param file The file the graph is stored in
+     * @param configuration Everything besides the files that changes the generated code, the graph is discarded if it was built with a different one
+     */
+    public BuildGraph(String file, String configuration)
+    {
+        this.file = new File(file);
+        this.configuration = configuration;
+        this.nodes = new HashMap<String, Node>();
+        this.upToDate = new HashMap<String, Boolean>();
+        read();
+    }
+    
+    /**
+     * Checks if a file has to be compiled again
+     * 
+     * @param path The absolute path to the file
+     * @param isMainFile If the file is compiled as a main file (with the ROM header)
+     * @return If the file and its .asm file are unchanged since the last build and the files it imports still have the same symbols
+     */
+    public boolean isUpToDate(String path, boolean isMainFile)
+    {
+        Node node = nodes.get(path);
+        if(node == null || node.isMainFile != isMainFile)
+        {
+            return false;
+        }
+        
+        Boolean result = upToDate.get(path);
+        if(result == null)
+        {
+            //Cyclic imports count as changed until the check is done
+            upToDate.put(path, false);
+            result = node.sourceHash.equals(hashFile(new File(path))) && node.asmHash.equals(hashFile(getAsmFile(node.fileName)));
+            for(int i = 0; i < node.imports.size() && result; i++)
+            {
+                result = node.importHashes.get(i).equals(getInterfaceHash(node.imports.get(i)));
+            }
+            upToDate.put(path, result);
+        }
+        return result;
+    }
+    
+    /**
+     * @param path The absolute path to an imported file
+     * @return The hash of the symbols the file has now, it is only parsed if it changed
+     */
+    private String getInterfaceHash(String path)
+    {
+        if(isUpToDate(path, false))
+        {
+            return nodes.get(path).interfaceHash;
+        }
+        //The file is compiled again anyway, so parsing it now costs nothing
+        return ModuleRegistry.getInstance().getModule(path).getInterfaceHash();
+    }
+    
+    /**
+     * @param path The absolute path to a file that is up to date
+     * @return The absolute paths to the .gbj files it imports
+     */
+    public List<String> getImports(String path)
+    {
+        return nodes.get(path).imports;
+    }
+    
+    /**
+     * @param path The absolute path to a file that is up to date
+     * @return The name of the file without the .gbj ending
+     */
+    public String getFileName(String path)
+    {
+        return nodes.get(path).fileName;
+    }
+    
+    /**
+     * Records a freshly compiled file, its .asm file has to be written completely<br>
+     * The source hash is the one of the bytes the module was parsed from, a file edited during the build is compiled again by the next one
+     * 
+     * @param module The compiled module
+     * @param fileName The name of the file without the .gbj ending
+     * @param isMainFile If the file was compiled as a main file
+     */
+    public void record(ParsedModule module, String fileName, boolean isMainFile)
+    {
+        String asmHash = hashFile(getAsmFile(fileName));
+        if(module.getSourceHash() == null || asmHash == null)
+        {
+            nodes.remove(module.getPath());
+            return;
+        }
+        List<String> imports = new ArrayList<String>();
+        List<String> importHashes = new ArrayList<String>();
+        for(ParsedModule imported : module.getImports())
+        {
+            imports.add(imported.getPath());
+            importHashes.add(imported.getInterfaceHash());
+        }
+        nodes.put(module.getPath(), new Node(fileName, isMainFile, module.getSourceHash(), asmHash, module.getInterfaceHash(), imports, importHashes));
+    }
+    
+    /**
+     * Writes the graph for the next build
+     */
+    public void save()
+    {
+        File temp = null;
+        try
+        {
+            File directory = file.getAbsoluteFile().getParentFile();
+            directory.mkdirs();
+            //Written next to the graph and renamed, so an interrupted build never leaves half a graph
+            temp = File.createTempFile(file.getName(), ".tmp", directory);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(configuration);
+                out.writeInt(nodes.size());
+                for(Map.Entry<String, Node> entry : nodes.entrySet())
+                {
+                    Node node = entry.getValue();
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(node.fileName);
+                    out.writeBoolean(node.isMainFile);
+                    out.writeUTF(node.sourceHash);
+                    out.writeUTF(node.asmHash);
+                    out.writeUTF(node.interfaceHash);
+                    out.writeInt(node.imports.size());
+                    for(int i = 0; i < node.imports.size(); i++)
+                    {
+                        out.writeUTF(node.imports.get(i));
+                        out.writeUTF(node.importHashes.get(i));
+                    }
+                }
+            }
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.WARNING, "Could not write the build graph, the next build compiles every file.");
+            if(temp != null)
+            {
+                temp.delete();
+            }
+        }
+    }
+    
+    /**
+     * Reads the graph, a missing or broken graph (or one of another configuration) is treated like an empty one
+     */
+    private void read()
+    {
+        if(!file.isFile())
+        {
+            return;
+        }
+        
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+        {
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(configuration))
+            {
+                return;
+            }
+            
+            Map<String, Node> read = new HashMap<String, Node>();
+            for(int i = in.readInt(); i > 0; i--)
+            {
+                String path = in.readUTF();
+                String fileName = in.readUTF();
+                boolean isMainFile = in.readBoolean();
+                String sourceHash = in.readUTF();
+                String asmHash = in.readUTF();
+                String interfaceHash = in.readUTF();
+                List<String> imports = new ArrayList<String>();
+                List<String> importHashes = new ArrayList<String>();
+                for(int j = in.readInt(); j > 0; j--)
+                {
+                    imports.add(in.readUTF());
+                    importHashes.add(in.readUTF());
+                }
+                read.put(path, new Node(fileName, isMainFile, sourceHash, asmHash, interfaceHash, imports, importHashes));
+            }
+            nodes = read;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            nodes.clear();
+        }
+    }
+    
+    private static File getAsmFile(String fileName)
+    {
+        return new File("build/" + fileName + ".asm");
+    }
+    
+    /**
+     * @param file
+     * @return The SHA-256 of the file, null if it can't be read
+     */
+    private static String hashFile(File file)
+    {
+        try
+        {
+            return ModuleCache.hash(Files.readAllBytes(file.toPath()));
+        }
+        catch(IOException e)
+        {
+            return null;
+        }
+    }
+    
+    /**
+     * A compiled file
+     */
+    private static class Node
+    {
+        private String fileName;
+        private boolean isMainFile;
+        private String sourceHash;
+        private String asmHash;
+        private String interfaceHash; //The hash of the symbols of the file (and the files it imports)
+        private List<String> imports;
+        private List<String> importHashes; //The interface hashes of the imported files the file was compiled with
+        
+        private Node(String fileName, boolean isMainFile, String sourceHash, String asmHash, String interfaceHash, List<String> imports, List<String> importHashes)
+        {
+            this.fileName = fileName;
+            this.isMainFile = isMainFile;
+            this.sourceHash = sourceHash;
+            this.asmHash = asmHash;
+            this.interfaceHash = interfaceHash;
+            this.imports = Collections.unmodifiableList(imports);
+            this.importHashes = Collections.unmodifiableList(importHashes);
+        }
+    }
+}
\ No newline at end of file
@@ -8,18 +8,27 @@ package de.jc.gbjc.main.Codegen;
 
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
-import de.jc.gbjc.main.AssemblerRunner;
 import de.jc.gbjc.main.Constants;
+import de.jc.gbjc.main.Util.Interner;
 import de.jc.gbjc.main.Util.Logger;
-import de.jc.gbjc.main.PreliminaryParser;
+import de.jc.gbjc.main.Util.Timings;
+import de.jc.gbjc.main.ParsedModule;
 import de.jc.gbjc.main.VarHelper;
+import de.jc.gbjc.main.Symbols.MethodSymbol;
+import de.jc.gbjc.main.Symbols.SymbolTable;
+import de.jc.gbjc.main.Symbols.VariableSymbol;
+import de.jc.gbjc.main.Symbols.VariableTable;
 import java.io.BufferedWriter;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  *
@@ -35,73 +44,88 @@ public class CodeGenerator
         FUNC_ARG, STACK_VAR, STATIC, OBJECT;
     }
     
-    private int optimizerPasses;
+    private int optimizationLevel;
     private int mbcVariant;
+    private String fileName;
+    private OptimizerStats optimizerStats;
     
     private AbstractSyntaxTree syntaxTree;
-    private List<String> staticMethods;
-    private List<String> objectTypes;
-    private List<Integer> objectSizes;
-    private List<String> objectConstructors;
-    private List<String> objectMethods;
-    private List<String> objectVariablePositions;
-    private List<String> objectInstances;
+    private SymbolTable symbolTable;
     
     private Writer writer;
     
-    private List<String> varDeclarations;
-    private List<String> methodVarDeclarations; //<method>|<var name>
-    private List<String> objectVariableDeclarations;
-    private List<String> generatedCode;
-    private List<String> data; //Data is added at the end
+    private VariableTable varDeclarations;
+    private InstructionList generatedCode;
+    private InstructionList data; //Data is added at the end
+    private List<String> exports; //The labels other files are linked against: methods, constructors and variables
     
     private AbstractSyntaxTree currentFunction;
+    private boolean currentFunctionIsStatic;
     public int stackOffset;
     private int manualStackOffset; //Not the best name but me, whatever
     private int currentNumberOfArgs;
     private boolean popOnReturn;
     
+    private Map<AbstractSyntaxTree, Integer> labelIds; //The numbers that make the labels of nodes unique
+    private Set<Integer> usedLabelIds;
+    
     /**
      * The code generator
      * 
      * @param ast The AST generated by the parser
      * @param filename The name of the ASM file to output
-     * @param pp The preliminary parser instance for this file
-     * @param optimizerPasses The amount of optimizer passes to run
+     * @param module The parsed module of this file
+     * @param optimizationLevel 0 disables the optimizer
      * @param mbcVariant The MBC variant this ROM should use
      */
-    public CodeGenerator(AbstractSyntaxTree ast, String filename, PreliminaryParser pp, int optimizerPasses, int mbcVariant)
+    public CodeGenerator(AbstractSyntaxTree ast, String filename, ParsedModule module, int optimizationLevel, int mbcVariant)
+    {
+        this(ast, filename, module, optimizationLevel, mbcVariant, openAsmFile(filename));
+    }
+    
+    /**
+     * The code generator, writing the assembly into the given writer instead of build/{@literal <}file name{@literal >}.asm
+     * 
+     * @param ast The AST generated by the parser
+     * @param filename The name of the file (without the .gbj ending)
+     * @param module The parsed module of this file
+     * @param optimizationLevel 0 disables the optimizer
+     * @param mbcVariant The MBC variant this ROM should use
+     * @param writer The writer the assembly is written into, closed after writing
+     */
+    public CodeGenerator(AbstractSyntaxTree ast, String filename, ParsedModule module, int optimizationLevel, int mbcVariant, Writer writer)
     {
         this.syntaxTree = ast;
-        this.staticMethods = pp.getStaticMethods();
-        this.objectTypes = pp.getObjectTypes();
-        this.objectSizes = pp.getObjectSizes();
-        this.objectConstructors = pp.getObjectConstructors();
-        this.objectMethods = pp.getObjectMethods();
-        this.objectVariablePositions = pp.getObjectVariablePositions();
-        this.objectInstances = pp.getObjectInstances();
-        
-        this.varDeclarations = new ArrayList<String>();
-        this.methodVarDeclarations = new ArrayList<String>();
-        this.objectVariableDeclarations = new ArrayList<String>();
-        this.generatedCode = new ArrayList<String>();
-        this.data = new ArrayList<String>();
+        this.symbolTable = module.getSymbolTable();
+        this.fileName = filename;
+        this.writer = writer;
+        
+        this.varDeclarations = new VariableTable();
+        this.generatedCode = new InstructionList();
+        this.data = new InstructionList();
+        this.exports = new ArrayList<String>();
         
         this.manualStackOffset = 0;
+        this.labelIds = new IdentityHashMap<AbstractSyntaxTree, Integer>();
+        this.usedLabelIds = new HashSet<Integer>();
         
+        this.optimizationLevel = optimizationLevel;
+        this.mbcVariant = mbcVariant;
+    }
+    
+    private static Writer openAsmFile(String filename)
+    {
         try
         {
-            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("build/" + filename + ".asm"), "utf-8"));
+            return new BufferedWriter(new OutputStreamWriter(new FileOutputStream("build/" + filename + ".asm"), "utf-8"));
         }
         catch (Exception e)
         {
             Logger.getInstance().log(Logger.ERROR, "Failed to create file.");
             Logger.getInstance().log(Logger.ERROR, e);
             System.exit(-1);
+            return null;
         }
-        
-        this.optimizerPasses = optimizerPasses;
-        this.mbcVariant = mbcVariant;
     }
     
     /**
@@ -145,240 +169,30 @@ public class CodeGenerator
         syntaxError(line, "Argument number mismatched: " + want + " Arguments expected but got " + got + ".");
     }
     
-    /**
-     * Retrieves the "bitNum" for a static (declared inside a section) variable<br>
-     * Can be 8 (char), 16 (int or pointer) or 0 (not found)
-     * 
-     * @param var The AST of the variable
-     * @return 
-     */
-    private int getBitNumForStaticVariable(AbstractSyntaxTree var)
-    {
-        for(String s : varDeclarations)
-        {
-            String[] parts = s.split("\\|");
-            if(parts[1].equals(var.getContent()))
-            {
-                if(parts[0].equals("char"))
-                {
-                    return Constants.CHAR_SIZE;
-                }
-                else if(parts[0].equals("int"))
-                {
-                    return Constants.INT_SIZE;
-                }
-                else if(objectTypes.contains(parts[0]))
-                {
-                    return Constants.POINTER_SIZE;
-                }
-                else if(parts[0].equals("array"))
-                {
-                    if(parts[2].equals("char"))
-                    {
-                        return Constants.CHAR_SIZE;
-                    }
-                    else
-                    {
-                        return Constants.INT_SIZE;
-                    }
-                }
-                else
-                {
-                    syntaxError(var.getLine(), "Type \"" + parts[0] + "\" does not exist.");
-                }
-            }
-        }
-        
-        syntaxError(var.getLine(), "Variable \"" + var.getContent() + "\" not defined.");
-        
-        return 0;
-    }
-    
-    /**
-     * Retrieves the "bitNum" for a variable declared inside the current method<br>
-     * Can be 8 (char), 16 (int or pointer) or 0 (not found)
-     * 
-     * @param var The AST of the variable
-     * @return 
-     */
-    private int getBitNumForMethodVariable(AbstractSyntaxTree var)
-    {
-        int varAmount = this.getNumberOfVarsForCurrentMethod();
-        
-        int index = 0;
-        for(String s : methodVarDeclarations)
-        {
-            String[] parts = s.split("\\|");
-            if(parts[0].equals(currentFunction.getContent()))
-            {
-                if(parts[2].equals(var.getContent()))
-                {
-                    if(parts[1].equals("char"))
-                    {
-                        this.stackOffset = (varAmount * 2) - (index * 2) - 2 + manualStackOffset;
-                        return Constants.CHAR_SIZE;
-                    }
-                    else if(parts[1].equals("int"))
-                    {
-                        this.stackOffset = (varAmount * 2) - (index * 2) - 2 + manualStackOffset;
-                        return Constants.INT_SIZE;
-                    }
-                    else if(objectTypes.contains(parts[1]))
-                    {
-                        this.stackOffset = (varAmount * 2) - (index * 2) - 2 + manualStackOffset;
-                        return Constants.POINTER_SIZE;
-                    }
-                    else
-                    {
-                        syntaxError(var.getLine(), "Type \"" + parts[0] + "\" does not exist.");
-                    }
-                }
-                index++;
-            }
-        }
-        
-        return 0;
-    }
-    
-    /**
-     * Retrieves the "bitNum" for a function argument of the current method<br>
-     * Can be 8 (char), 16 (int or pointer) or 0 (not found)
-     * 
-     * @param tree The AST we're generating the code from
-     * @return 
-     */
-    private int getBitNumForFunctionArg(AbstractSyntaxTree tree)
-    {
-        int numArgs = 0;
-        for(AbstractSyntaxTree ast : currentFunction.getChildren())
-        {
-            if(ast.getType() == TreeNodeType.FUNC_ARG)
-            {
-                numArgs++;
-            }
-        }
-        
-        currentNumberOfArgs = numArgs;
-        
-        for(AbstractSyntaxTree ast : currentFunction.getChildren())
-        {
-            if(ast.getType() == TreeNodeType.FUNC_ARG)
-            {
-                String[] parts = ast.getContent().split("\\|");
-                if(parts[1].equals(tree.getContent()))
-                {
-                    stackOffset = (numArgs - currentFunction.getChildren().indexOf(ast)) * 2;
-                    
-                    if(parts[0].equals("char"))
-                    {
-                        return Constants.CHAR_SIZE;
-                    }
-                    else if(parts[0].equals("int"))
-                    {
-                        return Constants.INT_SIZE;
-                    }
-                    else if(objectTypes.contains(parts[0]))
-                    {
-                        return Constants.POINTER_SIZE;
-                    }
-                    else
-                    {
-                        syntaxError(ast.getLine(), "Type \"" + parts[0] + "\" does not exist.");
-                    }
-                }
-            }
-        }
-        
-        return 0;
-    }
-    
-    /**
-     * Retrieves the "bitNum" for a variable declared inside an object<br>
-     * Can be 8 (char), 16 (int or pointer) or 0 (not found)
-     * 
-     * @param ast The AST of the variable
-     * @return 
-     */
-    private int getBitNumForObjectVariable(AbstractSyntaxTree ast)
-    {
-        for(String s : objectVariableDeclarations)
-        {
-            String[] parts = s.split("\\|");
-            if(parts[2].equals(ast.getContent()))
-            {
-                if(parts[1].equals("char"))
-                {
-                    return Constants.CHAR_SIZE;
-                }
-                else if(parts[1].equals("int"))
-                {
-                    return Constants.INT_SIZE;
-                }
-                else if(objectTypes.contains(parts[1]))
-                {
-                    return Constants.POINTER_SIZE;
-                }
-                else
-                {
-                    syntaxError(ast.getLine(), "Type \"" + parts[0] + "\" does not exist.");
-                }
-            }
-        }
-        
-        return 0;
-    }
-    
     /**
      * Loads the address of the desired object variable into hl
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param varName The name of the object variable
      * @param stackOffset The stack offset to take into account
      */
-    public void generateAddressForObjectVariable(List<String> code, String varName, int stackOffset)
+    public void generateAddressForObjectVariable(InstructionList code, String varName, int stackOffset)
     {
         //The address is located on the stack (since we're inside a method for an object taking the actual object memory as first argument)
-        code.add("ld hl, sp + " + ((currentNumberOfArgs * 2) + 2 + stackOffset) + "\n");
-        code.add("ld a, [hl+]\n");
-        code.add("ld h, [hl]\n");
-        code.add("ld l, a\n");
-
-        String offset = "";
-        for(String s : objectVariablePositions)
-        {
-            String[] parts = s.split("\\|");
+        code.add(Opcode.LD, "hl", "sp + " + ((currentNumberOfArgs * 2) + 2 + stackOffset));
+        code.add(Opcode.LD, "a", "[hl+]");
+        code.add(Opcode.LD, "h", "[hl]");
+        code.add(Opcode.LD, "l", "a");
 
-            if(parts[1].equals(varName))
-            {
-                offset = parts[2];
-            }
-        }
+        Integer offset = symbolTable.getObjectVariablePosition(varName);
 
-        code.add("ld de, " + offset + "\n");
-        code.add("add hl, de\n");
+        code.add(Opcode.LD, "de", offset == null ? "" : String.valueOf(offset));
+        code.add(Opcode.ADD, "hl", "de");
     }
     
     /**
-     * @return The number of variables declared in the current method
-     */
-    private int getNumberOfVarsForCurrentMethod()
-    {
-        int num = 0;
-        
-        for(String s : methodVarDeclarations)
-        {
-            String[] parts = s.split("\\|");
-            if(parts[0].equals(currentFunction.getContent()))
-            {
-                num++;
-            }
-        }
-        
-        return num;
-    }
-    
-    /**
-     * Locates a variable and determines bitNum and type
+     * Locates a variable and determines bitNum and type<br>
+     * The variable has already been resolved by the Resolver, so this only adds the current temporary stack usage
      * 
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
@@ -386,46 +200,16 @@ public class CodeGenerator
      */
     public VarHelper doVariableAccess(AbstractSyntaxTree tree, boolean isStatic)
     {
-        int bitNum = getBitNumForFunctionArg(tree);
-        VariableType varType = VariableType.FUNC_ARG;
+        currentNumberOfArgs = currentFunction.getFrameLayout().getNumArgs();
         
-        //Calculate stack offset
-        stackOffset = manualStackOffset;
-        for(AbstractSyntaxTree ast : currentFunction.getChildren())
+        VarHelper vh = tree.getAccess(isStatic);
+        if(vh.getErrorMessage() != null)
         {
-            if(ast.getType() == TreeNodeType.FUNC_ARG)
-            {
-                stackOffset += 2;
-            }
+            syntaxError(vh.getErrorLine(), vh.getErrorMessage());
         }
-        stackOffset += (getNumberOfVarsForCurrentMethod() * 2);
-        
-        if(bitNum == 0)
-        {
-            if(isStatic)
-            {
-                int stackOffsetOld = stackOffset;
-                //This overwrites the stack offset, so save it in case we need it again
-                bitNum = getBitNumForMethodVariable(tree);
-                varType = VariableType.STACK_VAR;
         
-                if(bitNum == 0)
-                {
-                    //Yup, we need it again
-                    stackOffset = stackOffsetOld;
-                    
-                    bitNum = getBitNumForStaticVariable(tree);
-                    varType = VariableType.STATIC;
-                }
-            }
-            else
-            {
-                bitNum = getBitNumForObjectVariable(tree);
-                varType = VariableType.OBJECT;
-            }
-        }
-        
-        return new VarHelper(bitNum, varType);
+        stackOffset = vh.getFrameOffset() + manualStackOffset;
+        return vh;
     }
     
     /**
@@ -433,46 +217,46 @@ public class CodeGenerator
      * For writing: number to be written is in (b)c<br>
      * For reading: number to be read will be in (b)c<br>
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The array access subtree
      * @param bitNum The previously determined bitNum of the array
      * @param isStatic Determines if this is a section (static) or an object class
      * @param write Determines whether a write or a read is generated
      */
-    public void generateArrayAccess(List<String> code, AbstractSyntaxTree tree, int bitNum, boolean isStatic, boolean write)
+    public void generateArrayAccess(InstructionList code, AbstractSyntaxTree tree, int bitNum, boolean isStatic, boolean write)
     {
         if(tree.getChildren().get(0).getType() == TreeNodeType.CONSTANT)
         {
-            int arrayPos = Integer.parseInt(tree.getChildren().get(0).getContent());
+            int arrayPos = tree.getChildren().get(0).getValue();
 
             if(write)
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, c\n");
-                    code.add("ld [w" + tree.getContent() + " + " + arrayPos + "], a\n");
+                    code.add(Opcode.LD, "a", "c");
+                    code.add(Opcode.LD, "[w" + tree.getContent() + " + " + arrayPos + "]", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, c\n");
-                    code.add("ld [w" + tree.getContent() + " + " + (arrayPos * 2) + "], a\n");
-                    code.add("ld a, b\n");
-                    code.add("ld [w" + tree.getContent() + " + " + (arrayPos * 2 + 1) + "], a\n");
+                    code.add(Opcode.LD, "a", "c");
+                    code.add(Opcode.LD, "[w" + tree.getContent() + " + " + (arrayPos * 2) + "]", "a");
+                    code.add(Opcode.LD, "a", "b");
+                    code.add(Opcode.LD, "[w" + tree.getContent() + " + " + (arrayPos * 2 + 1) + "]", "a");
                 }
             }
             else
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getContent() + " + " + arrayPos + "]\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + " + " + arrayPos + "]");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getContent() + " + " + (arrayPos * 2) + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [w" + tree.getContent() + " + " + (arrayPos * 2 + 1) + "]\n");
-                    code.add("ld b, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + " + " + (arrayPos * 2) + "]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + " + " + (arrayPos * 2 + 1) + "]");
+                    code.add(Opcode.LD, "b", "a");
                 }
             }
         }
@@ -486,32 +270,32 @@ public class CodeGenerator
             {
                 if(bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld e, [hl]\n");
-                    code.add("ld d, 0\n");
+                    code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                    code.add(Opcode.LD, "e", "[hl]");
+                    code.add(Opcode.LD, "d", "0");
                 }
                 else if(bitNum2 == Constants.INT_SIZE)
                 {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld d, [hl]\n");
-                    code.add("ld e, a\n");
+                    code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, "d", "[hl]");
+                    code.add(Opcode.LD, "e", "a");
                 }
             }
             else if(varType2 == VariableType.STATIC)
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld d, 0\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                    code.add(Opcode.LD, "e", "a");
+                    code.add(Opcode.LD, "d", "0");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + " + 1]\n");
-                    code.add("ld d, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                    code.add(Opcode.LD, "e", "a");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + " + 1]");
+                    code.add(Opcode.LD, "d", "a");
                 }
             }
             //Untested, but also unneeded
@@ -532,431 +316,540 @@ public class CodeGenerator
 //                }
 //            }
 
-            code.add("ld hl, w" + tree.getContent() + "\n");
-            code.add("add hl, de\n");
+            code.add(Opcode.LD, "hl", "w" + tree.getContent());
+            code.add(Opcode.ADD, "hl", "de");
             //If it's 2 bytes per array entry, we need to mult the position by 2
             if(bitNum == Constants.INT_SIZE)
             {
-                code.add("add hl, de\n");
+                code.add(Opcode.ADD, "hl", "de");
             }
             
             if(write)
             {
-                code.add("ld [hl], c\n");
+                code.add(Opcode.LD, "[hl]", "c");
             }
             else
             {
-                code.add("ld c, [hl]\n");
+                code.add(Opcode.LD, "c", "[hl]");
             }
             
             if(bitNum == Constants.INT_SIZE)
             {
-                code.add("inc hl\n");
+                code.add(Opcode.INC, "hl");
                 
                 if(write)
                 {
-                    code.add("ld [hl], b\n");
+                    code.add(Opcode.LD, "[hl]", "b");
                 }
                 else
                 {
-                    code.add("ld b, [hl]\n");
+                    code.add(Opcode.LD, "b", "[hl]");
                 }
             }
         }
     }
     
+    /**
+     * Returns the number the labels belonging to a node (e.g. the end of an if block) are made unique with<br>
+     * It only depends on the file name and the order the nodes are first asked for, so the same file always
+     * results in the same code, no matter which thread compiles it (which the ObjectCache relies on)
+     * 
+     * @param tree
+     * @return
+     */
+    int getLabelId(AbstractSyntaxTree tree)
+    {
+        Integer id = labelIds.get(tree);
+        if(id == null)
+        {
+            //The file name is part of the number, so the labels of different files can't be mixed up in the .sym file of the ROM
+            id = (fileName + ":" + labelIds.size()).hashCode() & 0x7FFFFFFF;
+            while(!usedLabelIds.add(id))
+            {
+                id = (id + 1) & 0x7FFFFFFF;
+            }
+            labelIds.put(tree, id);
+        }
+        return id;
+    }
+    
     private void generateDeclaration(AbstractSyntaxTree tree)
     {
-        varDeclarations.add(tree.getContent());
+        varDeclarations.add(new VariableSymbol(tree.getDataType(), tree.getName()));
     }
     
     /**
-     * Generates a mathematical operation (+, -, *, /, %)
+     * Evaluates an expression (see MathsParser) into (b)c<br>
+     * Intermediate results stay in registers, the left operand of an operation is kept in (b)c while the right one is loaded into (d)e.
+     * It's only pushed if the right operand needs (b)c itself (an operation, an array access or a method call)
+     * and can't simply be loaded afterwards
      * 
-     * @param code The arraylist the generated code is written into
-     * @param tree The AST we're generating the code from
+     * @param code The instruction list the generated code is written into
+     * @param tree The expression
+     * @param bitNum The size of the variable the result is assigned to, operations on two chars are widened to it
      * @param isStatic Determines if this is a section (static) or an object class
+     * @return The size of the result
      */
-    private void generateOperation(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private int generateExpression(InstructionList code, AbstractSyntaxTree tree, int bitNum, boolean isStatic)
     {
-        VarHelper vh = this.doVariableAccess(tree.getChildren().get(0), isStatic);
-        int bitNum = vh.getBitNum();
-        VariableType varType = vh.getVarType();
-        
-        AbstractSyntaxTree op = tree.getChildren().get(1);
-        
-        int bitNum2 = 0;
-        VariableType varType2;
-        int bitNum3 = 0;
-        VariableType varType3;
-        
-        if(op.getChildren().get(0).getType() == TreeNodeType.VARIABLE)
+        switch(tree.getType())
         {
-            VarHelper vh2 = this.doVariableAccess(op.getChildren().get(0), isStatic);
-            bitNum2 = vh2.getBitNum();
-            varType2 = vh2.getVarType();
-            
-            if(varType2 == VariableType.FUNC_ARG || varType2 == VariableType.STACK_VAR)
+            case OPERATION:
             {
-                if(bitNum2 == Constants.CHAR_SIZE)
+                if(tree.getChildren().size() == 1)
                 {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld c, [hl]\n");
-                }
-                else if(bitNum2 == Constants.INT_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [hl]\n");
-                    code.add("ld b, a\n");
+                    return generateNegation(code, tree, bitNum, isStatic);
                 }
+                return generateOperation(code, tree, bitNum, isStatic);
             }
-            else if(varType2 == VariableType.STATIC)
+            case CALL:
+            case OBJECT_CALL:
             {
-                if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld a, [w" + op.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                }
-                else if(bitNum2 == Constants.INT_SIZE)
+                int returnBitNum = generateMethodCall(code, tree, getObjectStackOffset(tree, currentFunction) + manualStackOffset);
+                if(returnBitNum == 0)
                 {
-                    code.add("ld a, [w" + op.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [w" + op.getChildren().get(0).getContent() + " + 1]\n");
-                    code.add("ld b, a\n");
+                    syntaxError(tree.getLine(), "Method without return value used in an expression.");
                 }
+                return returnBitNum;
             }
-            else if(varType2 == VariableType.OBJECT)
+            case ARRAY_ACCESS:
             {
-                if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    generateAddressForObjectVariable(code, op.getChildren().get(0).getContent(), 0);
-                    code.add("ld c, [hl]\n");
-                }
-                else
-                {
-                    generateAddressForObjectVariable(code, op.getChildren().get(0).getContent(), 0);
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld b, [hl]\n");
-                    code.add("ld c, a\n");
-                }
+                VarHelper vh = doVariableAccess(tree, isStatic);
+                generateArrayAccess(code, tree, vh.getBitNum(), isStatic, false);
+                return vh.getBitNum();
+            }
+            default:
+            {
+                return generateOperand(code, tree, "b", "c", isStatic);
             }
         }
-        else if(op.getChildren().get(0).getType() == TreeNodeType.CONSTANT)
+    }
+    
+    /**
+     * Evaluates an expression of the current function into (b)c, for code that pushed something beforehand (e.g. earlier arguments)
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The expression
+     * @param bitNum The size of the variable the result is assigned to
+     * @param pushedBytes How many bytes were pushed since the statement began, stack variables are that much further away
+     * @return The size of the result
+     */
+    public int generateExpression(InstructionList code, AbstractSyntaxTree tree, int bitNum, int pushedBytes)
+    {
+        manualStackOffset += pushedBytes;
+        int result = generateExpression(code, tree, bitNum, currentFunctionIsStatic);
+        manualStackOffset -= pushedBytes;
+        return result;
+    }
+    
+    /**
+     * Loads a constant or variable into a register pair without touching the other registers (except a and hl,
+     * and de for object variables)
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The CONSTANT or VARIABLE node
+     * @param high The register receiving the upper byte (b or d)
+     * @param low The register receiving the lower byte (c or e)
+     * @param isStatic Determines if this is a section (static) or an object class
+     * @return The size of the value
+     */
+    private int generateOperand(InstructionList code, AbstractSyntaxTree tree, String high, String low, boolean isStatic)
+    {
+        if(tree.getType() == TreeNodeType.CONSTANT)
         {
-            int value = Integer.parseInt(op.getChildren().get(0).getContent());
+            int value = tree.getValue();
             if(value >= -128 && value <= 255)
             {
-                bitNum2 = Constants.CHAR_SIZE;
-                code.add("ld c, " + value + "\n");
+                code.add(Opcode.LD, low, String.valueOf(value));
+                return Constants.CHAR_SIZE;
             }
             else if(value >= -32768 && value <= 65535)
             {
-                bitNum2 = Constants.INT_SIZE;
-                code.add("ld bc, " + value + "\n");
-            }
-            else
-            {
-                numberTooBigError(op.getChildren().get(0).getLine());
+                code.add(Opcode.LD, high + low, String.valueOf(value));
+                return Constants.INT_SIZE;
             }
-        }
-        else if(op.getChildren().get(0).getType() == TreeNodeType.ARRAY_ACCESS)
-        {
-            VarHelper vh2 = this.doVariableAccess(op.getChildren().get(0), isStatic);
-            bitNum2 = vh2.getBitNum();
-            varType2 = vh2.getVarType();
-            
-            generateArrayAccess(code, op.getChildren().get(0), bitNum2, isStatic, false);
+            numberTooBigError(tree.getLine());
         }
         
-        if(op.getChildren().get(1).getType() == TreeNodeType.VARIABLE)
+        VarHelper vh = doVariableAccess(tree, isStatic);
+        int bitNum = vh.getBitNum();
+        VariableType varType = vh.getVarType();
+        
+        if(varType == VariableType.FUNC_ARG || varType == VariableType.STACK_VAR)
         {
-            VarHelper vh3 = this.doVariableAccess(op.getChildren().get(1), isStatic);
-            bitNum3 = vh3.getBitNum();
-            varType3 = vh3.getVarType();
-            
-            if(varType3 == VariableType.FUNC_ARG || varType3 == VariableType.STACK_VAR)
-            {
-                if(bitNum3 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld e, [hl]\n");
-                }
-                else if(bitNum3 == Constants.INT_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld a, [hl]\n");
-                    code.add("ld d, a\n");
-                }
-            }
-            else if(varType3 == VariableType.STATIC)
+            if(bitNum == Constants.CHAR_SIZE)
             {
-                if(bitNum3 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld a, [w" + op.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                }
-                else if(bitNum3 == Constants.INT_SIZE)
-                {
-                    code.add("ld a, [w" + op.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld a, [w" + op.getChildren().get(1).getContent() + " + 1]\n");
-                    code.add("ld d, a\n");
-                }
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, low, "[hl]");
             }
-            else if(varType3 == VariableType.OBJECT)
+            else if(bitNum == Constants.INT_SIZE)
             {
-                if(bitNum3 == Constants.CHAR_SIZE)
-                {
-                    generateAddressForObjectVariable(code, op.getChildren().get(1).getContent(), 0);
-                    code.add("ld e, [hl]\n");
-                }
-                else if(bitNum3 == Constants.POINTER_SIZE)
-                {
-                    generateAddressForObjectVariable(code, op.getChildren().get(1).getContent(), 0);
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld d, [hl]\n");
-                    code.add("ld e, a\n");
-                }
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, "a", "[hl+]");
+                code.add(Opcode.LD, low, "a");
+                code.add(Opcode.LD, "a", "[hl]");
+                code.add(Opcode.LD, high, "a");
             }
         }
-        else if(op.getChildren().get(1).getType() == TreeNodeType.CONSTANT)
+        else if(varType == VariableType.STATIC)
         {
-            int value = Integer.parseInt(op.getChildren().get(1).getContent());
-            if(value >= -128 && value <= 255)
+            if(bitNum == Constants.CHAR_SIZE)
             {
-                bitNum3 = Constants.CHAR_SIZE;
-                code.add("ld e, " + value + "\n");
+                code.add(Opcode.LD, "a", "[w" + tree.getContent() + "]");
+                code.add(Opcode.LD, low, "a");
             }
-            else if(value >= -32768 && value <= 65535)
+            else if(bitNum == Constants.INT_SIZE)
+            {
+                code.add(Opcode.LD, "a", "[w" + tree.getContent() + "]");
+                code.add(Opcode.LD, low, "a");
+                code.add(Opcode.LD, "a", "[w" + tree.getContent() + " + 1]");
+                code.add(Opcode.LD, high, "a");
+            }
+        }
+        else if(varType == VariableType.OBJECT)
+        {
+            generateAddressForObjectVariable(code, tree.getContent(), manualStackOffset);
+            if(bitNum == Constants.CHAR_SIZE)
             {
-                bitNum3 = Constants.INT_SIZE;
-                code.add("ld de, " + value + "\n");
+                code.add(Opcode.LD, low, "[hl]");
             }
             else
             {
-                numberTooBigError(op.getChildren().get(1).getLine());
+                code.add(Opcode.LD, "a", "[hl+]");
+                code.add(Opcode.LD, high, "[hl]");
+                code.add(Opcode.LD, low, "a");
             }
         }
-        else if(op.getChildren().get(1).getType() == TreeNodeType.ARRAY_ACCESS)
+        return bitNum;
+    }
+    
+    /**
+     * Generates a negation (unary minus) into (b)c
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The OPERATION node with the negated expression as only child
+     * @param bitNum The size of the variable the result is assigned to
+     * @param isStatic Determines if this is a section (static) or an object class
+     * @return The size of the result
+     */
+    private int generateNegation(InstructionList code, AbstractSyntaxTree tree, int bitNum, boolean isStatic)
+    {
+        int bitNum2 = generateExpression(code, tree.getChildren().get(0), bitNum, isStatic);
+        
+        if(bitNum2 == Constants.CHAR_SIZE)
         {
-            VarHelper vh3 = this.doVariableAccess(op.getChildren().get(1), isStatic);
-            bitNum3 = vh3.getBitNum();
-            varType3 = vh3.getVarType();
-            
-            code.add("push bc\n");
-            manualStackOffset = 2;
-            generateArrayAccess(code, op.getChildren().get(1), bitNum3, isStatic, false);
-            manualStackOffset = 0;
-            code.add("ld d, b\n");
-            code.add("ld e, c\n");
-            code.add("pop bc\n");
+            //0 - c
+            code.add(Opcode.XOR, "a");
+            code.add(Opcode.SUB, "c");
+            code.add(Opcode.LD, "c", "a");
+        }
+        else
+        {
+            //Two's complement: invert both bytes and add 1, this doesn't depend on the carry surviving between them
+            code.add(Opcode.LD, "a", "c");
+            code.add(Opcode.CPL);
+            code.add(Opcode.LD, "c", "a");
+            code.add(Opcode.LD, "a", "b");
+            code.add(Opcode.CPL);
+            code.add(Opcode.LD, "b", "a");
+            code.add(Opcode.INC, "bc");
         }
+        return bitNum2;
+    }
+    
+    /**
+     * Evaluates both operands of an operation or comparison, the left one into (b)c and the right one into (d)e
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The node with both operands as children
+     * @param bitNum The size of the variable the result is assigned to
+     * @param isStatic Determines if this is a section (static) or an object class
+     * @return The sizes of the left and the right operand
+     */
+    private int[] generateOperands(InstructionList code, AbstractSyntaxTree tree, int bitNum, boolean isStatic)
+    {
+        AbstractSyntaxTree left = tree.getChildren().get(0);
+        AbstractSyntaxTree right = tree.getChildren().get(1);
+        
+        int bitNum2;
+        int bitNum3;
+        
+        if(isOperand(right))
+        {
+            bitNum2 = generateExpression(code, left, bitNum, isStatic);
+            bitNum3 = generateOperand(code, right, "d", "e", isStatic);
+        }
+        //Constants and variables (except object variables, their address is calculated in de) can be loaded after the right operand
+        else if(isOperand(left) && (left.getType() == TreeNodeType.CONSTANT || doVariableAccess(left, isStatic).getVarType() != VariableType.OBJECT))
+        {
+            bitNum3 = generateExpression(code, right, bitNum, isStatic);
+            code.add(Opcode.LD, "d", "b");
+            code.add(Opcode.LD, "e", "c");
+            bitNum2 = generateOperand(code, left, "b", "c", isStatic);
+        }
+        //The left operand has to be kept on the stack while the right one is evaluated
+        else
+        {
+            bitNum2 = generateExpression(code, left, bitNum, isStatic);
+            code.add(Opcode.PUSH, "bc");
+            manualStackOffset += 2;
+            bitNum3 = generateExpression(code, right, bitNum, isStatic);
+            manualStackOffset -= 2;
+            code.add(Opcode.LD, "d", "b");
+            code.add(Opcode.LD, "e", "c");
+            code.add(Opcode.POP, "bc");
+        }
+        
+        //A negative constant next to an int is an int as well, the zeros it would be widened with turn -1 into 255
+        if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.INT_SIZE && isNegativeConstant(left))
+        {
+            code.add(Opcode.LD, "b", "255");
+            bitNum2 = Constants.INT_SIZE;
+        }
+        else if(bitNum2 == Constants.INT_SIZE && bitNum3 == Constants.CHAR_SIZE && isNegativeConstant(right))
+        {
+            code.add(Opcode.LD, "d", "255");
+            bitNum3 = Constants.INT_SIZE;
+        }
+        
+        return new int[] {bitNum2, bitNum3};
+    }
+    
+    /**
+     * Generates a mathematical operation (+, -, *, /, %) into (b)c
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The OPERATION node
+     * @param bitNum The size of the variable the result is assigned to
+     * @param isStatic Determines if this is a section (static) or an object class
+     * @return The size of the result
+     */
+    private int generateOperation(InstructionList code, AbstractSyntaxTree tree, int bitNum, boolean isStatic)
+    {
+        AbstractSyntaxTree left = tree.getChildren().get(0);
+        
+        int[] sizes = generateOperands(code, tree, bitNum, isStatic);
+        int bitNum2 = sizes[0];
+        int bitNum3 = sizes[1];
         
         //Check for incorrect assignments (assign 16-bit value to 8-bit var)
         if(bitNum == Constants.CHAR_SIZE && (bitNum2 == Constants.INT_SIZE || bitNum3 == Constants.INT_SIZE))
         {
-            incorrectAssignmentError(op.getChildren().get(0).getLine());
+            incorrectAssignmentError(left.getLine());
         }
         
-        if(op.getContent().equals("+"))
+        if(tree.getContent().equals("+"))
         {
             if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld a, c\n");
-                code.add("add e\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.ADD, "e");
                 
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld b, 0\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "b", "0");
+                    code.add(Opcode.LD, "c", "a");
                 }
             }
             else
             {
                 if(bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else if(bitNum3 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld d, 0\n");
+                    code.add(Opcode.LD, "d", "0");
                 }
                 
                 //Number 1 is in bc
                 //Number 2 is in de
                 //We want the result in bc
-                code.add("ld a, c\n");
-                code.add("add e\n"); //If the add "overflows", the extra bit is put into carry
-                code.add("ld c, a\n");
-                code.add("ld a, b\n");
-                code.add("adc d\n"); //Add with carry - we put the additional bit into the upper byte of the number
-                code.add("ld b, a\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.ADD, "e"); //If the add "overflows", the extra bit is put into carry
+                code.add(Opcode.LD, "c", "a");
+                code.add(Opcode.LD, "a", "b");
+                code.add(Opcode.ADC, "d"); //Add with carry - we put the additional bit into the upper byte of the number
+                code.add(Opcode.LD, "b", "a");
             }
         }
-        else if(op.getContent().equals("-"))
+        else if(tree.getContent().equals("-"))
         {
             if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld a, c\n");
-                code.add("sub e\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.SUB, "e");
                 
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld b, 0\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "b", "0");
+                    code.add(Opcode.LD, "c", "a");
                 }
             }
             else
             {
                 if(bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else if(bitNum3 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld d, 0\n");
+                    code.add(Opcode.LD, "d", "0");
                 }
                 
                 //Number 1 is in bc
                 //Number 2 is in de
                 //We want the result in bc
-                code.add("ld a, c\n");
-                code.add("sub e\n"); //If the add "overflows", the extra bit is put into carry
-                code.add("ld c, a\n");
-                code.add("ld a, b\n");
-                code.add("sbc d\n"); //Subtract with carry - we put the additional bit into the upper byte of the number
-                code.add("ld b, a\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.SUB, "e"); //If the add "overflows", the extra bit is put into carry
+                code.add(Opcode.LD, "c", "a");
+                code.add(Opcode.LD, "a", "b");
+                code.add(Opcode.SBC, "d"); //Subtract with carry - we put the additional bit into the upper byte of the number
+                code.add(Opcode.LD, "b", "a");
             }
         }
-        else if(op.getContent().equals("*"))
+        else if(tree.getContent().equals("*"))
         {
             if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld h, c\n");
-                code.add("call _mul8_8\n");
+                code.add(Opcode.LD, "h", "c");
+                code.add(Opcode.CALL, "_mul8_8");
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, l\n");
+                    code.add(Opcode.LD, "c", "l");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld b, h\n");
-                    code.add("ld c, l\n");
+                    code.add(Opcode.LD, "b", "h");
+                    code.add(Opcode.LD, "c", "l");
                 }
             }
             else if(bitNum2 == Constants.INT_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld a, e\n");
-                code.add("ld d, b\n");
-                code.add("ld e, c\n");
-                code.add("call _mul16_8\n");
-                code.add("ld b, h\n");
-                code.add("ld c, l\n");
+                code.add(Opcode.LD, "a", "e");
+                code.add(Opcode.LD, "d", "b");
+                code.add(Opcode.LD, "e", "c");
+                code.add(Opcode.CALL, "_mul16_8");
+                code.add(Opcode.LD, "b", "h");
+                code.add(Opcode.LD, "c", "l");
             }
             else if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.INT_SIZE)
             {
-                code.add("ld a, c\n");
-                code.add("call _mul16_8\n");
-                code.add("ld b, h\n");
-                code.add("ld c, l\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.CALL, "_mul16_8");
+                code.add(Opcode.LD, "b", "h");
+                code.add(Opcode.LD, "c", "l");
             }
             else
             {
-                code.add("call _mul16_16\n");
-                code.add("ld b, h\n");
-                code.add("ld c, l\n");
+                code.add(Opcode.CALL, "_mul16_16");
+                code.add(Opcode.LD, "b", "h");
+                code.add(Opcode.LD, "c", "l");
             }
         }
-        else if(op.getContent().equals("/"))
+        else if(tree.getContent().equals("/"))
         {
             if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld d, c\n");
-                code.add("call _div8_8\n");
+                code.add(Opcode.LD, "d", "c");
+                code.add(Opcode.CALL, "_div8_8");
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, d\n");
+                    code.add(Opcode.LD, "c", "d");
                 }
                 if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld b, 0\n");
-                    code.add("ld c, d\n");
+                    code.add(Opcode.LD, "b", "0");
+                    code.add(Opcode.LD, "c", "d");
                 }
             }
             else if(bitNum2 == Constants.INT_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld h, b\n");
-                code.add("ld l, c\n");
-                code.add("ld c, e\n");
-                code.add("call _div16_8\n");
-                code.add("ld b, h\n");
-                code.add("ld c, l\n");
+                code.add(Opcode.LD, "h", "b");
+                code.add(Opcode.LD, "l", "c");
+                code.add(Opcode.LD, "c", "e");
+                code.add(Opcode.CALL, "_div16_8");
+                code.add(Opcode.LD, "b", "h");
+                code.add(Opcode.LD, "c", "l");
             }
             else if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.INT_SIZE)
             {
-                code.add("ld h, d\n");
-                code.add("ld l, e\n");
-                code.add("call _div16_8\n");
-                code.add("ld b, h\n");
-                code.add("ld c, l\n");
+                code.add(Opcode.LD, "h", "d");
+                code.add(Opcode.LD, "l", "e");
+                code.add(Opcode.CALL, "_div16_8");
+                code.add(Opcode.LD, "b", "h");
+                code.add(Opcode.LD, "c", "l");
             }
             else
             {
-                code.add("call _div16_16\n");
+                code.add(Opcode.CALL, "_div16_16");
             }
         }
-        else if(op.getContent().equals("%"))
+        else if(tree.getContent().equals("%"))
         {
             if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld d, c\n");
-                code.add("call _div8_8\n");
+                code.add(Opcode.LD, "d", "c");
+                code.add(Opcode.CALL, "_div8_8");
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld b, 0\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "b", "0");
+                    code.add(Opcode.LD, "c", "a");
                 }
             }
             else if(bitNum2 == Constants.INT_SIZE && bitNum3 == Constants.CHAR_SIZE)
             {
-                code.add("ld h, b\n");
-                code.add("ld l, c\n");
-                code.add("ld c, e\n");
-                code.add("call _div16_8\n");
-                code.add("ld b, 0\n");
-                code.add("ld c, a\n");
+                code.add(Opcode.LD, "h", "b");
+                code.add(Opcode.LD, "l", "c");
+                code.add(Opcode.LD, "c", "e");
+                code.add(Opcode.CALL, "_div16_8");
+                code.add(Opcode.LD, "b", "0");
+                code.add(Opcode.LD, "c", "a");
             }
             else if(bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.INT_SIZE)
             {
-                code.add("ld h, d\n");
-                code.add("ld l, e\n");
-                code.add("call _div16_8\n");
-                code.add("ld b, 0\n");
-                code.add("ld c, a\n");
+                code.add(Opcode.LD, "h", "d");
+                code.add(Opcode.LD, "l", "e");
+                code.add(Opcode.CALL, "_div16_8");
+                code.add(Opcode.LD, "b", "0");
+                code.add(Opcode.LD, "c", "a");
             }
             else
             {
-                code.add("call _div16_16\n");
-                code.add("ld b, d\n");
-                code.add("ld c, e\n");
+                code.add(Opcode.CALL, "_div16_16");
+                code.add(Opcode.LD, "b", "d");
+                code.add(Opcode.LD, "c", "e");
             }
         }
+        
+        //Operations on two chars are widened to the assigned variable
+        return bitNum2 == Constants.CHAR_SIZE && bitNum3 == Constants.CHAR_SIZE ? bitNum : Constants.INT_SIZE;
+    }
+    
+    /**
+     * @param tree A part of an expression
+     * @return If it is a constant or variable, which are loaded by generateOperand()
+     */
+    private static boolean isOperand(AbstractSyntaxTree tree)
+    {
+        return tree.getType() == TreeNodeType.CONSTANT || tree.getType() == TreeNodeType.VARIABLE;
+    }
+    
+    private static boolean isNegativeConstant(AbstractSyntaxTree tree)
+    {
+        return tree.getType() == TreeNodeType.CONSTANT && tree.getValue() < 0;
     }
     
     /**
@@ -964,32 +857,32 @@ public class CodeGenerator
      * - Calls malloc<br>
      * - Calls the constructor of the object<br>
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      */
-    private void generateInstantiation(List<String> code, AbstractSyntaxTree tree)
+    private void generateInstantiation(InstructionList code, AbstractSyntaxTree tree)
     {
-        int size = objectSizes.get(objectTypes.indexOf(tree.getContent()));
+        int size = symbolTable.getClassLayout(tree.getContent()).getSize();
         
-        code.add("ld bc, " + size + "\n");
-        code.add("call malloc\n");
-        code.add("ld bc, 6\n"); //Skip the 6 bytes header
-        code.add("add hl, bc\n");
-        code.add("push hl\n");
+        code.add(Opcode.LD, "bc", String.valueOf(size));
+        code.add(Opcode.CALL, "malloc");
+        code.add(Opcode.LD, "bc", "6"); //Skip the 6 bytes header
+        code.add(Opcode.ADD, "hl", "bc");
+        code.add(Opcode.PUSH, "hl");
         generateMethodCallArguments(code, tree.getChildren().get(0), tree);
-        code.add("call _" + tree.getContent() + "Constructor\n");
-        code.add("add sp, " + (tree.getChildren().get(0).getChildren().size() * 2) + "\n");
-        code.add("pop bc\n");
+        code.add(Opcode.CALL, "_" + tree.getContent() + "Constructor");
+        code.add(Opcode.ADD, "sp", String.valueOf(tree.getChildren().get(0).getChildren().size() * 2));
+        code.add(Opcode.POP, "bc");
     }
     
     /**
      * Generates an assignment
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateAssignment(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateAssignment(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         VarHelper vh = doVariableAccess(tree.getChildren().get(0), isStatic);
         int bitNum = vh.getBitNum();
@@ -1000,7 +893,7 @@ public class CodeGenerator
         //Value to be assigned
         if(tree.getChildren().get(1).getType() == TreeNodeType.CONSTANT)
         {
-            int constant = Integer.parseInt(tree.getChildren().get(1).getContent());
+            int constant = tree.getChildren().get(1).getValue();
             
             //Check for out of bounds
             if((bitNum == Constants.CHAR_SIZE && (constant > 255 || constant < -128))
@@ -1011,11 +904,11 @@ public class CodeGenerator
 
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld c, " + constant + "\n");
+                code.add(Opcode.LD, "c", String.valueOf(constant));
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld bc, " + constant + "\n");
+                code.add(Opcode.LD, "bc", String.valueOf(constant));
             }
         }
         else if(tree.getChildren().get(1).getType() == TreeNodeType.VARIABLE)
@@ -1028,21 +921,21 @@ public class CodeGenerator
             {
                 if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld hl, sp + " + this.stackOffset + "\n");
-                    code.add("ld c, [hl]\n");
+                    code.add(Opcode.LD, "hl", "sp + " + this.stackOffset);
+                    code.add(Opcode.LD, "c", "[hl]");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.INT_SIZE)
                 {
-                    code.add("ld hl, sp + " + this.stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld b, [hl]\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "hl", "sp + " + this.stackOffset);
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, "b", "[hl]");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld hl, sp + " + this.stackOffset + "\n");
-                    code.add("ld c, [hl]\n");
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "hl", "sp + " + this.stackOffset);
+                    code.add(Opcode.LD, "c", "[hl]");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else
                 {
@@ -1053,21 +946,21 @@ public class CodeGenerator
             {
                 if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(1).getContent() + "]");
+                    code.add(Opcode.LD, "c", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + " + 1]\n");
-                    code.add("ld b, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(1).getContent() + "]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(1).getContent() + " + 1]");
+                    code.add(Opcode.LD, "b", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(1).getContent() + "]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else
                 {
@@ -1080,18 +973,18 @@ public class CodeGenerator
 
                 if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, [hl]\n");
+                    code.add(Opcode.LD, "c", "[hl]");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld b, [hl]\n");
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "b", "[hl]");
                 }
                 else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.CHAR_SIZE)
                 {
-                    code.add("ld c, [hl]\n");
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "c", "[hl]");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else
                 {
@@ -1099,9 +992,18 @@ public class CodeGenerator
                 }
             }
         }
-        else if(tree.getChildren().get(1).getType() == TreeNodeType.OPERATION)
+        else if(tree.getChildren().get(1).getType() == TreeNodeType.OPERATION || tree.getChildren().get(1).getType() == TreeNodeType.CALL
+                || tree.getChildren().get(1).getType() == TreeNodeType.OBJECT_CALL)
         {
-            generateOperation(code, tree, isStatic);
+            int bitNum2 = generateExpression(code, tree.getChildren().get(1), bitNum, isStatic);
+            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.INT_SIZE)
+            {
+                incorrectAssignmentError(tree.getChildren().get(1).getLine());
+            }
+            else if(bitNum == Constants.INT_SIZE && bitNum2 == Constants.CHAR_SIZE)
+            {
+                code.add(Opcode.LD, "b", "0");
+            }
         }
         else if(tree.getChildren().get(1).getType() == TreeNodeType.INSTANTIATION)
         {
@@ -1117,16 +1019,16 @@ public class CodeGenerator
         {
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld hl, sp + " + stackOffset + "\n");
-                code.add("ld [hl], c\n");
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, "[hl]", "c");
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld hl, sp + " + stackOffset + "\n");
-                code.add("ld a, c\n");
-                code.add("ld [hl+], a\n");
-                code.add("ld a, b\n");
-                code.add("ld [hl], a\n");
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.LD, "[hl+]", "a");
+                code.add(Opcode.LD, "a", "b");
+                code.add(Opcode.LD, "[hl]", "a");
             }
         }
         else if(varType == VariableType.STATIC)
@@ -1139,15 +1041,15 @@ public class CodeGenerator
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, c\n");
-                    code.add("ld [w" + tree.getChildren().get(0).getContent() + "], a\n");
+                    code.add(Opcode.LD, "a", "c");
+                    code.add(Opcode.LD, "[w" + tree.getChildren().get(0).getContent() + "]", "a");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, c\n");
-                    code.add("ld [w" + tree.getChildren().get(0).getContent() + "], a\n");
-                    code.add("ld a, b\n");
-                    code.add("ld [w" + tree.getChildren().get(0).getContent() + " + 1], a\n");
+                    code.add(Opcode.LD, "a", "c");
+                    code.add(Opcode.LD, "[w" + tree.getChildren().get(0).getContent() + "]", "a");
+                    code.add(Opcode.LD, "a", "b");
+                    code.add(Opcode.LD, "[w" + tree.getChildren().get(0).getContent() + " + 1]", "a");
                 }
             }
         }
@@ -1157,454 +1059,178 @@ public class CodeGenerator
 
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld [hl], c\n");
+                code.add(Opcode.LD, "[hl]", "c");
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld a, c\n");
-                code.add("ld [hl+], a\n");
-                code.add("ld [hl], b\n");
+                code.add(Opcode.LD, "a", "c");
+                code.add(Opcode.LD, "[hl+]", "a");
+                code.add(Opcode.LD, "[hl]", "b");
             }
         }
     }
     
     /**
-     * Generates a condition:<br>
-     * Valid ones are {@literal <}, {@literal <=}, ==, !=, {@literal >=}, {@literal >}
+     * Generates a condition as a chain of conditional jumps:<br>
+     * Jumps to the given label if the condition evaluates to jumpIf, otherwise the code after the condition is executed.
+     * The second condition of &amp;&amp; and || is skipped if the first one already decides the result
      * 
-     * @param code The arraylist the generated code is written into
-     * @param tree The AST we're generating the code from
-     * @param trueLabel The label we jump to if the condition evaluates to true
-     * @param falseLabel The label we jump to if the condition evaluates to false
+     * @param code The instruction list the generated code is written into
+     * @param tree The CONDITION node
+     * @param label The label we jump to
+     * @param jumpIf The result of the condition that leads to the jump
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateCondition(List<String> code, AbstractSyntaxTree tree, String trueLabel, String falseLabel, boolean isStatic)
+    private void generateCondition(InstructionList code, AbstractSyntaxTree tree, String label, boolean jumpIf, boolean isStatic)
     {
-        int bitNum = 0;
-        VariableType varType;
-        int bitNum2 = 0;
-        VariableType varType2;
-        
-        //If we have two constants, optimize out the comparison
-        if(tree.getChildren().get(0).getType() == TreeNodeType.CONSTANT && tree.getChildren().get(1).getType() == TreeNodeType.CONSTANT)
+        if(tree.getContent().equals("!"))
         {
-            Logger.getInstance().log(Logger.FINE, "Comparison between two constants on line " + tree.getChildren().get(0).getLine() +
-                    ". Replacing with unconditional jump.");
-            
-            int a = Integer.parseInt(tree.getChildren().get(0).getContent());
-            int b = Integer.parseInt(tree.getChildren().get(1).getContent());
-            
-            if(tree.getContent().equals("<") && a < b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else if(tree.getContent().equals("<=") && a <= b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else if(tree.getContent().equals("==") && a == b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else if(tree.getContent().equals("!=") && a != b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else if(tree.getContent().equals(">=") && a >= b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else if(tree.getContent().equals(">") && a > b)
-            {
-                code.add("jp " + trueLabel + "\n");
-            }
-            else
-            {
-                code.add("jp " + falseLabel + "\n");
-                Logger.getInstance().log(Logger.WARNING, "Having a constant comparison evaluate to false doesn't make much sense. Maybe change this?");
-            }
-            
-            return;
-        }
-        
-        //First operand goes in (b)c, second in (d)e
-        if(tree.getChildren().get(0).getType() == TreeNodeType.VARIABLE)
-        {
-            VarHelper vh = this.doVariableAccess(tree.getChildren().get(0), isStatic);
-            bitNum = vh.getBitNum();
-            varType = vh.getVarType();
-            
-            if(varType == VariableType.FUNC_ARG || varType == VariableType.STACK_VAR)
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld c, [hl]\n");
-                }
-                else if(bitNum == Constants.INT_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [hl]\n");
-                    code.add("ld b, a\n");
-                }
-            }
-            else if(varType == VariableType.STATIC)
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                }
-                else if(bitNum == Constants.INT_SIZE)
-                {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + " + 1]\n");
-                    code.add("ld b, a\n");
-                }
-            }
-            else if(varType == VariableType.OBJECT)
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    generateAddressForObjectVariable(code, tree.getChildren().get(0).getContent(), 0);
-                    code.add("ld c, [hl]\n");
-                }
-                else if(bitNum == Constants.INT_SIZE)
-                {
-                    generateAddressForObjectVariable(code, tree.getChildren().get(0).getContent(), 0);
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld b, [hl]\n");
-                    code.add("ld c, a\n");
-                }
-            }
-        }
-        else if(tree.getChildren().get(0).getType() == TreeNodeType.CONSTANT)
-        {
-            int value = Integer.parseInt(tree.getChildren().get(0).getContent());
-            
-            if(value <= 255 || value >= -128)
-            {
-                bitNum = Constants.CHAR_SIZE;
-                code.add("ld c, " + value + "\n");
-            }
-            else if(value <= 65535 || value >= -32768)
-            {
-                bitNum = Constants.INT_SIZE;
-                code.add("ld bc, " + value + "\n");
-            }
-            else
-            {
-                numberTooBigError(tree.getChildren().get(0).getLine());
-            }
-        }
-        else if(tree.getChildren().get(0).getType() == TreeNodeType.CALL ||
-                tree.getChildren().get(0).getType() == TreeNodeType.OBJECT_CALL)
-        {
-            //Method returns in c or bc
-            bitNum = generateMethodCall(code, tree.getChildren().get(0), 0);
-        }
-        else if(tree.getChildren().get(0).getType() == TreeNodeType.ARRAY_ACCESS)
-        {
-            VarHelper vh = this.doVariableAccess(tree.getChildren().get(0), isStatic);
-            bitNum = vh.getBitNum();
-            varType = vh.getVarType();
-            
-            this.generateArrayAccess(code, tree.getChildren().get(0), bitNum, isStatic, false);
-        }
-            
-        if(tree.getChildren().get(1).getType() == TreeNodeType.VARIABLE)
-        {
-            VarHelper vh2 = this.doVariableAccess(tree.getChildren().get(1), isStatic);
-            bitNum2 = vh2.getBitNum();
-            varType2 = vh2.getVarType();
-            
-            if(varType2 == VariableType.FUNC_ARG || varType2 == VariableType.STACK_VAR)
-            {
-                if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld e, [hl]\n");
-                }
-                else if(bitNum2 == Constants.INT_SIZE)
-                {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld a, [hl]\n");
-                    code.add("ld d, a\n");
-                }
-            }
-            else if(varType2 == VariableType.STATIC)
-            {
-                if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                }
-                else if(bitNum2 == Constants.INT_SIZE)
-                {
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + "]\n");
-                    code.add("ld e, a\n");
-                    code.add("ld a, [w" + tree.getChildren().get(1).getContent() + " + 1]\n");
-                    code.add("ld d, a\n");
-                }
-            }
-            else if(varType2 == VariableType.OBJECT)
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    generateAddressForObjectVariable(code, tree.getChildren().get(1).getContent(), 0);
-                    code.add("ld e, [hl]\n");
-                }
-                else if(bitNum == Constants.INT_SIZE)
-                {
-                    generateAddressForObjectVariable(code, tree.getChildren().get(1).getContent(), 0);
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld d, [hl]\n");
-                    code.add("ld e, a\n");
-                }
-            }
-        }
-        else if(tree.getChildren().get(1).getType() == TreeNodeType.CONSTANT)
-        {
-            int value = Integer.parseInt(tree.getChildren().get(1).getContent());
-            
-            if(value <= 255 || value >= -128)
-            {
-                bitNum2 = Constants.CHAR_SIZE;
-                code.add("ld e, " + value + "\n");
-            }
-            else if(value <= 65535 || value >= -32768)
-            {
-                bitNum2 = Constants.INT_SIZE;
-                code.add("ld de, " + value + "\n");
-            }
-            else
-            {
-                numberTooBigError(tree.getChildren().get(1).getLine());
-            }
-        }
-        else if(tree.getChildren().get(1).getType() == TreeNodeType.CALL ||
-                tree.getChildren().get(1).getType() == TreeNodeType.OBJECT_CALL)
-        {
-            code.add("push bc\n");
-            manualStackOffset = 2;
-            //Method returns in c or bc
-            bitNum2 = generateMethodCall(code, tree.getChildren().get(1), 0);
-            code.add("ld d, b\n");
-            code.add("ld e, c\n");
-            manualStackOffset = 0;
-            code.add("pop bc\n");
-        }
-        else if(tree.getChildren().get(1).getType() == TreeNodeType.ARRAY_ACCESS)
-        {
-            VarHelper vh = doVariableAccess(tree.getChildren().get(1), isStatic);
-            bitNum = vh.getBitNum();
-            varType = vh.getVarType();
-            
-            code.add("push bc\n");
-            manualStackOffset = 2;
-            generateArrayAccess(code, tree.getChildren().get(1), bitNum, isStatic, false);
-            code.add("ld d, b\n");
-            code.add("ld e, c\n");
-            manualStackOffset = 0;
-            code.add("pop bc\n");
-        }
-        
-        if(tree.getContent().equals(">"))
-        {
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
-            {
-                code.add("ld a, e\n");
-                code.add("cp c\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
-            else
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, d\n");
-                code.add("cp b\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("ld a, e\n");
-                code.add("cp c\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
-        }
-        else if(tree.getContent().equals(">="))
-        {
-            
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
-            {
-                code.add("ld a, e\n");
-                code.add("cp c\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
-            else
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, d\n");
-                code.add("cp b\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp nz, " + falseLabel + "\n");
-                code.add("ld a, e\n");
-                code.add("cp c\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
+            generateCondition(code, tree.getChildren().get(0), label, !jumpIf, isStatic);
         }
-        else if(tree.getContent().equals("=="))
+        else if(tree.getContent().equals("&&") || tree.getContent().equals("||"))
         {
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
+            //The result is decided by the first condition if it's false (&&) or true (||)
+            boolean decidingResult = tree.getContent().equals("||");
+            
+            if(jumpIf == decidingResult)
             {
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                generateCondition(code, tree.getChildren().get(0), label, jumpIf, isStatic);
+                generateCondition(code, tree.getChildren().get(1), label, jumpIf, isStatic);
             }
             else
             {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, b\n");
-                code.add("cp d\n");
-                code.add("jp nz, " + falseLabel + "\n");
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                String skipLabel = "_" + getLabelId(tree) + "skip";
+                generateCondition(code, tree.getChildren().get(0), skipLabel, decidingResult, isStatic);
+                generateCondition(code, tree.getChildren().get(1), label, jumpIf, isStatic);
+                code.addLabel(skipLabel);
             }
         }
-        else if(tree.getContent().equals("!="))
+        else
         {
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
-            {
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp nz, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
-            else
-            {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, b\n");
-                code.add("cp d\n");
-                code.add("jp z, " + falseLabel + "\n");
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp nz, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
-            }
+            generateComparison(code, tree, label, jumpIf, isStatic);
         }
-        else if(tree.getContent().equals("<="))
+    }
+    
+    /**
+     * Generates a comparison:<br>
+     * Valid ones are {@literal <}, {@literal <=}, ==, !=, {@literal >=}, {@literal >}<br>
+     * Each comparison sets a single flag that is used for the jump (except for == and != on ints, they compare both bytes)
+     * 
+     * @param code The instruction list the generated code is written into
+     * @param tree The CONDITION node
+     * @param label The label we jump to
+     * @param jumpIf The result of the comparison that leads to the jump
+     * @param isStatic Determines if this is a section (static) or an object class
+     */
+    private void generateComparison(InstructionList code, AbstractSyntaxTree tree, String label, boolean jumpIf, boolean isStatic)
+    {
+        String comparison = tree.getContent();
+        
+        //If we have two constants, optimize out the comparison
+        if(tree.getChildren().get(0).getType() == TreeNodeType.CONSTANT && tree.getChildren().get(1).getType() == TreeNodeType.CONSTANT)
         {
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
+            Logger.getInstance().log(Logger.FINE, "Comparison between two constants on line " + tree.getChildren().get(0).getLine() +
+                    ". Replacing with unconditional jump.");
+            
+            int a = tree.getChildren().get(0).getValue();
+            int b = tree.getChildren().get(1).getValue();
+            
+            boolean result = (comparison.equals("<") && a < b) || (comparison.equals("<=") && a <= b) ||
+                    (comparison.equals("==") && a == b) || (comparison.equals("!=") && a != b) ||
+                    (comparison.equals(">=") && a >= b) || (comparison.equals(">") && a > b);
+            
+            if(!result)
             {
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                Logger.getInstance().log(Logger.WARNING, "Having a constant comparison evaluate to false doesn't make much sense. Maybe change this?");
             }
-            else
+            if(result == jumpIf)
             {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, b\n");
-                code.add("cp d\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp nz, " + falseLabel + "\n");
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp z, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                code.add(Opcode.JP, label);
             }
+            
+            return;
+        }
+        
+        //First operand goes in (b)c, second in (d)e
+        int[] sizes = generateOperands(code, tree, Constants.INT_SIZE, isStatic);
+        
+        //> and <= are < and >= with swapped operands
+        boolean swapped = comparison.equals(">") || comparison.equals("<=");
+        //The flag that is set if the comparison is true
+        String flag;
+        if(comparison.equals("==") || comparison.equals("!="))
+        {
+            flag = comparison.equals("==") ? "z" : "nz";
+        }
+        else
+        {
+            flag = comparison.equals("<") || comparison.equals(">") ? "c" : "nc";
+        }
+        
+        if(sizes[0] == Constants.CHAR_SIZE && sizes[1] == Constants.CHAR_SIZE)
+        {
+            code.add(Opcode.LD, "a", swapped ? "e" : "c");
+            code.add(Opcode.CP, swapped ? "c" : "e");
+            code.add(Opcode.JP, jumpIf ? flag : invertFlag(flag), label);
+            return;
         }
-        else if(tree.getContent().equals("<"))
+        
+        if(sizes[0] == Constants.CHAR_SIZE)
+        {
+            code.add(Opcode.LD, "b", "0");
+        }
+        else if(sizes[1] == Constants.CHAR_SIZE)
+        {
+            code.add(Opcode.LD, "d", "0");
+        }
+        
+        if(comparison.equals("==") || comparison.equals("!="))
         {
-            if(bitNum == Constants.CHAR_SIZE && bitNum2 == Constants.CHAR_SIZE)
+            code.add(Opcode.LD, "a", "c");
+            code.add(Opcode.CP, "e");
+            //Jump if the numbers are different
+            if(flag.equals("nz") == jumpIf)
             {
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                code.add(Opcode.JP, "nz", label);
+                code.add(Opcode.LD, "a", "b");
+                code.add(Opcode.CP, "d");
+                code.add(Opcode.JP, "nz", label);
             }
+            //Jump if the numbers are equal, which the lower bytes already rule out if they're different
             else
             {
-                if(bitNum == Constants.CHAR_SIZE)
-                {
-                    code.add("ld b, 0\n");
-                }
-                else if(bitNum2 == Constants.CHAR_SIZE)
-                {
-                    code.add("ld d, 0\n");
-                }
-                
-                code.add("ld a, b\n");
-                code.add("cp d\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("ld a, c\n");
-                code.add("cp e\n");
-                code.add("jp c, " + trueLabel + "\n");
-                code.add("jp " + falseLabel + "\n");
+                String skipLabel = "_" + getLabelId(tree) + "skip";
+                code.add(Opcode.JP, "nz", skipLabel);
+                code.add(Opcode.LD, "a", "b");
+                code.add(Opcode.CP, "d");
+                code.add(Opcode.JP, "z", label);
+                code.addLabel(skipLabel);
             }
         }
+        else
+        {
+            //Subtract the whole numbers, the carry is set if the first one is smaller
+            code.add(Opcode.LD, "a", swapped ? "e" : "c");
+            code.add(Opcode.SUB, swapped ? "c" : "e");
+            code.add(Opcode.LD, "a", swapped ? "d" : "b");
+            code.add(Opcode.SBC, swapped ? "b" : "d");
+            code.add(Opcode.JP, jumpIf ? flag : invertFlag(flag), label);
+        }
+    }
+    
+    private static String invertFlag(String flag)
+    {
+        return flag.startsWith("n") ? flag.substring(1) : "n" + flag;
     }
     
     /**
      * Generates an if block, possibly with else if's and an else
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateIfElseBlock(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateIfElseBlock(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         boolean hasElse = false;
         
@@ -1613,50 +1239,49 @@ public class CodeGenerator
             //Found the condition
             if(ast.getType() == TreeNodeType.CONDITION)
             {
-                generateCondition(code, ast, "_" + Math.abs(tree.hashCode()) + "body", "_" + Math.abs(tree.hashCode()) + "false", isStatic);
+                generateCondition(code, ast, "_" + getLabelId(tree) + "false", false, isStatic);
             }
             else if(ast.getType() == TreeNodeType.IF)
             {
                 hasElse = true;
-                code.add("_" + Math.abs(tree.hashCode()) + "false:\n");
+                code.addLabel("_" + getLabelId(tree) + "false");
                 generateIfElseBlock(code, ast, isStatic);
             }
             else if(ast.getType() == TreeNodeType.ELSE)
             {
                 hasElse = true;
-                code.add("_" + Math.abs(tree.hashCode()) + "false:\n");
+                code.addLabel("_" + getLabelId(tree) + "false");
                 generateStatementSequence(code, ast, isStatic);
-                code.add("jp _" + Math.abs(tree.hashCode()) + "end\n");
+                code.add(Opcode.JP, "_" + getLabelId(tree) + "end");
             }
             //If statement body
             else if(ast.getType() == TreeNodeType.BODY)
             {
-                code.add("_" + Math.abs(tree.hashCode()) + "body:\n");
                 generateStatementSequence(code, ast, isStatic);
-                code.add("jp _" + Math.abs(tree.hashCode()) + "end\n");
+                code.add(Opcode.JP, "_" + getLabelId(tree) + "end");
             }
         }
         
         if(!hasElse)
         {
-            code.add("_" + Math.abs(tree.hashCode()) + "false:\n");
+            code.addLabel("_" + getLabelId(tree) + "false");
         }
         
-        code.add("_" + Math.abs(tree.hashCode()) + "end:\n");
+        code.addLabel("_" + getLabelId(tree) + "end");
     }
     
     /**
      * Generates a while loop
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateWhileLoop(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateWhileLoop(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         //Jump to the condition so that it's checked before we execute code (otherwise this would be a do-while loop)
-        code.add("jp _" + Math.abs(tree.hashCode()) + "check\n");
-        code.add("_" + Math.abs(tree.hashCode()) + "loop:\n");
+        code.add(Opcode.JP, "_" + getLabelId(tree) + "check");
+        code.addLabel("_" + getLabelId(tree) + "loop");
         
         //A while loop tree should only contain a condition at index 0 and a body at index 1
         if(tree.getChildren().get(1).getType() == TreeNodeType.BODY)
@@ -1667,27 +1292,28 @@ public class CodeGenerator
         //The condition comes after the body in ASM loops, otherwise we have a do-while loop and noone likes those
         if(tree.getChildren().get(0).getType() == TreeNodeType.CONDITION)
         {
-            code.add("_" + Math.abs(tree.hashCode()) + "check:\n");
-            generateCondition(code, tree.getChildren().get(0), "_" + Math.abs(tree.hashCode()) + "loop", "_" + Math.abs(tree.hashCode()) + "end", isStatic);
+            code.addLabel("_" + getLabelId(tree) + "check");
+            generateCondition(code, tree.getChildren().get(0), "_" + getLabelId(tree) + "loop", true, isStatic);
         }
         
-        code.add("_" + Math.abs(tree.hashCode()) + "end:\n");
+        code.addLabel("_" + getLabelId(tree) + "end");
     }
     
     /**
      * Checks if a constant with the given name exists, and uses it as a method argument if it does
      * 
-     * @param code The arraylist the generated code is written into
-     * @param str The name of the constant
+     * @param code The instruction list the generated code is written into
+     * @param tree The VARIABLE node
      * @return If a constant of that name exists
      */
-    private boolean checkGenerateConstant(List<String> code, String str)
+    private boolean checkGenerateConstant(InstructionList code, AbstractSyntaxTree tree)
     {
-        if(Constants.getContants().containsKey(str))
+        String constant = Interner.getInstance().getConstant(tree.getSymbol());
+        if(constant != null)
         {
-            code.add("ld h, 0\n");
-            code.add("ld l, " + Constants.getContants().get(str) + "\n");
-            code.add("push hl\n");
+            code.add(Opcode.LD, "h", "0");
+            code.add(Opcode.LD, "l", constant);
+            code.add(Opcode.PUSH, "hl");
             return true;
         }
         return false;
@@ -1696,101 +1322,107 @@ public class CodeGenerator
     /**
      * Generates special cases where normal methods are not used
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @return If a method was found and a call generated
      */
-    private boolean tryGenerateInlineMethodCall(List<String> code, AbstractSyntaxTree tree)
+    private boolean tryGenerateInlineMethodCall(InstructionList code, AbstractSyntaxTree tree)
     {
-        //"halt()" is directly translated to a "halt" instruction
-        if(tree.getContent().equals("halt"))
-        {
-            code.add("halt\n");
-            if(!tree.getChildren().get(0).getChildren().isEmpty())
-            {
-                mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
-            }
-            return true;
-        }
-        //"waitVBlank()" is directly translated to an "rst $00" instruction - the restart vector is a VBlank waitloop
-        else if(tree.getContent().equals("waitVBlank"))
+        switch(tree.getSymbol())
         {
-            code.add("rst $00\n");
-            if(!tree.getChildren().get(0).getChildren().isEmpty())
+            //"halt()" is directly translated to a "halt" instruction
+            case Interner.HALT:
             {
-                mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                code.add(Opcode.HALT);
+                if(!tree.getChildren().get(0).getChildren().isEmpty())
+                {
+                    mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                }
+                return true;
             }
-            return true;
-        }
-        //"enableInterrupts()" is directly translated to an "ei" instruction
-        else if(tree.getContent().equals("enableInterrupts"))
-        {
-            code.add("ei\n");
-            if(!tree.getChildren().get(0).getChildren().isEmpty())
+            //"waitVBlank()" is directly translated to an "rst $00" instruction - the restart vector is a VBlank waitloop
+            case Interner.WAIT_VBLANK:
             {
-                mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                code.add(Opcode.RST, "$00");
+                if(!tree.getChildren().get(0).getChildren().isEmpty())
+                {
+                    mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                }
+                return true;
             }
-            return true;
-        }
-        else if(tree.getContent().equals("disableInterrupts"))
-        {
-            code.add("di\n");
-            if(!tree.getChildren().get(0).getChildren().isEmpty())
+            //"enableInterrupts()" is directly translated to an "ei" instruction
+            case Interner.ENABLE_INTERRUPTS:
             {
-                mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                code.add(Opcode.EI);
+                if(!tree.getChildren().get(0).getChildren().isEmpty())
+                {
+                    mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                }
+                return true;
             }
-            return true;
-        }
-        //"lcdOn()" is parsed here since the arguments are not translated into actual function arguments
-        else if(tree.getContent().equals("lcdOn"))
-        {
-            String s = "ld a, %";
-
-            AbstractSyntaxTree args = tree.getChildren().get(0);
-            
-            if(args.getChildren().size() != 8)
+            case Interner.DISABLE_INTERRUPTS:
             {
-                mismatchedArgumentNumberError(tree.getLine(), 8, args.getChildren().size());
+                code.add(Opcode.DI);
+                if(!tree.getChildren().get(0).getChildren().isEmpty())
+                {
+                    mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                }
+                return true;
             }
-            
-            for(AbstractSyntaxTree bit : args.getChildren())
+            //"lcdOn()" is parsed here since the arguments are not translated into actual function arguments
+            case Interner.LCD_ON:
             {
-                if(bit.getType() == TreeNodeType.VARIABLE && Constants.getContants().containsKey(bit.getContent()))
+                String s = "%";
+                
+                AbstractSyntaxTree args = tree.getChildren().get(0);
+                
+                if(args.getChildren().size() != 8)
                 {
-                    s += Constants.getContants().get(bit.getContent());
+                    mismatchedArgumentNumberError(tree.getLine(), 8, args.getChildren().size());
                 }
-                else
+                
+                for(AbstractSyntaxTree bit : args.getChildren())
                 {
-                    s += bit.getContent();
+                    String constant = bit.getType() == TreeNodeType.VARIABLE ? Interner.getInstance().getConstant(bit.getSymbol()) : null;
+                    if(constant != null)
+                    {
+                        s += constant;
+                    }
+                    else
+                    {
+                        s += bit.getContent();
+                    }
                 }
-            }
 
-            code.add(s + "\n");
-            code.add("ld [rLCDC], a\n");
-            return true;
-        }
-        //"softwareBreak()" is translated directly into a "ld b, b" which BGB can break on
-        else if(tree.getContent().equals("softwareBreak"))
-        {
-            code.add("ld b, b\n");
-            if(!tree.getChildren().get(0).getChildren().isEmpty())
+                code.add(Opcode.LD, "a", s);
+                code.add(Opcode.LD, "[rLCDC]", "a");
+                return true;
+            }
+            //"softwareBreak()" is translated directly into a "ld b, b" which BGB can break on
+            case Interner.SOFTWARE_BREAK:
             {
-                mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                code.add(Opcode.LD, "b", "b");
+                if(!tree.getChildren().get(0).getChildren().isEmpty())
+                {
+                    mismatchedArgumentNumberError(tree.getLine(), 0, tree.getChildren().get(0).getChildren().size());
+                }
+                return true;
+            }
+            default:
+            {
+                return false;
             }
-            return true;
         }
-        
-        return false;
     }
     
     /**
      * Generates all arguments for a function call and pushes them to the stack
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param args The AST containing the arguments to be generated
      * @param funcTree The AST that is the function we're calling
      */
-    private void generateMethodCallArguments(List<String> code, AbstractSyntaxTree args, AbstractSyntaxTree funcTree)
+    private void generateMethodCallArguments(InstructionList code, AbstractSyntaxTree args, AbstractSyntaxTree funcTree)
     {
         int stackOffset = 0;
 
@@ -1800,13 +1432,13 @@ public class CodeGenerator
             {
                 case CONSTANT:
                 {
-                    code.add("ld hl, " + arg.getContent() + "\n");
-                    code.add("push hl" + "\n");
+                    code.add(Opcode.LD, "hl", arg.getContent());
+                    code.add(Opcode.PUSH, "hl");
                     break;
                 }
                 case VARIABLE:
                 {
-                    if(checkGenerateConstant(code, arg.getContent()))
+                    if(checkGenerateConstant(code, arg))
                     {
                         break;
                     }
@@ -1824,32 +1456,32 @@ public class CodeGenerator
                         //We add the stackOffset here to compensate for the already-pushed arguments
                         if(bitNum == Constants.CHAR_SIZE)
                         {
-                            code.add("ld hl, sp + " + (this.stackOffset + stackOffset) + "\n");
-                            code.add("ld l, [hl]\n");
-                            code.add("ld h, 0\n");
+                            code.add(Opcode.LD, "hl", "sp + " + (this.stackOffset + stackOffset));
+                            code.add(Opcode.LD, "l", "[hl]");
+                            code.add(Opcode.LD, "h", "0");
                         }
                         else if(bitNum == Constants.INT_SIZE)
                         {
-                            code.add("ld hl, sp + " + (this.stackOffset + stackOffset) + "\n");
-                            code.add("ld a, [hl+]\n");
-                            code.add("ld h, [hl]\n");
-                            code.add("ld l, a\n");
+                            code.add(Opcode.LD, "hl", "sp + " + (this.stackOffset + stackOffset));
+                            code.add(Opcode.LD, "a", "[hl+]");
+                            code.add(Opcode.LD, "h", "[hl]");
+                            code.add(Opcode.LD, "l", "a");
                         }
                     }
                     else if(type == VariableType.STATIC)
                     {
                         if(bitNum == Constants.CHAR_SIZE)
                         {
-                            code.add("ld h, 0\n");
-                            code.add("ld a, [w" + arg.getContent() + "]\n");
-                            code.add("ld l, a\n");
+                            code.add(Opcode.LD, "h", "0");
+                            code.add(Opcode.LD, "a", "[w" + arg.getContent() + "]");
+                            code.add(Opcode.LD, "l", "a");
                         }
                         else if(bitNum == Constants.INT_SIZE)
                         {
-                            code.add("ld a, [w" + arg.getContent() + "]\n");
-                            code.add("ld l, a\n");
-                            code.add("ld a, [w" + arg.getContent() + " + 1]\n");
-                            code.add("ld h, a\n");
+                            code.add(Opcode.LD, "a", "[w" + arg.getContent() + "]");
+                            code.add(Opcode.LD, "l", "a");
+                            code.add(Opcode.LD, "a", "[w" + arg.getContent() + " + 1]");
+                            code.add(Opcode.LD, "h", "a");
                         }
                     }
                     else if(type == VariableType.OBJECT)
@@ -1857,83 +1489,70 @@ public class CodeGenerator
                         if(bitNum == Constants.CHAR_SIZE)
                         {
                             generateAddressForObjectVariable(code, arg.getContent(), stackOffset);
-                            code.add("ld l, [hl]\n");
-                            code.add("ld h, 0\n");
+                            code.add(Opcode.LD, "l", "[hl]");
+                            code.add(Opcode.LD, "h", "0");
                         }
                         else
                         {
                             generateAddressForObjectVariable(code, arg.getContent(), stackOffset);
-                            code.add("ld a, [hl+]\n");
-                            code.add("ld h, [hl]\n");
-                            code.add("ld l, a\n");
+                            code.add(Opcode.LD, "a", "[hl+]");
+                            code.add(Opcode.LD, "h", "[hl]");
+                            code.add(Opcode.LD, "l", "a");
                         }
                     }
                     
-                    code.add("push hl\n");
+                    code.add(Opcode.PUSH, "hl");
                     break;
                 }
                 case STRING:
                 {
-                    code.add("ld hl, _g" + Math.abs(arg.hashCode()) + "\n");
-                    code.add("push hl\n");
+                    code.add(Opcode.LD, "hl", "_g" + getLabelId(arg));
+                    code.add(Opcode.PUSH, "hl");
                     //Put data into data part of file
-                    data.add("_g" + Math.abs(arg.hashCode()) + ":\n");
-                    data.add("DB \"" + arg.getContent() + "\", 0\n");
+                    data.addLabel("_g" + getLabelId(arg));
+                    data.addDirective("DB \"" + arg.getContent() + "\", 0");
                     break;
                 }
                 case ASM_REFERENCE:
                 {
-                    code.add("ld hl, " + arg.getContent() + "\n");
-                    code.add("push hl\n");
+                    code.add(Opcode.LD, "hl", arg.getContent());
+                    code.add(Opcode.PUSH, "hl");
                     break;
                 }
+                case OPERATION:
+                case ARRAY_ACCESS:
                 case CALL:
                 {
-                    generateMethodCall(code, arg, 0);
-                    code.add("push bc\n");
+                    //Arguments are always pushed as 16 bits
+                    if(generateExpression(code, arg, Constants.INT_SIZE, stackOffset) == Constants.CHAR_SIZE)
+                    {
+                        code.add(Opcode.LD, "b", "0");
+                    }
+                    code.add(Opcode.PUSH, "bc");
                     break;
                 }
                 case OBJECT_CALL:
                 {
                     int objectStackOffset = 0;
-                    String[] astParts = arg.getContent().split("\\|");
-                    if(astParts[0].equals("this"))
+                    if(arg.getObjectName().equals("this"))
                     {
                         if(funcTree.getType() == TreeNodeType.CONSTRUCTOR)
                         {
-                            for(String s : objectConstructors)
-                            {
-                                String[] parts = s.split("\\|");
-                                for(String instance : objectInstances)
-                                {
-                                    String[] iParts = instance.split("\\|");
-                                    //Check if the type is correct
-                                    if(iParts[0].equals(parts[0]))
-                                    {
-                                        stackOffset += Integer.parseInt(parts[1]) * 2; //Every argument takes 2 bytes on the stack, so we mult by 2
-                                        stackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
-                                        break;
-                                    }
-                                }
-                            }
+                            stackOffset += symbolTable.getConstructorObjectOffset();
                         }
                         else
                         {
-                            for(String s : objectMethods)
+                            MethodSymbol method = symbolTable.getObjectMethod(funcTree.getContent());
+                            if(method != null)
                             {
-                                String[] parts = s.split("\\|");
-                                if(parts[2].equals(funcTree.getContent()))
-                                {
-                                    objectStackOffset = Integer.parseInt(parts[3]) * 2;
-                                    objectStackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
-                                    break;
-                                }
+                                objectStackOffset = method.getNumArgs() * 2;
+                                objectStackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
                             }
                         }
                     }
                     
                     generateMethodCall(code, arg, objectStackOffset  + stackOffset);
-                    code.add("push bc\n");
+                    code.add(Opcode.PUSH, "bc");
                     break;
                 }
             }
@@ -1945,12 +1564,12 @@ public class CodeGenerator
     /**
      * Generates a method call from an AbstractSyntaxTree
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param objectStackOffset Used for object calls, determines where the pointer to the object memory is located on the stack
      * @return the bitNum of the return value (0 if method type is void) 
      */
-    public int generateMethodCall(List<String> code, AbstractSyntaxTree tree, int objectStackOffset)
+    public int generateMethodCall(InstructionList code, AbstractSyntaxTree tree, int objectStackOffset)
     {
         if(tryGenerateInlineMethodCall(code, tree))
         {
@@ -1967,65 +1586,40 @@ public class CodeGenerator
         int returnBitNum = 0;
         int arguments = 0;
         
-        for(String s : staticMethods)
+        MethodSymbol method = symbolTable.getStaticMethod(tree.getContent());
+        if(method != null)
         {
-            String[] parts = s.split("\\|");
-            if(parts[1].equals(tree.getContent()))
-            {
-                if(parts[0].equals("char"))
-                {
-                    returnBitNum = Constants.CHAR_SIZE;
-                }
-                else if(parts[0].equals("int"))
-                {
-                    returnBitNum = Constants.INT_SIZE;
-                }
-                
-                arguments = Integer.parseInt(parts[2]);
-                methodExists = true;
-                break;
-            }
+            returnBitNum = method.getReturnBitNum();
+            arguments = method.getNumArgs();
+            methodExists = true;
         }
         
         if(!methodExists && tree.getType() == TreeNodeType.OBJECT_CALL)
         {
-            String[] parts = tree.getContent().split("\\|");
             //Destroy the object
-            if(parts[1].equals("destroy"))
-            {
-                code.add("ld a, [w" + parts[0] + "]\n");
-                code.add("ld l, a\n");
-                code.add("ld a, [w" + parts[0] + " + 1]\n");
-                code.add("ld h, a\n");
-                code.add("ld de, -6\n");
-                code.add("add hl, de\n");
-                code.add("call free\n");
+            if(tree.getMethodName().equals("destroy"))
+            {
+                code.add(Opcode.LD, "a", "[w" + tree.getObjectName() + "]");
+                code.add(Opcode.LD, "l", "a");
+                code.add(Opcode.LD, "a", "[w" + tree.getObjectName() + " + 1]");
+                code.add(Opcode.LD, "h", "a");
+                code.add(Opcode.LD, "de", "-6");
+                code.add(Opcode.ADD, "hl", "de");
+                code.add(Opcode.CALL, "free");
             
-                code.add("xor a\n");
-                code.add("ld [w" + parts[0] + "], a\n");
-                code.add("ld [w" + parts[0] + " + 1], a\n");
+                code.add(Opcode.XOR, "a");
+                code.add(Opcode.LD, "[w" + tree.getObjectName() + "]", "a");
+                code.add(Opcode.LD, "[w" + tree.getObjectName() + " + 1]", "a");
                 return 0;
             }
             
             //Also check if method exists for the type of object we're calling
-            for(String s : objectMethods)
+            method = symbolTable.getObjectMethod(tree.getMethodName());
+            if(method != null)
             {
-                String[] parts2 = s.split("\\|");
-                if(parts2[2].equals(parts[1]))
-                {
-                    if(parts2[1].equals("char"))
-                    {
-                        returnBitNum = Constants.CHAR_SIZE;
-                    }
-                    else if(parts2[1].equals("int"))
-                    {
-                        returnBitNum = Constants.INT_SIZE;
-                    }
-
-                    arguments = Integer.parseInt(parts2[3]);
-                    methodExists = true;
-                    break;
-                }
+                returnBitNum = method.getReturnBitNum();
+                arguments = method.getNumArgs();
+                methodExists = true;
             }
         }
         
@@ -2055,23 +1649,21 @@ public class CodeGenerator
         //For an object call, push the address to the allocated memory first
         if(tree.getType() == TreeNodeType.OBJECT_CALL)
         {
-            String[] parts = tree.getContent().split("\\|");
-            
-            if(parts[0].equals("this"))
+            if(tree.getObjectName().equals("this"))
             {
-                code.add("ld hl, sp + " + objectStackOffset + "\n");
-                code.add("ld a, [hl+]\n");
-                code.add("ld h, [hl]\n");
-                code.add("ld l, a\n");
-                code.add("push hl\n");
+                code.add(Opcode.LD, "hl", "sp + " + objectStackOffset);
+                code.add(Opcode.LD, "a", "[hl+]");
+                code.add(Opcode.LD, "h", "[hl]");
+                code.add(Opcode.LD, "l", "a");
+                code.add(Opcode.PUSH, "hl");
             }
             else
             {
-                code.add("ld a, [w" + parts[0] + "]\n");
-                code.add("ld l, a\n");
-                code.add("ld a, [w" + parts[0] + " + 1]\n");
-                code.add("ld h, a\n");
-                code.add("push hl\n");
+                code.add(Opcode.LD, "a", "[w" + tree.getObjectName() + "]");
+                code.add(Opcode.LD, "l", "a");
+                code.add(Opcode.LD, "a", "[w" + tree.getObjectName() + " + 1]");
+                code.add(Opcode.LD, "h", "a");
+                code.add(Opcode.PUSH, "hl");
             }
         }
         
@@ -2079,12 +1671,11 @@ public class CodeGenerator
 
         if(tree.getType() == TreeNodeType.OBJECT_CALL)
         {
-            String[] parts = tree.getContent().split("\\|");
-            code.add("call " + parts[1] + "\n");
+            code.add(Opcode.CALL, tree.getMethodName());
         }
         else
         {
-            code.add("call " + tree.getContent() + "\n");
+            code.add(Opcode.CALL, tree.getContent());
         }
 
         int toPop = args.getChildren().size() * 2;
@@ -2095,20 +1686,49 @@ public class CodeGenerator
         
         if(toPop > 0)
         {
-            code.add("add sp, " + toPop + "\n");
+            code.add(Opcode.ADD, "sp", String.valueOf(toPop));
         }
         
         return returnBitNum;
     }
     
+    /**
+     * Determines where the pointer to the object memory is located on the stack for a call of a method of "this"
+     * 
+     * @param tree The CALL or OBJECT_CALL node
+     * @param function The function or constructor the call is in
+     * @return The offset from sp, 0 if this isn't a call on "this"
+     */
+    private int getObjectStackOffset(AbstractSyntaxTree tree, AbstractSyntaxTree function)
+    {
+        int stackOffset = 0;
+        if(tree.getType() == TreeNodeType.OBJECT_CALL && tree.getObjectName().equals("this"))
+        {
+            if(function.getType() == TreeNodeType.CONSTRUCTOR)
+            {
+                stackOffset += symbolTable.getConstructorObjectOffset();
+            }
+            else
+            {
+                MethodSymbol method = symbolTable.getObjectMethod(function.getContent());
+                if(method != null)
+                {
+                    stackOffset = method.getNumArgs() * 2;
+                    stackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
+                }
+            }
+        }
+        return stackOffset;
+    }
+    
     /**
      * Generates a method return
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateReturn(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateReturn(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         int bitNum = 0;
         VariableType varType;
@@ -2123,33 +1743,33 @@ public class CodeGenerator
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld c, [hl]\n");
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                    code.add(Opcode.LD, "c", "[hl]");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld hl, sp + " + stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld a, [hl]\n");
-                    code.add("ld b, a\n");
+                    code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "a", "[hl]");
+                    code.add(Opcode.LD, "b", "a");
                 }
             }
             else if(varType == VariableType.STATIC)
             {
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld b, 0\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "b", "0");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                    code.add("ld b, a\n");
-                    code.add("ld a, [w" + tree.getChildren().get(0).getContent() + " + 1]\n");
-                    code.add("ld c, a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + " + 1]");
+                    code.add(Opcode.LD, "b", "a");
                 }
             }
             else if(varType == VariableType.OBJECT)
@@ -2158,31 +1778,31 @@ public class CodeGenerator
 
                 if(bitNum == Constants.CHAR_SIZE)
                 {
-                    code.add("ld b, 0\n");
-                    code.add("ld c, [hl]\n");
+                    code.add(Opcode.LD, "b", "0");
+                    code.add(Opcode.LD, "c", "[hl]");
                 }
                 else if(bitNum == Constants.INT_SIZE)
                 {
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld c, a\n");
-                    code.add("ld b, [hl]\n");
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, "c", "a");
+                    code.add(Opcode.LD, "b", "[hl]");
                 }
             }
         }
         else if(tree.getChildren().get(0).getType() == TreeNodeType.CONSTANT)
         {
-            int value = Integer.parseInt(tree.getChildren().get(0).getContent());
+            int value = tree.getChildren().get(0).getValue();
             
-            if(value <= 255 || value >= -128)
+            if(value >= -128 && value <= 255)
             {
                 bitNum = Constants.CHAR_SIZE;
-                code.add("ld b, 0\n");
-                code.add("ld c, " + value + "\n");
+                code.add(Opcode.LD, "b", "0");
+                code.add(Opcode.LD, "c", String.valueOf(value));
             }
-            else if(value <= 65535 || value >= -32768)
+            else if(value >= -32768 && value <= 65535)
             {
                 bitNum = Constants.INT_SIZE;
-                code.add("ld bc, " + value + "\n");
+                code.add(Opcode.LD, "bc", String.valueOf(value));
             }
             else
             {
@@ -2198,77 +1818,72 @@ public class CodeGenerator
             generateArrayAccess(code, tree.getChildren().get(0), bitNum, isStatic, false);
         }
         
-        //Check if what we return here is correct (same as declared method return type)
-        if(isStatic)
-        {
-            for(String s : staticMethods)
-            {
-                String[] parts = s.split("\\|");
-                if(parts[1].equals(currentFunction.getContent()))
-                {
-                    if(parts[0].equals("char") && bitNum == Constants.CHAR_SIZE)
-                    {
-                        break;
-                    }
-                    else if(parts[0].equals("int") && (bitNum == Constants.CHAR_SIZE || bitNum == Constants.INT_SIZE))
-                    {
-                        break;
-                    }
-                    else
-                    {
-                        syntaxError(tree.getLine(), "Return uses different type than declared in method header.");
-                    }
-                }
-            }
-        }
-        else
+        MethodSymbol method = isStatic ? symbolTable.getStaticMethod(currentFunction.getContent()) : symbolTable.getObjectMethod(currentFunction.getContent());
+        
+        //Operations and method calls
+        if(tree.getChildren().get(0).getType() == TreeNodeType.OPERATION || tree.getChildren().get(0).getType() == TreeNodeType.CALL
+                || tree.getChildren().get(0).getType() == TreeNodeType.OBJECT_CALL)
         {
-            for(String s : objectMethods)
+            bitNum = generateExpression(code, tree.getChildren().get(0), method != null ? method.getReturnBitNum() : Constants.INT_SIZE, isStatic);
+            if(bitNum == Constants.CHAR_SIZE)
             {
-                String[] parts = s.split("\\|");
-                if(parts[2].equals(currentFunction.getContent()))
-                {
-                    if(parts[1].equals("char") && bitNum == Constants.CHAR_SIZE)
-                    {
-                        break;
-                    }
-                    else if(parts[1].equals("int") && (bitNum == Constants.CHAR_SIZE || bitNum == Constants.INT_SIZE))
-                    {
-                        break;
-                    }
-                    else
-                    {
-                        syntaxError(tree.getLine(), "Return uses different type than declared in method header.");
-                    }
-                }
+                code.add(Opcode.LD, "b", "0");
             }
         }
         
+        //Check if what we return here is correct (same as declared method return type)
+        checkReturnType(tree, method, bitNum);
+        
+        //Free the stack variables, the saved registers and the return address are behind them
+        code.add(Opcode.ADD, "sp", String.valueOf(currentFunction.getFrameLayout().getNumLocals() * 2));
+        
         if(popOnReturn)
         {
             //We are not saving bc because that is the return value
-            code.add("pop hl\n");
-            code.add("pop de\n");
-            code.add("pop af\n");
+            code.add(Opcode.POP, "hl");
+            code.add(Opcode.POP, "de");
+            code.add(Opcode.POP, "af");
+        }
+        
+        code.add(Opcode.RET);
+    }
+    
+    /**
+     * Checks if what we return is correct (same as declared method return type)
+     * 
+     * @param tree The return AST
+     * @param method The method we're returning from (may be null)
+     * @param bitNum The bitNum of the returned value
+     */
+    private void checkReturnType(AbstractSyntaxTree tree, MethodSymbol method, int bitNum)
+    {
+        if(method == null)
+        {
+            return;
         }
         
-        code.add("ret\n");
+        int returnBitNum = method.getReturnBitNum();
+        if(!(returnBitNum == Constants.CHAR_SIZE && bitNum == Constants.CHAR_SIZE) &&
+                !(returnBitNum == Constants.INT_SIZE && (bitNum == Constants.CHAR_SIZE || bitNum == Constants.INT_SIZE)))
+        {
+            syntaxError(tree.getLine(), "Return uses different type than declared in method header.");
+        }
     }
     
     /**
      * Generates a switch statement<br>
      * Works via a jump table
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateSwitchStatement(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateSwitchStatement(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
-        List<String> jumpTable = new ArrayList<String>();
-        jumpTable.add("jt" + tree.hashCode() + ":\n");
+        List<String> jumpTable = new ArrayList<String>(); //The label for each case index, null if there is no case for it
         
-        List<String> switchCases = new ArrayList<String>();
+        InstructionList switchCases = new InstructionList();
+        switchCases.setFunction(code.getFunction());
         
         //Generate jump table usage code
         VarHelper vh = this.doVariableAccess(tree.getChildren().get(0), isStatic);
@@ -2279,32 +1894,32 @@ public class CodeGenerator
         {
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld hl, sp + " + stackOffset + "\n");
-                code.add("ld l, [hl]\n");
-                code.add("ld h, 0\n");
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, "l", "[hl]");
+                code.add(Opcode.LD, "h", "0");
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld hl, sp + " + stackOffset + "\n");
-                code.add("ld a, [hl+]\n");
-                code.add("ld h, [hl]\n");
-                code.add("ld l, a\n");
+                code.add(Opcode.LD, "hl", "sp + " + stackOffset);
+                code.add(Opcode.LD, "a", "[hl+]");
+                code.add(Opcode.LD, "h", "[hl]");
+                code.add(Opcode.LD, "l", "a");
             }
         }
         else if(varType == VariableType.STATIC)
         {
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                code.add("ld l, a\n");
-                code.add("ld h, 0\n");
+                code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                code.add(Opcode.LD, "l", "a");
+                code.add(Opcode.LD, "h", "0");
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld a, [w" + tree.getChildren().get(0).getContent() + "]\n");
-                code.add("ld l, a\n");
-                code.add("ld a, [w" + tree.getChildren().get(0).getContent() + " + 1]\n");
-                code.add("ld h, a\n");
+                code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + "]");
+                code.add(Opcode.LD, "l", "a");
+                code.add(Opcode.LD, "a", "[w" + tree.getChildren().get(0).getContent() + " + 1]");
+                code.add(Opcode.LD, "h", "a");
             }
         }
         else if(varType == VariableType.OBJECT)
@@ -2313,14 +1928,14 @@ public class CodeGenerator
 
             if(bitNum == Constants.CHAR_SIZE)
             {
-                code.add("ld l, [hl]\n");
-                code.add("ld h, 0\n");
+                code.add(Opcode.LD, "l", "[hl]");
+                code.add(Opcode.LD, "h", "0");
             }
             else if(bitNum == Constants.INT_SIZE)
             {
-                code.add("ld a, [hl+]\n");
-                code.add("ld h, [hl]\n");
-                code.add("ld l, a\n");
+                code.add(Opcode.LD, "a", "[hl+]");
+                code.add(Opcode.LD, "h", "[hl]");
+                code.add(Opcode.LD, "l", "a");
             }
         }
         
@@ -2331,7 +1946,7 @@ public class CodeGenerator
         {
             if(ast.getType() == TreeNodeType.CASE)
             {
-                int i = Integer.parseInt(ast.getContent());
+                int i = ast.getValue();
                 if(i > biggestCase)
                 {
                     biggestCase = i;
@@ -2345,11 +1960,11 @@ public class CodeGenerator
         {
             syntaxError(biggestCaseAstLine, "Case index out of bounds.");
         }
-        code.add("ld a, l\n");
-        code.add("ld c, " + biggestCase + "\n");
-        code.add("ld de, jt" + tree.hashCode() + "\n");
-        code.add("call jumpTableCaller\n");
-        code.add("jtce" + tree.hashCode() + ":\n");
+        code.add(Opcode.LD, "a", "l");
+        code.add(Opcode.LD, "c", String.valueOf(biggestCase));
+        code.add(Opcode.LD, "de", "jt" + getLabelId(tree));
+        code.add(Opcode.CALL, "jumpTableCaller");
+        code.addLabel("jtce" + getLabelId(tree));
         
         //Generate methods for each case, and the table itself
         for(AbstractSyntaxTree ast : tree.getChildren())
@@ -2357,52 +1972,56 @@ public class CodeGenerator
             if(ast.getType() == TreeNodeType.CASE)
             {
                 //Generate code for the switch case
-                switchCases.add("jte" + ast.hashCode() + ":\n");
+                switchCases.addLabel("jte" + getLabelId(ast));
                 generateStatementSequence(switchCases, ast, isStatic);
                 //Jump back to where the call was made
-                switchCases.add("jp jtce" + tree.hashCode() + "\n");
+                switchCases.add(Opcode.JP, "jtce" + getLabelId(tree));
 
                 //Generate label into jump table
-                int caseIndex = Integer.parseInt(ast.getContent());
+                int caseIndex = ast.getValue();
                 
-                if(jumpTable.size() <= caseIndex + 1)
+                if(jumpTable.size() <= caseIndex)
                 {
-                    while(jumpTable.size() < caseIndex + 1)
+                    while(jumpTable.size() < caseIndex)
                     {
-                        jumpTable.add("DW 0\n");
+                        jumpTable.add(null);
                     }
-                    jumpTable.add("DW jte" + ast.hashCode() + "\n");
+                    jumpTable.add("jte" + getLabelId(ast));
                 }
                 else
                 {
-                    jumpTable.set(caseIndex + 1, "DW jte" + ast.hashCode() + "\n");
+                    jumpTable.set(caseIndex, "jte" + getLabelId(ast));
                 }
             }
         }
         
-        data.addAll(jumpTable);
+        data.addLabel("jt" + getLabelId(tree));
+        for(String label : jumpTable)
+        {
+            data.addDirective("DW " + (label == null ? "0" : label));
+        }
         data.addAll(switchCases);
     }
     
     /**
      * A statement sequence - can be inside a method, contructor or any control structure
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateStatementSequence(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateStatementSequence(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         for(AbstractSyntaxTree ast : tree.getChildren())
         {
+            code.setLine(ast.getLine());
             switch(ast.getType())
             {
                 case DECLARATION:
                 {
                     if(isStatic)
                     {
-                        code.add("add sp, -2\n"); //"Allocate" space on stack
-                        methodVarDeclarations.add(tree.getContent() + "|" + ast.getContent());
+                        code.add(Opcode.ADD, "sp", "-2"); //"Allocate" space on stack
                     }
                     else
                     {
@@ -2423,44 +2042,7 @@ public class CodeGenerator
                 }
                 case OBJECT_CALL:
                 {
-                    int stackOffset = 0;
-                    String[] astParts = ast.getContent().split("\\|");
-                    if(astParts[0].equals("this"))
-                    {
-                        if(tree.getType() == TreeNodeType.CONSTRUCTOR)
-                        {
-                            for(String s : objectConstructors)
-                            {
-                                String[] parts = s.split("\\|");
-                                
-                                for(String instance : objectInstances)
-                                {
-                                    String[] iParts = instance.split("\\|");
-                                    //Check if the type is correct
-                                    if(iParts[0].equals(parts[0]))
-                                    {
-                                        stackOffset += Integer.parseInt(parts[1]) * 2; //Every argument takes 2 bytes on the stack, so we mult by 2
-                                        stackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
-                                        break;
-                                    }
-                                }
-                            }
-                        }
-                        else
-                        {
-                            for(String s : objectMethods)
-                            {
-                                String[] parts = s.split("\\|");
-                                if(parts[2].equals(tree.getContent()))
-                                {
-                                    stackOffset = Integer.parseInt(parts[3]) * 2;
-                                    stackOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
-                                    break;
-                                }
-                            }
-                        }
-                    }
-                    generateMethodCall(code, ast, stackOffset);
+                    generateMethodCall(code, ast, getObjectStackOffset(ast, tree));
                     break;
                 }
                 case IF:
@@ -2490,94 +2072,88 @@ public class CodeGenerator
     /**
      * Generates a function
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param isStatic Determines if this is a section (static) or an object class
      */
-    private void generateFunction(List<String> code, AbstractSyntaxTree tree, boolean isStatic)
+    private void generateFunction(InstructionList code, AbstractSyntaxTree tree, boolean isStatic)
     {
         this.currentFunction = tree;
+        this.currentFunctionIsStatic = isStatic;
      
         popOnReturn = false;
         
         int returnBitNum = 0;
         
-        for(String s : staticMethods)
+        MethodSymbol method = symbolTable.getStaticMethod(currentFunction.getContent());
+        if(method != null)
         {
-            String[] parts = s.split("\\|");
-            if(parts[1].equals(currentFunction.getContent()))
-            {
-                if(parts[0].equals("char"))
-                {
-                    returnBitNum = Constants.CHAR_SIZE;
-                    break;
-                }
-                else if(parts[0].equals("int"))
-                {
-                    returnBitNum = Constants.INT_SIZE;
-                    break;
-                }
-            }
+            returnBitNum = method.getReturnBitNum();
         }
         
-        code.add(tree.getContent() + ":\n");
+        code.setFunction(tree.getContent());
+        code.setLine(tree.getLine());
+        code.addLabel(tree.getContent());
+        exports.add(tree.getContent());
         
-        if(tree.getContent().equals("VBlank"))
+        if(tree.getSymbol() == Interner.VBLANK)
         {
-            code.add("push af\n");
-            code.add("push bc\n");
-            code.add("push de\n");
-            code.add("push hl\n");
+            code.add(Opcode.PUSH, "af");
+            code.add(Opcode.PUSH, "bc");
+            code.add(Opcode.PUSH, "de");
+            code.add(Opcode.PUSH, "hl");
         }
         else if(returnBitNum != 0)
         {
             popOnReturn = true;
             //We are not saving bc because that is the return value
-            code.add("push af\n");
-            code.add("push de\n");
-            code.add("push hl\n");
+            code.add(Opcode.PUSH, "af");
+            code.add(Opcode.PUSH, "de");
+            code.add(Opcode.PUSH, "hl");
         }
         
         generateStatementSequence(code, tree, isStatic);
         
-        code.add("add sp, " + (getNumberOfVarsForCurrentMethod() * 2) + "\n");
+        code.setLine(tree.getLine());
+        code.add(Opcode.ADD, "sp", String.valueOf(tree.getFrameLayout().getNumLocals() * 2));
         
-        if(tree.getContent().equals("VBlank"))
+        if(tree.getSymbol() == Interner.VBLANK)
         {
-            code.add("pop hl\n");
-            code.add("pop de\n");
-            code.add("pop bc\n");
-            code.add("pop af\n");
+            code.add(Opcode.POP, "hl");
+            code.add(Opcode.POP, "de");
+            code.add(Opcode.POP, "bc");
+            code.add(Opcode.POP, "af");
         }
         else if(returnBitNum != 0)
         {
             //We are not saving bc because that is the return value
-            code.add("pop hl\n");
-            code.add("pop de\n");
-            code.add("pop af\n");
+            code.add(Opcode.POP, "hl");
+            code.add(Opcode.POP, "de");
+            code.add(Opcode.POP, "af");
         }
         
-        if(tree.getContent().equals("VBlank"))
+        if(tree.getSymbol() == Interner.VBLANK)
         {
             //When an interrupt handler is called, interrupts are automatically disabled
             //We need to reenable them after the interrupt handler again
             //reti is basically ei + ret in one handy instruction 
-            code.add("reti\n");
+            code.add(Opcode.RETI);
         }
         else
         {
-            code.add("ret\n");
+            code.add(Opcode.RET);
         }
+        code.setFunction(null);
     }
     
     /**
      * Generates a constructor for an (object) class
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      * @param className The name of the class this constructor belongs to
      */
-    private void generateConstructor(List<String> code, AbstractSyntaxTree tree, String className)
+    private void generateConstructor(InstructionList code, AbstractSyntaxTree tree, String className)
     {
         tree.setContent("_" + className + "Constructor");
         generateFunction(code, tree, false);
@@ -2585,27 +2161,28 @@ public class CodeGenerator
     
     /**
      * Since we receive a single string containing multiple lines, we need to split it<br>
-     * Each element of the code array is one line
+     * Each line is parsed into one instruction, so the optimizer can work on inline assembly too
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      */
-    private void generateInlineAssembly(List<String> code, AbstractSyntaxTree tree)
+    private void generateInlineAssembly(InstructionList code, AbstractSyntaxTree tree)
     {
+        code.setLine(tree.getLine());
         String[] parts = tree.getContent().split("\n");
         for(String s : parts)
         {
-            code.add(s + "\n");
+            code.addAssembly(s);
         }
     }
     
     /**
      * Generates a section
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      */
-    private void generateStaticClass(List<String> code, AbstractSyntaxTree tree)
+    private void generateStaticClass(InstructionList code, AbstractSyntaxTree tree)
     {
         for(AbstractSyntaxTree ast : tree.getChildren())
         {
@@ -2613,7 +2190,7 @@ public class CodeGenerator
             {
                 case PACKAGE:
                 {
-                    code.add(" SECTION \"" + tree.getContent() + "\", " + ast.getContent() + "\n");
+                    code.addDirective(" SECTION \"" + tree.getContent() + "\", " + ast.getContent());
                     break;
                 }
                 case DECLARATION:
@@ -2633,13 +2210,12 @@ public class CodeGenerator
                 }
                 case ARRAY_DECLARATION:
                 {
-                    String[] parts = ast.getContent().split("\\|");
-                    int numBytes = Integer.parseInt(parts[1]);
-                    if(!parts[0].equals("char"))
+                    int numBytes = ast.getArrayLength();
+                    if(!ast.getDataType().equals("char"))
                     {
                         numBytes *= 2;
                     }
-                    varDeclarations.add("array|" + parts[2] + "|" + parts[0] + "|" + numBytes);
+                    varDeclarations.add(new VariableSymbol(ast.getDataType(), ast.getName(), numBytes));
                     break;
                 }
             }
@@ -2649,10 +2225,10 @@ public class CodeGenerator
     /**
      * Generates an (object) class
      * 
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param tree The AST we're generating the code from
      */
-    private void generateClass(List<String> code, AbstractSyntaxTree tree)
+    private void generateClass(InstructionList code, AbstractSyntaxTree tree)
     {
         for(AbstractSyntaxTree ast : tree.getChildren())
         {
@@ -2660,12 +2236,7 @@ public class CodeGenerator
             {
                 case PACKAGE:
                 {
-                    code.add(" SECTION \"" + tree.getContent() + "\", " + ast.getContent() + "\n");
-                    break;
-                }
-                case DECLARATION:
-                {
-                    objectVariableDeclarations.add(tree.getContent() + "|" + ast.getContent());
+                    code.addDirective(" SECTION \"" + tree.getContent() + "\", " + ast.getContent());
                     break;
                 }
                 case FUNCTION:
@@ -2689,17 +2260,23 @@ public class CodeGenerator
     
     /**
      * Generates an assembly file from a .gbj file
-     * Also runs the optimizer, if any passes are requested
+     * Also runs the optimizer, unless it is disabled
      * 
      * @param isMainFile Determines if this is the main file of the project
      */
     public void generateAsmFile(boolean isMainFile)
     {
-        List<String> code = this.generatedCode;
+        InstructionList code = this.generatedCode;
+        Timings.Phase phase = Timings.getInstance().begin("codegen", fileName);
         
         if(isMainFile)
         {
-            code.add("INCLUDE \"stdlib/RomHeader.asm\"\n");
+            code.addDirective("INCLUDE \"stdlib/RomHeader.asm\"");
+        }
+        else
+        {
+            //Imported files are assembled on their own, so they need the hardware definitions (e.g. rROMB0 for switchBank()) the ROM header includes
+            code.addDirective("INCLUDE \"stdlib/hardware.inc\"");
         }
         
         for(AbstractSyntaxTree ast : syntaxTree.getChildren())
@@ -2718,14 +2295,10 @@ public class CodeGenerator
                 }
                 case IMPORT:
                 {
-                    if(ast.getContent().endsWith(".gbj"))
-                    {
-                        AssemblerRunner.runCompiler(ast.getContent());
-                        code.add("INCLUDE \"build/" + ast.getContent().substring(0, ast.getContent().length() - 4) + ".asm\"\n");
-                    }
-                    else
+                    //Imported .gbj files are assembled into objects of their own, the linker resolves their labels
+                    if(!ast.getContent().endsWith(".gbj"))
                     {
-                        code.add("INCLUDE \"" + ast.getContent() + "\"\n");
+                        code.addDirective("INCLUDE \"" + ast.getContent() + "\"");
                     }
                     break;
                 }
@@ -2733,67 +2306,58 @@ public class CodeGenerator
         }
         
         //Append data to end of normal code section
-        code.add("INCLUDE \"stdlib/charmap.asm\"\n"); //The charmap contains no data, but instead maps the ASCII characters in strings onto other numbers
-        for(String s : data)
-        {
-            code.add(s);
-        }
+        code.addDirective("INCLUDE \"stdlib/charmap.asm\""); //The charmap contains no data, but instead maps the ASCII characters in strings onto other numbers
+        code.addAll(data);
         
-        //Generate WRAM variable section
-        code.add(" SECTION \"Vars\", WRAM0\n");
-        for(String s : varDeclarations)
+        //Generate WRAM variable section, named after the file since the linker doesn't allow two sections with the same name
+        code.addDirective(" SECTION \"Vars_" + fileName + "\", WRAM0");
+        for(VariableSymbol s : varDeclarations.getVariables())
         {
-            // "|" needs to be escaped: https://stackoverflow.com/questions/10796160/splitting-a-java-string-by-the-pipe-symbol-using-split
-            String[] parts = s.split("\\|");
+            exports.add("w" + s.getName());
             
             //Char is 1 byte
-            if(parts[0].equals("char"))
+            if(s.getType().equals("char"))
             {
-                code.add("w" + parts[1] + ": DS 1\n");
+                code.addDirective("w" + s.getName() + ": DS 1");
             }
             //Int is 2 bytes
-            else if(parts[0].equals("int"))
+            else if(s.getType().equals("int"))
             {
-                code.add("w" + parts[1] + ": DS 2\n");
+                code.addDirective("w" + s.getName() + ": DS 2");
             }
             //Arrays store their size
-            else if(parts[0].equals("array"))
+            else if(s.isArray())
             {
-                code.add("w" + parts[1] + ": DS " + parts[3] + "\n");
+                code.addDirective("w" + s.getName() + ": DS " + s.getNumBytes());
             }
             //Objects (actually, we store their pointers) are 2 bytes
             else
             {
-                code.add("w" + parts[1] + ": DS 2\n");
+                code.addDirective("w" + s.getName() + ": DS 2");
             }
         }
         
-        Optimizer op = new Optimizer(code);
-        
-        for(int i = 0; i < optimizerPasses; i++)
+        for(String label : exports)
         {
-            op.optimize();
+            code.addDirective("EXPORT " + label);
         }
         
-        //A simple autoformatter, basically
-        for(int i = 0; i < code.size(); i++)
+        phase.count("nodes", syntaxTree.countNodes()).count("instructions", code.size()).end();
+        
+        if(optimizationLevel > 0)
         {
-            //E F F I C I E N C Y
-            if(!(code.get(i).endsWith(":\n") || code.get(i).startsWith(" SECTION") || code.get(i).startsWith("INCLUDE") || code.get(i).startsWith("w")))
-            {
-                code.set(i, "    " + code.get(i));
-            }
+            optimizerStats = new OptimizerStats(fileName);
+            phase = Timings.getInstance().begin("optimize:peephole", fileName);
+            int before = code.size();
+            new Optimizer(code, optimizerStats).optimize();
+            phase.count("instructionsBefore", before).count("instructionsAfter", code.size()).end();
         }
         
-        Logger.getInstance().log(Logger.FINE, "Total number of optimizer passes: " + optimizerPasses);
-        
         //Write the generated code out to disk
+        phase = Timings.getInstance().begin("write", fileName);
         try
         {
-            for(String s : code)
-            {
-                writer.write(s);
-            }
+            code.write(writer);
             writer.close();
         }
         catch(IOException e)
@@ -2801,9 +2365,26 @@ public class CodeGenerator
             Logger.getInstance().log(Logger.ERROR, "Failed to close file writer.");
             Logger.getInstance().log(Logger.ERROR, e);
         }
+        phase.count("instructions", code.size()).end();
+    }
+    
+    /**
+     * @return The code of the whole file, complete after generateAsmFile()
+     */
+    public InstructionList getCode()
+    {
+        return generatedCode;
+    }
+    
+    /**
+     * @return What the optimizer did to this file, null if the optimizer is disabled
+     */
+    public OptimizerStats getOptimizerStats()
+    {
+        return optimizerStats;
     }
     
-    public List<String> getData()
+    public InstructionList getData()
     {
         return data;
     }
@@ -0,0 +1,244 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single line of generated assembly: an instruction, a label or a directive<br>
+ * Instructions are linked to their neighbours inside an InstructionList
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class Instruction
+{
+    private Opcode opcode;
+    private Operand[] operands;
+    private String label; //Only used for labels
+    private String text; //Written out as-is instead of rendering the instruction (directives and inline assembly)
+    private int line; //The line in the .gbj file this was generated from, -1 if unknown
+    private String function; //The function this was generated for, null if it is outside of all functions
+    
+    InstructionList list; //The list this instruction is in, null if it was removed
+    Instruction previous;
+    Instruction next;
+    
+    /**
+     * Constructor for an instruction
+     * 
+     * @param opcode The instruction
+     * @param operands The operands, as written in the assembly file
+     */
+    public Instruction(Opcode opcode, String... operands)
+    {
+        this.opcode = opcode;
+        this.operands = new Operand[operands.length];
+        for(int i = 0; i < operands.length; i++)
+        {
+            //Conditions are always the first of two operands (or the only one for "ret")
+            boolean conditionAllowed = opcode.isConditional() && i == 0 && (operands.length == 2 || opcode == Opcode.RET);
+            this.operands[i] = new Operand(operands[i], conditionAllowed);
+        }
+        this.line = -1;
+    }
+    
+    /**
+     * @param name The name of the label (without the colon)
+     * @return A new label
+     */
+    public static Instruction label(String name)
+    {
+        Instruction ins = new Instruction(Opcode.LABEL);
+        ins.label = name;
+        return ins;
+    }
+    
+    /**
+     * @param text The directive, e.g. "DB 1, 2"
+     * @return A new directive
+     */
+    public static Instruction directive(String text)
+    {
+        Instruction ins = new Instruction(Opcode.DIRECTIVE);
+        ins.text = text;
+        return ins;
+    }
+    
+    /**
+     * Parses a line of handwritten assembly (inline assembly)<br>
+     * The line is written out exactly as it was given unless the optimizer replaces it
+     * 
+     * @param text The line
+     * @return The parsed line
+     */
+    public static Instruction parse(String text)
+    {
+        String trimmed = text.trim();
+        
+        Instruction ins;
+        if(trimmed.endsWith(":") && !trimmed.contains(" ") && trimmed.length() > 1)
+        {
+            ins = label(trimmed.replaceAll(":+$", ""));
+        }
+        else
+        {
+            String[] parts = trimmed.split("\\s+", 2);
+            Opcode opcode = Opcode.fromMnemonic(parts[0]);
+            //Comments are passed through as directives so they don't get lost
+            if(opcode == null || trimmed.contains(";"))
+            {
+                return directive(text);
+            }
+            
+            ins = new Instruction(opcode, parts.length > 1 ? splitOperands(parts[1]) : new String[0]);
+        }
+        ins.text = text;
+        return ins;
+    }
+    
+    /**
+     * Splits an operand list at the commas which aren't inside of brackets, parentheses or strings
+     * 
+     * @param operands The operand list
+     * @return The trimmed operands
+     */
+    private static String[] splitOperands(String operands)
+    {
+        List<String> result = new ArrayList<String>();
+        int depth = 0;
+        boolean inString = false;
+        int start = 0;
+        for(int i = 0; i < operands.length(); i++)
+        {
+            char c = operands.charAt(i);
+            if(c == '"')
+            {
+                inString = !inString;
+            }
+            else if(!inString && (c == '[' || c == '('))
+            {
+                depth++;
+            }
+            else if(!inString && (c == ']' || c == ')'))
+            {
+                depth--;
+            }
+            else if(!inString && depth == 0 && c == ',')
+            {
+                result.add(operands.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        result.add(operands.substring(start).trim());
+        return result.toArray(new String[result.size()]);
+    }
+    
+    /**
+     * Checks if this is the given instruction with exactly the given operands
+     * 
+     * @param opcode The instruction
+     * @param operands The operands (text), null matches any operand
+     * @return
+     */
+    public boolean is(Opcode opcode, String... operands)
+    {
+        if(this.opcode != opcode || this.operands.length != operands.length)
+        {
+            return false;
+        }
+        for(int i = 0; i < operands.length; i++)
+        {
+            if(operands[i] != null && !operands[i].equals(this.operands[i].getText()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public Opcode getOpcode()
+    {
+        return opcode;
+    }
+    
+    public Operand getOperand(int index)
+    {
+        return operands[index];
+    }
+    
+    public int getNumOperands()
+    {
+        return operands.length;
+    }
+    
+    public String getLabel()
+    {
+        return label;
+    }
+    
+    public int getLine()
+    {
+        return line;
+    }
+    
+    public void setLine(int line)
+    {
+        this.line = line;
+    }
+    
+    public String getFunction()
+    {
+        return function;
+    }
+    
+    public void setFunction(String function)
+    {
+        this.function = function;
+    }
+    
+    /**
+     * @return The next instruction in the list or null if this is the last one
+     */
+    public Instruction getNext()
+    {
+        return next;
+    }
+    
+    /**
+     * @return The previous instruction in the list or null if this is the first one
+     */
+    public Instruction getPrevious()
+    {
+        return previous;
+    }
+    
+    /**
+     * Renders this instruction as a line of assembly (without indentation and line break)
+     */
+    @Override
+    public String toString()
+    {
+        if(text != null)
+        {
+            return text;
+        }
+        if(opcode == Opcode.LABEL)
+        {
+            return label + ":";
+        }
+        
+        StringBuilder sb = new StringBuilder(opcode.getMnemonic());
+        for(int i = 0; i < operands.length; i++)
+        {
+            sb.append(i == 0 ? " " : ", ");
+            sb.append(operands[i].getText());
+        }
+        return sb.toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,308 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The generated code of a file, as a doubly linked list of instructions<br>
+ * Inserting, removing and replacing instructions is done in constant time, which is what the optimizer needs<br>
+ * The code is only turned into text once, when the .asm file is written
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class InstructionList implements Iterable<Instruction>
+{
+    private Instruction first;
+    private Instruction last;
+    private int size;
+    
+    private int currentLine; //Source line given to newly added instructions
+    private String currentFunction; //Function given to newly added instructions
+    
+    public InstructionList()
+    {
+        this.first = null;
+        this.last = null;
+        this.size = 0;
+        this.currentLine = -1;
+        this.currentFunction = null;
+    }
+    
+    /**
+     * Sets the line in the .gbj file that all following instructions are generated from
+     * 
+     * @param line The line
+     */
+    public void setLine(int line)
+    {
+        this.currentLine = line;
+    }
+    
+    /**
+     * Sets the function that all following instructions are generated for
+     * 
+     * @param function The name of the function, null for code outside of functions
+     */
+    public void setFunction(String function)
+    {
+        this.currentFunction = function;
+    }
+    
+    public String getFunction()
+    {
+        return currentFunction;
+    }
+    
+    /**
+     * Appends an instruction to the end of the list
+     * 
+     * @param ins The instruction
+     */
+    public void add(Instruction ins)
+    {
+        ins.setLine(currentLine);
+        ins.setFunction(currentFunction);
+        insertAfter(last, ins);
+    }
+    
+    /**
+     * Appends an instruction to the end of the list
+     * 
+     * @param opcode The instruction
+     * @param operands The operands, as written in the assembly file
+     */
+    public void add(Opcode opcode, String... operands)
+    {
+        add(new Instruction(opcode, operands));
+    }
+    
+    /**
+     * Appends a label to the end of the list
+     * 
+     * @param name The name of the label (without the colon)
+     */
+    public void addLabel(String name)
+    {
+        add(Instruction.label(name));
+    }
+    
+    /**
+     * Appends a directive to the end of the list
+     * 
+     * @param text The directive, e.g. "DB 1, 2"
+     */
+    public void addDirective(String text)
+    {
+        add(Instruction.directive(text));
+    }
+    
+    /**
+     * Appends a line of handwritten assembly to the end of the list
+     * 
+     * @param text The line
+     */
+    public void addAssembly(String text)
+    {
+        add(Instruction.parse(text));
+    }
+    
+    /**
+     * Moves all instructions of another list to the end of this list<br>
+     * The other list is empty afterwards
+     * 
+     * @param other The other list
+     */
+    public void addAll(InstructionList other)
+    {
+        if(other.first == null)
+        {
+            return;
+        }
+        
+        if(last == null)
+        {
+            first = other.first;
+        }
+        else
+        {
+            last.next = other.first;
+            other.first.previous = last;
+        }
+        last = other.last;
+        size += other.size;
+        for(Instruction ins = other.first; ins != null; ins = ins.next)
+        {
+            ins.list = this;
+        }
+        
+        other.first = null;
+        other.last = null;
+        other.size = 0;
+    }
+    
+    /**
+     * Inserts an instruction after another one
+     * 
+     * @param position The instruction to insert after, null to insert at the start
+     * @param ins The instruction to insert
+     */
+    public void insertAfter(Instruction position, Instruction ins)
+    {
+        ins.list = this;
+        ins.previous = position;
+        ins.next = position == null ? first : position.next;
+        
+        if(ins.previous == null)
+        {
+            first = ins;
+        }
+        else
+        {
+            ins.previous.next = ins;
+        }
+        
+        if(ins.next == null)
+        {
+            last = ins;
+        }
+        else
+        {
+            ins.next.previous = ins;
+        }
+        size++;
+    }
+    
+    /**
+     * Removes an instruction from the list
+     * 
+     * @param ins The instruction
+     */
+    public void remove(Instruction ins)
+    {
+        if(ins.previous == null)
+        {
+            first = ins.next;
+        }
+        else
+        {
+            ins.previous.next = ins.next;
+        }
+        
+        if(ins.next == null)
+        {
+            last = ins.previous;
+        }
+        else
+        {
+            ins.next.previous = ins.previous;
+        }
+        
+        ins.list = null;
+        ins.previous = null;
+        ins.next = null;
+        size--;
+    }
+    
+    /**
+     * Replaces an instruction by another one, which keeps the source line of the old instruction
+     * 
+     * @param old The instruction to replace
+     * @param ins The new instruction
+     * @return The new instruction
+     */
+    public Instruction replace(Instruction old, Instruction ins)
+    {
+        ins.setLine(old.getLine());
+        ins.setFunction(old.getFunction());
+        insertAfter(old, ins);
+        remove(old);
+        return ins;
+    }
+    
+    /**
+     * @return The first instruction or null if the list is empty
+     */
+    public Instruction getFirst()
+    {
+        return first;
+    }
+    
+    /**
+     * @return The last instruction or null if the list is empty
+     */
+    public Instruction getLast()
+    {
+        return last;
+    }
+    
+    public int size()
+    {
+        return size;
+    }
+    
+    /**
+     * @param ins The instruction
+     * @return If the instruction is (still) part of this list
+     */
+    public boolean contains(Instruction ins)
+    {
+        return ins.list == this;
+    }
+    
+    /**
+     * Writes the code out as assembly, one instruction per line
+     * 
+     * @param writer The writer to write into
+     * @throws IOException
+     */
+    public void write(Writer writer) throws IOException
+    {
+        for(Instruction ins : this)
+        {
+            String line = ins.toString();
+            //A simple autoformatter, basically: everything except labels, sections, includes and variables is indented
+            if(!(line.endsWith(":") || line.startsWith(" SECTION") || line.startsWith("INCLUDE") || line.startsWith("w")))
+            {
+                writer.write("    ");
+            }
+            writer.write(line);
+            writer.write("\n");
+        }
+    }
+    
+    @Override
+    public Iterator<Instruction> iterator()
+    {
+        return new Iterator<Instruction>()
+        {
+            private Instruction current = first;
+            
+            @Override
+            public boolean hasNext()
+            {
+                return current != null;
+            }
+            
+            @Override
+            public Instruction next()
+            {
+                if(current == null)
+                {
+                    throw new NoSuchElementException();
+                }
+                Instruction ins = current;
+                current = current.next;
+                return ins;
+            }
+        };
+    }
+}
\ No newline at end of file
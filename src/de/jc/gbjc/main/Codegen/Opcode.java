@@ -0,0 +1,71 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All instructions of the Game Boy CPU, plus the pseudo opcodes used for labels and assembler directives
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public enum Opcode
+{
+    ADC, ADD, AND, BIT, CALL, CCF, CP, CPL, DAA, DEC, DI, EI, HALT, INC, JP, JR, LD, LDD, LDH, LDI, NOP, OR, POP, PUSH,
+    RES, RET, RETI, RL, RLA, RLC, RLCA, RR, RRA, RRC, RRCA, RST, SBC, SCF, SET, SLA, SRA, SRL, STOP, SUB, SWAP, XOR,
+    
+    LABEL, //A label, the name is stored in the instruction
+    DIRECTIVE; //Everything else (SECTION, INCLUDE, DB, DS, comments, ...), written out as-is
+    
+    private static Map<String, Opcode> mnemonics = new HashMap<String, Opcode>();
+    
+    static
+    {
+        for(Opcode op : values())
+        {
+            if(op.isInstruction())
+            {
+                mnemonics.put(op.getMnemonic(), op);
+            }
+        }
+    }
+    
+    /**
+     * @return The mnemonic as written in the assembly file
+     */
+    public String getMnemonic()
+    {
+        return name().toLowerCase();
+    }
+    
+    /**
+     * @return If this is a real CPU instruction (and not a label or directive)
+     */
+    public boolean isInstruction()
+    {
+        return this != LABEL && this != DIRECTIVE;
+    }
+    
+    /**
+     * @return If this instruction can take a condition (z, nz, c, nc) as its first operand
+     */
+    public boolean isConditional()
+    {
+        return this == JP || this == JR || this == CALL || this == RET;
+    }
+    
+    /**
+     * @param mnemonic The mnemonic (case insensitive)
+     * @return The matching instruction or null if it isn't a CPU instruction
+     */
+    public static Opcode fromMnemonic(String mnemonic)
+    {
+        return mnemonics.get(mnemonic.toLowerCase());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A single operand of an instruction<br>
+ * The text is kept exactly as generated, the kind is determined once when the operand is created
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class Operand
+{
+    public static enum Kind
+    {
+        REGISTER, //a, b, c, d, e, h, l, af, bc, de, hl, sp
+        CONDITION, //z, nz, c, nc (only as first operand of jp, jr, call and ret)
+        MEMORY, //Anything in brackets, e.g. [hl], [hl+] or [wvar + 1]
+        IMMEDIATE, //A number (decimal, $hex or %binary)
+        EXPRESSION; //Labels, constants and everything else the assembler has to calculate (e.g. "sp + 2")
+    }
+    
+    private static final Set<String> REGISTERS = new HashSet<String>(Arrays.asList("a", "b", "c", "d", "e", "h", "l", "af", "bc", "de", "hl", "sp"));
+    private static final Set<String> CONDITIONS = new HashSet<String>(Arrays.asList("z", "nz", "c", "nc"));
+    
+    private String text;
+    private Kind kind;
+    private int value; //Only used for immediates
+    
+    /**
+     * Constructor
+     * 
+     * @param text The operand as written in the assembly file
+     * @param conditionAllowed If this operand is in a place where a condition may be
+     */
+    public Operand(String text, boolean conditionAllowed)
+    {
+        this.text = text;
+        
+        String lower = text.toLowerCase();
+        if(conditionAllowed && CONDITIONS.contains(lower))
+        {
+            kind = Kind.CONDITION;
+        }
+        else if(REGISTERS.contains(lower))
+        {
+            kind = Kind.REGISTER;
+        }
+        else if(text.startsWith("[") && text.endsWith("]"))
+        {
+            kind = Kind.MEMORY;
+        }
+        else
+        {
+            kind = Kind.EXPRESSION;
+            try
+            {
+                if(text.startsWith("$"))
+                {
+                    value = Integer.parseInt(text.substring(1), 16);
+                }
+                else if(text.startsWith("%"))
+                {
+                    value = Integer.parseInt(text.substring(1), 2);
+                }
+                else
+                {
+                    value = Integer.parseInt(text);
+                }
+                kind = Kind.IMMEDIATE;
+            }
+            catch(NumberFormatException e)
+            {
+                //Not a number, so it stays an expression
+            }
+        }
+    }
+    
+    public String getText()
+    {
+        return text;
+    }
+    
+    public Kind getKind()
+    {
+        return kind;
+    }
+    
+    public boolean isImmediate()
+    {
+        return kind == Kind.IMMEDIATE;
+    }
+    
+    /**
+     * @return The value of an immediate operand
+     */
+    public int getValue()
+    {
+        return value;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return text;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,140 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import de.jc.gbjc.main.Codegen.OptimizerStats.Counter;
+import de.jc.gbjc.main.Util.JsonWriter;
+import de.jc.gbjc.main.Util.Logger;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the optimizer statistics of all compiled files as JSON (-optreport=file)<br>
+ * Contains the rule hits and savings for the whole build, per file and per function, as well as the time spent in each pass
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class OptimizationReport
+{
+    private List<OptimizerStats> files;
+    
+    /**
+     * Constructor
+     * 
+     * @param files The statistics of all compiled files
+     */
+    public OptimizationReport(List<OptimizerStats> files)
+    {
+        this.files = files;
+    }
+    
+    /**
+     * Writes the report
+     * 
+     * @param path The file to write to
+     */
+    public void write(String path)
+    {
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "utf-8")))
+        {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            
+            Map<String, Counter> totals = new LinkedHashMap<String, Counter>();
+            for(OptimizerStats file : files)
+            {
+                OptimizerStats.addAll(totals, file.getRuleTotals());
+            }
+            json.name("total");
+            writeCounter(json, sum(totals));
+            json.name("rules");
+            writeRules(json, totals);
+            
+            json.name("files").beginArray();
+            for(OptimizerStats file : files)
+            {
+                json.beginObject();
+                json.name("file").value(file.getFileName());
+                
+                json.name("passes").beginArray();
+                for(Map.Entry<String, Long> pass : file.getPassTimes().entrySet())
+                {
+                    json.beginObject();
+                    json.name("name").value(pass.getKey());
+                    json.name("timeMs").value(pass.getValue() / 1000000.0);
+                    json.endObject();
+                }
+                json.endArray();
+                
+                json.name("total");
+                writeCounter(json, file.getTotal());
+                json.name("rules");
+                writeRules(json, file.getRuleTotals());
+                
+                json.name("functions").beginObject();
+                for(Map.Entry<String, Map<String, Counter>> function : file.getFunctions().entrySet())
+                {
+                    json.name(function.getKey()).beginObject();
+                    json.name("total");
+                    writeCounter(json, sum(function.getValue()));
+                    json.name("rules");
+                    writeRules(json, function.getValue());
+                    json.endObject();
+                }
+                json.endObject();
+                
+                json.endObject();
+            }
+            json.endArray();
+            
+            json.endObject();
+            json.finish();
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.ERROR, "Failed to write optimization report.");
+            Logger.getInstance().log(Logger.ERROR, e);
+        }
+    }
+    
+    private void writeRules(JsonWriter json, Map<String, Counter> rules) throws IOException
+    {
+        json.beginObject();
+        for(Map.Entry<String, Counter> rule : rules.entrySet())
+        {
+            json.name(rule.getKey());
+            writeCounter(json, rule.getValue());
+        }
+        json.endObject();
+    }
+    
+    private void writeCounter(JsonWriter json, Counter counter) throws IOException
+    {
+        json.beginObject();
+        json.name("hits").value(counter.getHits());
+        json.name("bytesSaved").value(counter.getBytesSaved());
+        json.name("cyclesSaved").value(counter.getCyclesSaved());
+        json.endObject();
+    }
+    
+    private Counter sum(Map<String, Counter> counters)
+    {
+        Counter total = new Counter();
+        for(Counter c : counters.values())
+        {
+            total.add(c);
+        }
+        return total;
+    }
+}
\ No newline at end of file
@@ -7,247 +7,174 @@
 package de.jc.gbjc.main.Codegen;
 
 import de.jc.gbjc.main.Util.Logger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
+ * A peephole optimizer working directly on the instruction list of the CodeGenerator<br>
+ * All optimizations are rules in the table below, they are applied until none of them matches anymore
  *
  * @author robbi-blechdose
  * 
  */
 public class Optimizer
 {
-    private List<String> code;
-    private int i;
+    /**
+     * All optimizations, tried in this order at every instruction
+     */
+    private static final PeepholeRule[] RULES =
+    {
+        //                Pattern                                     Replacement                    Bytes Cycles Same flags
+        new PeepholeRule("cp 0",                                     "and a",                          1, 1, true),
+        new PeepholeRule("ld a, 0",                                  "xor a",                          1, 1),
+        new PeepholeRule("sub 1",                                    "dec a",                          1, 1),
+        new PeepholeRule("add 1",                                    "inc a",                          1, 1),
+        new PeepholeRule("add sp, 0",                                "",                               4, 2),
+        new PeepholeRule("ld [w{x}], a; ld a, [w{x}]",               "ld [w{x}], a",                   3, 4),
+        new PeepholeRule("call {x}; ret",                            "jp {x}",                         1, 6),
+        new PeepholeRule("ld de, 0; add hl, de",                     "",                               4, 5),
+        new PeepholeRule("ld de, 1; add hl, de",                     "inc hl",                         3, 3),
+        new PeepholeRule("ld c, a; ld e, 1; ld a, c; add e",         "inc a",                          5, 5),
+        new PeepholeRule("ld c, a; ld e, 1; ld a, c; sub e",         "dec a",                          5, 5),
+        new PeepholeRule("ld c, a; ld a, c",                         "",                               2, 2),
+        new PeepholeRule("ld e, {x}; ld a, e",                       "ld a, {x}",                      1, 1),
+        new PeepholeRule("ld c, {x}; ld a, c",                       "ld a, {x}",                      1, 1),
+        new PeepholeRule("add sp, {x:imm}; add sp, {y:imm}",         "add sp, {x+y}",                  2, 4),
+        new PeepholeRule("ld e, {x:byte}; ld d, {y:byte}",           "ld de, ({y} << 8) + {x}",        1, 1),
+        new PeepholeRule("ld e, {x:!a}; {i:!e}; cp e",               "{i}; cp {x}",                    1, 1, true),
+        new PeepholeRule("ld e, {x:!a}; {i:!e}; sub e",              "{i}; sub {x}",                   1, 1, true),
+        new PeepholeRule("ld e, {x:!a}; {i:!e}; add e",              "{i}; add {x}",                   1, 1, true),
+        //"Optimizing" a away only leads to problems and is of no help
+        new PeepholeRule("ld c, {x:!a}; {i:!c}; cp c",               "{i}; cp {x}",                    1, 1, true),
+    };
+    
+    private static final Map<Opcode, List<PeepholeRule>> RULES_BY_OPCODE = new EnumMap<Opcode, List<PeepholeRule>>(Opcode.class);
+    private static final int MAX_RULE_LENGTH;
+    
+    static
+    {
+        int maxLength = 0;
+        for(PeepholeRule rule : RULES)
+        {
+            List<PeepholeRule> rules = RULES_BY_OPCODE.get(rule.getFirstOpcode());
+            if(rules == null)
+            {
+                rules = new ArrayList<PeepholeRule>();
+                RULES_BY_OPCODE.put(rule.getFirstOpcode(), rules);
+            }
+            rules.add(rule);
+            maxLength = Math.max(maxLength, rule.getLength());
+        }
+        MAX_RULE_LENGTH = maxLength;
+    }
     
-    private int cyclesSaved;
-    private int bytesSaved;
+    private InstructionList code;
+    private OptimizerStats stats;
     
     /**
      * Constructor
      * 
      * @param code The output of the CodeGenerator
+     * @param stats Every applied rule is counted in here
      */
-    public Optimizer(List<String> code)
+    public Optimizer(InstructionList code, OptimizerStats stats)
     {
         this.code = code;
+        this.stats = stats;
     }
     
     /**
-     * The optimizing method of the optimizer optimizes the unoptimized code into optimized code
+     * The optimizing method of the optimizer optimizes the unoptimized code into optimized code<br>
+     * Every instruction is checked once, afterwards only the surroundings of replaced instructions are checked again
      */
     public void optimize()
     {
-        Logger.getInstance().log(Logger.FINE, "Starting optimizer pass...");
+        Logger.getInstance().log(Logger.FINE, "Starting optimizer...");
+        long startTime = System.nanoTime();
         
-        i = 0;
-        cyclesSaved = 0;
-        bytesSaved = 0;
+        //The worklist is used as a stack, so the instruction on top is always the first one in the code
+        Deque<Instruction> worklist = new ArrayDeque<Instruction>();
+        Set<Instruction> queued = new HashSet<Instruction>();
+        List<Instruction> all = new ArrayList<Instruction>(code.size());
+        for(Instruction ins : code)
+        {
+            all.add(ins);
+        }
+        Collections.reverse(all);
+        for(Instruction ins : all)
+        {
+            worklist.push(ins);
+            queued.add(ins);
+        }
         
-        while(i < code.size())
-        {   
-            if(code.get(i).equals("cp 0\n"))
-            {
-                code.set(i, "and a\n");
-                //Saves 1 byte, 1 cycle
-                bytesSaved++;
-                cyclesSaved++;
-            }
-            else if(code.get(i).equals("ld a, 0\n"))
-            {
-                code.set(i, "xor a\n");
-                //Saves 1 byte, 1 cycle
-                bytesSaved++;
-                cyclesSaved++;
-            }
-            else if(code.get(i).equals("sub 1\n"))
+        while(!worklist.isEmpty())
+        {
+            Instruction ins = worklist.pop();
+            queued.remove(ins);
+            if(!code.contains(ins))
             {
-                code.set(i, "dec a\n");
-                //Saves 1 byte, 1 cycle
-                bytesSaved++;
-                cyclesSaved++;
+                continue;
             }
-            else if(code.get(i).equals("add 1\n"))
-            {
-                code.set(i, "inc a\n");
-                //Saves 1 byte, 1 cycle
-                bytesSaved++;
-                cyclesSaved++;
-            }
-            else if(code.get(i).equals("add sp, 0\n"))
-            {
-                code.remove(i);
-                //Saves 4 bytes, 2 cycles
-                bytesSaved += 4;
-                cyclesSaved += 2;
-            }
-            else if(i + 1 < code.size())
+            
+            Instruction changed = optimizeAt(ins);
+            if(changed != null)
             {
-                if(code.get(i + 1).startsWith("ld a, [w"))
+                //Rules starting shortly before the change might match now
+                Instruction start = changed;
+                for(int i = 0; i < MAX_RULE_LENGTH && start != null; i++)
                 {
-                    String end = code.get(i + 1).substring(8).replace("]\n", "");
-                    if(code.get(i).equals("ld [w" + end + "], a\n"))
+                    if(queued.add(start))
                     {
-                        code.remove(i + 1);
-                        //Saves 3 bytes, 4 cycles
-                        bytesSaved += 3;
-                        cyclesSaved += 4;
-                    }
-                }
-                else if(code.get(i).startsWith("call ") && code.get(i + 1).equals("ret\n"))
-                {
-                    code.set(i, "jp " + code.get(i).substring(5));
-                    code.remove(i + 1);
-                    //Saves 1 byte, 6 cycles
-                    bytesSaved++;
-                    cyclesSaved += 6;
-                }
-                else if(code.get(i).equals("ld de, 0\n") && code.get(i + 1).equals("add hl, de\n"))
-                {
-                    code.remove(i);
-                    code.remove(i); //Only "i" and not "i + 1" since the list is shifted to the left when an element is deleted
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 4 bytes, 5 cycles
-                    bytesSaved += 4;
-                    cyclesSaved += 5;
-                }
-                else if(code.get(i).equals("ld de, 1\n") && code.get(i + 1).equals("add hl, de\n"))
-                {
-                    code.set(i, "inc hl\n");
-                    code.remove(i + 1);
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 3 bytes, 3 cycles
-                    bytesSaved += 3;
-                    cyclesSaved += 3;
-                }
-                else if(code.get(i).equals("ld c, a\n") && code.get(i + 1).equals("ld a, c\n"))
-                {
-                    code.remove(i);
-                    code.remove(i); //Only "i" and not "i + 1" since the list is shifted to the left when an element is deleted
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 2 bytes, 2 cycles
-                    bytesSaved += 2;
-                    cyclesSaved += 2;
-                }
-                else if(code.get(i).startsWith("ld e, ") && code.get(i + 1).equals("ld a, e\n"))
-                {
-                    code.set(i, "ld a, " + code.get(i).substring(6));
-                    code.remove(i + 1);
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 1 byte, 1 cycle
-                    bytesSaved++;
-                    cyclesSaved++;
-                }
-                else if(code.get(i).startsWith("ld c, ") && code.get(i + 1).equals("ld a, c\n"))
-                {
-                    code.set(i, "ld a, " + code.get(i).substring(6));
-                    code.remove(i + 1);
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 1 byte, 1 cycle
-                    bytesSaved++;
-                    cyclesSaved++;
-                }
-                else if(code.get(i).startsWith("add sp, ") && code.get(i + 1).startsWith("add sp, "))
-                {
-                    int value = Integer.parseInt(code.get(i).replace("\n", "").substring(8)) + Integer.parseInt(code.get(i + 1).replace("\n", "").substring(8));
-                    code.remove(i + 1);
-                    code.set(i, "add sp, " + value + "\n");
-                    i--; //Make sure that we don't skip any elements
-                    //Saves 2 bytes, 4 cycles
-                    bytesSaved += 2;
-                    cyclesSaved += 4;
-                }
-                else if(code.get(i).startsWith("ld e, ") && code.get(i + 1).startsWith("ld d, "))
-                {
-                    try
-                    {
-                        int a = Integer.parseInt(code.get(i).substring(6));
-                        int b = Integer.parseInt(code.get(i + 1).substring(6));
-                        
-                        code.set(i, "ld de, (" + b + " << 8) + " + a);
-                        code.remove(i + 1);
-                        i--; //Make sure that we don't skip any elements
-                        //Saves 1 byte, 1 cycle
-                        bytesSaved++;
-                        cyclesSaved++;
-                    }
-                    catch(Exception e)
-                    {
-                        //Not numbers, so we don't apply this optimization
-                    }
-                }
-                else if(i + 2 < code.size())
-                {
-                    if(code.get(i).startsWith("ld e, ") && code.get(i + 2).endsWith(" e\n"))
-                    {
-                        boolean found = true;
-                        
-                        if(code.get(i + 2).equals("cp e\n"))
-                        {
-                            code.set(i + 2, "cp " + code.get(i).substring(6));
-                        }
-                        else if(code.get(i + 2).equals("sub e\n"))
-                        {
-                            code.set(i + 2, "sub " + code.get(i).substring(6));
-                        }
-                        else if(code.get(i + 2).equals("add e\n"))
-                        {
-                            code.set(i + 2, "add " + code.get(i).substring(6));
-                        }
-                        else
-                        {
-                            found = false;
-                        }
-                        
-                        if(found)
-                        {
-                            code.remove(i);
-                            i--;
-                            //Saves 1 byte, 1 cycle
-                            bytesSaved++;
-                            cyclesSaved++;
-                        }
-                    }
-                    
-                    if(code.get(i).startsWith("ld c, ") && code.get(i + 2).equals("cp c\n"))
-                    {
-                        //"Optimizing" a away only leads to problems and is of no help
-                        if(!code.get(i).substring(6).replace("\n", "").equals("a"))
-                        {
-                            code.set(i + 2, "cp " + code.get(i).substring(6));
-                            code.remove(i);
-                            i--; //Make sure that we don't skip any elements
-                            //Saves 1 byte, 1 cycle
-                            bytesSaved++;
-                            cyclesSaved++;
-                        }
-                    }
-                    else if(i + 3 < code.size())
-                    {
-                        if(code.get(i).equals("ld c, a\n") && code.get(i + 1).equals("ld e, 1\n") &&
-                                code.get(i + 2).equals("ld a, c\n"))
-                        {
-                            if(code.get(i + 3).equals("add e\n"))
-                            {
-                                code.set(i, "inc a\n");
-                            }
-                            else if(code.get(i + 3).equals("sub e\n"))
-                            {
-                                code.set(i, "dec a\n");
-                            }
-                            code.remove(i + 3);
-                            code.remove(i + 2);
-                            code.remove(i + 1);
-                            //Saves 5 bytes, 5 cycles
-                            bytesSaved += 5;
-                            cyclesSaved += 5;
-                        }
+                        worklist.push(start);
                     }
+                    start = start.getPrevious();
                 }
             }
-            
-            i++;
         }
         
-        Logger.getInstance().log(Logger.FINE, "Optimizer pass saved " + bytesSaved + " bytes and " + cyclesSaved + " cycles.");
+        stats.recordPassTime("peephole", System.nanoTime() - startTime);
+        
+        for(Map.Entry<String, OptimizerStats.Counter> entry : stats.getRuleTotals().entrySet())
+        {
+            Logger.getInstance().log(Logger.FINE, "Optimizer rule \"" + entry.getKey() + "\" applied " + entry.getValue().getHits() + " times.");
+        }
+        OptimizerStats.Counter total = stats.getTotal();
+        Logger.getInstance().log(Logger.FINE, "Optimizer applied " + total.getHits() + " optimizations, saving " + total.getBytesSaved()
+                + " bytes and " + total.getCyclesSaved() + " cycles.");
+    }
+    
+    /**
+     * Tries all rules starting with the opcode of the given instruction and applies the first matching one
+     * 
+     * @param ins The instruction
+     * @return The first instruction of the replacement (or the one following the removed code), null if no rule matched
+     */
+    private Instruction optimizeAt(Instruction ins)
+    {
+        List<PeepholeRule> rules = RULES_BY_OPCODE.get(ins.getOpcode());
+        if(rules == null)
+        {
+            return null;
+        }
+        
+        for(PeepholeRule rule : rules)
+        {
+            Map<String, Object> bindings = rule.match(ins);
+            if(bindings != null)
+            {
+                stats.record(rule, ins.getFunction());
+                Instruction result = rule.apply(code, ins, bindings);
+                //If everything up to the end of the code was removed, continue with the last instruction
+                return result != null ? result : code.getLast();
+            }
+        }
+        return null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the optimizer did to one file: how often every rule matched in every function and how long each pass took
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class OptimizerStats
+{
+    public static final String NO_FUNCTION = "(outside of functions)";
+    
+    private String fileName;
+    private Map<String, Map<String, Counter>> functions; //<function name> -> <rule name> -> counter, in order of the first hit
+    private Map<String, Long> passTimes; //<pass name> -> nanoseconds
+    
+    /**
+     * Constructor
+     * 
+     * @param fileName The name of the file (without the .gbj ending)
+     */
+    public OptimizerStats(String fileName)
+    {
+        this.fileName = fileName;
+        this.functions = new LinkedHashMap<String, Map<String, Counter>>();
+        this.passTimes = new LinkedHashMap<String, Long>();
+    }
+    
+    /**
+     * Counts one application of a rule
+     * 
+     * @param rule The rule
+     * @param function The function the replaced code belongs to, null if it is outside of all functions
+     */
+    public void record(PeepholeRule rule, String function)
+    {
+        String key = function == null ? NO_FUNCTION : function;
+        Map<String, Counter> rules = functions.get(key);
+        if(rules == null)
+        {
+            rules = new LinkedHashMap<String, Counter>();
+            functions.put(key, rules);
+        }
+        Counter counter = rules.get(rule.getName());
+        if(counter == null)
+        {
+            counter = new Counter();
+            rules.put(rule.getName(), counter);
+        }
+        counter.add(1, rule.getBytesSaved(), rule.getCyclesSaved());
+    }
+    
+    /**
+     * @param pass The name of the pass
+     * @param nanos How long the pass took
+     */
+    public void recordPassTime(String pass, long nanos)
+    {
+        Long time = passTimes.get(pass);
+        passTimes.put(pass, (time == null ? 0 : time) + nanos);
+    }
+    
+    public String getFileName()
+    {
+        return fileName;
+    }
+    
+    /**
+     * @return Function name -> rule name -> counter
+     */
+    public Map<String, Map<String, Counter>> getFunctions()
+    {
+        return functions;
+    }
+    
+    /**
+     * @return Rule name -> counter, summed up over all functions
+     */
+    public Map<String, Counter> getRuleTotals()
+    {
+        Map<String, Counter> totals = new LinkedHashMap<String, Counter>();
+        for(Map<String, Counter> rules : functions.values())
+        {
+            addAll(totals, rules);
+        }
+        return totals;
+    }
+    
+    /**
+     * @return The sum of all rule applications in this file
+     */
+    public Counter getTotal()
+    {
+        Counter total = new Counter();
+        for(Map<String, Counter> rules : functions.values())
+        {
+            for(Counter c : rules.values())
+            {
+                total.add(c);
+            }
+        }
+        return total;
+    }
+    
+    /**
+     * @return Pass name -> nanoseconds
+     */
+    public Map<String, Long> getPassTimes()
+    {
+        return passTimes;
+    }
+    
+    /**
+     * Adds counters to a map of counters by name
+     * 
+     * @param totals The map to add into
+     * @param counters The counters to add
+     */
+    public static void addAll(Map<String, Counter> totals, Map<String, Counter> counters)
+    {
+        for(Map.Entry<String, Counter> entry : counters.entrySet())
+        {
+            Counter total = totals.get(entry.getKey());
+            if(total == null)
+            {
+                total = new Counter();
+                totals.put(entry.getKey(), total);
+            }
+            total.add(entry.getValue());
+        }
+    }
+    
+    /**
+     * Number of applications and savings of a rule (or of several rules summed up)
+     */
+    public static class Counter
+    {
+        private int hits;
+        private int bytesSaved;
+        private int cyclesSaved;
+        
+        public void add(int hits, int bytesSaved, int cyclesSaved)
+        {
+            this.hits += hits;
+            this.bytesSaved += bytesSaved;
+            this.cyclesSaved += cyclesSaved;
+        }
+        
+        public void add(Counter other)
+        {
+            add(other.hits, other.bytesSaved, other.cyclesSaved);
+        }
+        
+        public int getHits()
+        {
+            return hits;
+        }
+        
+        public int getBytesSaved()
+        {
+            return bytesSaved;
+        }
+        
+        public int getCyclesSaved()
+        {
+            return cyclesSaved;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,779 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Codegen;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A single optimization of the peephole optimizer: a sequence of instructions and what to replace it with<br>
+ * Patterns and replacements are written like assembly, instructions are separated by ";"<br>
+ * Wildcards:<br>
+ * {x} - any operand, all wildcards with the same name have to match the same text<br>
+ * {x:imm} - a number<br>
+ * {x:byte} - a number from 0 to 255<br>
+ * {x:!a} - any operand except "a"<br>
+ * A wildcard can be surrounded by text, e.g. [w{x}]<br>
+ * A wildcard on its own (e.g. {i}) matches a whole instruction, {i:!e} one that doesn't use register e or jump anywhere<br>
+ * It never matches an instruction that overwrites something an operand wildcard matched before it reads (a register or memory)<br>
+ * Replacements can use the wildcards of the pattern, {x+y} is the sum of two numbers<br>
+ * A rule whose instructions write the Z or C flag only matches if no instruction after it reads them before they're overwritten,
+ * unless it is marked as setting them exactly like the pattern does
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class PeepholeRule
+{
+    private String name;
+    private Line[] pattern;
+    private Line[] replacement;
+    private int bytesSaved;
+    private int cyclesSaved;
+    private boolean changesFlags;
+    
+    private static final int FLAG_Z = 1;
+    private static final int FLAG_C = 2;
+    
+    /**
+     * Constructor for a rule that may change the flags
+     * 
+     * @param pattern The instructions to look for
+     * @param replacement The instructions to replace them with, empty to remove them
+     * @param bytesSaved How many bytes the replacement saves
+     * @param cyclesSaved How many cycles the replacement saves
+     */
+    public PeepholeRule(String pattern, String replacement, int bytesSaved, int cyclesSaved)
+    {
+        this(pattern, replacement, bytesSaved, cyclesSaved, false);
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param pattern The instructions to look for
+     * @param replacement The instructions to replace them with, empty to remove them
+     * @param bytesSaved How many bytes the replacement saves
+     * @param cyclesSaved How many cycles the replacement saves
+     * @param sameFlags If the replacement leaves the Z and C flags exactly like the pattern (e.g. "cp 0" and "and a")
+     */
+    public PeepholeRule(String pattern, String replacement, int bytesSaved, int cyclesSaved, boolean sameFlags)
+    {
+        this.name = pattern + " -> " + (replacement.isEmpty() ? "(removed)" : replacement);
+        this.pattern = parseLines(pattern);
+        this.replacement = parseLines(replacement);
+        this.bytesSaved = bytesSaved;
+        this.cyclesSaved = cyclesSaved;
+        this.changesFlags = !sameFlags && (writesFlags(this.pattern) || writesFlags(this.replacement));
+        
+        if(this.pattern.length == 0 || this.pattern[0].opcode == null)
+        {
+            throw new IllegalArgumentException("Peephole rule has to start with an instruction: " + name);
+        }
+    }
+    
+    private static Line[] parseLines(String text)
+    {
+        List<Line> lines = new ArrayList<Line>();
+        for(String s : text.split(";"))
+        {
+            if(!s.trim().isEmpty())
+            {
+                lines.add(new Line(s.trim()));
+            }
+        }
+        return lines.toArray(new Line[lines.size()]);
+    }
+    
+    /**
+     * Whole-instruction wildcards don't count, they're put back unchanged
+     * 
+     * @return If one of the lines writes the Z or C flag
+     */
+    private static boolean writesFlags(Line[] lines)
+    {
+        for(Line line : lines)
+        {
+            if(line.opcode != null)
+            {
+                String[] ops = new String[line.operands.length];
+                for(int i = 0; i < ops.length; i++)
+                {
+                    ops[i] = line.operands[i].text;
+                }
+                if(getWrittenFlags(line.opcode, ops) != 0)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks if the rule matches the instructions starting at the given one
+     * 
+     * @param start The first instruction
+     * @return The wildcard values or null if the rule doesn't match
+     */
+    public Map<String, Object> match(Instruction start)
+    {
+        Map<String, Object> bindings = new HashMap<String, Object>();
+        Instruction ins = start;
+        for(Line line : pattern)
+        {
+            if(ins == null || !line.matches(ins, bindings))
+            {
+                return null;
+            }
+            ins = ins.getNext();
+        }
+        if(changesFlags && areFlagsLive(ins))
+        {
+            return null;
+        }
+        return bindings;
+    }
+    
+    /**
+     * Follows the code from the given instruction until both the Z and the C flag are overwritten<br>
+     * Jumps and calls end the search since it's unknown what their target reads,
+     * returns don't (flags are never passed back to the caller)
+     * 
+     * @param ins The first instruction after the match
+     * @return If an instruction might read the flags left by the instructions before it
+     */
+    private static boolean areFlagsLive(Instruction ins)
+    {
+        int overwritten = 0;
+        for(; ins != null; ins = ins.getNext())
+        {
+            Opcode opcode = ins.getOpcode();
+            if(opcode == Opcode.LABEL)
+            {
+                continue;
+            }
+            if(opcode == Opcode.DIRECTIVE || readsFlags(ins))
+            {
+                return true;
+            }
+            switch(opcode)
+            {
+                case RET:
+                case RETI:
+                {
+                    return false;
+                }
+                case JP:
+                case JR:
+                {
+                    //Jumps forward are followed (loops would never end), the target of all others is unknown
+                    Instruction target = findLabelAfter(ins, ins.getOperand(0).getText());
+                    if(target == null)
+                    {
+                        return true;
+                    }
+                    ins = target;
+                    continue;
+                }
+                case CALL:
+                case RST:
+                {
+                    return true;
+                }
+            }
+            
+            String[] ops = new String[ins.getNumOperands()];
+            for(int i = 0; i < ops.length; i++)
+            {
+                ops[i] = ins.getOperand(i).getText();
+            }
+            overwritten |= getWrittenFlags(opcode, ops);
+            if(overwritten == (FLAG_Z | FLAG_C))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @param ins The instruction to start searching after
+     * @param name The name of the label
+     * @return The label or null if it doesn't come after the instruction
+     */
+    private static Instruction findLabelAfter(Instruction ins, String name)
+    {
+        for(ins = ins.getNext(); ins != null; ins = ins.getNext())
+        {
+            if(ins.getOpcode() == Opcode.LABEL && ins.getLabel().equals(name))
+            {
+                return ins;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return If the instruction reads the Z or C flag
+     */
+    private static boolean readsFlags(Instruction ins)
+    {
+        switch(ins.getOpcode())
+        {
+            case ADC:
+            case SBC:
+            case RL:
+            case RR:
+            case RLA:
+            case RRA:
+            case CCF:
+            case DAA:
+            {
+                return true;
+            }
+            case PUSH:
+            {
+                return ins.getOperand(0).getText().equalsIgnoreCase("af");
+            }
+        }
+        return ins.getOpcode().isConditional() && ins.getNumOperands() > 0 && ins.getOperand(0).getKind() == Operand.Kind.CONDITION;
+    }
+    
+    /**
+     * @param opcode The instruction
+     * @param operands The operands, as written in the assembly file
+     * @return The flags (FLAG_Z, FLAG_C) the instruction writes
+     */
+    private static int getWrittenFlags(Opcode opcode, String[] operands)
+    {
+        String first = operands.length > 0 ? operands[0].toLowerCase() : "";
+        switch(opcode)
+        {
+            case ADD:
+            {
+                //16 bit additions to hl leave Z alone
+                return operands.length == 2 && first.equals("hl") ? FLAG_C : FLAG_Z | FLAG_C;
+            }
+            case ADC:
+            case SUB:
+            case SBC:
+            case CP:
+            case AND:
+            case OR:
+            case XOR:
+            case DAA:
+            case RL:
+            case RR:
+            case RLC:
+            case RRC:
+            case SLA:
+            case SRA:
+            case SRL:
+            case SWAP:
+            case RLA:
+            case RRA:
+            case RLCA:
+            case RRCA:
+            {
+                return FLAG_Z | FLAG_C;
+            }
+            case INC:
+            case DEC:
+            {
+                //Only the 8 bit versions write flags
+                boolean registerPair = first.equals("bc") || first.equals("de") || first.equals("hl") || first.equals("sp");
+                return registerPair ? 0 : FLAG_Z;
+            }
+            case BIT:
+            {
+                return FLAG_Z;
+            }
+            case SCF:
+            case CCF:
+            {
+                return FLAG_C;
+            }
+            case POP:
+            {
+                return first.equals("af") ? FLAG_Z | FLAG_C : 0;
+            }
+            case LD:
+            {
+                //ld hl, sp + n
+                return first.equals("hl") && operands[1].toLowerCase().replace(" ", "").startsWith("sp+") ? FLAG_Z | FLAG_C : 0;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Replaces the matched instructions
+     * 
+     * @param code The list containing the instructions
+     * @param start The first matched instruction
+     * @param bindings The wildcard values returned by match()
+     * @return The first instruction of the replacement, or the one after the removed instructions if there is no replacement
+     */
+    public Instruction apply(InstructionList code, Instruction start, Map<String, Object> bindings)
+    {
+        Instruction position = start.getPrevious();
+        List<Instruction> matched = new ArrayList<Instruction>();
+        Instruction ins = start;
+        for(int i = 0; i < pattern.length; i++)
+        {
+            matched.add(ins);
+            ins = ins.getNext();
+        }
+        Instruction after = ins;
+        
+        for(Instruction m : matched)
+        {
+            code.remove(m);
+        }
+        
+        Instruction first = null;
+        for(int i = 0; i < replacement.length; i++)
+        {
+            Instruction result = replacement[i].build(bindings);
+            if(result.getLine() == -1)
+            {
+                Instruction origin = matched.get(Math.min(i, matched.size() - 1));
+                result.setLine(origin.getLine());
+                result.setFunction(origin.getFunction());
+            }
+            code.insertAfter(position, result);
+            position = result;
+            if(first == null)
+            {
+                first = result;
+            }
+        }
+        return first != null ? first : after;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    /**
+     * @return The opcode every match starts with
+     */
+    public Opcode getFirstOpcode()
+    {
+        return pattern[0].opcode;
+    }
+    
+    /**
+     * @return The number of instructions the pattern spans
+     */
+    public int getLength()
+    {
+        return pattern.length;
+    }
+    
+    public int getBytesSaved()
+    {
+        return bytesSaved;
+    }
+    
+    public int getCyclesSaved()
+    {
+        return cyclesSaved;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+    
+    /**
+     * One line of a pattern or replacement: either an instruction with operand patterns or a whole-instruction wildcard
+     */
+    private static class Line
+    {
+        private Opcode opcode; //Null for whole-instruction wildcards
+        private OperandPattern[] operands;
+        private String wildcard;
+        private String excluded; //Register a whole-instruction wildcard may not use
+        
+        public Line(String text)
+        {
+            if(text.startsWith("{") && text.endsWith("}"))
+            {
+                String[] parts = text.substring(1, text.length() - 1).split(":");
+                wildcard = parts[0];
+                excluded = parts.length > 1 ? parts[1].substring(1) : null;
+                return;
+            }
+            
+            String[] parts = text.split("\\s+", 2);
+            opcode = Opcode.fromMnemonic(parts[0]);
+            if(opcode == null)
+            {
+                throw new IllegalArgumentException("Unknown instruction in peephole rule: " + text);
+            }
+            String[] ops = parts.length > 1 ? parts[1].split(",") : new String[0];
+            operands = new OperandPattern[ops.length];
+            for(int i = 0; i < ops.length; i++)
+            {
+                operands[i] = new OperandPattern(ops[i].trim());
+            }
+        }
+        
+        public boolean matches(Instruction ins, Map<String, Object> bindings)
+        {
+            if(opcode == null)
+            {
+                if(!ins.getOpcode().isInstruction() || (excluded != null && !isIndependent(ins, excluded)) || overwritesBindings(ins, bindings))
+                {
+                    return false;
+                }
+                bindings.put(wildcard, ins);
+                return true;
+            }
+            
+            if(ins.getOpcode() != opcode || ins.getNumOperands() != operands.length)
+            {
+                return false;
+            }
+            for(int i = 0; i < operands.length; i++)
+            {
+                if(!operands[i].matches(ins.getOperand(i), bindings))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * @return If the instruction neither jumps anywhere nor uses the register (or a register pair containing it)
+         */
+        private static boolean isIndependent(Instruction ins, String register)
+        {
+            switch(ins.getOpcode())
+            {
+                case CALL:
+                case JP:
+                case JR:
+                case RET:
+                case RETI:
+                case RST:
+                {
+                    return false;
+                }
+            }
+            for(int i = 0; i < ins.getNumOperands(); i++)
+            {
+                Operand op = ins.getOperand(i);
+                if(op.getKind() == Operand.Kind.REGISTER && op.getText().contains(register))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * Moving an operand past such an instruction would change its value, e.g. "ld e, a; ld a, c; cp e" is not "ld a, c; cp a"
+         * 
+         * @return If the instruction writes a register or memory read by one of the operand wildcards bound so far
+         */
+        private static boolean overwritesBindings(Instruction ins, Map<String, Object> bindings)
+        {
+            String written = getWrittenRegisters(ins);
+            boolean writesMemory = writesMemory(ins);
+            for(Object bound : bindings.values())
+            {
+                if(!(bound instanceof Operand))
+                {
+                    continue;
+                }
+                Operand op = (Operand) bound;
+                String read = getReadRegisters(op);
+                for(int i = 0; i < read.length(); i++)
+                {
+                    if(written.indexOf(read.charAt(i)) != -1)
+                    {
+                        return true;
+                    }
+                }
+                if(writesMemory && op.getKind() == Operand.Kind.MEMORY)
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * @return The registers the instruction writes, written one after another (e.g. "hla")
+         */
+        private static String getWrittenRegisters(Instruction ins)
+        {
+            StringBuilder sb = new StringBuilder();
+            Operand first = ins.getNumOperands() > 0 ? ins.getOperand(0) : null;
+            switch(ins.getOpcode())
+            {
+                case LD:
+                case LDH:
+                case POP:
+                case INC:
+                case DEC:
+                case RL:
+                case RR:
+                case RLC:
+                case RRC:
+                case SLA:
+                case SRA:
+                case SRL:
+                case SWAP:
+                {
+                    if(first.getKind() == Operand.Kind.REGISTER)
+                    {
+                        sb.append(first.getText().toLowerCase());
+                    }
+                    break;
+                }
+                case RES:
+                case SET:
+                {
+                    //The register is the second operand, the first one is the bit
+                    Operand target = ins.getOperand(ins.getNumOperands() - 1);
+                    if(target.getKind() == Operand.Kind.REGISTER)
+                    {
+                        sb.append(target.getText().toLowerCase());
+                    }
+                    break;
+                }
+                case LDI:
+                case LDD:
+                {
+                    sb.append("hl");
+                    if(first.getKind() == Operand.Kind.REGISTER)
+                    {
+                        sb.append(first.getText().toLowerCase());
+                    }
+                    break;
+                }
+                case ADD:
+                case ADC:
+                case SUB:
+                case SBC:
+                case AND:
+                case OR:
+                case XOR:
+                {
+                    sb.append(ins.getNumOperands() == 2 ? first.getText().toLowerCase() : "a");
+                    break;
+                }
+                case CPL:
+                case DAA:
+                case RLA:
+                case RRA:
+                case RLCA:
+                case RRCA:
+                {
+                    sb.append("a");
+                    break;
+                }
+            }
+            if(ins.getOpcode() == Opcode.PUSH || ins.getOpcode() == Opcode.POP)
+            {
+                sb.append("sp");
+            }
+            for(int i = 0; i < ins.getNumOperands(); i++)
+            {
+                String text = ins.getOperand(i).getText().toLowerCase();
+                if(text.equals("[hl+]") || text.equals("[hl-]") || text.equals("[hli]") || text.equals("[hld]"))
+                {
+                    sb.append("hl");
+                }
+            }
+            return sb.toString();
+        }
+        
+        /**
+         * @return If the instruction writes to memory
+         */
+        private static boolean writesMemory(Instruction ins)
+        {
+            switch(ins.getOpcode())
+            {
+                case LD:
+                case LDH:
+                case LDI:
+                case LDD:
+                case INC:
+                case DEC:
+                case RES:
+                case SET:
+                case RL:
+                case RR:
+                case RLC:
+                case RRC:
+                case SLA:
+                case SRA:
+                case SRL:
+                case SWAP:
+                {
+                    Operand target = ins.getOpcode() == Opcode.RES || ins.getOpcode() == Opcode.SET ? ins.getOperand(ins.getNumOperands() - 1) : ins.getOperand(0);
+                    return target.getKind() == Operand.Kind.MEMORY;
+                }
+                case PUSH:
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * @return The registers (as letters) an operand reads: the register itself or the ones used for the address
+         */
+        private static String getReadRegisters(Operand op)
+        {
+            String text = op.getText().toLowerCase();
+            if(op.getKind() == Operand.Kind.REGISTER)
+            {
+                return text;
+            }
+            if(op.getKind() == Operand.Kind.MEMORY)
+            {
+                StringBuilder sb = new StringBuilder();
+                for(String token : text.substring(1, text.length() - 1).split("[^a-z0-9_]+"))
+                {
+                    if(new Operand(token, false).getKind() == Operand.Kind.REGISTER)
+                    {
+                        sb.append(token);
+                    }
+                }
+                return sb.toString();
+            }
+            return "";
+        }
+        
+        public Instruction build(Map<String, Object> bindings)
+        {
+            if(opcode == null)
+            {
+                return (Instruction) bindings.get(wildcard);
+            }
+            
+            String[] ops = new String[operands.length];
+            for(int i = 0; i < operands.length; i++)
+            {
+                ops[i] = operands[i].build(bindings);
+            }
+            return new Instruction(opcode, ops);
+        }
+    }
+    
+    /**
+     * The pattern for a single operand: literal text, optionally with one wildcard inside
+     */
+    private static class OperandPattern
+    {
+        private String text;
+        private String prefix;
+        private String suffix;
+        private String wildcard; //Null for literal operands
+        private String constraint;
+        
+        public OperandPattern(String text)
+        {
+            this.text = text;
+            int start = text.indexOf('{');
+            int end = text.indexOf('}');
+            if(start != -1 && end > start)
+            {
+                prefix = text.substring(0, start);
+                suffix = text.substring(end + 1);
+                String[] parts = text.substring(start + 1, end).split(":");
+                wildcard = parts[0];
+                constraint = parts.length > 1 ? parts[1] : null;
+            }
+        }
+        
+        public boolean matches(Operand op, Map<String, Object> bindings)
+        {
+            String s = op.getText();
+            if(wildcard == null)
+            {
+                return s.equals(text);
+            }
+            if(s.length() < prefix.length() + suffix.length() || !s.startsWith(prefix) || !s.endsWith(suffix))
+            {
+                return false;
+            }
+            
+            String value = s.substring(prefix.length(), s.length() - suffix.length());
+            if(constraint != null)
+            {
+                if(constraint.equals("imm") && !op.isImmediate())
+                {
+                    return false;
+                }
+                else if(constraint.equals("byte") && !(op.isImmediate() && op.getValue() >= 0 && op.getValue() <= 255))
+                {
+                    return false;
+                }
+                else if(constraint.startsWith("!") && value.equals(constraint.substring(1)))
+                {
+                    return false;
+                }
+            }
+            
+            Object bound = bindings.get(wildcard);
+            if(bound != null)
+            {
+                return ((Operand) bound).getText().equals(value);
+            }
+            bindings.put(wildcard, new Operand(value, false));
+            return true;
+        }
+        
+        public String build(Map<String, Object> bindings)
+        {
+            StringBuilder sb = new StringBuilder();
+            int pos = 0;
+            while(true)
+            {
+                int start = text.indexOf('{', pos);
+                if(start == -1)
+                {
+                    break;
+                }
+                int end = text.indexOf('}', start);
+                sb.append(text, pos, start);
+                
+                String expr = text.substring(start + 1, end);
+                if(expr.contains("+"))
+                {
+                    int sum = 0;
+                    for(String name : expr.split("\\+"))
+                    {
+                        sum += ((Operand) bindings.get(name.trim())).getValue();
+                    }
+                    sb.append(sum);
+                }
+                else
+                {
+                    sb.append(((Operand) bindings.get(expr)).getText());
+                }
+                pos = end + 1;
+            }
+            sb.append(text.substring(pos));
+            return sb.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -9,9 +9,8 @@ package de.jc.gbjc.main.Codegen;
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
 import de.jc.gbjc.main.Codegen.CodeGenerator.VariableType;
-import de.jc.gbjc.main.Constants;
+import de.jc.gbjc.main.Util.Interner;
 import de.jc.gbjc.main.VarHelper;
-import java.util.List;
 
 /**
  * Generates calls to standard library functions
@@ -29,17 +28,17 @@ public class StdlibCallGenerator
      * a and hl may be trashed
      * 
      * @param tree The AST we're generating the code from
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param reg1 "b", "d", "h"
      * @param reg2 "c", "e", "l", "a"
      * @param bitNum The bitNum of the variable
      * @param codegen The CodeGenerator instance
      */
-    private void generateRegisterLoad(AbstractSyntaxTree tree, List<String> code, String reg1, String reg2, int bitNum, CodeGenerator codegen)
+    private void generateRegisterLoad(AbstractSyntaxTree tree, InstructionList code, String reg1, String reg2, int bitNum, CodeGenerator codegen)
     {
         if(tree.getType() == TreeNodeType.CONSTANT)
         {
-            int constant = Integer.parseInt(tree.getContent());
+            int constant = tree.getValue();
 
             //Check for out of bounds
             if((bitNum == 8 && (constant > 255 || constant < -128)) || (bitNum == 16 && (constant > 65535 || constant < -32768)))
@@ -49,24 +48,25 @@ public class StdlibCallGenerator
 
             if(bitNum == 8)
             {
-                code.add("ld " + reg2 + ", " + constant + "\n");
+                code.add(Opcode.LD, reg2, String.valueOf(constant));
             }
             else if(bitNum == 16)
             {
-                code.add("ld " + reg1 + reg2 + ", " + constant + "\n");
+                code.add(Opcode.LD, reg1 + reg2, String.valueOf(constant));
             }
         }
         else if(tree.getType() == TreeNodeType.VARIABLE)
         {
-            if(Constants.getContants().containsKey(tree.getContent()))
+            String constant = Interner.getInstance().getConstant(tree.getSymbol());
+            if(constant != null)
             {
                 if(bitNum == 8)
                 {
-                    code.add("ld " + reg2 + ", " + Constants.getContants().get(tree.getContent()) + "\n");
+                    code.add(Opcode.LD, reg2, constant);
                 }
                 else
                 {
-                    code.add("ld " + reg1 + reg2 + ", " + Constants.getContants().get(tree.getContent()) + "\n");
+                    code.add(Opcode.LD, reg1 + reg2, constant);
                 }
                 return;
             }
@@ -85,21 +85,21 @@ public class StdlibCallGenerator
             {
                 if(bitNum == 8 && bitNum2 == 8)
                 {
-                    code.add("ld hl, sp + " + codegen.stackOffset + "\n");
-                    code.add("ld " + reg2 + ", [hl]\n");
+                    code.add(Opcode.LD, "hl", "sp + " + codegen.stackOffset);
+                    code.add(Opcode.LD, reg2, "[hl]");
                 }
                 else if(bitNum == 16 && bitNum2 == 16)
                 {
-                    code.add("ld hl, sp + " + codegen.stackOffset + "\n");
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld " + reg1 + ", [hl]\n");
-                    code.add("ld " + reg2 + ", a\n");
+                    code.add(Opcode.LD, "hl", "sp + " + codegen.stackOffset);
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, reg1, "[hl]");
+                    code.add(Opcode.LD, reg2, "a");
                 }
                 else if(bitNum == 16 && bitNum2 == 8)
                 {
-                    code.add("ld hl, sp + " + codegen.stackOffset + "\n");
-                    code.add("ld " + reg1 + ", [hl]\n");
-                    code.add("ld " + reg2 + ", 0\n");
+                    code.add(Opcode.LD, "hl", "sp + " + codegen.stackOffset);
+                    code.add(Opcode.LD, reg1, "[hl]");
+                    code.add(Opcode.LD, reg2, "0");
                 }
                 else
                 {
@@ -110,21 +110,21 @@ public class StdlibCallGenerator
             {
                 if(bitNum == 8 && bitNum2 == 8)
                 {
-                    code.add("ld a, [w" + tree.getContent() + "]\n");
-                    code.add("ld " + reg2 +", a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + "]");
+                    code.add(Opcode.LD, reg2, "a");
                 }
                 else if(bitNum == 16 && bitNum2 == 16)
                 {
-                    code.add("ld a, [w" + tree.getContent() + "]\n");
-                    code.add("ld " + reg2 + ", a\n");
-                    code.add("ld a, [w" + tree.getContent() + " + 1]\n");
-                    code.add("ld " + reg1 + ", a\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + "]");
+                    code.add(Opcode.LD, reg2, "a");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + " + 1]");
+                    code.add(Opcode.LD, reg1, "a");
                 }
                 else if(bitNum == 16 && bitNum2 == 8)
                 {
-                    code.add("ld a, [w" + tree.getContent() + "]\n");
-                    code.add("ld " + reg2 + ", a\n");
-                    code.add("ld " + reg1 + ", 0\n");
+                    code.add(Opcode.LD, "a", "[w" + tree.getContent() + "]");
+                    code.add(Opcode.LD, reg2, "a");
+                    code.add(Opcode.LD, reg1, "0");
                 }
                 else
                 {
@@ -134,24 +134,24 @@ public class StdlibCallGenerator
             else if(varType2 == VariableType.OBJECT)
             {
                 //Preserve de so we have 2 more regs to work with!
-                code.add("push de\n");
+                code.add(Opcode.PUSH, "de");
                 codegen.generateAddressForObjectVariable(code, tree.getContent(), 0);
-                code.add("pop de\n");
+                code.add(Opcode.POP, "de");
 
                 if(bitNum == 8 && bitNum2 == 8)
                 {
-                    code.add("ld " + reg2 + ", [hl]\n");
+                    code.add(Opcode.LD, reg2, "[hl]");
                 }
                 else if(bitNum == 16 && bitNum2 == 16)
                 {
-                    code.add("ld a, [hl+]\n");
-                    code.add("ld " + reg2 + ", a\n");
-                    code.add("ld " + reg1 + ", [hl]\n");
+                    code.add(Opcode.LD, "a", "[hl+]");
+                    code.add(Opcode.LD, reg2, "a");
+                    code.add(Opcode.LD, reg1, "[hl]");
                 }
                 else if(bitNum == 16 && bitNum2 == 8)
                 {
-                    code.add("ld " + reg2 + ", [hl]\n");
-                    code.add("ld " + reg1 + ", 0\n");
+                    code.add(Opcode.LD, reg2, "[hl]");
+                    code.add(Opcode.LD, reg1, "0");
                 }
                 else
                 {
@@ -163,55 +163,83 @@ public class StdlibCallGenerator
         {
             if(!reg2.equals("c"))
             {
-                code.add("push bc\n");
+                code.add(Opcode.PUSH, "bc");
             }
             //Method returns in c or bc
             VarHelper vh3 = codegen.doVariableAccess(tree, true);
             codegen.generateArrayAccess(code, tree, vh3.getBitNum(), true, false);
             if(!reg2.equals("c"))
             {
-                code.add("ld " + reg2 + ", c\n");
+                code.add(Opcode.LD, reg2, "c");
             }
             if(!reg1.equals("b") && bitNum == 16)
             {
-                code.add("ld " + reg1 + ", b\n");
+                code.add(Opcode.LD, reg1, "b");
             }
             if(!reg2.equals("c"))
             {
-                code.add("pop bc\n");
+                code.add(Opcode.POP, "bc");
             }
         }
         else if(tree.getType() == TreeNodeType.CALL || tree.getType() == TreeNodeType.OBJECT_CALL)
         {
             if(!reg2.equals("c"))
             {
-                code.add("push bc\n");
+                code.add(Opcode.PUSH, "bc");
             }
             //Method returns in c or bc
             codegen.generateMethodCall(code, tree, 0);
             if(!reg2.equals("c"))
             {
-                code.add("ld " + reg2 + ", c\n");
+                code.add(Opcode.LD, reg2, "c");
             }
             if(!reg1.equals("b") && bitNum == 16)
             {
-                code.add("ld " + reg1 + ", b\n");
+                code.add(Opcode.LD, reg1, "b");
             }
             if(!reg2.equals("c"))
             {
-                code.add("pop bc\n");
+                code.add(Opcode.POP, "bc");
+            }
+        }
+        else if(tree.getType() == TreeNodeType.OPERATION)
+        {
+            //Expressions use bc and de, which may hold other arguments already
+            //The result is carried past restoring them in a or hl
+            code.add(Opcode.PUSH, "bc");
+            code.add(Opcode.PUSH, "de");
+            int bitNum2 = codegen.generateExpression(code, tree, bitNum, 4);
+            if(bitNum == 8)
+            {
+                code.add(Opcode.LD, "a", "c");
+            }
+            else
+            {
+                code.add(Opcode.LD, "h", bitNum2 == 8 ? "0" : "b");
+                code.add(Opcode.LD, "l", "c");
+            }
+            code.add(Opcode.POP, "de");
+            code.add(Opcode.POP, "bc");
+            if(bitNum == 8 && !reg2.equals("a"))
+            {
+                code.add(Opcode.LD, reg2, "a");
+            }
+            else if(bitNum == 16 && !reg1.equals("h"))
+            {
+                code.add(Opcode.LD, reg1, "h");
+                code.add(Opcode.LD, reg2, "l");
             }
         }
         else if(tree.getType() == TreeNodeType.ASM_REFERENCE)
         {
-            code.add("ld " + reg1 + reg2 + ", " + tree.getContent() + "\n");
+            code.add(Opcode.LD, reg1 + reg2, tree.getContent());
         }
         else if(tree.getType() == TreeNodeType.STRING)
         {
-            code.add("ld " + reg1 + reg2 + ", _g" + Math.abs(tree.hashCode()) + "\n");
+            code.add(Opcode.LD, reg1 + reg2, "_g" + codegen.getLabelId(tree));
             //Put data into data part of file
-            codegen.getData().add("_g" + Math.abs(tree.hashCode()) + ":\n");
-            codegen.getData().add("DB \"" + tree.getContent() + "\", 0\n");
+            codegen.getData().addLabel("_g" + codegen.getLabelId(tree));
+            codegen.getData().addDirective("DB \"" + tree.getContent() + "\", 0");
         }
     }
     
@@ -220,24 +248,24 @@ public class StdlibCallGenerator
      * Calls without arguments require no special case and are thus handled normally
      * 
      * @param tree The AST we're generating the code from
-     * @param code The arraylist the generated code is written into
+     * @param code The instruction list the generated code is written into
      * @param codegen The CodeGenerator instance
      * @param mbcVariant The MBC variant the game uses
      * @return 
      */
-    public int tryGenerateStdlibCall(AbstractSyntaxTree tree, List<String> code, CodeGenerator codegen, int mbcVariant)
+    public int tryGenerateStdlibCall(AbstractSyntaxTree tree, InstructionList code, CodeGenerator codegen, int mbcVariant)
     {
         AbstractSyntaxTree args = tree.getChildren().get(0);
         
-        switch(tree.getContent())
+        switch(tree.getSymbol())
         {
             //Utils.asm
-            case "isButtonPressed":
+            case Interner.IS_BUTTON_PRESSED:
             {
                 if(args.getChildren().size() == 1)
                 {
                     generateRegisterLoad(args.getChildren().get(0), code, "", "c", 8, codegen);
-                    code.add("call isButtonPressed\n");
+                    code.add(Opcode.CALL, "isButtonPressed");
                 }
                 else
                 {
@@ -245,12 +273,12 @@ public class StdlibCallGenerator
                 }
                 return 8;
             }
-            case "wasButtonPressed":
+            case Interner.WAS_BUTTON_PRESSED:
             {
                 if(args.getChildren().size() == 1)
                 {
                     generateRegisterLoad(args.getChildren().get(0), code, "", "c", 8, codegen);
-                    code.add("call wasButtonPressed\n");
+                    code.add(Opcode.CALL, "wasButtonPressed");
                 }
                 else
                 {
@@ -259,7 +287,7 @@ public class StdlibCallGenerator
                 return 8;
             }
             //LCD.asm
-            case "loadPalettes":
+            case Interner.LOAD_PALETTES:
             {
                 if(args.getChildren().size() == 2)
                 {
@@ -267,7 +295,7 @@ public class StdlibCallGenerator
                     //Okay, the user COULD use a variable, but that makes rather little sense.
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
                     generateRegisterLoad(args.getChildren().get(1), code, "h", "l", 16, codegen);
-                    code.add("call loadPalettes\n");
+                    code.add(Opcode.CALL, "loadPalettes");
                 }
                 else
                 {
@@ -276,14 +304,14 @@ public class StdlibCallGenerator
                 return 0;
             }
             //ScreenPrinter.asm
-            case "print":
+            case Interner.PRINT:
             {
                 if(args.getChildren().size() == 3)
                 {
                     generateRegisterLoad(args.getChildren().get(0), code, "", "e", 8, codegen);
                     generateRegisterLoad(args.getChildren().get(1), code, "", "c", 8, codegen);
                     generateRegisterLoad(args.getChildren().get(2), code, "h", "l", 16, codegen);
-                    code.add("call print\n");
+                    code.add(Opcode.CALL, "print");
                 }
                 else
                 {
@@ -291,14 +319,14 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "printNumber":
+            case Interner.PRINT_NUMBER:
             {
                 if(args.getChildren().size() == 3)
                 {
                     generateRegisterLoad(args.getChildren().get(0), code, "", "c", 8, codegen);
                     generateRegisterLoad(args.getChildren().get(2), code, "", "d", 8, codegen);
                     generateRegisterLoad(args.getChildren().get(1), code, "", "l", 8, codegen);
-                    code.add("call printNumber\n");
+                    code.add(Opcode.CALL, "printNumber");
                 }
                 else
                 {
@@ -307,7 +335,7 @@ public class StdlibCallGenerator
                 return 0;
             }
             //Sprites.asm
-            case "setSpritePosition":
+            case Interner.SET_SPRITE_POSITION:
             {
                 if(args.getChildren().size() == 3)
                 {
@@ -315,7 +343,7 @@ public class StdlibCallGenerator
                     generateRegisterLoad(args.getChildren().get(2), code, "", "c", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setSpritePosition\n");
+                    code.add(Opcode.CALL, "setSpritePosition");
                 }
                 else
                 {
@@ -323,14 +351,14 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "setSpriteTile":
+            case Interner.SET_SPRITE_TILE:
             {
                 if(args.getChildren().size() == 2)
                 {
                     generateRegisterLoad(args.getChildren().get(1), code, "", "b", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setSpriteTile\n");
+                    code.add(Opcode.CALL, "setSpriteTile");
                 }
                 else
                 {
@@ -338,14 +366,14 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "setSpriteAttributes":
+            case Interner.SET_SPRITE_ATTRIBUTES:
             {
                 if(args.getChildren().size() == 2)
                 {
                     generateRegisterLoad(args.getChildren().get(1), code, "", "b", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setSpriteAttributes\n");
+                    code.add(Opcode.CALL, "setSpriteAttributes");
                 }
                 else
                 {
@@ -355,7 +383,7 @@ public class StdlibCallGenerator
             }
             //Tiles.asm
             //loadTiles has too many arguments
-            case "placeBGTile":
+            case Interner.PLACE_BG_TILE:
             {
                 if(args.getChildren().size() == 4)
                 {
@@ -364,7 +392,7 @@ public class StdlibCallGenerator
                     generateRegisterLoad(args.getChildren().get(3), code, "", "d", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setBGTile\n");
+                    code.add(Opcode.CALL, "setBGTile");
                 }
                 else
                 {
@@ -372,7 +400,7 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "placeWinTile":
+            case Interner.PLACE_WIN_TILE:
             {
                 if(args.getChildren().size() == 4)
                 {
@@ -381,7 +409,7 @@ public class StdlibCallGenerator
                     generateRegisterLoad(args.getChildren().get(3), code, "", "d", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setWinTile\n");
+                    code.add(Opcode.CALL, "setWinTile");
                 }
                 else
                 {
@@ -391,14 +419,14 @@ public class StdlibCallGenerator
             }
             //loadBGMap has too many arguments
             //loadWinMap has too many arguments
-            case "setBGScroll":
+            case Interner.SET_BG_SCROLL:
             {
                 if(args.getChildren().size() == 2)
                 {
                     generateRegisterLoad(args.getChildren().get(1), code, "", "b", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setBGScroll\n");
+                    code.add(Opcode.CALL, "setBGScroll");
                 }
                 else
                 {
@@ -406,14 +434,14 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "setWinPosition":
+            case Interner.SET_WIN_POSITION:
             {
                 if(args.getChildren().size() == 2)
                 {
                     generateRegisterLoad(args.getChildren().get(1), code, "", "b", 8, codegen);
                     //Generate A last, since A might be trashed when generating any other register!
                     generateRegisterLoad(args.getChildren().get(0), code, "", "a", 8, codegen);
-                    code.add("call setWinPosition\n");
+                    code.add(Opcode.CALL, "setWinPosition");
                 }
                 else
                 {
@@ -421,7 +449,7 @@ public class StdlibCallGenerator
                 }
                 return 0;
             }
-            case "switchBank":
+            case Interner.SWITCH_BANK:
             {
                 if(args.getChildren().size() == 1)
                 {
@@ -430,20 +458,20 @@ public class StdlibCallGenerator
                     if(mbcVariant == 5 || mbcVariant == 3)
                     {
                         //MBC5 code (also works for MBC3)
-                        code.add("ld [rROMB0], a\n");
+                        code.add(Opcode.LD, "[rROMB0]", "a");
                     }
                     else if(mbcVariant == 1)
                     {
                         //MBC1 code
                         //Split a - lower 5 bits go into b, high 2 bits (yes, not 3) go into c
-                        code.add("ld b, a\n");
-                        code.add("and $1F");
-                        code.add("ld [rROMB0], a\n");
-                        code.add("ld a, b\n");
-                        code.add("swap a\n"); //Swap upper 4 and lower 4 bits
-                        code.add("rra\n");
-                        code.add("and $03\n");
-                        code.add("ld [rRAMB0], a\n");
+                        code.add(Opcode.LD, "b", "a");
+                        code.add(Opcode.AND, "$1F");
+                        code.add(Opcode.LD, "[rROMB0]", "a");
+                        code.add(Opcode.LD, "a", "b");
+                        code.add(Opcode.SWAP, "a"); //Swap upper 4 and lower 4 bits
+                        code.add(Opcode.RRA);
+                        code.add(Opcode.AND, "$03");
+                        code.add(Opcode.LD, "[rRAMB0]", "a");
                     }
                 }
                 else
@@ -460,7 +488,7 @@ public class StdlibCallGenerator
         }
     }
     
-    public static StdlibCallGenerator getInstance()
+    public static synchronized StdlibCallGenerator getInstance()
     {
         if(instance == null)
         {
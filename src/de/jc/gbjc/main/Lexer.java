@@ -6,248 +6,416 @@
  */
 package de.jc.gbjc.main;
 
+import de.jc.gbjc.main.Util.Interner;
 import de.jc.gbjc.main.Util.Logger;
 import de.jc.gbjc.main.Token.TokenType;
-import java.io.BufferedReader;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 /**
  * The first stage of the compilation process,
- * the lexer / tokenizer
+ * the lexer / tokenizer<br>
+ * Either the whole file is read in at once and scanned in a single pass (lex()),
+ * or the file is read block by block whenever a token window needs more tokens (stream()).
+ * Tokens never span lines, so every block ends after a line break and the incomplete last line is kept for the next one.
+ * Lexemes are interned directly from the buffer
  *
  * @author robbi-blechdose
  * 
  */
 public class Lexer
 {
+    private static final int BLOCK_SIZE = 8192;
+    
+    private Reader reader; //null when the whole file is lexed at once
+    private char[] buffer; //null once the end of the file was lexed
+    private int length; //The number of characters in the buffer
+    private int offset; //The offset of the first character of the buffer in the file
+    private int lineNum;
+    private Interner interner;
+    
+    private Lexer(Reader reader)
+    {
+        this.reader = reader;
+        this.buffer = reader == null ? null : new char[BLOCK_SIZE];
+        this.length = 0;
+        this.offset = 0;
+        this.lineNum = 1;
+        this.interner = Interner.getInstance();
+    }
+    
     /**
-     * Lexes a given file into a token list
+     * Lexes a given file into a token stream
      * 
      * @param filePath The path to the file to read in
-     * @return The list of tokens created from the file
+     * @return The tokens created from the file
+     */
+    public static TokenStream lex(String filePath)
+    {
+        return lex(read(filePath));
+    }
+    
+    /**
+     * Lexes the contents of a file that has already been read
+     * 
+     * @param source The bytes of the file
+     * @return The tokens created from the file
      */
-    public static List<Token> lex(String filePath)
+    public static TokenStream lex(byte[] source)
     {
-        List<Token> tokens = new ArrayList<Token>();
+        CharBuffer buffer = Charset.defaultCharset().decode(ByteBuffer.wrap(source));
         
+        //Roughly one token per 5 characters, so the stream rarely has to grow
+        TokenStream tokens = new TokenStream(buffer.limit() / 5);
+        new Lexer(null).lexLines(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit(), -buffer.arrayOffset(), tokens);
+        return tokens;
+    }
+    
+    /**
+     * Opens a given file for lexing on demand, only a window of the tokens is kept in memory
+     * 
+     * @param filePath The path to the file to read in
+     * @return The token window, tokens are lexed when they are first accessed
+     */
+    public static TokenStream stream(String filePath)
+    {
+        InputStream in = null;
         try
         {
-            BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(new FileInputStream(filePath)));
-            
-            String line = bufferedReader.readLine();
-            int lineNum = 0;
+            in = new FileInputStream(filePath);
+        }
+        catch(Exception e)
+        {
+            readError(e);
+        }
+        return stream(in);
+    }
+    
+    /**
+     * Lexes a file on demand from a stream, see stream(String)
+     * 
+     * @param in The contents of the file, closed once the whole file was lexed
+     * @return The token window, tokens are lexed when they are first accessed
+     */
+    public static TokenStream stream(InputStream in)
+    {
+        return new TokenStream(new Lexer(new InputStreamReader(in, Charset.defaultCharset())));
+    }
+    
+    /**
+     * Reads in a whole file, exits if it can't be read
+     * 
+     * @param filePath The path to the file to read in
+     * @return The bytes of the file
+     */
+    public static byte[] read(String filePath)
+    {
+        byte[] source = null;
+        try
+        {
+            source = Files.readAllBytes(Paths.get(filePath));
+        }
+        catch(Exception e)
+        {
+            readError(e);
+        }
+        return source;
+    }
+    
+    private static void readError(Exception e)
+    {
+        Logger.getInstance().log(Logger.ERROR, "Could not read in file.");
+        Logger.getInstance().log(Logger.ERROR, e);
+        System.exit(1);
+    }
+    
+    /**
+     * Lexes the next block of complete lines (only used by token windows)
+     * 
+     * @param tokens The token window the tokens are added to
+     * @return false if the whole file has already been lexed
+     */
+    public boolean pull(TokenStream tokens)
+    {
+        if(buffer == null)
+        {
+            return false;
+        }
+        
+        boolean endOfFile = false;
+        int end = -1;
+        try
+        {
+            //Read until the buffer holds at least one complete line
+            while(end == -1)
+            {
+                if(length == buffer.length)
+                {
+                    //A line longer than the buffer
+                    char[] newBuffer = new char[buffer.length * 2];
+                    System.arraycopy(buffer, 0, newBuffer, 0, length);
+                    buffer = newBuffer;
+                }
+                int read = reader.read(buffer, length, buffer.length - length);
+                if(read == -1)
+                {
+                    endOfFile = true;
+                    end = length;
+                    reader.close();
+                }
+                else
+                {
+                    length += read;
+                    end = findBlockEnd();
+                }
+            }
+        }
+        catch(IOException e)
+        {
+            readError(e);
+        }
+        
+        lexLines(buffer, 0, end, offset, tokens);
+        
+        if(endOfFile)
+        {
+            buffer = null;
+        }
+        else
+        {
+            //Keep the incomplete last line for the next block
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+            offset += end;
+        }
+        return true;
+    }
+    
+    /**
+     * @return The index after the last line break in the buffer, -1 if there is none
+     */
+    private int findBlockEnd()
+    {
+        for(int i = length - 1; i >= 0; i--)
+        {
+            //A \r at the very end could be the first half of a \r\n
+            if(buffer[i] == '\n' || (buffer[i] == '\r' && i < length - 1))
+            {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Lexes a part of a file that ends with a line break (or the end of the file)
+     * 
+     * @param text The characters
+     * @param from The index of the first character
+     * @param end The index after the last character
+     * @param base The offset of index 0 of the array in the file
+     * @param tokens The stream the tokens are added to
+     */
+    private void lexLines(char[] text, int from, int end, int base, TokenStream tokens)
+    {
+        Interner interner = this.interner;
+        int lineNum = this.lineNum;
+        
+        for(int i = from; i < end; i++)
+        {
+            char c = text[i];
             
-            while(line != null)
+            //Line breaks (\n, \r\n and \r)
+            if(c == '\n' || c == '\r')
             {
+                if(c == '\r' && i + 1 < end && text[i + 1] == '\n')
+                {
+                    i++;
+                }
                 lineNum++;
-                for(int i = 0; i < line.length(); i++)
+            }
+            //Discard whitespace
+            else if(Character.isWhitespace(c))
+            {
+                continue;
+            }
+            //Discard comments
+            else if(c == '/' && i + 1 < end && text[i + 1] == '/')
+            {
+                while(i + 1 < end && text[i + 1] != '\n' && text[i + 1] != '\r')
                 {
-                    char c = line.charAt(i);
-                    
-                    //Discard whitespace tokens
-                    if(!Character.isWhitespace(c))
-                    {
-                        //Discard comments
-                        if(c == '/' && line.charAt(i + 1) == '/')
-                        {
-                            break;
-                        }
-                        //Number (decimal)
-                        else if(Character.isDigit(c))
-                        {
-                            int number = 0;
-                            
-                            for(int j = i; j < line.length(); j++)
-                            {
-                                if(Character.isDigit(line.charAt(j)))
-                                {
-                                    number *= 10;
-                                    number += line.charAt(j) - '0';
-                                    i = j;
-                                }
-                                else
-                                {
-                                    //As soon as we found a non-digit character, break (don't "consume" it)
-                                    break;
-                                }
-                            }
-                            
-                            tokens.add(new Token(TokenType.CONSTANT, Integer.toString(number), lineNum));
-                        }
-                        //Number (Hex)
-                        else if(c == '$')
-                        {
-                            i++; //Discard $ sign
-                            
-                            String hexStr = "";
-                            
-                            for(int j = i; j < line.length(); j++)
-                            {
-                                char ch = line.charAt(j);
-                                if(Character.isDigit(ch) ||
-                                        ch == 'A' || ch == 'B' || ch == 'C' || ch == 'D' || ch == 'E' || ch == 'F' ||
-                                        ch == 'a' || ch == 'b' || ch == 'c' || ch == 'd' || ch == 'e' || ch == 'f')
-                                {
-                                    hexStr += ch;
-                                    i = j;
-                                }
-                                else
-                                {
-                                    //As soon as we found a non-digit character, break (don't "consume" it)
-                                    break;
-                                }
-                            }
-                            
-                            tokens.add(new Token(TokenType.CONSTANT, Integer.toString(Integer.parseInt(hexStr, 16)), lineNum));
-                        }
-                        //Strings
-                        else if(c == '"')
-                        {
-                            String str = "";
-                            
-                            for(int j = i + 1; j < line.length(); j++)
-                            {
-                                if(line.charAt(j) != '"')
-                                {
-                                    str += line.charAt(j);
-                                }
-                                else
-                                {
-                                    //Also "consume" the second quotation mark
-                                    i = j;
-                                    break;
-                                }
-                            }
-                            
-                            tokens.add(new Token(TokenType.STRING, str, lineNum));
-                        }
-                        //Identifier
-                        else if(Character.isLetter(c) || c == '_')
-                        {
-                            String str = "";
-                            
-                            for(int j = i; j < line.length(); j++)
-                            {
-                                if(Character.isLetter(line.charAt(j)) || line.charAt(j) == '_' || Character.isDigit(line.charAt(j)))
-                                {
-                                    str += line.charAt(j);
-                                }
-                                else
-                                {
-                                    break;
-                                }
-                                i = j;
-                            }
-                            
-                            tokens.add(new Token(TokenType.IDENTIFIER, str, lineNum));
-                        }
-                        //Semicolon;        Also, stop trolls replacing other people's semicolons with greek question marks
-                        else if(c == ';' || c == ';')
-                        {
-                            tokens.add(new Token(TokenType.SEMICOLON, "", lineNum));
-                        }
-                        else if(c == '.')
-                        {
-                            tokens.add(new Token(TokenType.DOT, "", lineNum));
-                        }
-                        else if(c == ':')
-                        {
-                            tokens.add(new Token(TokenType.COLON, "", lineNum));
-                        }
-                        else if(c == ',')
-                        {
-                            tokens.add(new Token(TokenType.COMMA, "", lineNum));
-                        }
-                        else if(c == '(')
-                        {
-                            tokens.add(new Token(TokenType.LPAREN, "", lineNum));
-                        }
-                        else if(c == ')')
-                        {
-                            tokens.add(new Token(TokenType.RPAREN, "", lineNum));
-                        }
-                        else if(c == '{')
-                        {
-                            tokens.add(new Token(TokenType.LBRACE, "", lineNum));
-                        }
-                        else if(c == '}')
-                        {
-                            tokens.add(new Token(TokenType.RBRACE, "", lineNum));
-                        }
-                        else if(c == '[')
-                        {
-                            tokens.add(new Token(TokenType.LBRACKET, "", lineNum));
-                        }
-                        else if(c == ']')
-                        {
-                            tokens.add(new Token(TokenType.RBRACKET, "", lineNum));
-                        }
-                        else if(c == '=')
-                        {
-                            tokens.add(new Token(TokenType.EQUALS, "", lineNum));
-                        }
-                        else if(c == '-')
-                        {
-                            tokens.add(new Token(TokenType.MINUS, "", lineNum));
-                        }
-                        else if(c == '+')
-                        {
-                            tokens.add(new Token(TokenType.PLUS, "", lineNum));
-                        }
-                        else if(c == '/')
-                        {
-                            tokens.add(new Token(TokenType.DIVIDE, "", lineNum));
-                        }
-                        else if(c == '*')
-                        {
-                            tokens.add(new Token(TokenType.MULTIPLY, "", lineNum));
-                        }
-                        else if(c == '%')
-                        {
-                            tokens.add(new Token(TokenType.MODULO, "", lineNum));
-                        }
-                        else if(c == '<')
-                        {
-                            tokens.add(new Token(TokenType.SMALLER, "", lineNum));
-                        }
-                        else if(c == '>')
-                        {
-                            tokens.add(new Token(TokenType.BIGGER, "", lineNum));
-                        }
-                        else if(c == '!')
-                        {
-                            tokens.add(new Token(TokenType.NOT, "", lineNum));
-                        }
-                        else
-                        {
-                            Logger.getInstance().log(Logger.WARNING, "Illegal character detected on line " + lineNum + ": \"" + c + "\". Skipping...");
-                        }
-                    }
+                    i++;
                 }
+            }
+            //Number (decimal)
+            else if(c >= '0' && c <= '9')
+            {
+                int start = i;
+                int number = 0;
+                while(i < end && text[i] >= '0' && text[i] <= '9')
+                {
+                    number = number * 10 + (text[i] - '0');
+                    i++;
+                }
+                int length = i - start;
+                i--; //Don't "consume" the character after the number
                 
-                line = bufferedReader.readLine();
+                //The lexeme can be used as it is, unless it has leading zeros or could have overflown
+                int symbol = ((text[start] != '0' || length == 1) && length < 10) ? interner.intern(text, start, length) : interner.intern(Integer.toString(number));
+                interner.setNumber(symbol, number);
+                tokens.add(TokenType.CONSTANT, base + start, length, lineNum, symbol);
+            }
+            //Number (Hex)
+            else if(c == '$')
+            {
+                int start = i;
+                int number = 0;
+                int digits = 0;
+                while(i + 1 < end && Character.digit(text[i + 1], 16) != -1 && text[i + 1] < 128)
+                {
+                    number = number * 16 + Character.digit(text[i + 1], 16);
+                    digits++;
+                    i++;
+                }
+                if(digits == 0)
+                {
+                    Logger.getInstance().log(Logger.ERROR, "Hex number without digits on line " + lineNum + ".");
+                    System.exit(1);
+                }
+                
+                int symbol = interner.intern(Integer.toString(number));
+                interner.setNumber(symbol, number);
+                tokens.add(TokenType.CONSTANT, base + start, i - start + 1, lineNum, symbol);
+            }
+            //Strings
+            else if(c == '"')
+            {
+                int start = i + 1;
+                int j = start;
+                while(j < end && text[j] != '"' && text[j] != '\n' && text[j] != '\r')
+                {
+                    j++;
+                }
+                if(j - i + 1 > TokenStream.MAX_LENGTH)
+                {
+                    Logger.getInstance().log(Logger.ERROR, "String on line " + lineNum + " is too long.");
+                    System.exit(1);
+                }
+                boolean terminated = j < end && text[j] == '"';
+                tokens.add(TokenType.STRING, base + i, j - i + (terminated ? 1 : 0), lineNum, interner.intern(text, start, j - start));
+                
+                if(terminated)
+                {
+                    //Also "consume" the second quotation mark
+                    i = j;
+                }
+                //An unterminated string takes the rest of the line, which is then lexed again (as it always has been)
+            }
+            //Identifier
+            else if(Character.isLetter(c) || c == '_')
+            {
+                int start = i;
+                while(i + 1 < end && (Character.isLetter(text[i + 1]) || text[i + 1] == '_' || Character.isDigit(text[i + 1])))
+                {
+                    i++;
+                }
+                if(i - start + 1 > TokenStream.MAX_LENGTH)
+                {
+                    Logger.getInstance().log(Logger.ERROR, "Identifier on line " + lineNum + " is too long.");
+                    System.exit(1);
+                }
+                tokens.add(TokenType.IDENTIFIER, base + start, i - start + 1, lineNum, interner.intern(text, start, i - start + 1));
+            }
+            else
+            {
+                TokenType type = getSymbolType(c);
+                if(type != null)
+                {
+                    tokens.add(type, base + i, 1, lineNum, -1);
+                }
+                else
+                {
+                    Logger.getInstance().log(Logger.WARNING, "Illegal character detected on line " + lineNum + ": \"" + c + "\". Skipping...");
+                    tokens.addWarning();
+                }
             }
-            bufferedReader.close();
         }
-        catch(Exception e)
+        
+        
+        this.lineNum = lineNum;
+    }
+    
+    /**
+     * @param c A character
+     * @return The type of the single-character token, null if the character isn't one
+     */
+    private static TokenType getSymbolType(char c)
+    {
+        switch(c)
         {
-            Logger.getInstance().log(Logger.ERROR, "Could not read in file.");
-            Logger.getInstance().log(Logger.ERROR, e);
-            System.exit(1);
+            //Semicolon;        Also, stop trolls replacing other people's semicolons with greek question marks
+            case ';':
+            case '\u037E':
+                return TokenType.SEMICOLON;
+            case '.':
+                return TokenType.DOT;
+            case ':':
+                return TokenType.COLON;
+            case ',':
+                return TokenType.COMMA;
+            case '(':
+                return TokenType.LPAREN;
+            case ')':
+                return TokenType.RPAREN;
+            case '{':
+                return TokenType.LBRACE;
+            case '}':
+                return TokenType.RBRACE;
+            case '[':
+                return TokenType.LBRACKET;
+            case ']':
+                return TokenType.RBRACKET;
+            case '=':
+                return TokenType.EQUALS;
+            case '-':
+                return TokenType.MINUS;
+            case '+':
+                return TokenType.PLUS;
+            case '/':
+                return TokenType.DIVIDE;
+            case '*':
+                return TokenType.MULTIPLY;
+            case '%':
+                return TokenType.MODULO;
+            case '<':
+                return TokenType.SMALLER;
+            case '>':
+                return TokenType.BIGGER;
+            case '!':
+                return TokenType.NOT;
+            case '&':
+                return TokenType.AND;
+            case '|':
+                return TokenType.PIPE;
+            default:
+                return null;
         }
-        
-        return tokens;
     }
     
     /**
      * Debug method to print out the given token list
      * 
-     * @param tokens The token list to be printed
+     * @param tokens The tokens to be printed
      */
-    public static void printTokenList(List<Token> tokens)
+    public static void printTokenList(TokenStream tokens)
     {
         Logger.getInstance().log(Logger.FINE, "Token list:");
         for(int i = 0; i < tokens.size(); i++)
@@ -6,14 +6,13 @@
  */
 package de.jc.gbjc.main;
 
-import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
-import de.jc.gbjc.main.Parsing.Parser;
+import de.jc.gbjc.main.Codegen.OptimizationReport;
 import de.jc.gbjc.main.Util.Logger;
+import de.jc.gbjc.main.Util.Timings;
 import de.jc.gbjc.main.Util.Utils;
-import de.jc.gbjc.main.Codegen.CodeGenerator;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The GB-J Compiler
@@ -32,9 +31,14 @@ public class Main
     {
         boolean runAssembler = true;
         boolean debug = false;
-        int optimizerPasses = 2;
+        int optimizationLevel = 2;
         int mbcVariant = 5;
-        boolean objectWarn = true;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String optimizationReport = null;
+        boolean timings = false;
+        String timingsFile = null;
+        String cacheDir = null;
+        boolean incremental = false;
         
         Logger.getInstance().log(Logger.INFO, "GB-J Compiler Copyright (C) 2019 robbi-blechdose");
         Logger.getInstance().log(Logger.INFO, "Starting GB-J Compiler.");
@@ -58,6 +62,7 @@ public class Main
                 else if(s.equals("-debug"))
                 {
                     debug = true;
+                    ModuleRegistry.getInstance().setDebug(true);
                 }
                 else if(s.equals("-noasm"))
                 {
@@ -65,16 +70,51 @@ public class Main
                 }
                 else if(s.equals("-noObjWarn"))
                 {
-                    objectWarn = false;
+                    ModuleRegistry.getInstance().setObjectWarn(false);
+                }
+                else if(s.equals("-stream"))
+                {
+                    ModuleRegistry.getInstance().setStreaming(true);
+                }
+                else if(s.equals("-cache"))
+                {
+                    cacheDir = "build/cache";
+                }
+                else if(s.startsWith("-cache="))
+                {
+                    cacheDir = s.substring(7);
+                }
+                else if(s.equals("-incremental"))
+                {
+                    incremental = true;
+                }
+                else if(s.startsWith("-optreport="))
+                {
+                    optimizationReport = s.substring(11);
+                }
+                else if(s.equals("-timings"))
+                {
+                    timings = true;
+                    Timings.getInstance().setEnabled(true);
+                }
+                else if(s.startsWith("-timings="))
+                {
+                    timings = true;
+                    timingsFile = s.substring(9);
+                    Timings.getInstance().setEnabled(true);
                 }
                 else if(s.startsWith("-O"))
                 {
-                    optimizerPasses = Integer.parseInt(s.substring(2));
+                    optimizationLevel = Integer.parseInt(s.substring(2));
                 }
                 else if(s.startsWith("-mbc"))
                 {
                     mbcVariant = Integer.parseInt(s.substring(4));
                 }
+                else if(s.startsWith("-j"))
+                {
+                    threads = Math.max(1, Integer.parseInt(s.substring(2)));
+                }
                 else
                 {
                     arguments.add(s);
@@ -97,41 +137,6 @@ public class Main
             System.exit(0);
         }
         
-        for(int i = 0; i < fileNames.size(); i++)
-        {
-            List<Token> tokens = Lexer.lex(filePaths.get(i));
-            if(debug)
-            {
-                Lexer.printTokenList(tokens);
-            }
-
-            PreliminaryParser pp = new PreliminaryParser(tokens);
-            pp.addStdlibMethods();
-            pp.parse();
-            
-            if(debug)
-            {
-                Logger.getInstance().log(Logger.INFO, "Static Methods: " + Arrays.toString(pp.getStaticMethods().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Types: " + Arrays.toString(pp.getObjectTypes().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Sizes: " + Arrays.toString(pp.getObjectSizes().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Constructors: " + Arrays.toString(pp.getObjectConstructors().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Methods: " + Arrays.toString(pp.getObjectMethods().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Variable Positions: " + Arrays.toString(pp.getObjectVariablePositions().toArray()));
-                Logger.getInstance().log(Logger.INFO, "Object Instances: " + Arrays.toString(pp.getObjectInstances().toArray()));
-            }
-
-            Parser p = new Parser(tokens, pp.getObjectTypes(), objectWarn);
-            AbstractSyntaxTree ast = p.parse();
-            if(debug)
-            {
-                Logger.getInstance().log(Logger.INFO, ast.toString());
-            }
-
-            CodeGenerator cg = new CodeGenerator(ast, fileNames.get(i), pp, optimizerPasses, mbcVariant);
-            //"runAssembler" also determines whether the ROM header is included
-            cg.generateAsmFile(runAssembler);
-        }
-        
         String carttype = "";
         String ramsize = "";
         String gbtype = "";
@@ -157,13 +162,68 @@ public class Main
             }
         }
         
+        //Incremental builds keep their graph next to the cache, unchanged files are loaded from there
+        if(incremental && cacheDir == null)
+        {
+            cacheDir = "build/cache";
+        }
+        ModuleCache moduleCache = null;
+        if(cacheDir != null)
+        {
+            moduleCache = new ModuleCache(cacheDir);
+            ModuleRegistry.getInstance().setCache(moduleCache);
+        }
+        
+        //Files are parsed and compiled concurrently, the output is the same for any number of threads
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ModuleRegistry.getInstance().setPool(pool);
+        ModuleCompiler compiler = new ModuleCompiler(optimizationLevel, mbcVariant, debug, pool);
+        if(incremental && moduleCache.getCompilerHash() != null)
+        {
+            //A new compiler or different flags invalidate every file
+            compiler.setBuildGraph(new BuildGraph(cacheDir + "/graph", moduleCache.getCompilerHash() + " -O" + optimizationLevel
+                    + " -mbc" + mbcVariant + " -g" + gbtype));
+        }
+        
+        //Files are assembled while the others are still being compiled
+        AssemblerRunner assembler = null;
         if(runAssembler)
         {
-            AssemblerRunner.runAssembler(fileNames.toArray(new String[0]), romname, carttype, ramsize, gbtype);
+            assembler = new AssemblerRunner(threads);
+            if(cacheDir != null)
+            {
+                assembler.setCache(cacheDir + "/objects");
+            }
+            compiler.setAssembler(assembler);
+        }
+        
+        //"runAssembler" also determines whether the ROM header is included
+        compiler.compile(filePaths, fileNames, runAssembler);
+        pool.shutdown();
+        
+        if(optimizationReport != null)
+        {
+            new OptimizationReport(compiler.getOptimizerStats()).write(optimizationReport);
+            Logger.getInstance().log(Logger.FINE, "Optimization report written to " + optimizationReport + ".");
+        }
+        
+        if(runAssembler)
+        {
+            assembler.link(compiler.getObjectNames().toArray(new String[0]), romname, carttype, ramsize, gbtype);
         }
         
         Logger.getInstance().log(Logger.FINE, "Compilation finished in " + (System.currentTimeMillis() - startTime) + "ms.");
         
+        if(timingsFile != null)
+        {
+            Timings.getInstance().write(timingsFile);
+            Logger.getInstance().log(Logger.FINE, "Timings written to " + timingsFile + ".");
+        }
+        else if(timings)
+        {
+            Timings.getInstance().print();
+        }
+        
         Logger.getInstance().close();
     }
     
@@ -173,7 +233,7 @@ public class Main
     private static void displayHelp()
     {
         Logger.getInstance().log(Logger.INFO, "Usage: java -jar GB-J-Compiler.jar"
-                + " [-cCarttype] [-rRamsize] [-gGBType] [-nROMName] [-mbcX] [-ONumberOfOptimizerPasses] [-debug] [-noasm] sourcefile [...]");
+                + " [-cCarttype] [-rRamsize] [-gGBType] [-nROMName] [-mbcX] [-OLevel] [-jThreads] [-optreport=file] [-timings[=file]] [-cache[=dir]] [-incremental] [-stream] [-debug] [-noasm] sourcefile [...]");
         Logger.getInstance().log(Logger.INFO, "");
         Logger.getInstance().log(Logger.INFO, "Available cart types:");
         Logger.getInstance().log(Logger.INFO, "ROM");
@@ -216,7 +276,14 @@ public class Main
         Logger.getInstance().log(Logger.INFO, "MBC1 (up to 125 banks @ 16K)");
         Logger.getInstance().log(Logger.INFO, "");
         Logger.getInstance().log(Logger.INFO, "-debug is for debugging the compiler, it will output the token list and the AST.");
-        Logger.getInstance().log(Logger.INFO, "-noasm skips running the assembler. It is used internally, but you can use it if you have some reason to.");
+        Logger.getInstance().log(Logger.INFO, "-noasm skips running the assembler. Use it if you only want the generated .asm files.");
+        Logger.getInstance().log(Logger.INFO, "-O0 disables the optimizer, any other level runs it until no more optimizations are possible.");
+        Logger.getInstance().log(Logger.INFO, "-optreport=file writes a JSON report of all optimizations (hits, bytes and cycles saved per rule, file and function).");
+        Logger.getInstance().log(Logger.INFO, "-timings prints the time, allocated memory and processed tokens/nodes/instructions of every compiler phase, -timings=file writes them as JSON.");
+        Logger.getInstance().log(Logger.INFO, "-j sets the number of threads files are parsed, compiled and assembled on, the default is the number of cores.");
+        Logger.getInstance().log(Logger.INFO, "-cache stores every parsed file and every assembled object in build/cache (or the given directory), unchanged files are loaded from there instead of being parsed or assembled again.");
+        Logger.getInstance().log(Logger.INFO, "-incremental only compiles the files that changed since the last build (or import files whose symbols did), the others are taken from the build directory. Implies -cache.");
+        Logger.getInstance().log(Logger.INFO, "-stream lexes files on demand while parsing them instead of keeping all their tokens in memory.");
         Logger.getInstance().log(Logger.INFO, "-noObjWarn disables the warning when using objects. This should only be used if you know what you're doing.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,591 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
+import de.jc.gbjc.main.Symbols.ClassLayout;
+import de.jc.gbjc.main.Symbols.MethodSymbol;
+import de.jc.gbjc.main.Symbols.VariableSymbol;
+import de.jc.gbjc.main.Util.Interner;
+import de.jc.gbjc.main.Util.Logger;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parsed modules (-cache)<br>
+ * Holds the AST and the symbols of every parsed file in a compact binary form, so unchanged files
+ * skip the lexer and the parser on later builds<br>
+ * An entry is keyed by the SHA-256 of the source and of the compiler itself (the jar or the class files),
+ * so a new compiler version never reads entries of an old one. Entries are never updated, changed files simply get new ones
+ * (the directory can be deleted at any time)<br>
+ * The tokens aren't stored, nothing after the parser needs them
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ModuleCache
+{
+    private static final int MAGIC = 0x47424A43; //"GBJC"
+    private static final int FORMAT_VERSION = 1;
+    private static final TreeNodeType[] NODE_TYPES = TreeNodeType.values();
+    
+    //Optional fields of a tree node, most nodes have none of them
+    private static final int HAS_SYMBOL = 1;
+    private static final int HAS_VALUE = 2;
+    private static final int HAS_DECLARATION = 4;
+    private static final int HAS_ARRAY_LENGTH = 8;
+    private static final int HAS_OBJECT_CALL = 16;
+    
+    private File directory;
+    private String compilerHash; //null if the compiler couldn't be hashed, which disables the cache
+    
+    /**
+     * Constructor
+     * 
+     * @param directory The directory the entries are stored in, created when the first entry is written
+     */
+    public ModuleCache(String directory)
+    {
+        this.directory = new File(directory);
+        this.compilerHash = hashCompiler();
+    }
+    
+    /**
+     * @return The SHA-256 of the compiler, null if it couldn't be read
+     */
+    String getCompilerHash()
+    {
+        return compilerHash;
+    }
+    
+    /**
+     * Calculates the key of a file
+     * 
+     * @param source The contents of the file
+     * @return The key, null if the file can't be cached
+     */
+    public String getKey(byte[] source)
+    {
+        if(compilerHash == null)
+        {
+            return null;
+        }
+        MessageDigest digest = newDigest();
+        digest.update(compilerHash.getBytes(StandardCharsets.US_ASCII));
+        digest.update(source);
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Fills a module from its cache entry
+     * 
+     * @param key The key of the file
+     * @param module The (empty) module of the file
+     * @return If the entry exists and could be read (the module is left untouched otherwise)
+     */
+    public boolean load(String key, ParsedModule module)
+    {
+        File file = new File(directory, key);
+        if(!file.isFile())
+        {
+            return false;
+        }
+        
+        try
+        {
+            //Entries are small compared to the trees built from them, reading them in one go is the fastest way
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if(in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION)
+            {
+                return false;
+            }
+            
+            String[] strings = new String[readNumber(in)];
+            for(int i = 0; i < strings.length; i++)
+            {
+                int length = readNumber(in);
+                strings[i] = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            }
+            Reader reader = new Reader(in, strings);
+            
+            //Everything is read before the module is filled, so a broken entry leaves it empty
+            List<MethodSymbol> staticMethods = new ArrayList<MethodSymbol>();
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                staticMethods.add(reader.readMethod());
+            }
+            List<ClassLayout> objectTypes = new ArrayList<ClassLayout>();
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                ClassLayout layout = new ClassLayout(reader.readString());
+                layout.setSize(readNumber(in));
+                for(int j = readNumber(in); j > 0; j--)
+                {
+                    layout.addVariable(reader.readString(), readNumber(in));
+                }
+                objectTypes.add(layout);
+            }
+            List<MethodSymbol> objectConstructors = new ArrayList<MethodSymbol>();
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                objectConstructors.add(reader.readMethod());
+            }
+            List<MethodSymbol> objectMethods = new ArrayList<MethodSymbol>();
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                objectMethods.add(reader.readMethod());
+            }
+            List<VariableSymbol> objectInstances = new ArrayList<VariableSymbol>();
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                objectInstances.add(new VariableSymbol(reader.readString(), reader.readString()));
+            }
+            AbstractSyntaxTree ast = reader.readTree();
+            
+            for(MethodSymbol method : staticMethods)
+            {
+                module.addStaticMethod(method);
+            }
+            for(ClassLayout layout : objectTypes)
+            {
+                module.addObjectType(layout);
+            }
+            for(MethodSymbol constructor : objectConstructors)
+            {
+                module.addObjectConstructor(constructor);
+            }
+            for(MethodSymbol method : objectMethods)
+            {
+                module.addObjectMethod(method);
+            }
+            for(VariableSymbol instance : objectInstances)
+            {
+                module.addObjectInstance(instance);
+            }
+            for(AbstractSyntaxTree declaration : reader.objectDeclarations)
+            {
+                module.addObjectDeclaration(declaration);
+            }
+            module.setAst(ast);
+            return true;
+        }
+        catch(IOException | RuntimeException e)
+        {
+            //A broken entry is treated like a missing one, the file is parsed again and the entry replaced
+            return false;
+        }
+    }
+    
+    /**
+     * Writes the cache entry of a module<br>
+     * Must be called right after parsing, before later phases change the AST
+     * 
+     * @param key The key of the file
+     * @param module The parsed module
+     */
+    public void store(String key, ParsedModule module)
+    {
+        Writer writer = new Writer();
+        writer.collectTree(module.getAst());
+        for(MethodSymbol method : module.getOwnStaticMethods())
+        {
+            writer.collectMethod(method);
+        }
+        for(ClassLayout layout : module.getOwnObjectTypes())
+        {
+            writer.collect(layout.getName());
+            for(String variable : layout.getVariablePositions().keySet())
+            {
+                writer.collect(variable);
+            }
+        }
+        for(MethodSymbol method : module.getOwnObjectConstructors())
+        {
+            writer.collectMethod(method);
+        }
+        for(MethodSymbol method : module.getOwnObjectMethods())
+        {
+            writer.collectMethod(method);
+        }
+        for(VariableSymbol instance : module.getOwnObjectInstances())
+        {
+            writer.collect(instance.getType());
+            writer.collect(instance.getName());
+        }
+        
+        File temp = null;
+        try
+        {
+            directory.mkdirs();
+            //Written next to the entry and renamed, so a build that is interrupted (or runs at the same time) never sees half an entry
+            temp = File.createTempFile(key, ".tmp", directory);
+            try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                
+                writeNumber(out, writer.strings.size());
+                for(String s : writer.strings)
+                {
+                    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                    writeNumber(out, bytes.length);
+                    out.write(bytes);
+                }
+                
+                writeNumber(out, module.getOwnStaticMethods().size());
+                for(MethodSymbol method : module.getOwnStaticMethods())
+                {
+                    writer.writeMethod(out, method);
+                }
+                writeNumber(out, module.getOwnObjectTypes().size());
+                for(ClassLayout layout : module.getOwnObjectTypes())
+                {
+                    writer.writeString(out, layout.getName());
+                    writeNumber(out, layout.getSize());
+                    writeNumber(out, layout.getVariablePositions().size());
+                    for(Map.Entry<String, Integer> variable : layout.getVariablePositions().entrySet())
+                    {
+                        writer.writeString(out, variable.getKey());
+                        writeNumber(out, variable.getValue());
+                    }
+                }
+                writeNumber(out, module.getOwnObjectConstructors().size());
+                for(MethodSymbol method : module.getOwnObjectConstructors())
+                {
+                    writer.writeMethod(out, method);
+                }
+                writeNumber(out, module.getOwnObjectMethods().size());
+                for(MethodSymbol method : module.getOwnObjectMethods())
+                {
+                    writer.writeMethod(out, method);
+                }
+                writeNumber(out, module.getOwnObjectInstances().size());
+                for(VariableSymbol instance : module.getOwnObjectInstances())
+                {
+                    writer.writeString(out, instance.getType());
+                    writer.writeString(out, instance.getName());
+                }
+                
+                writer.writeTree(out, module.getAst());
+            }
+            Files.move(temp.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.WARNING, "Could not write the cache entry of " + module.getPath() + ".");
+            if(temp != null)
+            {
+                temp.delete();
+            }
+        }
+    }
+    
+    /**
+     * Hashes the jar the compiler runs from (or all its class files when it runs from a directory)
+     * 
+     * @return The hash, null if the compiler can't be read
+     */
+    private static String hashCompiler()
+    {
+        MessageDigest digest = newDigest();
+        try
+        {
+            Path location = Paths.get(ModuleCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            if(Files.isDirectory(location))
+            {
+                List<Path> files = new ArrayList<Path>();
+                try(Stream<Path> walk = Files.walk(location))
+                {
+                    for(Iterator<Path> it = walk.iterator(); it.hasNext();)
+                    {
+                        Path file = it.next();
+                        if(Files.isRegularFile(file))
+                        {
+                            files.add(file);
+                        }
+                    }
+                }
+                //The walk order depends on the file system
+                Collections.sort(files);
+                for(Path file : files)
+                {
+                    digest.update(location.relativize(file).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(file));
+                }
+            }
+            else
+            {
+                digest.update(Files.readAllBytes(location));
+            }
+        }
+        catch(IOException | URISyntaxException | RuntimeException e)
+        {
+            Logger.getInstance().log(Logger.WARNING, "Could not determine the compiler version, the cache is disabled.");
+            return null;
+        }
+        return toHex(digest.digest());
+    }
+    
+    /**
+     * Writes a number in as few bytes as possible, 7 bits per byte (small negative numbers like line -1 stay small as well)
+     */
+    private static void writeNumber(DataOutputStream out, int number) throws IOException
+    {
+        int zigzag = (number << 1) ^ (number >> 31);
+        while((zigzag & ~0x7F) != 0)
+        {
+            out.writeByte((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        out.writeByte(zigzag);
+    }
+    
+    private static int readNumber(ByteBuffer in)
+    {
+        int zigzag = 0;
+        for(int shift = 0;; shift += 7)
+        {
+            byte b = in.get();
+            zigzag |= (b & 0x7F) << shift;
+            if(b >= 0)
+            {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+    
+    static MessageDigest newDigest()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch(NoSuchAlgorithmException e)
+        {
+            //Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * @param bytes
+     * @return The SHA-256 of the bytes
+     */
+    static String hash(byte[] bytes)
+    {
+        return toHex(newDigest().digest(bytes));
+    }
+    
+    static String toHex(byte[] bytes)
+    {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes)
+        {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+    
+    /**
+     * Writes an entry, every string is only stored once in a table in front of the symbols and the AST
+     * and referenced by its index (-1 for null)
+     */
+    private static class Writer
+    {
+        private List<String> strings;
+        private Map<String, Integer> indices;
+        
+        private Writer()
+        {
+            this.strings = new ArrayList<String>();
+            this.indices = new HashMap<String, Integer>();
+        }
+        
+        private void collect(String s)
+        {
+            if(s != null && !indices.containsKey(s))
+            {
+                indices.put(s, strings.size());
+                strings.add(s);
+            }
+        }
+        
+        private void collectMethod(MethodSymbol method)
+        {
+            collect(method.getClassName());
+            collect(method.getReturnType());
+            collect(method.getName());
+        }
+        
+        private void collectTree(AbstractSyntaxTree tree)
+        {
+            collect(tree.getContent());
+            collect(tree.getDataType());
+            collect(tree.getName());
+            collect(tree.getObjectName());
+            collect(tree.getMethodName());
+            for(AbstractSyntaxTree child : tree.getChildren())
+            {
+                collectTree(child);
+            }
+        }
+        
+        private void writeString(DataOutputStream out, String s) throws IOException
+        {
+            writeNumber(out, s == null ? 0 : indices.get(s) + 1);
+        }
+        
+        private void writeMethod(DataOutputStream out, MethodSymbol method) throws IOException
+        {
+            writeString(out, method.getClassName());
+            writeString(out, method.getReturnType());
+            writeString(out, method.getName());
+            writeNumber(out, method.getNumArgs());
+        }
+        
+        /**
+         * Writes a tree in pre-order, every node followed by its children<br>
+         * A node is its type, a byte telling which of the optional fields follow, its content, its line and its number of children
+         */
+        private void writeTree(DataOutputStream out, AbstractSyntaxTree tree) throws IOException
+        {
+            int flags = 0;
+            //Interner ids differ between builds, the content is interned again instead
+            flags |= tree.getSymbol() != -1 ? HAS_SYMBOL : 0;
+            flags |= tree.getValue() != 0 ? HAS_VALUE : 0;
+            flags |= tree.getDataType() != null || tree.getName() != null ? HAS_DECLARATION : 0;
+            flags |= tree.getArrayLength() != 0 ? HAS_ARRAY_LENGTH : 0;
+            flags |= tree.getObjectName() != null || tree.getMethodName() != null ? HAS_OBJECT_CALL : 0;
+            
+            out.writeByte(tree.getType().ordinal());
+            out.writeByte(flags);
+            writeString(out, tree.getContent());
+            writeNumber(out, tree.getLine());
+            if((flags & HAS_VALUE) != 0)
+            {
+                writeNumber(out, tree.getValue());
+            }
+            if((flags & HAS_DECLARATION) != 0)
+            {
+                writeString(out, tree.getDataType());
+                writeString(out, tree.getName());
+            }
+            if((flags & HAS_ARRAY_LENGTH) != 0)
+            {
+                writeNumber(out, tree.getArrayLength());
+            }
+            if((flags & HAS_OBJECT_CALL) != 0)
+            {
+                writeString(out, tree.getObjectName());
+                writeString(out, tree.getMethodName());
+            }
+            writeNumber(out, tree.getChildren().size());
+            for(AbstractSyntaxTree child : tree.getChildren())
+            {
+                writeTree(out, child);
+            }
+        }
+    }
+    
+    /**
+     * Reads an entry written by a Writer
+     */
+    private static class Reader
+    {
+        private ByteBuffer in;
+        private String[] strings;
+        private int[] symbols; //<string index> -> interned id, -1 if the string hasn't been interned yet
+        private List<AbstractSyntaxTree> objectDeclarations; //Collected like the parser does, see ParsedModule.checkObjectTypes()
+        
+        private Reader(ByteBuffer in, String[] strings)
+        {
+            this.in = in;
+            this.strings = strings;
+            this.symbols = new int[strings.length];
+            Arrays.fill(symbols, -1);
+            this.objectDeclarations = new ArrayList<AbstractSyntaxTree>();
+        }
+        
+        private String readString()
+        {
+            int index = readNumber(in);
+            return index == 0 ? null : strings[index - 1];
+        }
+        
+        private MethodSymbol readMethod()
+        {
+            return new MethodSymbol(readString(), readString(), readString(), readNumber(in));
+        }
+        
+        private AbstractSyntaxTree readTree()
+        {
+            TreeNodeType type = NODE_TYPES[in.get()];
+            int flags = in.get();
+            int content = readNumber(in);
+            AbstractSyntaxTree tree = new AbstractSyntaxTree(type, content == 0 ? null : strings[content - 1], readNumber(in));
+            if((flags & HAS_SYMBOL) != 0)
+            {
+                //Every distinct text is only interned once per entry
+                if(symbols[content - 1] == -1)
+                {
+                    symbols[content - 1] = Interner.getInstance().intern(strings[content - 1]);
+                }
+                tree.setSymbol(symbols[content - 1]);
+            }
+            if((flags & HAS_VALUE) != 0)
+            {
+                tree.setValue(readNumber(in));
+            }
+            if((flags & HAS_DECLARATION) != 0)
+            {
+                tree.setDeclaration(readString(), readString());
+            }
+            if((flags & HAS_ARRAY_LENGTH) != 0)
+            {
+                tree.setArrayLength(readNumber(in));
+            }
+            if((flags & HAS_OBJECT_CALL) != 0)
+            {
+                tree.setObjectCall(readString(), readString());
+            }
+            
+            if(type == TreeNodeType.DECLARATION && !tree.getDataType().equals("char") && !tree.getDataType().equals("int"))
+            {
+                objectDeclarations.add(tree);
+            }
+            
+            for(int i = readNumber(in); i > 0; i--)
+            {
+                tree.addChild(readTree());
+            }
+            return tree;
+        }
+    }
+}
\ No newline at end of file
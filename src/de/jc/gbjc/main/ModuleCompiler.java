@@ -0,0 +1,350 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Codegen.CodeGenerator;
+import de.jc.gbjc.main.Codegen.OptimizerStats;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
+import de.jc.gbjc.main.Symbols.ClassLayout;
+import de.jc.gbjc.main.Symbols.Resolver;
+import de.jc.gbjc.main.Util.Logger;
+import de.jc.gbjc.main.Util.Timings;
+import de.jc.gbjc.main.Util.Utils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the whole compilation process (lexer and parser via the ModuleRegistry, resolver, code generator) for files
+ * and every .gbj file they import, all inside this JVM<br>
+ * Every imported file is only compiled once, no matter how many files import it<br>
+ * Files are parsed and compiled concurrently on a fork-join pool. The order of the files is planned up front
+ * (imported files before the files importing them), the messages and optimizer stats of every file are collected in that order,
+ * so the output doesn't depend on the number of threads<br>
+ * With a BuildGraph, files that are unchanged since the last build (and whose imported files still have the same symbols) aren't compiled again
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ModuleCompiler
+{
+    private int optimizationLevel;
+    private int mbcVariant;
+    private boolean debug;
+    private ForkJoinPool pool;
+    
+    private Set<String> compiledImports; //Absolute paths of all imported files that have already been planned
+    private List<OptimizerStats> optimizerStats; //In the order the files were planned
+    private Map<String, String> objects; //The names of all compiled (or up to date) files by their absolute paths, in the order they were planned
+    private AssemblerRunner assembler; //Null if the files aren't assembled
+    private BuildGraph buildGraph; //Null if every file is compiled
+    
+    /**
+     * Constructor
+     * 
+     * @param optimizationLevel 0 disables the optimizer
+     * @param mbcVariant The MBC variant this ROM should use
+     * @param debug Determines whether the symbols and the AST are printed
+     * @param pool The pool the files are compiled on (the ModuleRegistry should parse on the same one)
+     */
+    public ModuleCompiler(int optimizationLevel, int mbcVariant, boolean debug, ForkJoinPool pool)
+    {
+        this.optimizationLevel = optimizationLevel;
+        this.mbcVariant = mbcVariant;
+        this.debug = debug;
+        this.pool = pool;
+        this.compiledImports = new HashSet<String>();
+        this.optimizerStats = new ArrayList<OptimizerStats>();
+        this.objects = new LinkedHashMap<String, String>();
+    }
+    
+    /**
+     * Makes the compiler start assembling every file (including the imported ones) as soon as its .asm file is written
+     * 
+     * @param assembler
+     */
+    public void setAssembler(AssemblerRunner assembler)
+    {
+        this.assembler = assembler;
+    }
+    
+    /**
+     * Makes the compiler skip files that are up to date and record the compiled ones
+     * 
+     * @param buildGraph The graph of the last build, it is updated and saved by compile()
+     */
+    public void setBuildGraph(BuildGraph buildGraph)
+    {
+        this.buildGraph = buildGraph;
+    }
+    
+    /**
+     * Compiles files into build/{@literal <}file name{@literal >}.asm,
+     * compiling all imported .gbj files too
+     * 
+     * @param filePaths The absolute paths to the files
+     * @param fileNames The names of the files without the .gbj ending
+     * @param isMainFile Determines if these are the main files of the project (the ROM header is only included there)
+     */
+    public void compile(List<String> filePaths, List<String> fileNames, boolean isMainFile)
+    {
+        //Start parsing all files at once, the files they import are started by the parser
+        //Files that are up to date aren't even parsed
+        Timings.Phase phase = Timings.getInstance().begin("build graph", "");
+        List<Boolean> upToDate = new ArrayList<Boolean>();
+        for(String filePath : filePaths)
+        {
+            upToDate.add(isUpToDate(filePath, isMainFile));
+            if(!upToDate.get(upToDate.size() - 1))
+            {
+                ModuleRegistry.getInstance().load(filePath);
+            }
+        }
+        phase.end();
+        
+        //Messages logged while planning belong in front of the messages of the next planned file
+        List<CompileTask> tasks = new ArrayList<CompileTask>();
+        Logger.getInstance().startBuffering();
+        for(int i = 0; i < filePaths.size(); i++)
+        {
+            //An up to date file that was just compiled as an import still has to be compiled as a main file again
+            if(upToDate.get(i) && !compiledImports.contains(filePaths.get(i)))
+            {
+                Logger.getInstance().log(Logger.INFO, fileNames.get(i) + ".gbj is up to date.");
+                skip(filePaths.get(i), fileNames.get(i), tasks);
+            }
+            else
+            {
+                plan(filePaths.get(i), fileNames.get(i), isMainFile, tasks);
+            }
+        }
+        Logger.getInstance().print(Logger.getInstance().stopBuffering());
+        
+        for(CompileTask task : tasks)
+        {
+            pool.execute(task);
+        }
+        for(CompileTask task : tasks)
+        {
+            task.join();
+            Logger.getInstance().print(task.log);
+            if(task.optimizerStats != null)
+            {
+                optimizerStats.add(task.optimizerStats);
+            }
+        }
+        
+        if(buildGraph != null)
+        {
+            for(CompileTask task : tasks)
+            {
+                buildGraph.record(task.module, task.fileName, task.isMainFile);
+            }
+            buildGraph.save();
+        }
+    }
+    
+    /**
+     * @param filePath The absolute path to a file
+     * @param isMainFile
+     * @return If the file doesn't have to be compiled again (always false without a BuildGraph)
+     */
+    private boolean isUpToDate(String filePath, boolean isMainFile)
+    {
+        return buildGraph != null && buildGraph.isUpToDate(filePath, isMainFile);
+    }
+    
+    /**
+     * Plans the compilation of a single file, planning all imported .gbj files that haven't been planned yet first
+     * 
+     * @param filePath The absolute path to the file
+     * @param fileName The name of the file without the .gbj ending
+     * @param isMainFile Determines if this is a main file of the project
+     * @param tasks The planned files, in order
+     */
+    private void plan(String filePath, String fileName, boolean isMainFile, List<CompileTask> tasks)
+    {
+        //The file (and everything it imports) is only lexed and parsed once, even if it was already imported by another file
+        ParsedModule module = ModuleRegistry.getInstance().getModule(filePath);
+        module.addStdlibMethods();
+        
+        for(AbstractSyntaxTree child : module.getAst().getChildren())
+        {
+            if(child.getType() == TreeNodeType.IMPORT && child.getContent().endsWith(".gbj"))
+            {
+                String path = Utils.toAbsolutePath(child.getContent());
+                
+                //Only compile every imported file once
+                if(compiledImports.add(path))
+                {
+                    if(isUpToDate(path, false))
+                    {
+                        Logger.getInstance().log(Logger.INFO, "Imported file " + child.getContent() + " is up to date.");
+                        skip(path, child.getContent().substring(0, child.getContent().length() - 4), tasks);
+                        continue;
+                    }
+                    Logger.getInstance().log(Logger.INFO, "Compiling imported file " + child.getContent() + ".");
+                    plan(path, child.getContent().substring(0, child.getContent().length() - 4), false, tasks);
+                }
+            }
+        }
+        
+        //A file that is both imported and compiled as a main file was written twice, the last write is the one that counts
+        for(Iterator<CompileTask> it = tasks.iterator(); it.hasNext();)
+        {
+            if(it.next().module == module)
+            {
+                it.remove();
+            }
+        }
+        tasks.add(new CompileTask(module, fileName, isMainFile, Logger.getInstance().stopBuffering()));
+        objects.remove(filePath);
+        objects.put(filePath, fileName);
+        Logger.getInstance().startBuffering();
+    }
+    
+    /**
+     * Takes a file that is up to date as it is, its object is taken from the ObjectCache<br>
+     * Imported files that changed without changing their symbols are still compiled again<br>
+     * The files are added in the same order plan() would have added them, so the ROM doesn't depend on which files changed
+     * 
+     * @param filePath The absolute path to the file
+     * @param fileName The name of the file without the .gbj ending
+     * @param tasks The planned files, in order
+     */
+    private void skip(String filePath, String fileName, List<CompileTask> tasks)
+    {
+        for(String imported : buildGraph.getImports(filePath))
+        {
+            if(compiledImports.add(imported))
+            {
+                String importedName = buildGraph.getFileName(imported);
+                if(isUpToDate(imported, false))
+                {
+                    skip(imported, importedName, tasks);
+                }
+                else
+                {
+                    Logger.getInstance().log(Logger.INFO, "Compiling imported file " + importedName + ".gbj.");
+                    plan(imported, importedName, false, tasks);
+                }
+            }
+        }
+        
+        objects.put(filePath, fileName);
+        if(assembler != null)
+        {
+            assembler.assemble(fileName);
+        }
+    }
+    
+    /**
+     * @return The names of all files (including the imported ones) that make up the ROM, every file has an object of its own
+     */
+    public List<String> getObjectNames()
+    {
+        return new ArrayList<String>(objects.values());
+    }
+    
+    /**
+     * @return What the optimizer did to every compiled file (empty if the optimizer is disabled)
+     */
+    public List<OptimizerStats> getOptimizerStats()
+    {
+        return optimizerStats;
+    }
+    
+    /**
+     * Resolves a single parsed file and generates its code
+     */
+    private class CompileTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private ParsedModule module;
+        private String fileName;
+        private boolean isMainFile;
+        private List<String> log; //The messages belonging to this file
+        private OptimizerStats optimizerStats;
+        
+        private CompileTask(ParsedModule module, String fileName, boolean isMainFile, List<String> log)
+        {
+            this.module = module;
+            this.fileName = fileName;
+            this.isMainFile = isMainFile;
+            this.log = log;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            Logger.getInstance().startBuffering();
+            try
+            {
+                compileModule();
+                
+                //Imported files are linked, not included, so the file can be assembled right away
+                if(assembler != null)
+                {
+                    assembler.assemble(fileName);
+                }
+            }
+            finally
+            {
+                log.addAll(Logger.getInstance().stopBuffering());
+            }
+        }
+        
+        private void compileModule()
+        {
+            if(debug)
+            {
+                Logger.getInstance().log(Logger.INFO, "Static Methods: " + Arrays.toString(module.getStaticMethods().toArray()));
+                List<Integer> objectSizes = new ArrayList<Integer>();
+                List<String> objectVariablePositions = new ArrayList<String>();
+                for(ClassLayout layout : module.getObjectTypes())
+                {
+                    objectSizes.add(layout.getSize());
+                    for(Map.Entry<String, Integer> variable : layout.getVariablePositions().entrySet())
+                    {
+                        objectVariablePositions.add(layout.getName() + "|" + variable.getKey() + "|" + variable.getValue());
+                    }
+                }
+                Logger.getInstance().log(Logger.INFO, "Object Types: " + Arrays.toString(module.getObjectTypes().toArray()));
+                Logger.getInstance().log(Logger.INFO, "Object Sizes: " + Arrays.toString(objectSizes.toArray()));
+                Logger.getInstance().log(Logger.INFO, "Object Constructors: " + Arrays.toString(module.getObjectConstructors().toArray()));
+                Logger.getInstance().log(Logger.INFO, "Object Methods: " + Arrays.toString(module.getObjectMethods().toArray()));
+                Logger.getInstance().log(Logger.INFO, "Object Variable Positions: " + Arrays.toString(objectVariablePositions.toArray()));
+                Logger.getInstance().log(Logger.INFO, "Object Instances: " + Arrays.toString(module.getObjectInstances().toArray()));
+            }
+            
+            AbstractSyntaxTree ast = module.getAst();
+            if(debug)
+            {
+                Logger.getInstance().log(Logger.INFO, ast.toString());
+            }
+            
+            //Resolve all variable accesses and function frames once, so the code generator only has to read them
+            Timings.Phase phase = Timings.getInstance().begin("resolve", fileName);
+            Resolver resolver = new Resolver(module.getSymbolTable());
+            resolver.resolve(ast);
+            phase.end();
+            
+            CodeGenerator cg = new CodeGenerator(ast, fileName, module, optimizationLevel, mbcVariant);
+            cg.generateAsmFile(isMainFile);
+            optimizerStats = cg.getOptimizerStats();
+        }
+    }
+}
\ No newline at end of file
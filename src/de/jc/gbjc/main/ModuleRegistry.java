@@ -0,0 +1,340 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
+import de.jc.gbjc.main.Parsing.Parser;
+import de.jc.gbjc.main.Util.Logger;
+import de.jc.gbjc.main.Util.Timings;
+import de.jc.gbjc.main.Util.Utils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Project-wide registry of all .gbj files (modules)<br>
+ * Every file is lexed and parsed exactly once, no matter how often it is imported<br>
+ * Every file is parsed by a task of its own, so with a pool independent files are parsed concurrently.
+ * An import only starts parsing the imported file, the importing file is parsed on without waiting for it.
+ * getModule() waits for a file and everything it imports, then checks the result in a fixed order<br>
+ * In streaming mode the parser pulls its tokens from a token window instead,
+ * so no file is ever held as a whole token list<br>
+ * With a ModuleCache, unchanged files are loaded from the cache instead of being lexed and parsed
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ModuleRegistry
+{
+    public static ModuleRegistry instance;
+    
+    private Map<String, ParseTask> tasks; //<absolute path> -> task parsing that file
+    private ForkJoinPool pool; //null if files are parsed right away by the thread importing them
+    private boolean streaming;
+    private boolean objectWarn;
+    private boolean debug;
+    private ModuleCache cache; //null if files are always parsed
+    
+    public ModuleRegistry()
+    {
+        this.tasks = new HashMap<String, ParseTask>();
+        this.pool = null;
+        this.streaming = false;
+        this.objectWarn = true;
+        this.debug = false;
+        this.cache = null;
+    }
+    
+    /**
+     * @param pool The pool files are parsed on
+     */
+    public void setPool(ForkJoinPool pool)
+    {
+        this.pool = pool;
+    }
+    
+    /**
+     * @param streaming Determines whether files are lexed on demand through a token window instead of as a whole
+     */
+    public void setStreaming(boolean streaming)
+    {
+        this.streaming = streaming;
+    }
+    
+    public boolean isStreaming()
+    {
+        return streaming;
+    }
+    
+    /**
+     * @param objectWarn Determines whether the object usage warning is shown
+     */
+    public void setObjectWarn(boolean objectWarn)
+    {
+        this.objectWarn = objectWarn;
+    }
+    
+    /**
+     * @param debug Determines whether the token list of every file is printed
+     */
+    public void setDebug(boolean debug)
+    {
+        this.debug = debug;
+    }
+    
+    /**
+     * @param cache The cache parsed files are stored in and loaded from
+     */
+    public void setCache(ModuleCache cache)
+    {
+        this.cache = cache;
+    }
+    
+    /**
+     * Returns the module for the given file, starting to parse it if that hasn't happened yet<br>
+     * The module may still be being parsed when this returns, use getModule() to wait for it
+     * 
+     * @param filePath The path to the file
+     * @return The module that receives the AST and symbols of the file
+     */
+    public ParsedModule load(String filePath)
+    {
+        String path = Utils.toAbsolutePath(filePath);
+        
+        ParseTask task;
+        synchronized(tasks)
+        {
+            task = tasks.get(path);
+            if(task != null)
+            {
+                return task.module;
+            }
+            task = new ParseTask(path);
+            tasks.put(path, task);
+        }
+        
+        if(pool == null)
+        {
+            task.invoke();
+        }
+        else if(ForkJoinTask.getPool() == pool)
+        {
+            task.fork();
+        }
+        else
+        {
+            pool.execute(task);
+        }
+        return task.module;
+    }
+    
+    /**
+     * Returns the module for the given file once it and everything it imports has been parsed, parsing them if necessary<br>
+     * The first time a file is returned, its import cycles and types are checked and the messages from parsing it are printed
+     * (imported files first)
+     * 
+     * @param filePath The path to the file
+     * @return The module holding the AST and symbols of the file
+     */
+    public synchronized ParsedModule getModule(String filePath)
+    {
+        ParsedModule module = load(filePath);
+        finish(getTask(module), new ArrayList<String>());
+        return module;
+    }
+    
+    private ParseTask getTask(ParsedModule module)
+    {
+        synchronized(tasks)
+        {
+            return tasks.get(module.getPath());
+        }
+    }
+    
+    /**
+     * Waits for a file and everything it imports, then checks them
+     * 
+     * @param task The task parsing the file
+     * @param importing Absolute paths of the files importing this one (used for finding import cycles)
+     */
+    private void finish(ParseTask task, List<String> importing)
+    {
+        if(task.finished)
+        {
+            return;
+        }
+        
+        if(importing.contains(task.path))
+        {
+            String cycle = "";
+            for(int i = importing.indexOf(task.path); i < importing.size(); i++)
+            {
+                cycle += importing.get(i) + " -> ";
+            }
+            Logger.getInstance().log(Logger.ERROR, "Import cycle detected: " + cycle + task.path);
+            System.exit(0);
+        }
+        
+        task.join();
+        importing.add(task.path);
+        for(ParsedModule imported : task.module.getImports())
+        {
+            finish(getTask(imported), importing);
+        }
+        importing.remove(importing.size() - 1);
+        
+        if(task.log != null)
+        {
+            Logger.getInstance().print(task.log);
+        }
+        //All classes the file can see are known now
+        task.module.checkObjectTypes();
+        task.log = null;
+        task.finished = true;
+    }
+    
+    public static synchronized ModuleRegistry getInstance()
+    {
+        if(instance == null)
+        {
+            instance = new ModuleRegistry();
+        }
+        return instance;
+    }
+    
+    /**
+     * Lexes and parses (or loads) a single file, the files it imports get tasks of their own
+     */
+    private class ParseTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+        
+        private String path;
+        private ParsedModule module;
+        private List<String> log; //Messages logged while parsing on the pool, printed by finish()
+        private boolean finished; //Set once the file and its imports have been checked
+        
+        private ParseTask(String path)
+        {
+            this.path = path;
+            this.module = new ParsedModule(path);
+            this.finished = false;
+        }
+        
+        @Override
+        protected void compute()
+        {
+            //Files parsed by the importing thread itself log right away, their messages are already in order
+            boolean buffer = inForkJoinPool();
+            if(buffer)
+            {
+                Logger.getInstance().startBuffering();
+            }
+            try
+            {
+                parse();
+            }
+            finally
+            {
+                if(buffer)
+                {
+                    log = Logger.getInstance().stopBuffering();
+                }
+            }
+        }
+        
+        private void parse()
+        {
+            String fileName = new File(path).getName().replace(".gbj", "");
+            Timings.Phase phase;
+            
+            //The file is read once, the cache key and the hash the BuildGraph records are taken from the bytes that are actually lexed
+            byte[] source = null;
+            if(cache != null || !streaming)
+            {
+                source = Lexer.read(path);
+                module.setSourceHash(ModuleCache.hash(source));
+            }
+            
+            String key = null;
+            if(cache != null)
+            {
+                phase = Timings.getInstance().begin("cache load", fileName);
+                key = cache.getKey(source);
+                boolean hit = key != null && cache.load(key, module);
+                phase.count("nodes", hit ? module.getAst().countNodes() : 0).end();
+                if(hit)
+                {
+                    loaded();
+                    return;
+                }
+            }
+            
+            TokenStream tokens;
+            if(streaming)
+            {
+                //The file is lexed while it is parsed
+                tokens = source == null ? Lexer.stream(path) : Lexer.stream(new ByteArrayInputStream(source));
+            }
+            else
+            {
+                phase = Timings.getInstance().begin("lex", fileName);
+                tokens = Lexer.lex(source);
+                phase.count("tokens", tokens.size()).end();
+            }
+            
+            if(debug)
+            {
+                //Printed before parsing, so it is also available for files with syntax errors (printing needs all tokens at once)
+                Lexer.printTokenList(streaming ? Lexer.lex(path) : tokens);
+            }
+            
+            phase = Timings.getInstance().begin("parse", fileName);
+            AbstractSyntaxTree ast = new Parser(tokens, module, objectWarn).parse();
+            module.setAst(ast);
+            phase.count("tokens", tokens.size()).count("nodes", ast.countNodes()).end();
+            
+            //The warnings of the lexer are part of the output, a file that has any is parsed again every time to repeat them
+            if(key != null && tokens.getWarnings() == 0)
+            {
+                phase = Timings.getInstance().begin("cache store", fileName);
+                cache.store(key, module);
+                phase.count("nodes", ast.countNodes()).end();
+            }
+        }
+        
+        /**
+         * Does what the parser would have done besides building the AST and collecting the symbols
+         */
+        private void loaded()
+        {
+            if(debug)
+            {
+                Lexer.printTokenList(Lexer.lex(path));
+            }
+            
+            for(AbstractSyntaxTree child : module.getAst().getChildren())
+            {
+                if(child.getType() == TreeNodeType.IMPORT && child.getContent().endsWith(".gbj"))
+                {
+                    module.addImport(load(child.getContent()));
+                }
+                else if(child.getType() == TreeNodeType.CLASS && objectWarn)
+                {
+                    Parser.warnObjectClass();
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,228 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Util.Logger;
+import de.jc.gbjc.main.Util.ProcessRunner;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * On-disk cache of assembled objects (-cache)<br>
+ * An object is keyed by the SHA-256 of its .asm file, of every file it (transitively) INCLUDEs or INCBINs
+ * and of the version of rgbasm, so unchanged files are copied from the cache instead of being assembled again<br>
+ * Like the ModuleCache, entries are never updated and the directory can be deleted at any time
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ObjectCache
+{
+    private File directory;
+    private ProcessRunner processRunner;
+    private String assemblerVersion; //Determined on first use, null if rgbasm can't tell its version, which disables the cache
+    private boolean versionChecked;
+    
+    /**
+     * Constructor
+     * 
+     * @param directory The directory the objects are stored in, created when the first object is written
+     * @param processRunner The runner rgbasm is run by
+     */
+    public ObjectCache(String directory, ProcessRunner processRunner)
+    {
+        this.directory = new File(directory);
+        this.processRunner = processRunner;
+    }
+    
+    /**
+     * Calculates the key of an .asm file
+     * 
+     * @param asmFile The .asm file
+     * @param includeDir The directory INCLUDEs are searched in if they aren't found relative to the working directory (like rgbasm -i)
+     * @return The key, null if the file can't be cached (e.g. because an included file is missing, rgbasm reports that)
+     */
+    public String getKey(String asmFile, String includeDir)
+    {
+        String version = getAssemblerVersion();
+        if(version == null)
+        {
+            return null;
+        }
+        
+        MessageDigest digest = ModuleCache.newDigest();
+        digest.update(version.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        try
+        {
+            if(!hashFile(digest, new File(asmFile), includeDir, new HashSet<String>()))
+            {
+                return null;
+            }
+        }
+        catch(IOException e)
+        {
+            return null;
+        }
+        return ModuleCache.toHex(digest.digest());
+    }
+    
+    /**
+     * Copies a cached object to where rgbasm would have written it
+     * 
+     * @param key The key of the .asm file
+     * @param objectFile The path of the object
+     * @return If the object was cached and could be copied
+     */
+    public boolean load(String key, String objectFile)
+    {
+        File entry = new File(directory, key + ".o");
+        if(!entry.isFile())
+        {
+            return false;
+        }
+        
+        try
+        {
+            Files.copy(entry.toPath(), new File(objectFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        }
+        catch(IOException e)
+        {
+            return false;
+        }
+    }
+    
+    /**
+     * Stores a freshly assembled object
+     * 
+     * @param key The key of the .asm file
+     * @param objectFile The path of the object
+     */
+    public void store(String key, String objectFile)
+    {
+        File temp = null;
+        try
+        {
+            directory.mkdirs();
+            //Copied next to the entry and renamed, so a build that is interrupted (or runs at the same time) never sees half an object
+            temp = File.createTempFile(key, ".tmp", directory);
+            Files.copy(new File(objectFile).toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp.toPath(), new File(directory, key + ".o").toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.WARNING, "Could not write the cached object of " + objectFile + ".");
+            if(temp != null)
+            {
+                temp.delete();
+            }
+        }
+    }
+    
+    /**
+     * Hashes a file and every file it includes, in the order they're included
+     * 
+     * @param digest
+     * @param file
+     * @param includeDir
+     * @param visited The canonical paths of the files that have already been hashed
+     * @return If all included files were found
+     * @throws IOException
+     */
+    private static boolean hashFile(MessageDigest digest, File file, String includeDir, Set<String> visited) throws IOException
+    {
+        byte[] content = Files.readAllBytes(file.toPath());
+        digest.update(file.getPath().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(content);
+        
+        //Files included multiple times (e.g. with include guards) only have to be hashed once, the including files decide where they end up
+        if(!visited.add(file.getCanonicalPath()))
+        {
+            return true;
+        }
+        
+        for(String line : new String(content, StandardCharsets.ISO_8859_1).split("\n"))
+        {
+            String trimmed = line.trim();
+            String upper = trimmed.toUpperCase();
+            if(!upper.startsWith("INCLUDE") && !upper.startsWith("INCBIN"))
+            {
+                continue;
+            }
+            
+            int start = trimmed.indexOf('"');
+            int end = trimmed.indexOf('"', start + 1);
+            if(start < 0 || end < 0)
+            {
+                continue;
+            }
+            String path = trimmed.substring(start + 1, end);
+            
+            File included = new File(path);
+            if(!included.isFile())
+            {
+                included = new File(includeDir, path);
+                if(!included.isFile())
+                {
+                    return false;
+                }
+            }
+            
+            if(upper.startsWith("INCBIN"))
+            {
+                digest.update(path.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(Files.readAllBytes(included.toPath()));
+            }
+            else if(!hashFile(digest, included, includeDir, visited))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Asks rgbasm for its version, once
+     * 
+     * @return The version, null if it couldn't be determined
+     */
+    private synchronized String getAssemblerVersion()
+    {
+        if(!versionChecked)
+        {
+            versionChecked = true;
+            try
+            {
+                ProcessRunner.Result result = processRunner.run("rgbasm", Collections.singletonList("-V"));
+                if(result.isSuccess() && !result.getOutput().isEmpty())
+                {
+                    assemblerVersion = String.join("\n", result.getOutput());
+                }
+            }
+            catch(IOException e)
+            {
+                assemblerVersion = null;
+            }
+            
+            if(assemblerVersion == null)
+            {
+                Logger.getInstance().log(Logger.WARNING, "Could not determine the version of rgbasm, assembled objects aren't cached.");
+            }
+        }
+        return assemblerVersion;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,382 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
+import de.jc.gbjc.main.Symbols.ClassLayout;
+import de.jc.gbjc.main.Symbols.MethodSymbol;
+import de.jc.gbjc.main.Symbols.SymbolTable;
+import de.jc.gbjc.main.Symbols.VariableSymbol;
+import de.jc.gbjc.main.Util.ConcatenatedList;
+import de.jc.gbjc.main.Util.Logger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the parser collects about a file: the AST, all methods (including return type)
+ * that can later be checked against, the object types with their layouts, constructors and methods<br>
+ * The lists only hold the symbols of this file, the getters return merged views
+ * that also contain the symbols of all (transitively) imported files<br>
+ * These are indexed into a SymbolTable once, which is used by the later stages
+ *
+ * @author robbi-blechdose
+ * 
+ */
+public class ParsedModule
+{
+    private String path;
+    
+    private List<MethodSymbol> staticMethods;
+    
+    private List<ClassLayout> objectTypes;
+    private List<MethodSymbol> objectConstructors;
+    private List<MethodSymbol> objectMethods;
+    private List<VariableSymbol> objectInstances; //<class name> <instance name>
+    private List<AbstractSyntaxTree> objectDeclarations; //Declarations with object types, checked by checkObjectTypes()
+    
+    private List<ParsedModule> imports; //Modules imported by this file, taken from the ModuleRegistry
+    private boolean stdlib; //Determines whether the standard library methods are part of the static methods
+    private SymbolTable symbolTable; //Built on first use
+    private AbstractSyntaxTree ast;
+    private String sourceHash; //The hash of the bytes this module was parsed from, null if the file was streamed without a cache
+    private String interfaceHash; //Built on first use
+    
+    /**
+     * GIANT STATIC ARRAY OF DOOM™
+     */
+    private static final List<MethodSymbol> standardLibMethods = Arrays.asList
+    (
+        //Utils.asm
+        new MethodSymbol(null, "void", "readPad", 0),
+        new MethodSymbol(null, "char", "isButtonPressed", 1),
+        new MethodSymbol(null, "char", "wasButtonPressed", 1),
+        new MethodSymbol(null, "void", "switchSpeed", 0),
+        //LCD.asm
+        new MethodSymbol(null, "void", "lcdOff", 0),
+        new MethodSymbol(null, "void", "loadPalettes", 2),
+        //ScreenPrinter.asm
+        new MethodSymbol(null, "void", "loadCharset", 0),
+        new MethodSymbol(null, "void", "clearScreen", 0),
+        new MethodSymbol(null, "void", "print", 3),
+        new MethodSymbol(null, "void", "printNumber", 3),
+        //Sprites.asm
+        new MethodSymbol(null, "void", "dmaTransfer", 0),
+        new MethodSymbol(null, "void", "copyDMARoutine", 0),
+        new MethodSymbol(null, "void", "clearOAM", 0),
+        new MethodSymbol(null, "void", "setSpritePosition", 3),
+        new MethodSymbol(null, "void", "setSpriteTile", 2),
+        new MethodSymbol(null, "void", "setSpriteAttributes", 2),
+        //Tiles.asm
+        new MethodSymbol(null, "void", "loadTiles", 4),
+        new MethodSymbol(null, "void", "setBGTile", 4),
+        new MethodSymbol(null, "void", "setWinTile", 4),
+        new MethodSymbol(null, "void", "loadBGMap", 6),
+        new MethodSymbol(null, "void", "loadWinMap", 6),
+        new MethodSymbol(null, "void", "setBGScroll", 2),
+        new MethodSymbol(null, "void", "setWinPosition", 2),
+        //GBPrinter.asm
+        new MethodSymbol(null, "char", "initPrinter", 0),
+        new MethodSymbol(null, "char", "transferData", 0),
+        new MethodSymbol(null, "char", "getStatus", 0),
+        new MethodSymbol(null, "char", "startPrint", 0)
+    );
+    
+    /**
+     * @param path The absolute path of the file
+     */
+    public ParsedModule(String path)
+    {
+        this.path = path;
+        this.staticMethods = new ArrayList<MethodSymbol>();
+        this.objectTypes = new ArrayList<ClassLayout>();
+        this.objectConstructors = new ArrayList<MethodSymbol>();
+        this.objectMethods = new ArrayList<MethodSymbol>();
+        this.objectInstances = new ArrayList<VariableSymbol>();
+        this.objectDeclarations = new ArrayList<AbstractSyntaxTree>();
+        this.imports = new ArrayList<ParsedModule>();
+        this.stdlib = false;
+    }
+    
+    public void addStaticMethod(MethodSymbol method)
+    {
+        staticMethods.add(method);
+    }
+    
+    /**
+     * Adds a class, its layout is filled in while the class is parsed
+     * 
+     * @param layout
+     */
+    public void addObjectType(ClassLayout layout)
+    {
+        objectTypes.add(layout);
+    }
+    
+    public void addObjectConstructor(MethodSymbol constructor)
+    {
+        objectConstructors.add(constructor);
+    }
+    
+    public void addObjectMethod(MethodSymbol method)
+    {
+        objectMethods.add(method);
+    }
+    
+    public void addObjectInstance(VariableSymbol instance)
+    {
+        objectInstances.add(instance);
+    }
+    
+    /**
+     * Adds a declaration that isn't char or int, the class might be declared further down (or not at all)
+     * 
+     * @param declaration The DECLARATION node
+     */
+    public void addObjectDeclaration(AbstractSyntaxTree declaration)
+    {
+        objectDeclarations.add(declaration);
+    }
+    
+    /**
+     * Checks the types of all declarations that aren't char or int, once all classes are known
+     * (after this file and all files it imports have been parsed)
+     */
+    public void checkObjectTypes()
+    {
+        for(AbstractSyntaxTree declaration : objectDeclarations)
+        {
+            if(!getSymbolTable().isObjectType(declaration.getDataType()))
+            {
+                Logger.getInstance().log(Logger.ERROR, "Syntax error on line " + declaration.getLine() + ": Unknown type " + declaration.getDataType() + ".");
+                System.exit(0);
+            }
+        }
+    }
+    
+    /**
+     * Adds an imported module, its symbols are merged in by the getters
+     * 
+     * @param module
+     */
+    public void addImport(ParsedModule module)
+    {
+        imports.add(module);
+        symbolTable = null;
+    }
+    
+    public String getPath()
+    {
+        return path;
+    }
+    
+    /**
+     * @return The modules imported by this file (not the ones imported by those)
+     */
+    public List<ParsedModule> getImports()
+    {
+        return imports;
+    }
+    
+    public void addStdlibMethods()
+    {
+        stdlib = true;
+        symbolTable = null;
+    }
+    
+    public void setAst(AbstractSyntaxTree ast)
+    {
+        this.ast = ast;
+    }
+    
+    public AbstractSyntaxTree getAst()
+    {
+        return ast;
+    }
+    
+    public void setSourceHash(String sourceHash)
+    {
+        this.sourceHash = sourceHash;
+    }
+    
+    public String getSourceHash()
+    {
+        return sourceHash;
+    }
+    
+    /**
+     * Hashes everything a file importing this one gets to see: the symbols of this file and of all (transitively) imported files<br>
+     * Imported files are linked, so a file importing this one generates the same code as long as this hash stays the same
+     * 
+     * @return The SHA-256 of the symbols
+     */
+    public synchronized String getInterfaceHash()
+    {
+        if(interfaceHash == null)
+        {
+            StringBuilder sb = new StringBuilder();
+            for(ParsedModule module : getModuleOrder())
+            {
+                for(MethodSymbol method : module.staticMethods)
+                {
+                    appendMethod(sb.append("static "), method);
+                }
+                for(ClassLayout layout : module.objectTypes)
+                {
+                    sb.append("class ").append(layout.getName()).append(' ').append(layout.getSize()).append('\n');
+                    for(Map.Entry<String, Integer> variable : layout.getVariablePositions().entrySet())
+                    {
+                        sb.append("variable ").append(variable.getKey()).append(' ').append(variable.getValue()).append('\n');
+                    }
+                }
+                for(MethodSymbol constructor : module.objectConstructors)
+                {
+                    appendMethod(sb.append("constructor "), constructor);
+                }
+                for(MethodSymbol method : module.objectMethods)
+                {
+                    appendMethod(sb.append("method "), method);
+                }
+                for(VariableSymbol instance : module.objectInstances)
+                {
+                    sb.append("instance ").append(instance.getType()).append(' ').append(instance.getName()).append('\n');
+                }
+            }
+            interfaceHash = ModuleCache.hash(sb.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return interfaceHash;
+    }
+    
+    private static void appendMethod(StringBuilder sb, MethodSymbol method)
+    {
+        sb.append(method.getClassName()).append(' ').append(method.getReturnType()).append(' ').append(method.getName()).append(' ').append(method.getNumArgs()).append('\n');
+    }
+    
+    /**
+     * Returns this module and all (transitively) imported modules, imported modules first<br>
+     * Every module is only contained once, even if it is imported by multiple files
+     * 
+     * @return
+     */
+    private List<ParsedModule> getModuleOrder()
+    {
+        List<ParsedModule> order = new ArrayList<ParsedModule>();
+        collectModules(this, new HashSet<ParsedModule>(), order);
+        return order;
+    }
+    
+    private static void collectModules(ParsedModule module, Set<ParsedModule> visited, List<ParsedModule> order)
+    {
+        if(visited.add(module))
+        {
+            for(ParsedModule imported : module.imports)
+            {
+                collectModules(imported, visited, order);
+            }
+            order.add(module);
+        }
+    }
+    
+    /**
+     * Returns the symbol table of this file, including all imported files
+     * 
+     * @return
+     */
+    public synchronized SymbolTable getSymbolTable()
+    {
+        if(symbolTable == null)
+        {
+            symbolTable = new SymbolTable(getStaticMethods(), getObjectTypes(), getObjectConstructors(), getObjectMethods(), getObjectInstances());
+        }
+        return symbolTable;
+    }
+    
+    //Only the symbols of this file, for the ModuleCache
+    
+    List<MethodSymbol> getOwnStaticMethods()
+    {
+        return staticMethods;
+    }
+    
+    List<ClassLayout> getOwnObjectTypes()
+    {
+        return objectTypes;
+    }
+    
+    List<MethodSymbol> getOwnObjectConstructors()
+    {
+        return objectConstructors;
+    }
+    
+    List<MethodSymbol> getOwnObjectMethods()
+    {
+        return objectMethods;
+    }
+    
+    List<VariableSymbol> getOwnObjectInstances()
+    {
+        return objectInstances;
+    }
+    
+    public List<MethodSymbol> getStaticMethods()
+    {
+        List<List<MethodSymbol>> segments = new ArrayList<List<MethodSymbol>>();
+        if(stdlib)
+        {
+            segments.add(standardLibMethods);
+        }
+        for(ParsedModule module : getModuleOrder())
+        {
+            segments.add(module.staticMethods);
+        }
+        return new ConcatenatedList<MethodSymbol>(segments);
+    }
+    
+    public List<ClassLayout> getObjectTypes()
+    {
+        List<List<ClassLayout>> segments = new ArrayList<List<ClassLayout>>();
+        for(ParsedModule module : getModuleOrder())
+        {
+            segments.add(module.objectTypes);
+        }
+        return new ConcatenatedList<ClassLayout>(segments);
+    }
+    
+    public List<MethodSymbol> getObjectConstructors()
+    {
+        List<List<MethodSymbol>> segments = new ArrayList<List<MethodSymbol>>();
+        for(ParsedModule module : getModuleOrder())
+        {
+            segments.add(module.objectConstructors);
+        }
+        return new ConcatenatedList<MethodSymbol>(segments);
+    }
+    
+    public List<MethodSymbol> getObjectMethods()
+    {
+        List<List<MethodSymbol>> segments = new ArrayList<List<MethodSymbol>>();
+        for(ParsedModule module : getModuleOrder())
+        {
+            segments.add(module.objectMethods);
+        }
+        return new ConcatenatedList<MethodSymbol>(segments);
+    }
+    
+    public List<VariableSymbol> getObjectInstances()
+    {
+        List<List<VariableSymbol>> segments = new ArrayList<List<VariableSymbol>>();
+        for(ParsedModule module : getModuleOrder())
+        {
+            segments.add(module.objectInstances);
+        }
+        return new ConcatenatedList<VariableSymbol>(segments);
+    }
+}
\ No newline at end of file
@@ -6,6 +6,8 @@
  */
 package de.jc.gbjc.main.Parsing;
 
+import de.jc.gbjc.main.Symbols.FrameLayout;
+import de.jc.gbjc.main.VarHelper;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -39,6 +41,20 @@ public class AbstractSyntaxTree
     private int line; //Line of code this was generated from (if applicable)
     private List<AbstractSyntaxTree> children;
     
+    //Typed payload, parsed once by the parser (the content is kept for printing)
+    private int symbol; //Nodes made from a single token: the interned id of the content (-1 for all others)
+    private int value; //CONSTANT, CASE: the number
+    private String dataType; //DECLARATION, FUNC_ARG, ARRAY_DECLARATION: the (entry) data type
+    private String name; //DECLARATION, FUNC_ARG, ARRAY_DECLARATION: the variable name
+    private int arrayLength; //ARRAY_DECLARATION: the number of entries
+    private String objectName; //OBJECT_CALL: the object the method is called on
+    private String methodName; //OBJECT_CALL: the called method
+    
+    //Set by the Resolver
+    private VarHelper staticAccess; //VARIABLE / ARRAY_ACCESS: the variable as seen from a section
+    private VarHelper objectAccess; //VARIABLE / ARRAY_ACCESS: the variable as seen from an object class
+    private FrameLayout frameLayout; //FUNCTION / CONSTRUCTOR: the stack frame of the function
+    
     /**
      * Constructor
      * 
@@ -52,6 +68,7 @@ public class AbstractSyntaxTree
         this.content = content;
         this.line = line;
         this.children = new ArrayList<AbstractSyntaxTree>();
+        this.symbol = -1;
     }
     
     /**
@@ -74,6 +91,19 @@ public class AbstractSyntaxTree
         return children;
     }
 
+    /**
+     * @return The number of nodes in this tree, including this one
+     */
+    public int countNodes()
+    {
+        int count = 1;
+        for(AbstractSyntaxTree child : children)
+        {
+            count += child.countNodes();
+        }
+        return count;
+    }
+    
     public TreeNodeType getType()
     {
         return type;
@@ -95,6 +125,120 @@ public class AbstractSyntaxTree
         return line;
     }
     
+    public void setSymbol(int symbol)
+    {
+        this.symbol = symbol;
+    }
+    
+    /**
+     * @return The id of the content in the Interner, -1 if this node wasn't made from a single token
+     */
+    public int getSymbol()
+    {
+        return symbol;
+    }
+    
+    public void setValue(int value)
+    {
+        this.value = value;
+    }
+    
+    /**
+     * @return The number of a CONSTANT or CASE node
+     */
+    public int getValue()
+    {
+        return value;
+    }
+    
+    /**
+     * Sets the payload of a DECLARATION, FUNC_ARG or ARRAY_DECLARATION node
+     * 
+     * @param dataType The (entry) data type
+     * @param name The variable name
+     */
+    public void setDeclaration(String dataType, String name)
+    {
+        this.dataType = dataType;
+        this.name = name;
+    }
+    
+    public String getDataType()
+    {
+        return dataType;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    public void setArrayLength(int arrayLength)
+    {
+        this.arrayLength = arrayLength;
+    }
+    
+    public int getArrayLength()
+    {
+        return arrayLength;
+    }
+    
+    /**
+     * Sets the payload of an OBJECT_CALL node
+     * 
+     * @param objectName The object the method is called on
+     * @param methodName The called method
+     */
+    public void setObjectCall(String objectName, String methodName)
+    {
+        this.objectName = objectName;
+        this.methodName = methodName;
+    }
+    
+    public String getObjectName()
+    {
+        return objectName;
+    }
+    
+    public String getMethodName()
+    {
+        return methodName;
+    }
+    
+    /**
+     * Stores the resolved variable access (only used for VARIABLE and ARRAY_ACCESS nodes)
+     * 
+     * @param staticAccess The variable as seen from a section
+     * @param objectAccess The variable as seen from an object class
+     */
+    public void setAccess(VarHelper staticAccess, VarHelper objectAccess)
+    {
+        this.staticAccess = staticAccess;
+        this.objectAccess = objectAccess;
+    }
+    
+    /**
+     * @param isStatic Determines if this is a section (static) or an object class
+     * @return The resolved variable access or null if this node hasn't been resolved
+     */
+    public VarHelper getAccess(boolean isStatic)
+    {
+        return isStatic ? staticAccess : objectAccess;
+    }
+    
+    public void setFrameLayout(FrameLayout frameLayout)
+    {
+        this.frameLayout = frameLayout;
+    }
+    
+    /**
+     * @return The stack frame of this function (only set for FUNCTION and CONSTRUCTOR nodes)
+     */
+    public FrameLayout getFrameLayout()
+    {
+        return frameLayout;
+    }
+    
     @Override
     public String toString()
     {
@@ -7,59 +7,259 @@
 package de.jc.gbjc.main.Parsing;
 
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
-import de.jc.gbjc.main.Token;
+import de.jc.gbjc.main.TokenStream;
 import de.jc.gbjc.main.Token.TokenType;
-import java.util.List;
 
 /**
+ * Parses the conditions of if's and while loops<br>
+ * A condition is a comparison or a combination of conditions with &amp;&amp;, || and !. ! binds strongest, then &amp;&amp;, then ||,
+ * parts of the condition can be grouped with parentheses<br>
+ * The result is a tree of CONDITION nodes: comparisons have the comparison operator as content and both expressions (see MathsParser) as children,
+ * &amp;&amp; and || have both conditions as children and ! only one
  *
  * @author robbi-blechdose
  * 
  */
 public class LogicParser
 {
-    private List<Token> tokens;
+    private TokenStream tokens;
+    private Parser parser;
     private int i;
-    private int endIndex;
     
-    public LogicParser(List<Token> tokens)
+    /**
+     * Constructor
+     * 
+     * @param tokens The tokens of the file
+     * @param parser The parser the operands of comparisons are parsed by
+     */
+    public LogicParser(TokenStream tokens, Parser parser)
     {
         this.tokens = tokens;
+        this.parser = parser;
     }
     
-    public AbstractSyntaxTree parseCondition(int startIndex, int endIndex)
+    /**
+     * Grammar: {@literal <}and{@literal >} <b>(</b>|| {@literal <}and{@literal >}<b>)</b><sup>*</sup> → AST<br>
+     * {@literal <}not{@literal >} <b>(</b>&amp;&amp; {@literal <}not{@literal >}<b>)</b><sup>*</sup> → {@literal <}and{@literal >}<br>
+     * !{@literal <}not{@literal >} | ({@literal <}condition{@literal >}) | {@literal <}expression{@literal >} {@literal <}comparison{@literal >}
+     * {@literal <}expression{@literal >} → {@literal <}not{@literal >}<br>
+     * {@literal <} | {@literal <}= | == | != | {@literal >} | {@literal >}= → {@literal <}comparison{@literal >}
+     * 
+     * @param startIndex The index of the first token of the condition
+     * @return
+     */
+    public AbstractSyntaxTree parseCondition(int startIndex)
     {
-        this.endIndex = endIndex;
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, "", -1);
-        
         i = startIndex;
-        while(i <= endIndex)
+        return parseOr();
+    }
+    
+    /**
+     * @return The index of the first token after the last parsed condition
+     */
+    public int getIndex()
+    {
+        return i;
+    }
+    
+    private AbstractSyntaxTree parseOr()
+    {
+        AbstractSyntaxTree ast = parseAnd();
+        
+        while(isDoubled(TokenType.PIPE))
+        {
+            AbstractSyntaxTree or = new AbstractSyntaxTree(TreeNodeType.CONDITION, "||", tokens.getLine(i));
+            i += 2;
+            or.addChild(ast);
+            or.addChild(parseAnd());
+            ast = or;
+        }
+        
+        return ast;
+    }
+    
+    private AbstractSyntaxTree parseAnd()
+    {
+        AbstractSyntaxTree ast = parseNot();
+        
+        while(isDoubled(TokenType.AND))
         {
-            if(tokens.get(i).getType() == TokenType.LPAREN)
+            AbstractSyntaxTree and = new AbstractSyntaxTree(TreeNodeType.CONDITION, "&&", tokens.getLine(i));
+            i += 2;
+            and.addChild(ast);
+            and.addChild(parseNot());
+            ast = and;
+        }
+        
+        return ast;
+    }
+    
+    private AbstractSyntaxTree parseNot()
+    {
+        //A single "!" at the start of an operand (not followed by "=") negates the condition
+        if(tokens.getType(i) == TokenType.NOT && tokens.getType(i + 1) != TokenType.EQUALS)
+        {
+            AbstractSyntaxTree not = new AbstractSyntaxTree(TreeNodeType.CONDITION, "!", tokens.getLine(i));
+            i++;
+            not.addChild(parseNot());
+            return not;
+        }
+        //Parentheses can either group conditions or be part of the first expression of a comparison
+        else if(tokens.getType(i) == TokenType.LPAREN && !isExpressionInParentheses())
+        {
+            i++;
+            AbstractSyntaxTree ast = parseOr();
+            if(tokens.getType(i) != TokenType.RPAREN)
             {
-                ast.addChild(parseLogicalExpression());
+                parser.syntaxError(tokens.getLine(i), "Missing closing parenthesis.");
             }
+            i++;
+            return ast;
         }
         
-        return ast;
+        return parseComparison();
     }
     
-    public AbstractSyntaxTree parseLogicalExpression()
+    private AbstractSyntaxTree parseComparison()
     {
-        AbstractSyntaxTree ast = null;
+        MathsParser mathsParser = new MathsParser(tokens, parser);
+        AbstractSyntaxTree left = mathsParser.parseMathsOperation(i);
+        i = mathsParser.getIndex();
+        
+        String comparison = null;
+        int line = tokens.getLine(i);
         
-        while(i <= endIndex)
+        if(tokens.getType(i) == TokenType.SMALLER || tokens.getType(i) == TokenType.BIGGER)
+        {
+            comparison = tokens.getType(i) == TokenType.SMALLER ? "<" : ">";
+            i++;
+            // <= and >=
+            if(tokens.getType(i) == TokenType.EQUALS)
+            {
+                comparison += "=";
+                i++;
+            }
+        }
+        else if(tokens.getType(i) == TokenType.EQUALS)
+        {
+            // ==
+            if(tokens.getType(i + 1) == TokenType.EQUALS)
+            {
+                comparison = "==";
+                i += 2;
+            }
+            //Syntax error
+            else
+            {
+                parser.syntaxError(line, "\"=\" found. Did you mean \"==\"?");
+            }
+        }
+        else if(tokens.getType(i) == TokenType.NOT)
         {
-            if(tokens.get(i).getType() == TokenType.LPAREN)
+            // !=
+            if(tokens.getType(i + 1) == TokenType.EQUALS)
             {
-                ast.addChild(parseLogicalExpression());
+                comparison = "!=";
+                i += 2;
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER)
+            //Syntax error
+            else
             {
-                
+                parser.syntaxError(line, "\"!\" found. Did you mean \"!=\"?");
             }
         }
+        else
+        {
+            parser.syntaxError(line, "Expected a comparison (<, <=, ==, !=, >=, >).");
+        }
+        
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, comparison, line);
+        ast.addChild(left);
+        ast.addChild(mathsParser.parseMathsOperation(i));
+        i = mathsParser.getIndex();
         
         return ast;
     }
+    
+    /**
+     * Checks if the token at the current index and the next one are both of the given type (&amp;&amp; and || consist of two tokens)
+     * 
+     * @param type
+     * @return
+     */
+    private boolean isDoubled(TokenType type)
+    {
+        if(tokens.getType(i) != type)
+        {
+            return false;
+        }
+        if(tokens.getType(i + 1) != type)
+        {
+            parser.syntaxError(tokens.getLine(i), "Single \"" + (type == TokenType.AND ? "&" : "|") + "\" found. Did you mean \"" +
+                    (type == TokenType.AND ? "&&" : "||") + "\"?");
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if the parentheses at the current index belong to an expression, e.g. (a + 1) * 2 {@literal <} b<br>
+     * That's the case if the matching closing parenthesis is followed by an operator or a comparison
+     * 
+     * @return
+     */
+    private boolean isExpressionInParentheses()
+    {
+        int depth = 0;
+        int index = i;
+        while(tokens.has(index))
+        {
+            if(tokens.getType(index) == TokenType.LPAREN)
+            {
+                depth++;
+            }
+            else if(tokens.getType(index) == TokenType.RPAREN)
+            {
+                depth--;
+                if(depth == 0)
+                {
+                    break;
+                }
+            }
+            //Braces and semicolons can't be part of a condition, so the parenthesis isn't closed
+            else if(tokens.getType(index) == TokenType.LBRACE || tokens.getType(index) == TokenType.SEMICOLON)
+            {
+                return false;
+            }
+            index++;
+        }
+        
+        if(!tokens.has(index + 1))
+        {
+            return false;
+        }
+        
+        switch(tokens.getType(index + 1))
+        {
+            case PLUS:
+            case MINUS:
+            case MULTIPLY:
+            case DIVIDE:
+            case MODULO:
+            case SMALLER:
+            case BIGGER:
+            case EQUALS:
+            {
+                return true;
+            }
+            case NOT:
+            {
+                // !=
+                return tokens.getType(index + 2) == TokenType.EQUALS;
+            }
+            default:
+            {
+                return false;
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -7,35 +7,170 @@
 package de.jc.gbjc.main.Parsing;
 
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
-import de.jc.gbjc.main.Token;
-import java.util.List;
+import de.jc.gbjc.main.Token.TokenType;
+import de.jc.gbjc.main.TokenStream;
 
 /**
- * Parses mathematical expressions
+ * Parses mathematical expressions by precedence climbing<br>
+ * *, / and % bind stronger than + and -, all of them are left-associative. Operands can be negated (unary minus)
+ * and parts of the expression grouped with parentheses<br>
+ * The result is a tree of OPERATION nodes (the operator as content and both operands as children, a negation only has one child)
+ * with constants, variables, array accesses and method calls as leaves. Those are parsed by the Parser
  *
  * @author robbi-blechdose
  *
  */
 public class MathsParser
 {
-    private List<Token> tokens;
+    private TokenStream tokens;
+    private Parser parser;
     private int i;
     
-    public MathsParser(List<Token> tokens)
+    /**
+     * Constructor
+     * 
+     * @param tokens The tokens of the file
+     * @param parser The parser the operands are parsed by
+     */
+    public MathsParser(TokenStream tokens, Parser parser)
     {
         this.tokens = tokens;
+        this.parser = parser;
     }
     
-    public AbstractSyntaxTree parseMathsOperation(int startIndex, boolean isControlStructure)
+    /**
+     * Grammar: {@literal <}operand{@literal >} <b>(</b>{@literal <}operator{@literal >} {@literal <}operand{@literal >}<b>)</b><sup>*</sup> → AST<br>
+     * -{@literal <}operand{@literal >} | ({@literal <}expression{@literal >}) | {@literal <}constant{@literal >} | {@literal <}variable{@literal >}
+     * | {@literal <}array access{@literal >} | {@literal <}function call{@literal >} → {@literal <}operand{@literal >}
+     * 
+     * @param startIndex The index of the first token of the expression
+     * @return The expression, a single operand if it doesn't contain any operators
+     */
+    public AbstractSyntaxTree parseMathsOperation(int startIndex)
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.OPERATION, "", -1);
-        
         i = startIndex;
-        while(i < tokens.size())
+        return parseExpression(1);
+    }
+    
+    /**
+     * @return The index of the first token after the last parsed expression
+     */
+    public int getIndex()
+    {
+        return i;
+    }
+    
+    /**
+     * Parses operands and all following operators that bind at least as strong as the given precedence
+     * 
+     * @param minPrecedence The precedence of the weakest operator that is part of this expression
+     * @return
+     */
+    private AbstractSyntaxTree parseExpression(int minPrecedence)
+    {
+        AbstractSyntaxTree ast = parseOperand();
+        
+        while(tokens.has(i) && getPrecedence(tokens.getType(i)) >= minPrecedence)
+        {
+            int precedence = getPrecedence(tokens.getType(i));
+            AbstractSyntaxTree operation = new AbstractSyntaxTree(TreeNodeType.OPERATION, getOperator(tokens.getType(i)), tokens.getLine(i));
+            i++;
+            operation.addChild(ast);
+            //Only operators that bind stronger belong to the right operand, which makes operators of the same precedence left-associative
+            operation.addChild(parseExpression(precedence + 1));
+            ast = operation;
+        }
+        
+        return ast;
+    }
+    
+    private AbstractSyntaxTree parseOperand()
+    {
+        if(tokens.getType(i) == TokenType.MINUS)
         {
+            int line = tokens.getLine(i);
+            i++;
+            AbstractSyntaxTree operand = parseOperand();
+            
+            //Negative constants are folded right away
+            if(operand.getType() == TreeNodeType.CONSTANT)
+            {
+                AbstractSyntaxTree constant = new AbstractSyntaxTree(TreeNodeType.CONSTANT, String.valueOf(-operand.getValue()), operand.getLine());
+                constant.setValue(-operand.getValue());
+                return constant;
+            }
             
+            AbstractSyntaxTree negation = new AbstractSyntaxTree(TreeNodeType.OPERATION, "-", line);
+            negation.addChild(operand);
+            return negation;
+        }
+        else if(tokens.getType(i) == TokenType.LPAREN)
+        {
+            i++;
+            AbstractSyntaxTree ast = parseExpression(1);
+            if(tokens.getType(i) != TokenType.RPAREN)
+            {
+                parser.syntaxError(tokens.getLine(i), "Missing closing parenthesis.");
+            }
+            i++;
+            return ast;
         }
         
+        AbstractSyntaxTree ast = parser.parseOperand(i);
+        i = parser.getOperandEnd() + 1;
         return ast;
     }
+    
+    /**
+     * @param type The type of a token
+     * @return 2 for *, / and %, 1 for + and -, 0 if the token isn't an operator
+     */
+    private static int getPrecedence(TokenType type)
+    {
+        switch(type)
+        {
+            case MULTIPLY:
+            case DIVIDE:
+            case MODULO:
+            {
+                return 2;
+            }
+            case PLUS:
+            case MINUS:
+            {
+                return 1;
+            }
+            default:
+            {
+                return 0;
+            }
+        }
+    }
+    
+    private static String getOperator(TokenType type)
+    {
+        switch(type)
+        {
+            case MULTIPLY:
+            {
+                return "*";
+            }
+            case DIVIDE:
+            {
+                return "/";
+            }
+            case MODULO:
+            {
+                return "%";
+            }
+            case PLUS:
+            {
+                return "+";
+            }
+            default:
+            {
+                return "-";
+            }
+        }
+    }
 }
\ No newline at end of file
@@ -6,55 +6,116 @@
  */
 package de.jc.gbjc.main.Parsing;
 
+import de.jc.gbjc.main.Util.Interner;
 import de.jc.gbjc.main.Util.Logger;
 import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
-import de.jc.gbjc.main.Token;
+import de.jc.gbjc.main.ModuleRegistry;
+import de.jc.gbjc.main.ParsedModule;
+import de.jc.gbjc.main.Symbols.ClassLayout;
+import de.jc.gbjc.main.Symbols.MethodSymbol;
+import de.jc.gbjc.main.Symbols.VariableSymbol;
+import de.jc.gbjc.main.TokenStream;
 import de.jc.gbjc.main.Token.TokenType;
-import java.util.List;
 
 /**
  * The second stage of the compilation process,
- * the parser
+ * the parser<br>
+ * Builds the AST in a single pass over the tokens, collecting the method signatures, class layouts,
+ * constructors and imports of the file into a ParsedModule on the way<br>
+ * Types can be used before their class is declared (or in a file that is still being parsed),
+ * so they are only checked by ParsedModule.checkObjectTypes() once the file and its imports have been parsed
  *
  * @author robbi-blechdose
  * 
  */
 public class Parser
 {
-    private List<Token> tokens;
+    private TokenStream tokens;
     private int i;
     private int j;
     
-    private List<String> objectTypes;
+    private ParsedModule module;
+    private ClassLayout currentClass; //The class currently being parsed
     
     private boolean objectWarn;
     
     /**
      * Instantiates a parser object
      * 
-     * @param tokens The token list to be parsed into an AST
-     * @param objectTypes The object types to be used for reference
+     * @param tokens The tokens to be parsed into an AST
+     * @param module Receives the symbols of the file (and its imports, so their object types can be used)
      */
-    public Parser(List<Token> tokens, List<String> objectTypes, boolean objectWarn)
+    public Parser(TokenStream tokens, ParsedModule module, boolean objectWarn)
     {
         this.tokens = tokens;
-        this.objectTypes = objectTypes;
+        this.module = module;
         this.i = 0;
         this.objectWarn = objectWarn;
     }
     
+    /**
+     * Warns about the use of an object class (also used for files loaded from the ModuleCache)
+     */
+    public static void warnObjectClass()
+    {
+        Logger.getInstance().log(Logger.WARNING, "Object class definition detected. Object classes have greatly reduced performance compared to static"
+                + " sections, only use them if necessary. This warning can be disabled with the option -noObjWarn");
+    }
+    
     /**
      * Outputs a syntax error and terminates the program
      * 
      * @param line The line the error occured on
      * @param message A description of the error
      */
-    private void syntaxError(int line, String message)
+    void syntaxError(int line, String message)
     {
         Logger.getInstance().log(Logger.ERROR, "Syntax error on line " + line + ": " + message);
         System.exit(0);
     }
     
+    /**
+     * Creates a node with the text of a token as content, keeping the id of the text for later phases
+     * 
+     * @param type The type of the node
+     * @param token The index of the token
+     * @return
+     */
+    private AbstractSyntaxTree newNode(TreeNodeType type, int token)
+    {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(type, tokens.getString(token), tokens.getLine(token));
+        ast.setSymbol(tokens.getSymbol(token));
+        return ast;
+    }
+    
+    /**
+     * Creates a CONSTANT node, parsing the number only once
+     * 
+     * @param token The index of the constant token
+     * @return
+     */
+    private AbstractSyntaxTree newConstant(int token)
+    {
+        AbstractSyntaxTree ast = newNode(TreeNodeType.CONSTANT, token);
+        ast.setValue(tokens.getValue(token));
+        return ast;
+    }
+    
+    /**
+     * Creates a DECLARATION or FUNC_ARG node
+     * 
+     * @param type DECLARATION or FUNC_ARG
+     * @param dataType The index of the token containing the data type
+     * @param name The index of the token containing the variable name
+     * @return
+     */
+    private AbstractSyntaxTree newDeclaration(TreeNodeType type, int dataType, int name)
+    {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(type, tokens.getString(dataType) + "|" + tokens.getString(name), tokens.getLine(name));
+        ast.setDeclaration(tokens.getString(dataType), tokens.getString(name));
+        return ast;
+    }
+    
     private void missingOpeningBraceError(int line)
     {
         syntaxError(line, "Missing opening brace.");
@@ -90,17 +151,17 @@ public class Parser
         i += 2;
         
         String str = "";
-        int line = tokens.get(i).getLine();
+        int line = tokens.getLine(i);
         
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.RBRACE)
+            if(tokens.getType(i) == TokenType.RBRACE)
             {
                 break;
             }
-            else if(tokens.get(i).getType() == TokenType.STRING)
+            else if(tokens.getType(i) == TokenType.STRING)
             {
-                str += tokens.get(i).getString() + "\n";
+                str += tokens.getString(i) + "\n";
             }
             else
             {
@@ -121,7 +182,13 @@ public class Parser
     private AbstractSyntaxTree parseArrayDeclaration()
     {
         AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.ARRAY_DECLARATION,
-                tokens.get(i).getString() + "|" + tokens.get(i + 2).getString() + "|" + tokens.get(i + 4).getString(), tokens.get(i).getLine());
+                tokens.getString(i) + "|" + tokens.getString(i + 2) + "|" + tokens.getString(i + 4), tokens.getLine(i));
+        if(tokens.getType(i + 2) != TokenType.CONSTANT)
+        {
+            syntaxError(tokens.getLine(i), "Array sizes can only be constants.");
+        }
+        ast.setDeclaration(tokens.getString(i), tokens.getString(i + 4));
+        ast.setArrayLength(tokens.getValue(i + 2));
         i += 4;
         
         return ast;
@@ -134,18 +201,18 @@ public class Parser
      */
     private AbstractSyntaxTree parseArrayAccess()
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.ARRAY_ACCESS, tokens.get(i).getString(), tokens.get(i).getLine());
-        if(tokens.get(i + 2).getType() == TokenType.CONSTANT)
+        AbstractSyntaxTree ast = newNode(TreeNodeType.ARRAY_ACCESS, i);
+        if(tokens.getType(i + 2) == TokenType.CONSTANT)
         {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i + 2).getString(), tokens.get(i + 2).getLine()));
+            ast.addChild(newConstant(i + 2));
         }
-        else if(tokens.get(i + 2).getType() == TokenType.IDENTIFIER)
+        else if(tokens.getType(i + 2) == TokenType.IDENTIFIER)
         {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i + 2).getString(), tokens.get(i + 2).getLine()));
+            ast.addChild(newNode(TreeNodeType.VARIABLE, i + 2));
         }
         else
         {
-            syntaxError(tokens.get(i).getLine(), "Array indices can only be constants and variables. What the hell do you think you're doing?");
+            syntaxError(tokens.getLine(i), "Array indices can only be constants and variables. What the hell do you think you're doing?");
         }
         i += 3;
         
@@ -160,58 +227,58 @@ public class Parser
      */
     private AbstractSyntaxTree parseInstantiation()
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.INSTANTIATION, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.INSTANTIATION, i + 1);
         i += 3;
         
         AbstractSyntaxTree args = new AbstractSyntaxTree(TreeNodeType.FUNC_ARGS, "", -1);
         ast.addChild(args);
         
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.RPAREN)
+            if(tokens.getType(i) == TokenType.RPAREN)
             {
                 break;
             }
-            else if(tokens.get(i).getType() == TokenType.CONSTANT)
+            else if(tokens.getType(i) == TokenType.CONSTANT)
             {
-                args.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i).getString(), tokens.get(i).getLine()));
+                args.addChild(newConstant(i));
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER)
             {
-                if(tokens.get(i + 1).getType() == TokenType.LPAREN)
+                if(tokens.getType(i + 1) == TokenType.LPAREN)
                 {
                     j = i;
                     args.addChild(parseFunctionCall(true));
                     i = j;
                 }
-                else if(tokens.get(i).getString().equals("Asm") && 
-                        tokens.get(i + 1).getType() == TokenType.DOT && tokens.get(i + 2).getType() == TokenType.IDENTIFIER)
+                else if(tokens.is(i, Interner.ASM) &&
+                        tokens.getType(i + 1) == TokenType.DOT && tokens.getType(i + 2) == TokenType.IDENTIFIER)
                 {
-                    AbstractSyntaxTree asm = new AbstractSyntaxTree(TreeNodeType.ASM_REFERENCE, tokens.get(i + 2).getString(), tokens.get(i).getLine());
+                    AbstractSyntaxTree asm = new AbstractSyntaxTree(TreeNodeType.ASM_REFERENCE, tokens.getString(i + 2), tokens.getLine(i));
                     i += 2;
                     args.addChild(asm);
                 }
                 else
                 {
-                    args.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
+                    args.addChild(newNode(TreeNodeType.VARIABLE, i));
                 }
             }
             //Object function call
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.DOT &&
-                    tokens.get(i + 2).getType() == TokenType.IDENTIFIER && tokens.get(i + 3).getType() == TokenType.LPAREN)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.DOT &&
+                    tokens.getType(i + 2) == TokenType.IDENTIFIER && tokens.getType(i + 3) == TokenType.LPAREN)
             {
                 j = i;
                 ast.addChild(parseFunctionCall(false));
                 i = j;
                 i++;
-                if(tokens.get(i).getType() != TokenType.SEMICOLON)
+                if(tokens.getType(i) != TokenType.SEMICOLON)
                 {
-                    missingSemicolonError(tokens.get(i - 1).getLine());
+                    missingSemicolonError(tokens.getLine(i - 1));
                 }
             }
-            else if(tokens.get(i).getType() == TokenType.STRING)
+            else if(tokens.getType(i) == TokenType.STRING)
             {
-                args.addChild(new AbstractSyntaxTree(TreeNodeType.STRING, tokens.get(i).getString(), tokens.get(i).getLine()));
+                args.addChild(newNode(TreeNodeType.STRING, i));
             }
             
             i++;
@@ -227,11 +294,18 @@ public class Parser
      */
     private AbstractSyntaxTree parseImport()
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.IMPORT, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.IMPORT, i + 1);
         
-        if(tokens.get(i + 2).getType() != TokenType.SEMICOLON)
+        if(tokens.getType(i + 2) != TokenType.SEMICOLON)
         {
-            missingSemicolonError(tokens.get(i + 1).getLine());
+            missingSemicolonError(tokens.getLine(i + 1));
+        }
+        
+        if(ast.getContent().endsWith(".gbj"))
+        {
+            //The imported file is only parsed once (possibly at the same time as this one), its symbols are merged in by
+            //the getters of the module. This allows us to call methods from included files
+            module.addImport(ModuleRegistry.getInstance().load(ast.getContent()));
         }
         
         i += 2;
@@ -246,11 +320,11 @@ public class Parser
      */
     private AbstractSyntaxTree parsePackageDeclaration()
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.PACKAGE, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.PACKAGE, i + 1);
         
-        if(tokens.get(i + 2).getType() != TokenType.SEMICOLON)
+        if(tokens.getType(i + 2) != TokenType.SEMICOLON)
         {
-            missingSemicolonError(tokens.get(i + 1).getLine());
+            missingSemicolonError(tokens.getLine(i + 1));
         }
         
         i += 2;
@@ -265,16 +339,12 @@ public class Parser
      */
     private AbstractSyntaxTree parseDeclaration()
     {
-        AbstractSyntaxTree ast = null;
+        AbstractSyntaxTree ast = newDeclaration(TreeNodeType.DECLARATION, i, i + 1);
         
-        if(tokens.get(i).getString().equals("char") || tokens.get(i).getString().equals("int") || objectTypes.contains(tokens.get(i).getString()))
+        //The class might be declared further down (or not at all), see ParsedModule.checkObjectTypes()
+        if(!tokens.is(i, Interner.CHAR) && !tokens.is(i, Interner.INT))
         {
-            ast = new AbstractSyntaxTree(TreeNodeType.DECLARATION, tokens.get(i).getString() + "|" + tokens.get(i + 1).getString(),
-                    tokens.get(i + 1).getLine());
-        }
-        else
-        {
-            syntaxError(tokens.get(i).getLine(), "Unknown type " + tokens.get(i).getString() + ".");
+            module.addObjectDeclaration(ast);
         }
         
         i += 2;
@@ -283,243 +353,141 @@ public class Parser
     }
     
     /**
-     * Grammar: return {@literal <}variable or constant{@literal >} → AST
+     * Adds a variable declared directly in a section or class to the symbols of the module
      * 
-     * @return 
+     * @param declaration The DECLARATION node
+     * @return The size of the variable in bytes
      */
-    private AbstractSyntaxTree parseReturn()
+    private int addMemberVariable(AbstractSyntaxTree declaration)
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.RETURN, "", tokens.get(i).getLine());
-        i++;
-        
-        if(tokens.get(i).getType() == TokenType.IDENTIFIER)
+        if(declaration.getDataType().equals("char"))
         {
-            if(tokens.get(i + 1).getType() == TokenType.SEMICOLON)
-            {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
-                i++;
-            }
-            else if(tokens.get(i + 1).getType() == TokenType.LBRACKET && tokens.get(i + 3).getType() == TokenType.RBRACKET)
-            {
-                ast.addChild(parseArrayAccess());
-            }
-            else
-            {
-                missingSemicolonError(tokens.get(i).getLine());
-            }
+            return 1;
         }
-        else if(tokens.get(i).getType() == TokenType.CONSTANT)
+        else if(!declaration.getDataType().equals("int"))
         {
-            if(tokens.get(i + 1).getType() == TokenType.SEMICOLON)
-            {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i).getString(), tokens.get(i).getLine()));
-                i++;
-            }
-            else
-            {
-                missingSemicolonError(tokens.get(i).getLine());
-            }
+            module.addObjectInstance(new VariableSymbol(declaration.getDataType(), declaration.getName()));
         }
-        else
+        return 2;
+    }
+    
+    /**
+     * Grammar: return {@literal <}expression{@literal >}; → AST
+     * 
+     * @return 
+     */
+    private AbstractSyntaxTree parseReturn()
+    {
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.RETURN, "", tokens.getLine(i));
+        i++;
+        
+        MathsParser mathsParser = new MathsParser(tokens, this);
+        ast.addChild(mathsParser.parseMathsOperation(i));
+        i = mathsParser.getIndex();
+        
+        if(tokens.getType(i) != TokenType.SEMICOLON)
         {
-            syntaxError(tokens.get(i).getLine(), "Return type not supported.");
+            missingSemicolonError(tokens.getLine(i - 1));
         }
         
         return ast;
     }
     
     /**
-     * Grammar: {@literal <}variable or constant{@literal >} {@literal <}operation{@literal >} {@literal <}variable or constant{@literal >} → AST
+     * Grammar: {@literal <}variable or array access{@literal >} = {@literal <}instantiation or expression{@literal >}; → AST
      * 
-     * @param type Either -, +, /, * or %
+     * @param isArray Determines if the target of the assignment is a variable or an array access
      * @return 
      */
-    private AbstractSyntaxTree parseMathsOperation(String type)
+    private AbstractSyntaxTree parseAssignment(boolean isArray)
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.OPERATION, type, -1);
-        
-        if(tokens.get(i).getType() == TokenType.IDENTIFIER)
-        {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
-        }
-        else if(tokens.get(i).getType() == TokenType.CONSTANT)
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.ASSIGNMENT, "", -1);
+        if(isArray)
         {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i).getString(), tokens.get(i).getLine()));
+            ast.addChild(parseArrayAccess());
+            i += 2;
         }
-        //Array access
-        else if(tokens.get(i).getType() == TokenType.RBRACKET && tokens.get(i - 2).getType() == TokenType.LBRACKET &&
-                tokens.get(i - 3).getType() == TokenType.IDENTIFIER)
+        else
         {
-            i -= 3;
-            ast.addChild(parseArrayAccess());
+            ast.addChild(newNode(TreeNodeType.VARIABLE, i));
+            i += 2;
         }
         
-        if(tokens.get(i + 2).getType() == TokenType.IDENTIFIER)
+        //Object instantiation
+        if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.NEW))
         {
-            //Array access
-            if(tokens.get(i + 3).getType() == TokenType.LBRACKET && tokens.get(i + 5).getType() == TokenType.RBRACKET)
-            {
-                i += 2;
-                ast.addChild(parseArrayAccess());
-                i++;
-                if(tokens.get(i).getType() != TokenType.SEMICOLON)
-                {
-                    syntaxError(tokens.get(i).getLine(), "Only 2 operands are allowed.");
-                }
-                return ast;
-            }
-            else
-            {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i + 2).getString(), tokens.get(i + 2).getLine()));
-            }
+            ast.addChild(parseInstantiation());
+            i++;
         }
-        else if(tokens.get(i + 2).getType() == TokenType.CONSTANT)
+        else
         {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i + 2).getString(), tokens.get(i + 2).getLine()));
+            MathsParser mathsParser = new MathsParser(tokens, this);
+            ast.addChild(mathsParser.parseMathsOperation(i));
+            i = mathsParser.getIndex();
         }
         
-        if(tokens.get(i + 3).getType() != TokenType.SEMICOLON)
+        if(tokens.getType(i) != TokenType.SEMICOLON)
         {
-            syntaxError(tokens.get(i + 3).getLine(), "Only 2 operands are allowed.");
+            missingSemicolonError(tokens.getLine(i - 1));
         }
-            
-        i += 2;
         
         return ast;
     }
     
     /**
-     * Grammar: {@literal <}variable or array access{@literal >} = {@literal <}variable or constant or maths operation{@literal >} → AST
+     * Parses a single operand of an expression (see MathsParser)<br>
+     * Grammar: {@literal <}constant{@literal >} | {@literal <}variable{@literal >} | {@literal <}array access{@literal >}
+     * | {@literal <}function call{@literal >} → AST
      * 
-     * @param isArray Determines if the target of the assignment is a variable or an array access
+     * @param index The index of the first token of the operand
      * @return 
      */
-    //TODO: Add function calls here
-    //TODO: Add function calls to assignments in codegen too
-    private AbstractSyntaxTree parseAssignment(boolean isArray)
+    AbstractSyntaxTree parseOperand(int index)
     {
-        AbstractSyntaxTree ast;
-        if(isArray)
+        j = index;
+        if(tokens.getType(j) == TokenType.CONSTANT)
         {
-            ast = new AbstractSyntaxTree(TreeNodeType.ASSIGNMENT, "", -1);
-            ast.addChild(parseArrayAccess());
+            return newConstant(j);
         }
-        else
-        {
-            ast = new AbstractSyntaxTree(TreeNodeType.ASSIGNMENT, "", -1);
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
-            i+= 2;
-        }
-        
-        while(i < tokens.size())
+        else if(tokens.getType(j) == TokenType.IDENTIFIER)
         {
-            if(tokens.get(i + 1).getType() == TokenType.PLUS)
-            {
-                ast.addChild(parseMathsOperation("+"));
-                break;
-            }
-            else if(tokens.get(i + 1).getType() == TokenType.MINUS)
-            {
-                ast.addChild(parseMathsOperation("-"));
-                break;
-            }
-            else if(tokens.get(i + 1).getType() == TokenType.MULTIPLY)
-            {
-                ast.addChild(parseMathsOperation("*"));
-                break;
-            }
-            else if(tokens.get(i + 1).getType() == TokenType.DIVIDE)
-            {
-                ast.addChild(parseMathsOperation("/"));
-                break;
-            }
-            else if(tokens.get(i + 1).getType() == TokenType.MODULO)
+            //Object function call
+            if(tokens.getType(j + 1) == TokenType.DOT && tokens.getType(j + 2) == TokenType.IDENTIFIER && tokens.getType(j + 3) == TokenType.LPAREN)
             {
-                ast.addChild(parseMathsOperation("%"));
-                break;
+                return parseFunctionCall(false);
             }
-            else if(tokens.get(i).getType() == TokenType.CONSTANT)
+            //Function call
+            else if(tokens.getType(j + 1) == TokenType.LPAREN)
             {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(i).getString(), tokens.get(i).getLine()));
-                break;
+                return parseFunctionCall(true);
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER)
+            //Array access
+            else if(tokens.getType(j + 1) == TokenType.LBRACKET)
             {
-                //Object instantiation
-                if(tokens.get(i).getString().equals("new"))
+                if(tokens.getType(j + 3) != TokenType.RBRACKET)
                 {
-                    ast.addChild(parseInstantiation());
+                    missingClosingBracketError(tokens.getLine(j));
                 }
-                //Could be an array access
-                else if(tokens.get(i + 1).getType() == TokenType.LBRACKET)
-                {
-                    if(tokens.get(i + 3).getType() == TokenType.RBRACKET)
-                    {
-                        if(tokens.get(i + 4).getType() == TokenType.SEMICOLON)
-                        {
-                            //Is an array access
-                            ast.addChild(parseArrayAccess());
-                            break;
-                        }
-                        else if(tokens.get(i + 4).getType() == TokenType.PLUS)
-                        {
-                            i += 3;
-                            ast.addChild(parseMathsOperation("+"));
-                            break;
-                        }
-                        else if(tokens.get(i + 4).getType() == TokenType.MINUS)
-                        {
-                            i += 3;
-                            ast.addChild(parseMathsOperation("-"));
-                            break;
-                        }
-                        else if(tokens.get(i + 4).getType() == TokenType.MULTIPLY)
-                        {
-                            i += 3;
-                            ast.addChild(parseMathsOperation("*"));
-                            break;
-                        }
-                        else if(tokens.get(i + 4).getType() == TokenType.DIVIDE)
-                        {
-                            i += 3;
-                            ast.addChild(parseMathsOperation("/"));
-                            break;
-                        }
-                        else if(tokens.get(i + 4).getType() == TokenType.MODULO)
-                        {
-                            i += 3;
-                            ast.addChild(parseMathsOperation("%"));
-                            break;
-                        }
-                        else
-                        {
-                            missingSemicolonError(tokens.get(i).getLine());
-                        }
-                    }
-                    else
-                    {
-                        missingClosingBracketError(tokens.get(i).getLine());
-                    }
-                }
-                //Could be a function call
-                else if(tokens.get(i + 1).getType() == TokenType.LPAREN)
-                {
-                    //TODO
-                }
-                //It's a variable
-                else
-                {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
-                }
-            }
-            else if(tokens.get(i).getType() == TokenType.SEMICOLON)
-            {
-                break;
+                int temp = i;
+                i = j;
+                AbstractSyntaxTree ast = parseArrayAccess();
+                j = i;
+                i = temp;
+                return ast;
             }
-            i++;
+            return newNode(TreeNodeType.VARIABLE, j);
         }
         
-        return ast;
+        syntaxError(tokens.getLine(j), "Expected a constant, variable, array access or method call.");
+        return null;
+    }
+    
+    /**
+     * @return The index of the last token of the operand parsed by parseOperand()
+     */
+    int getOperandEnd()
+    {
+        return j;
     }
     
     /**
@@ -530,17 +498,22 @@ public class Parser
      */
     private AbstractSyntaxTree parseSwitchCase(boolean isStatic)
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CASE, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.CASE, i + 1);
+        if(tokens.getType(i + 1) != TokenType.CONSTANT)
+        {
+            syntaxError(tokens.getLine(i + 1), "Switch case indices can only be constants.");
+        }
+        ast.setValue(tokens.getValue(i + 1));
         i += 2;
         
-        if(tokens.get(i).getType() != TokenType.COLON)
+        if(tokens.getType(i) != TokenType.COLON)
         {
-            syntaxError(tokens.get(i).getLine(), "Missing colon for switch case.");
+            syntaxError(tokens.getLine(i), "Missing colon for switch case.");
         }
         i++;
-        if(tokens.get(i).getType() != TokenType.LBRACE)
+        if(tokens.getType(i) != TokenType.LBRACE)
         {
-            missingOpeningBraceError(tokens.get(i).getLine());
+            missingOpeningBraceError(tokens.getLine(i));
         }
         i++;
         
@@ -560,41 +533,41 @@ public class Parser
         AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.SWITCH, "", -1);
         i += 2;
         
-        if(tokens.get(i).getType() == TokenType.IDENTIFIER)
+        if(tokens.getType(i) == TokenType.IDENTIFIER)
         {
-            ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(i).getString(), tokens.get(i).getLine()));
+            ast.addChild(newNode(TreeNodeType.VARIABLE, i));
             i++;
         }
         else
         {
-            syntaxError(tokens.get(i).getLine(), "No variable provided for switch case.");
+            syntaxError(tokens.getLine(i), "No variable provided for switch case.");
         }
         
-        if(tokens.get(i).getType() != TokenType.RPAREN)
+        if(tokens.getType(i) != TokenType.RPAREN)
         {
-            syntaxError(tokens.get(i).getLine(), "Missing closing parenthesis.");
+            syntaxError(tokens.getLine(i), "Missing closing parenthesis.");
         }
         i++;
-        if(tokens.get(i).getType() != TokenType.LBRACE)
+        if(tokens.getType(i) != TokenType.LBRACE)
         {
-            missingOpeningBraceError(tokens.get(i).getLine());
+            missingOpeningBraceError(tokens.getLine(i));
         }
         i++;
         
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.RBRACE)
+            if(tokens.getType(i) == TokenType.RBRACE)
             {
                 break;
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("case") &&
-                    tokens.get(i + 1).getType() == TokenType.CONSTANT)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.CASE) &&
+                    tokens.getType(i + 1) == TokenType.CONSTANT)
             {
                 ast.addChild(parseSwitchCase(isStatic));
             }
             else
             {
-                syntaxError(tokens.get(i).getLine(), "Bad statement detected inside switch case.");
+                syntaxError(tokens.getLine(i), "Bad statement detected inside switch case.");
             }
             
             i++;
@@ -613,66 +586,69 @@ public class Parser
      */
     private void parseStatementSequence(AbstractSyntaxTree ast, boolean isStatic)
     {
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("return"))
+            //Statements only look back at their own tokens
+            tokens.release(i);
+            
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.RETURN))
             {
                 ast.addChild(parseReturn());
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.IDENTIFIER)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.IDENTIFIER)
             {
-                if(tokens.get(i + 2).getType() == TokenType.SEMICOLON)
+                if(tokens.getType(i + 2) == TokenType.SEMICOLON)
                 {
                     ast.addChild(parseDeclaration());
                 }
                 else
                 {
-                    missingSemicolonError(tokens.get(i).getLine());
+                    missingSemicolonError(tokens.getLine(i));
                 }
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.EQUALS)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.EQUALS)
             {
                 ast.addChild(parseAssignment(false));
             }
             //Assignment to an element in an array
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.LBRACKET)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.LBRACKET)
             {
                 if(isStatic)
                 {
-                    if(tokens.get(i + 3).getType() == TokenType.RBRACKET)
+                    if(tokens.getType(i + 3) == TokenType.RBRACKET)
                     {
-                        if(tokens.get(i + 4).getType() == TokenType.EQUALS)
+                        if(tokens.getType(i + 4) == TokenType.EQUALS)
                         {
                             ast.addChild(parseAssignment(true));
                         }
                     }
                     else
                     {
-                        missingClosingBracketError(tokens.get(i).getLine());
+                        missingClosingBracketError(tokens.getLine(i));
                     }
                 }
                 else
                 {
-                    noArraysAllowedError(tokens.get(i).getLine());
+                    noArraysAllowedError(tokens.getLine(i));
                 }
             }
             //Throw error on assignment to constant
-            else if(tokens.get(i).getType() == TokenType.CONSTANT && tokens.get(i + 1).getType() == TokenType.EQUALS)
+            else if(tokens.getType(i) == TokenType.CONSTANT && tokens.getType(i + 1) == TokenType.EQUALS)
             {
-                syntaxError(tokens.get(i).getLine(), "Assignment to a constant. Are you drunk or what?");
+                syntaxError(tokens.getLine(i), "Assignment to a constant. Are you drunk or what?");
             }
             //Function call or if/else chain
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.LPAREN)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.LPAREN)
             {
-                if(tokens.get(i).getString().equals("if"))
+                if(tokens.is(i, Interner.IF))
                 {
                     ast.addChild(parseIfElseChain(isStatic));
                 }
-                else if(tokens.get(i).getString().equals("while"))
+                else if(tokens.is(i, Interner.WHILE))
                 {
                     ast.addChild(parseWhileLoop(isStatic));
                 }
-                else if(tokens.get(i).getString().equals("switch"))
+                else if(tokens.is(i, Interner.SWITCH))
                 {
                     ast.addChild(parseSwitchStatement(isStatic));
                 }
@@ -682,33 +658,33 @@ public class Parser
                     ast.addChild(parseFunctionCall(true));
                     i = j;
                     i++;
-                    if(tokens.get(i).getType() != TokenType.SEMICOLON)
+                    if(tokens.getType(i) != TokenType.SEMICOLON)
                     {
-                        missingSemicolonError(tokens.get(i - 1).getLine());
+                        missingSemicolonError(tokens.getLine(i - 1));
                     }
                 }
             }
             //Object function call
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.DOT &&
-                    tokens.get(i + 2).getType() == TokenType.IDENTIFIER && tokens.get(i + 3).getType() == TokenType.LPAREN)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.DOT &&
+                    tokens.getType(i + 2) == TokenType.IDENTIFIER && tokens.getType(i + 3) == TokenType.LPAREN)
             {
-                if(tokens.get(i).getString().equals("this"))
+                if(tokens.is(i, Interner.THIS))
                 {
                     if(isStatic)
                     {
-                        syntaxError(tokens.get(i).getLine(), "\"this\" may only be used in object classes.");
+                        syntaxError(tokens.getLine(i), "\"this\" may only be used in object classes.");
                     }
                 }
                 j = i;
                 ast.addChild(parseFunctionCall(false));
                 i = j;
                 i++;
-                if(tokens.get(i).getType() != TokenType.SEMICOLON)
+                if(tokens.getType(i) != TokenType.SEMICOLON)
                 {
-                    missingSemicolonError(tokens.get(i - 1).getLine());
+                    missingSemicolonError(tokens.getLine(i - 1));
                 }
             }
-            else if(tokens.get(i).getType() == TokenType.RBRACE)
+            else if(tokens.getType(i) == TokenType.RBRACE)
             {
                 break;
             }
@@ -717,177 +693,21 @@ public class Parser
     }
     
     /**
-     * Grammar: {@literal <}cvaf{@literal >} {@literal <}condition{@literal >} {@literal <}cvaf{@literal >} → AST<br>
-     * {@literal <} | {@literal <}= | == | {@literal >} | {@literal >}= → {@literal <}condition{@literal >}<br>
-     * {@literal <}constant{@literal >} | {@literal <}variable{@literal >} | {@literal <}array access{@literal >} | {@literal <}function call{@literal >}
-     * → {@literal <}cvaf{@literal >}
+     * Parses the condition of an if or a while loop (see LogicParser), including the closing parenthesis
      * 
-     * @param startIndex The index where the element before the condition begins
      * @return 
      */
-    private AbstractSyntaxTree parseCondition(int startIndex)
+    private AbstractSyntaxTree parseCondition()
     {
-        int iOld = i;
-        
-        AbstractSyntaxTree ast = null;
-        
-        if(tokens.get(i).getType() == TokenType.SMALLER)
-        {
-            // <=
-            if(tokens.get(i + 1).getType() == TokenType.EQUALS)
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, "<=", tokens.get(i).getLine());
-                i += 2;
-            }
-            // <
-            else
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, "<", tokens.get(i).getLine());
-                i++;
-            }
-        }
-        else if(tokens.get(i).getType() == TokenType.EQUALS)
-        {
-            // ==
-            if(tokens.get(i + 1).getType() == TokenType.EQUALS)
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, "==", tokens.get(i).getLine());
-                i += 2;
-            }
-            //Syntax error
-            else
-            {
-                syntaxError(tokens.get(i).getLine(), "\"=\" found. Did you mean \"==\"?");
-            }
-        }
-        else if(tokens.get(i).getType() == TokenType.BIGGER)
-        {
-            // >=
-            if(tokens.get(i + 1).getType() == TokenType.EQUALS)
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, ">=", tokens.get(i).getLine());
-                i += 2;
-            }
-            // >
-            else
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, ">", tokens.get(i).getLine());
-                i++;
-            }
-        }
-        else if(tokens.get(i).getType() == TokenType.NOT)
-        {
-            // !=
-            if(tokens.get(i + 1).getType() == TokenType.EQUALS)
-            {
-                ast = new AbstractSyntaxTree(TreeNodeType.CONDITION, "!=", tokens.get(i).getLine());
-                i += 2;
-            }
-            //Syntax error
-            else
-            {
-                syntaxError(tokens.get(i).getLine(), "\"!\" found. Did you mean \"!=\"?");
-            }
-        }
+        LogicParser logicParser = new LogicParser(tokens, this);
+        AbstractSyntaxTree ast = logicParser.parseCondition(i);
+        i = logicParser.getIndex();
         
-        //Parse stuff before condition
-        j = startIndex;
-        while(j < iOld)
+        if(tokens.getType(i) != TokenType.RPAREN)
         {
-            if(tokens.get(j).getType() == TokenType.CONSTANT)
-            {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(j).getString(), tokens.get(j).getLine()));
-            }
-            //Array access
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER && tokens.get(j + 1).getType() == TokenType.LBRACKET)
-            {
-                if(tokens.get(j + 3).getType() == TokenType.RBRACKET)
-                {
-                    int temp = i;
-                    i = j;
-                    ast.addChild(parseArrayAccess());
-                    j = i;
-                    i = temp;
-                }
-                else
-                {
-                    missingClosingBracketError(tokens.get(j).getLine());
-                }
-            }
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER && tokens.get(j + 1).getType() == TokenType.DOT &&
-                    tokens.get(j + 2).getType() == TokenType.IDENTIFIER && tokens.get(j + 3).getType() == TokenType.LPAREN)
-            {
-                ast.addChild(parseFunctionCall(false));
-            }
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER)
-            {
-                //Function call
-                if(tokens.get(j + 1).getType() == TokenType.LPAREN)
-                {
-                    ast.addChild(parseFunctionCall(true));
-                }
-                //Variable
-                else
-                {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(j).getString(), tokens.get(j).getLine()));
-                }
-            }
-            
-            j++;
+            syntaxError(tokens.getLine(i), "Missing closing parenthesis.");
         }
         
-        //Parse stuff after condition
-        j = i;
-        while(j < tokens.size())
-        {
-            if(tokens.get(j).getType() == TokenType.RPAREN)
-            {
-                break;
-            }
-            //Array access
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER && tokens.get(j + 1).getType() == TokenType.LBRACKET)
-            {
-                if(tokens.get(j + 3).getType() == TokenType.RBRACKET)
-                {
-                    int temp = i;
-                    i = j;
-                    ast.addChild(parseArrayAccess());
-                    j = i;
-                    i = temp;
-                }
-                else
-                {
-                    missingClosingBracketError(tokens.get(j).getLine());
-                }
-            }
-            else if(tokens.get(j).getType() == TokenType.CONSTANT)
-            {
-                ast.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(j).getString(), tokens.get(j).getLine()));
-            }
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER && tokens.get(j + 1).getType() == TokenType.DOT &&
-                    tokens.get(j + 2).getType() == TokenType.IDENTIFIER && tokens.get(j + 3).getType() == TokenType.LPAREN)
-            {
-                ast.addChild(parseFunctionCall(false));
-            }
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER)
-            {
-                //Function call
-                if(tokens.get(j + 1).getType() == TokenType.LPAREN)
-                {
-                    ast.addChild(parseFunctionCall(true));
-                }
-                //Variable
-                else
-                {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(j).getString(), tokens.get(j).getLine()));
-                }
-            }
-            
-            j++;
-        }
-        
-        i = j - 1; //-1 because we get an off-by-one otherwise
-        
         return ast;
     }
     
@@ -904,21 +724,8 @@ public class Parser
         AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.IF, "", -1);
         i += 2;
         
-        int startIndex = i;
-        
-        //Parse Condition
-        while(i < tokens.size())
-        {
-            //Find condition, it'll take care of the rest (including the closing parentheses)
-            if(tokens.get(i).getType() == TokenType.SMALLER || tokens.get(i).getType() == TokenType.EQUALS || tokens.get(i).getType() == TokenType.BIGGER ||
-                    tokens.get(i).getType() == TokenType.NOT)
-            {
-                ast.addChild(parseCondition(startIndex));
-                break;
-            }
-            
-            i++;
-        }
+        //Parse condition
+        ast.addChild(parseCondition());
         
         //Parse body
         AbstractSyntaxTree body = new AbstractSyntaxTree(TreeNodeType.BODY, "", -1);
@@ -926,11 +733,11 @@ public class Parser
         parseStatementSequence(body, isStatic);
         
         //Do we have an else if/else?
-        if(tokens.get(i + 1).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getString().equals("else"))
+        if(tokens.getType(i + 1) == TokenType.IDENTIFIER && tokens.is(i + 1, Interner.ELSE))
         {
             i += 2;
             //We have an else if
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("if"))
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.IF))
             {
                 ast.addChild(parseIfElseChain(isStatic));
             }
@@ -957,26 +764,13 @@ public class Parser
         AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.WHILE, "", -1);
         i += 2;
         
-        int startIndex = i;
-        
         //Parse condition
-        while(i < tokens.size())
-        {
-            //Find condition, it'll take care of the rest (including the closing parentheses)
-            if(tokens.get(i).getType() == TokenType.SMALLER || tokens.get(i).getType() == TokenType.EQUALS || tokens.get(i).getType() == TokenType.BIGGER ||
-                    tokens.get(i).getType() == TokenType.NOT)
-            {
-                ast.addChild(parseCondition(startIndex));
-                break;
-            }
-            
-            i++;
-        }
+        ast.addChild(parseCondition());
         
-        i += 2;
-        if(tokens.get(i).getType() != TokenType.LBRACE)
+        i++;
+        if(tokens.getType(i) != TokenType.LBRACE)
         {
-            missingOpeningBraceError(tokens.get(i - 1).getLine());
+            missingOpeningBraceError(tokens.getLine(i - 1));
         }
         
         AbstractSyntaxTree body = new AbstractSyntaxTree(TreeNodeType.BODY, "", -1);
@@ -995,30 +789,29 @@ public class Parser
      */
     private AbstractSyntaxTree parseFunction(boolean isStatic)
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.FUNCTION, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        String returnType = tokens.getString(i);
+        AbstractSyntaxTree ast = newNode(TreeNodeType.FUNCTION, i + 1);
         i += 3;
         
         //Parse arguments
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.IDENTIFIER)
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.IDENTIFIER)
             {
-                if(tokens.get(i + 2).getType() == TokenType.RPAREN)
+                if(tokens.getType(i + 2) == TokenType.RPAREN)
                 {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.FUNC_ARG, tokens.get(i).getString() + "|" + tokens.get(i + 1).getString(),
-                            tokens.get(i + 1).getLine()));
+                    ast.addChild(newDeclaration(TreeNodeType.FUNC_ARG, i, i + 1));
                     i += 3;
                     break;
                 }
-                else if(tokens.get(i + 2).getType() == TokenType.COMMA)
+                else if(tokens.getType(i + 2) == TokenType.COMMA)
                 {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.FUNC_ARG, tokens.get(i).getString() + "|" + tokens.get(i + 1).getString(),
-                            tokens.get(i + 1).getLine()));
+                    ast.addChild(newDeclaration(TreeNodeType.FUNC_ARG, i, i + 1));
                     i += 2; //Only +2 since we aren't breaking and there's an i++ below which makes it 3 "consumed" tokens
                 }
             }
             //When we have no arguments, this is triggered
-            else if(tokens.get(i).getType() == TokenType.RPAREN)
+            else if(tokens.getType(i) == TokenType.RPAREN)
             {
                 i++;
                 break;
@@ -1027,9 +820,19 @@ public class Parser
             i++;
         }
         
-        if(tokens.get(i).getType() != TokenType.LBRACE)
+        if(tokens.getType(i) != TokenType.LBRACE)
+        {
+            missingOpeningBraceError(tokens.getLine(i - 1));
+        }
+        
+        //All children so far are the arguments
+        if(isStatic)
         {
-            missingOpeningBraceError(tokens.get(i - 1).getLine());
+            module.addStaticMethod(new MethodSymbol(null, returnType, ast.getContent(), ast.getChildren().size()));
+        }
+        else
+        {
+            module.addObjectMethod(new MethodSymbol(currentClass.getName(), returnType, ast.getContent(), ast.getChildren().size()));
         }
         
         //Parse the function body
@@ -1051,85 +854,55 @@ public class Parser
         AbstractSyntaxTree ast;
         if(isStatic)
         {
-            ast = new AbstractSyntaxTree(TreeNodeType.CALL, tokens.get(j).getString(), tokens.get(j).getLine());
+            ast = newNode(TreeNodeType.CALL, j);
             j += 2;
         }
         else
         {
-            ast = new AbstractSyntaxTree(TreeNodeType.OBJECT_CALL , tokens.get(j).getString() + "|" + tokens.get(j + 2).getString(), tokens.get(j + 2).getLine());
+            ast = new AbstractSyntaxTree(TreeNodeType.OBJECT_CALL , tokens.getString(j) + "|" + tokens.getString(j + 2), tokens.getLine(j + 2));
+            ast.setObjectCall(tokens.getString(j), tokens.getString(j + 2));
             j += 4;
         }
         
         AbstractSyntaxTree args = new AbstractSyntaxTree(TreeNodeType.FUNC_ARGS, "", -1);
         ast.addChild(args);
         
-        while(j < tokens.size())
+        while(tokens.has(j))
         {
-            if(tokens.get(j).getType() == TokenType.RPAREN)
+            if(tokens.getType(j) == TokenType.RPAREN)
             {
                 break;
             }
-            else if(tokens.get(j).getType() == TokenType.CONSTANT)
+            else if(tokens.getType(j) == TokenType.STRING)
             {
-                args.addChild(new AbstractSyntaxTree(TreeNodeType.CONSTANT, tokens.get(j).getString(), tokens.get(j).getLine()));
+                args.addChild(newNode(TreeNodeType.STRING, j));
             }
-            //Object function call
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER && tokens.get(j + 1).getType() == TokenType.DOT &&
-                    tokens.get(j + 2).getType() == TokenType.IDENTIFIER && tokens.get(j + 3).getType() == TokenType.LPAREN)
+            else if(tokens.getType(j) == TokenType.IDENTIFIER && tokens.is(j, Interner.ASM) &&
+                    tokens.getType(j + 1) == TokenType.DOT && tokens.getType(j + 2) == TokenType.IDENTIFIER)
             {
-                args.addChild(parseFunctionCall(false));
-            }
-            else if(tokens.get(j).getType() == TokenType.IDENTIFIER)
-            {
-                if(tokens.get(j + 1).getType() == TokenType.LPAREN)
-                {
-                    args.addChild(parseFunctionCall(true));
-                }
-                else if(tokens.get(j).getString().equals("Asm") && 
-                        tokens.get(j + 1).getType() == TokenType.DOT && tokens.get(j + 2).getType() == TokenType.IDENTIFIER)
-                {
-                    AbstractSyntaxTree asm = new AbstractSyntaxTree(TreeNodeType.ASM_REFERENCE, tokens.get(j + 2).getString(), tokens.get(j).getLine());
-                    args.addChild(asm);
-                    j += 2;
-                }
-                //Could be an array access
-                else if(tokens.get(j + 1).getType() == TokenType.LBRACKET)
-                {
-                    if(tokens.get(j + 3).getType() == TokenType.RBRACKET)
-                    {
-                        int temp = i;
-                        i = j;
-                        //Is an array access
-                        args.addChild(parseArrayAccess());
-                        j = i;
-                        i = temp;
-                    }
-                    else
-                    {
-                        missingClosingBracketError(tokens.get(i).getLine());
-                    }
-                }
-                else
-                {
-                    args.addChild(new AbstractSyntaxTree(TreeNodeType.VARIABLE, tokens.get(j).getString(), tokens.get(j).getLine()));
-                }
+                AbstractSyntaxTree asm = new AbstractSyntaxTree(TreeNodeType.ASM_REFERENCE, tokens.getString(j + 2), tokens.getLine(j));
+                args.addChild(asm);
+                j += 2;
             }
-            else if(tokens.get(j).getType() == TokenType.STRING)
+            //Everything else is an expression, which ends at the comma or closing parenthesis
+            else
             {
-                args.addChild(new AbstractSyntaxTree(TreeNodeType.STRING, tokens.get(j).getString(), tokens.get(j).getLine()));
+                MathsParser mathsParser = new MathsParser(tokens, this);
+                args.addChild(mathsParser.parseMathsOperation(j));
+                j = mathsParser.getIndex() - 1;
             }
             
             j++;
             
             //Sort of a hack, but it works
-            if(tokens.get(j).getType() == TokenType.RPAREN)
+            if(tokens.getType(j) == TokenType.RPAREN)
             {
                 break;
             }
             
-            if(tokens.get(j).getType() != TokenType.COMMA)
+            if(tokens.getType(j) != TokenType.COMMA)
             {
-                syntaxError(tokens.get(j).getLine(), "Missing comma between two function arguments. Please add one. :)");
+                syntaxError(tokens.getLine(j), "Missing comma between two function arguments. Please add one. :)");
             }
             
             j++;
@@ -1147,35 +920,33 @@ public class Parser
      */
     private AbstractSyntaxTree parseConstructor(String className)
     {
-        if(!className.equals(tokens.get(i).getString()))
+        if(!className.equals(tokens.getString(i)))
         {
-            syntaxError(tokens.get(i).getLine(), "Constructor has incorrect name.");
+            syntaxError(tokens.getLine(i), "Constructor has incorrect name.");
         }
         
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CONSTRUCTOR, "", tokens.get(i).getLine());
+        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CONSTRUCTOR, "", tokens.getLine(i));
         i += 2;
         
         //Parse arguments
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.IDENTIFIER)
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.IDENTIFIER)
             {
-                if(tokens.get(i + 2).getType() == TokenType.RPAREN)
+                if(tokens.getType(i + 2) == TokenType.RPAREN)
                 {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.FUNC_ARG, tokens.get(i).getString() + "|" + tokens.get(i + 1).getString(),
-                            tokens.get(i + 1).getLine()));
+                    ast.addChild(newDeclaration(TreeNodeType.FUNC_ARG, i, i + 1));
                     i += 3;
                     break;
                 }
-                else if(tokens.get(i + 2).getType() == TokenType.COMMA)
+                else if(tokens.getType(i + 2) == TokenType.COMMA)
                 {
-                    ast.addChild(new AbstractSyntaxTree(TreeNodeType.FUNC_ARG, tokens.get(i).getString() + "|" + tokens.get(i + 1).getString(),
-                            tokens.get(i + 1).getLine()));
+                    ast.addChild(newDeclaration(TreeNodeType.FUNC_ARG, i, i + 1));
                     i += 2; //Only +2 since we aren't breaking and there's an i++ below which makes it 3 "consumed" tokens
                 }
             }
             //When we have no arguments, this is triggered
-            else if(tokens.get(i).getType() == TokenType.RPAREN)
+            else if(tokens.getType(i) == TokenType.RPAREN)
             {
                 i++;
                 break;
@@ -1184,11 +955,13 @@ public class Parser
             i++;
         }
         
-        if(tokens.get(i).getType() != TokenType.LBRACE)
+        if(tokens.getType(i) != TokenType.LBRACE)
         {
-            missingOpeningBraceError(tokens.get(i - 1).getLine());
+            missingOpeningBraceError(tokens.getLine(i - 1));
         }
         
+        module.addObjectConstructor(new MethodSymbol(className, null, className, ast.getChildren().size()));
+        
         //Parse the function body
         parseStatementSequence(ast, false);
         
@@ -1206,62 +979,66 @@ public class Parser
      */
     private AbstractSyntaxTree parseStaticClass()
     {
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.SECTION, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.SECTION, i + 1);
         i += 3;
 
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
+            tokens.release(i);
+            
             //This is either a function or a variable declaration
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.IDENTIFIER)
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.IDENTIFIER)
             {
                 //It's a function
-                if(tokens.get(i + 2).getType() == TokenType.LPAREN)
+                if(tokens.getType(i + 2) == TokenType.LPAREN)
                 {
                     ast.addChild(parseFunction(true));
                     //i has been incremented by the parse call
-                    if(tokens.get(i).getType() != TokenType.RBRACE)
+                    if(tokens.getType(i) != TokenType.RBRACE)
                     {
-                        missingClosingBraceError(tokens.get(i).getLine());
+                        missingClosingBraceError(tokens.getLine(i));
                     }
                 }
                 else
                 {
-                    if(tokens.get(i + 2).getType() == TokenType.SEMICOLON)
+                    if(tokens.getType(i + 2) == TokenType.SEMICOLON)
                     {
-                        ast.addChild(parseDeclaration());
+                        AbstractSyntaxTree declaration = parseDeclaration();
+                        addMemberVariable(declaration);
+                        ast.addChild(declaration);
                     }
                     else
                     {
-                        missingSemicolonError(tokens.get(i).getLine());
+                        missingSemicolonError(tokens.getLine(i));
                     }
                 }
             }
             //Array declaration
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.LBRACKET &&
-                    tokens.get(i + 2).getType() == TokenType.CONSTANT && tokens.get(i + 3).getType() == TokenType.RBRACKET &&
-                    tokens.get(i + 4).getType() == TokenType.IDENTIFIER)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.LBRACKET &&
+                    tokens.getType(i + 2) == TokenType.CONSTANT && tokens.getType(i + 3) == TokenType.RBRACKET &&
+                    tokens.getType(i + 4) == TokenType.IDENTIFIER)
             {
-                if(tokens.get(i + 5).getType() == TokenType.SEMICOLON)
+                if(tokens.getType(i + 5) == TokenType.SEMICOLON)
                 {
                     ast.addChild(parseArrayDeclaration());
                 }
                 else
                 {
-                    missingSemicolonError(tokens.get(i).getLine());
+                    missingSemicolonError(tokens.getLine(i));
                 }
             }
             //Package declaration
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.STRING)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.STRING)
             {
                 ast.addChild(parsePackageDeclaration());
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("Asm") &&
-                    tokens.get(i + 1).getType() == TokenType.LBRACE)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.ASM) &&
+                    tokens.getType(i + 1) == TokenType.LBRACE)
             {
                 ast.addChild(parseInlineAsm());
             }
             //End of class reached
-            else if(tokens.get(i).getType() == TokenType.RBRACE)
+            else if(tokens.getType(i) == TokenType.RBRACE)
             {
                 break;
             }
@@ -1283,70 +1060,78 @@ public class Parser
      */
     private AbstractSyntaxTree parseClass()
     {
-        String className = tokens.get(i + 1).getString();
+        String className = tokens.getString(i + 1);
+        currentClass = new ClassLayout(className);
+        module.addObjectType(currentClass);
+        int size = 0;
         
-        AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.CLASS, tokens.get(i + 1).getString(), tokens.get(i + 1).getLine());
+        AbstractSyntaxTree ast = newNode(TreeNodeType.CLASS, i + 1);
         i += 3;
         
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
+            tokens.release(i);
+            
             //This is either a function or a variable declaration
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.IDENTIFIER)
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.IDENTIFIER)
             {
                 //It's a function
-                if(tokens.get(i + 2).getType() == TokenType.LPAREN)
+                if(tokens.getType(i + 2) == TokenType.LPAREN)
                 {
                     ast.addChild(parseFunction(false));
                     //i has been incremented by the parse call
-                    if(tokens.get(i).getType() != TokenType.RBRACE)
+                    if(tokens.getType(i) != TokenType.RBRACE)
                     {
-                        missingClosingBraceError(tokens.get(i).getLine());
+                        missingClosingBraceError(tokens.getLine(i));
                     }
                 }
                 else
                 {
-                    if(tokens.get(i + 2).getType() == TokenType.SEMICOLON)
+                    if(tokens.getType(i + 2) == TokenType.SEMICOLON)
                     {
-                        ast.addChild(parseDeclaration());
+                        AbstractSyntaxTree declaration = parseDeclaration();
+                        currentClass.addVariable(declaration.getName(), size);
+                        size += addMemberVariable(declaration);
+                        ast.addChild(declaration);
                     }
                     else
                     {
-                        missingSemicolonError(tokens.get(i).getLine());
+                        missingSemicolonError(tokens.getLine(i));
                     }
                 }
             }
             //Array declaration - but we don't allow arrays in objects!
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.LBRACKET &&
-                    tokens.get(i + 2).getType() == TokenType.CONSTANT && tokens.get(i + 3).getType() == TokenType.RBRACKET &&
-                    tokens.get(i + 4).getType() == TokenType.IDENTIFIER)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.LBRACKET &&
+                    tokens.getType(i + 2) == TokenType.CONSTANT && tokens.getType(i + 3) == TokenType.RBRACKET &&
+                    tokens.getType(i + 4) == TokenType.IDENTIFIER)
             {
-//                if(tokens.get(i + 5).getType() == TokenType.SEMICOLON)
+//                if(tokens.getType(i + 5) == TokenType.SEMICOLON)
 //                {
 //                    ast.addChild(parseArrayDeclaration());
 //                }
 //                else
 //                {
-//                    missingSemicolonError(tokens.get(i).getLine());
+//                    missingSemicolonError(tokens.getLine(i));
 //                }
-                noArraysAllowedError(tokens.get(i).getLine());
+                noArraysAllowedError(tokens.getLine(i));
             }
             //Package declaration
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.STRING)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.STRING)
             {
                 ast.addChild(parsePackageDeclaration());
             }
             //Constructor
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.LPAREN)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.LPAREN)
             {
                 ast.addChild(parseConstructor(className));
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("Asm") &&
-                    tokens.get(i + 1).getType() == TokenType.LBRACE)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.ASM) &&
+                    tokens.getType(i + 1) == TokenType.LBRACE)
             {
                 ast.addChild(parseInlineAsm());
             }
             //End of class reached
-            else if(tokens.get(i).getType() == TokenType.RBRACE)
+            else if(tokens.getType(i) == TokenType.RBRACE)
             {
                 break;
             }
@@ -1354,11 +1139,13 @@ public class Parser
             i++;
         }
         
+        currentClass.setSize(size);
         return ast;
     }
     
     /**
-     * Parses an entire program (token list was supplied in constructor)
+     * Parses an entire program (token list was supplied in constructor)<br>
+     * Parsing all imported files is started on the way (via the ModuleRegistry)
      * 
      * @return The AST of the program
      */
@@ -1366,52 +1153,53 @@ public class Parser
     {
         AbstractSyntaxTree ast = new AbstractSyntaxTree(TreeNodeType.PROGRAM, "", -1);
         
-        while(i < tokens.size())
+        while(tokens.has(i))
         {
-            if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("section"))
+            tokens.release(i);
+            
+            if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.SECTION))
             {
-                if(tokens.get(i + 2).getType() == TokenType.LBRACE)
+                if(tokens.getType(i + 2) == TokenType.LBRACE)
                 {
                     ast.addChild(parseStaticClass());
                     
                     //i has been incremented by the parse call
-                    if(tokens.get(i).getType() != TokenType.RBRACE)
+                    if(tokens.getType(i) != TokenType.RBRACE)
                     {
-                        missingClosingBraceError(tokens.get(i).getLine());
+                        missingClosingBraceError(tokens.getLine(i));
                     }
                 }
                 else
                 {
-                    missingOpeningBraceError(tokens.get(i).getLine());
+                    missingOpeningBraceError(tokens.getLine(i));
                 }
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i).getString().equals("class"))
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.is(i, Interner.CLASS))
             {
-                if(tokens.get(i + 2).getType() == TokenType.LBRACE)
+                if(tokens.getType(i + 2) == TokenType.LBRACE)
                 {
                     ast.addChild(parseClass());
                     
                     //i has been incremented by the parse call
-                    if(tokens.get(i).getType() != TokenType.RBRACE)
+                    if(tokens.getType(i) != TokenType.RBRACE)
                     {
-                        missingClosingBraceError(tokens.get(i).getLine());
+                        missingClosingBraceError(tokens.getLine(i));
                     }
                 }
                 else
                 {
-                    missingOpeningBraceError(tokens.get(i).getLine());
+                    missingOpeningBraceError(tokens.getLine(i));
                 }
                 
                 //Object usage warning
                 if(objectWarn)
                 {
-                    Logger.getInstance().log(Logger.WARNING, "Object class definition detected. Object classes have greatly reduced performance compared to static"
-                            + " sections, only use them if necessary. This warning can be disabled with the option -noObjWarn");
+                    warnObjectClass();
                 }
             }
-            else if(tokens.get(i).getType() == TokenType.IDENTIFIER && tokens.get(i + 1).getType() == TokenType.STRING)
+            else if(tokens.getType(i) == TokenType.IDENTIFIER && tokens.getType(i + 1) == TokenType.STRING)
             {
-                if(tokens.get(i).getString().equals("import"))
+                if(tokens.is(i, Interner.IMPORT))
                 {
                     ast.addChild(parseImport());
                 }
@@ -0,0 +1,72 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The memory layout of an object class
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ClassLayout
+{
+    private String name;
+    private int size; //All variables added together, in bytes
+    private Map<String, Integer> variablePositions; //<variable name> -> position in bytes
+    
+    /**
+     * Constructor
+     * 
+     * @param name The name of the class
+     */
+    public ClassLayout(String name)
+    {
+        this.name = name;
+        this.size = 0;
+        this.variablePositions = new LinkedHashMap<String, Integer>();
+    }
+    
+    /**
+     * Adds a variable at the given position
+     * 
+     * @param varName The name of the variable
+     * @param position The position inside the object memory in bytes
+     */
+    public void addVariable(String varName, int position)
+    {
+        variablePositions.put(varName, position);
+    }
+    
+    public void setSize(int size)
+    {
+        this.size = size;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    public int getSize()
+    {
+        return size;
+    }
+    
+    public Map<String, Integer> getVariablePositions()
+    {
+        return variablePositions;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return name + " (" + size + " bytes) " + variablePositions;
+    }
+}
\ No newline at end of file
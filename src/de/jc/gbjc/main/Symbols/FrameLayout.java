@@ -0,0 +1,41 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+/**
+ * The stack frame of a function, computed once by the Resolver
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class FrameLayout
+{
+    private int numArgs;
+    private int numLocals; //Stack variables to free at the end of the function
+    
+    /**
+     * Constructor
+     * 
+     * @param numArgs The number of arguments of the function
+     * @param numLocals The number of stack variables of the function
+     */
+    public FrameLayout(int numArgs, int numLocals)
+    {
+        this.numArgs = numArgs;
+        this.numLocals = numLocals;
+    }
+    
+    public int getNumArgs()
+    {
+        return numArgs;
+    }
+    
+    public int getNumLocals()
+    {
+        return numLocals;
+    }
+}
\ No newline at end of file
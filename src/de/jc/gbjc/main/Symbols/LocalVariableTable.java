@@ -0,0 +1,59 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The local (stack) variables of every function, stored per function name
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class LocalVariableTable
+{
+    private static final VariableTable EMPTY = new VariableTable();
+    
+    private Map<String, VariableTable> functions; //<function name> -> local variables of that function
+    
+    public LocalVariableTable()
+    {
+        this.functions = new HashMap<String, VariableTable>();
+    }
+    
+    /**
+     * Adds a local variable to a function
+     * 
+     * @param function The name of the function
+     * @param var The variable
+     */
+    public void add(String function, VariableSymbol var)
+    {
+        VariableTable table = functions.get(function);
+        if(table == null)
+        {
+            table = new VariableTable();
+            functions.put(function, table);
+        }
+        table.add(var);
+    }
+    
+    /**
+     * @param function The name of the function
+     * @return The local variables declared so far in that function (never null)
+     */
+    public VariableTable get(String function)
+    {
+        VariableTable table = functions.get(function);
+        if(table == null)
+        {
+            return EMPTY;
+        }
+        return table;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import de.jc.gbjc.main.Constants;
+
+/**
+ * The signature of a method (static or object method) or constructor
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class MethodSymbol
+{
+    private String className; //null for static methods
+    private String returnType; //null for constructors
+    private String name;
+    private int numArgs;
+    
+    /**
+     * Constructor
+     * 
+     * @param className The class this method belongs to (null for static methods)
+     * @param returnType The return type of the method (null for constructors)
+     * @param name The name of the method
+     * @param numArgs The number of arguments
+     */
+    public MethodSymbol(String className, String returnType, String name, int numArgs)
+    {
+        this.className = className;
+        this.returnType = returnType;
+        this.name = name;
+        this.numArgs = numArgs;
+    }
+    
+    /**
+     * @return The bitNum of the return value (0 if the method type is void)
+     */
+    public int getReturnBitNum()
+    {
+        if("char".equals(returnType))
+        {
+            return Constants.CHAR_SIZE;
+        }
+        else if("int".equals(returnType))
+        {
+            return Constants.INT_SIZE;
+        }
+        return 0;
+    }
+    
+    public String getClassName()
+    {
+        return className;
+    }
+    
+    public String getReturnType()
+    {
+        return returnType;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    public int getNumArgs()
+    {
+        return numArgs;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return (className == null ? "" : className + ".") + (returnType == null ? "" : returnType + " ") + name + "(" + numArgs + ")";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,274 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import de.jc.gbjc.main.Codegen.CodeGenerator.VariableType;
+import de.jc.gbjc.main.Constants;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree;
+import de.jc.gbjc.main.Parsing.AbstractSyntaxTree.TreeNodeType;
+import de.jc.gbjc.main.Util.Interner;
+import de.jc.gbjc.main.VarHelper;
+
+/**
+ * The semantic analysis stage between the parser and the code generator<br>
+ * Computes the stack frame of every function and resolves every variable access (VARIABLE and ARRAY_ACCESS nodes)
+ * into its type, bitNum and frame offset, which is stored directly in the AST<br>
+ * Variables are visible in the same order the code generator walks the AST: a declaration is only known to accesses after it
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class Resolver
+{
+    private SymbolTable symbolTable;
+    
+    private VariableTable staticVariables;
+    private LocalVariableTable localVariables;
+    private VariableTable objectVariables;
+    
+    private VariableTable currentArgs;
+    private String currentFunctionName;
+    private int currentSavedBytes;
+    
+    /**
+     * Constructor
+     * 
+     * @param symbolTable The symbol table of the file
+     */
+    public Resolver(SymbolTable symbolTable)
+    {
+        this.symbolTable = symbolTable;
+        this.staticVariables = new VariableTable();
+        this.localVariables = new LocalVariableTable();
+        this.objectVariables = new VariableTable();
+    }
+    
+    /**
+     * Resolves a whole program
+     * 
+     * @param program The AST generated by the parser
+     */
+    public void resolve(AbstractSyntaxTree program)
+    {
+        for(AbstractSyntaxTree ast : program.getChildren())
+        {
+            if(ast.getType() == TreeNodeType.SECTION)
+            {
+                resolveStaticClass(ast);
+            }
+            else if(ast.getType() == TreeNodeType.CLASS)
+            {
+                resolveClass(ast);
+            }
+        }
+    }
+    
+    private void resolveStaticClass(AbstractSyntaxTree tree)
+    {
+        for(AbstractSyntaxTree ast : tree.getChildren())
+        {
+            switch(ast.getType())
+            {
+                case DECLARATION:
+                {
+                    staticVariables.add(new VariableSymbol(ast.getDataType(), ast.getName()));
+                    break;
+                }
+                case ARRAY_DECLARATION:
+                {
+                    staticVariables.add(new VariableSymbol(ast.getDataType(), ast.getName(), 0));
+                    break;
+                }
+                case FUNCTION:
+                {
+                    resolveFunction(ast, ast.getContent(), true);
+                    break;
+                }
+            }
+        }
+    }
+    
+    private void resolveClass(AbstractSyntaxTree tree)
+    {
+        for(AbstractSyntaxTree ast : tree.getChildren())
+        {
+            switch(ast.getType())
+            {
+                case DECLARATION:
+                {
+                    objectVariables.add(new VariableSymbol(ast.getDataType(), ast.getName()));
+                    break;
+                }
+                case FUNCTION:
+                {
+                    resolveFunction(ast, ast.getContent(), false);
+                    break;
+                }
+                case CONSTRUCTOR:
+                {
+                    //The code generator renames constructors before generating them
+                    resolveFunction(ast, "_" + tree.getContent() + "Constructor", false);
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Computes the frame layout of a function and resolves all variable accesses inside it
+     * 
+     * @param tree The function AST
+     * @param name The name of the function as used by the code generator
+     * @param isStatic Determines if this is a section (static) or an object class
+     */
+    private void resolveFunction(AbstractSyntaxTree tree, String name, boolean isStatic)
+    {
+        currentFunctionName = name;
+        currentArgs = new VariableTable();
+        for(AbstractSyntaxTree ast : tree.getChildren())
+        {
+            if(ast.getType() == TreeNodeType.FUNC_ARG)
+            {
+                currentArgs.add(new VariableSymbol(ast.getDataType(), ast.getName()));
+            }
+        }
+        currentSavedBytes = getSavedBytes(tree, name);
+        
+        resolveStatements(tree, name, isStatic);
+        
+        tree.setFrameLayout(new FrameLayout(currentArgs.size(), localVariables.get(name).size()));
+    }
+    
+    /**
+     * Has to match the registers CodeGenerator.generateFunction() pushes
+     * 
+     * @param tree The function AST
+     * @param name The name of the function as used by the code generator
+     * @return The number of bytes the function pushes before its stack variables
+     */
+    private int getSavedBytes(AbstractSyntaxTree tree, String name)
+    {
+        if(tree.getSymbol() == Interner.VBLANK)
+        {
+            return 8; //af, bc, de, hl
+        }
+        MethodSymbol method = symbolTable.getStaticMethod(name);
+        if(method != null && method.getReturnBitNum() != 0)
+        {
+            return 6; //af, de, hl (bc holds the return value)
+        }
+        return 0;
+    }
+    
+    /**
+     * Walks through all children of a node, registering stack variables and resolving variable accesses
+     * 
+     * @param tree The AST to walk through
+     * @param scope The name the stack variables declared directly in this node are stored under
+     * @param isStatic Determines if this is a section (static) or an object class
+     */
+    private void resolveStatements(AbstractSyntaxTree tree, String scope, boolean isStatic)
+    {
+        for(AbstractSyntaxTree ast : tree.getChildren())
+        {
+            switch(ast.getType())
+            {
+                case DECLARATION:
+                {
+                    //Declarations in object methods are an error, which the code generator reports
+                    if(isStatic)
+                    {
+                        localVariables.add(scope, new VariableSymbol(ast.getDataType(), ast.getName()));
+                    }
+                    break;
+                }
+                case VARIABLE:
+                case ARRAY_ACCESS:
+                {
+                    ast.setAccess(resolveAccess(ast, true), resolveAccess(ast, false));
+                    resolveStatements(ast, ast.getContent(), isStatic);
+                    break;
+                }
+                default:
+                {
+                    resolveStatements(ast, ast.getContent(), isStatic);
+                    break;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Resolves a single variable access: function argument, then stack variable and static variable (sections)
+     * or object variable (object classes)
+     * 
+     * @param tree The VARIABLE or ARRAY_ACCESS AST
+     * @param isStatic Determines if the variable is seen from a section (static) or an object class
+     * @return
+     */
+    private VarHelper resolveAccess(AbstractSyntaxTree tree, boolean isStatic)
+    {
+        VariableTable locals = localVariables.get(currentFunctionName);
+        //Everything that isn't a stack variable is addressed from behind the arguments and stack variables
+        int frameOffset = (currentArgs.size() * 2) + (locals.size() * 2);
+        
+        VariableSymbol arg = currentArgs.get(tree.getContent());
+        if(arg != null)
+        {
+            //The arguments are pushed in order, behind the stack variables, the saved registers and the return address
+            int argOffset = (locals.size() * 2) + currentSavedBytes + 2 + ((currentArgs.size() - 1 - currentArgs.indexOf(tree.getContent())) * 2);
+            return resolveType(tree, arg, VariableType.FUNC_ARG, argOffset);
+        }
+        
+        if(isStatic)
+        {
+            int index = locals.indexOf(tree.getContent());
+            if(index != -1)
+            {
+                return resolveType(tree, locals.getVariables().get(index), VariableType.STACK_VAR, (locals.size() * 2) - (index * 2) - 2);
+            }
+            
+            VariableSymbol var = staticVariables.get(tree.getContent());
+            if(var == null)
+            {
+                VarHelper vh = new VarHelper(0, VariableType.STATIC, frameOffset);
+                vh.setError(tree.getLine(), "Variable \"" + tree.getContent() + "\" not defined.");
+                return vh;
+            }
+            return resolveType(tree, var, VariableType.STATIC, frameOffset);
+        }
+        else
+        {
+            VariableSymbol var = objectVariables.get(tree.getContent());
+            if(var == null)
+            {
+                return new VarHelper(0, VariableType.OBJECT, frameOffset);
+            }
+            return resolveType(tree, var, VariableType.OBJECT, frameOffset);
+        }
+    }
+    
+    private VarHelper resolveType(AbstractSyntaxTree tree, VariableSymbol var, VariableType varType, int frameOffset)
+    {
+        int bitNum;
+        if(var.isArray())
+        {
+            bitNum = var.getElementType().equals("char") ? Constants.CHAR_SIZE : Constants.INT_SIZE;
+        }
+        else
+        {
+            bitNum = symbolTable.getBitNumForType(var.getType());
+        }
+        
+        VarHelper vh = new VarHelper(bitNum, varType, frameOffset);
+        if(bitNum == 0)
+        {
+            vh.setError(tree.getLine(), "Type \"" + var.getType() + "\" does not exist.");
+        }
+        return vh;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,168 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import de.jc.gbjc.main.Constants;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All methods and classes visible to a file (its own, those of imported files and the standard library)<br>
+ * Built once per ParsedModule, all lookups are done via hash maps
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class SymbolTable
+{
+    private Map<String, MethodSymbol> staticMethods; //<method name> -> first method with that name
+    private Map<String, MethodSymbol> objectMethods; //<method name> -> first object method with that name (of any class)
+    private Map<String, ClassLayout> classes; //<class name> -> first class with that name
+    private Map<String, Integer> objectVariablePositions; //<variable name> -> position in the last class declaring it
+    private int constructorObjectOffset;
+    
+    /**
+     * Constructor
+     * 
+     * @param staticMethods All static methods (including the standard library)
+     * @param classes All object classes
+     * @param constructors All constructors
+     * @param objectMethods All object methods
+     * @param objectInstances All variables holding objects
+     */
+    public SymbolTable(List<MethodSymbol> staticMethods, List<ClassLayout> classes, List<MethodSymbol> constructors,
+            List<MethodSymbol> objectMethods, List<VariableSymbol> objectInstances)
+    {
+        this.staticMethods = new HashMap<String, MethodSymbol>();
+        for(MethodSymbol method : staticMethods)
+        {
+            if(!this.staticMethods.containsKey(method.getName()))
+            {
+                this.staticMethods.put(method.getName(), method);
+            }
+        }
+        
+        this.objectMethods = new HashMap<String, MethodSymbol>();
+        for(MethodSymbol method : objectMethods)
+        {
+            if(!this.objectMethods.containsKey(method.getName()))
+            {
+                this.objectMethods.put(method.getName(), method);
+            }
+        }
+        
+        this.classes = new HashMap<String, ClassLayout>();
+        this.objectVariablePositions = new HashMap<String, Integer>();
+        for(ClassLayout layout : classes)
+        {
+            if(!this.classes.containsKey(layout.getName()))
+            {
+                this.classes.put(layout.getName(), layout);
+            }
+            this.objectVariablePositions.putAll(layout.getVariablePositions());
+        }
+        
+        //When calling a method on "this" inside a constructor, the pointer to the object is located behind the arguments of all
+        //constructors of classes that have instances
+        Set<String> instantiatedClasses = new HashSet<String>();
+        for(VariableSymbol instance : objectInstances)
+        {
+            instantiatedClasses.add(instance.getType());
+        }
+        this.constructorObjectOffset = 0;
+        for(MethodSymbol constructor : constructors)
+        {
+            if(instantiatedClasses.contains(constructor.getName()))
+            {
+                constructorObjectOffset += constructor.getNumArgs() * 2; //Every argument takes 2 bytes on the stack, so we mult by 2
+                constructorObjectOffset += 2; //Also calculate in that the address we want is that of the pointer to the object
+            }
+        }
+    }
+    
+    /**
+     * @param name The name of the method
+     * @return The static method or null if it doesn't exist
+     */
+    public MethodSymbol getStaticMethod(String name)
+    {
+        return staticMethods.get(name);
+    }
+    
+    /**
+     * @param name The name of the method
+     * @return The object method or null if it doesn't exist
+     */
+    public MethodSymbol getObjectMethod(String name)
+    {
+        return objectMethods.get(name);
+    }
+    
+    /**
+     * @param name The name of the class
+     * @return The class layout or null if the class doesn't exist
+     */
+    public ClassLayout getClassLayout(String name)
+    {
+        return classes.get(name);
+    }
+    
+    public boolean isObjectType(String name)
+    {
+        return classes.containsKey(name);
+    }
+    
+    /**
+     * @param varName The name of the object variable
+     * @return The position of the variable inside the object memory or null if no class declares it
+     */
+    public Integer getObjectVariablePosition(String varName)
+    {
+        return objectVariablePositions.get(varName);
+    }
+    
+    /**
+     * @return The stack offset of the object pointer for calls on "this" inside a constructor
+     */
+    public int getConstructorObjectOffset()
+    {
+        return constructorObjectOffset;
+    }
+    
+    /**
+     * Retrieves the "bitNum" for a data type<br>
+     * Can be 8 (char), 16 (int or pointer) or 0 (type doesn't exist)
+     * 
+     * @param type The data type
+     * @return
+     */
+    public int getBitNumForType(String type)
+    {
+        if(type.equals("char"))
+        {
+            return Constants.CHAR_SIZE;
+        }
+        else if(type.equals("int"))
+        {
+            return Constants.INT_SIZE;
+        }
+        else if(classes.containsKey(type))
+        {
+            return Constants.POINTER_SIZE;
+        }
+        return 0;
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "Static Methods: " + staticMethods.values() + "\nObject Methods: " + objectMethods.values() + "\nClasses: " + classes.values();
+    }
+}
\ No newline at end of file
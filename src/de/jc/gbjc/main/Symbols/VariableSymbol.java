@@ -0,0 +1,85 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+/**
+ * A declared variable (static variable, local variable, object variable or array)
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class VariableSymbol
+{
+    private String type; //"char", "int", an object type or "array"
+    private String name;
+    private String elementType; //Only used for arrays
+    private int numBytes; //Only used for arrays
+    
+    /**
+     * Constructor for a normal variable
+     * 
+     * @param type The data type of the variable
+     * @param name The name of the variable
+     */
+    public VariableSymbol(String type, String name)
+    {
+        this.type = type;
+        this.name = name;
+        this.elementType = null;
+        this.numBytes = 0;
+    }
+    
+    /**
+     * Constructor for an array
+     * 
+     * @param elementType The data type of the array entries
+     * @param name The name of the array
+     * @param numBytes The size of the whole array in bytes
+     */
+    public VariableSymbol(String elementType, String name, int numBytes)
+    {
+        this.type = "array";
+        this.name = name;
+        this.elementType = elementType;
+        this.numBytes = numBytes;
+    }
+    
+    public boolean isArray()
+    {
+        return elementType != null;
+    }
+    
+    public String getType()
+    {
+        return type;
+    }
+    
+    public String getName()
+    {
+        return name;
+    }
+    
+    public String getElementType()
+    {
+        return elementType;
+    }
+    
+    public int getNumBytes()
+    {
+        return numBytes;
+    }
+    
+    @Override
+    public String toString()
+    {
+        if(isArray())
+        {
+            return elementType + "[" + numBytes + "] " + name;
+        }
+        return type + " " + name;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Symbols;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ordered table of variables with constant time lookup by name<br>
+ * If a name is declared twice, lookups return the first declaration
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class VariableTable
+{
+    private List<VariableSymbol> variables; //In order of declaration
+    private Map<String, Integer> indices; //<variable name> -> index of the first declaration
+    
+    public VariableTable()
+    {
+        this.variables = new ArrayList<VariableSymbol>();
+        this.indices = new HashMap<String, Integer>();
+    }
+    
+    /**
+     * Adds a variable to the end of the table
+     * 
+     * @param var The variable
+     */
+    public void add(VariableSymbol var)
+    {
+        if(!indices.containsKey(var.getName()))
+        {
+            indices.put(var.getName(), variables.size());
+        }
+        variables.add(var);
+    }
+    
+    /**
+     * @param name The name of the variable
+     * @return The variable or null if it isn't declared
+     */
+    public VariableSymbol get(String name)
+    {
+        Integer index = indices.get(name);
+        if(index == null)
+        {
+            return null;
+        }
+        return variables.get(index);
+    }
+    
+    /**
+     * @param name The name of the variable
+     * @return The position of the variable in declaration order or -1 if it isn't declared
+     */
+    public int indexOf(String name)
+    {
+        Integer index = indices.get(name);
+        if(index == null)
+        {
+            return -1;
+        }
+        return index;
+    }
+    
+    public int size()
+    {
+        return variables.size();
+    }
+    
+    /**
+     * @return All variables in order of declaration
+     */
+    public List<VariableSymbol> getVariables()
+    {
+        return variables;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,295 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main;
+
+import de.jc.gbjc.main.Token.TokenType;
+import de.jc.gbjc.main.Util.Interner;
+
+/**
+ * All tokens of a file, stored column-wise in primitive arrays instead of one object per token<br>
+ * Per token: type (1 byte), start offset in the source (4), length (2), line (4) and symbol id (4), 15 bytes in total<br>
+ * The text of identifiers, strings and constants lives in the Interner, the symbol id refers to it
+ * (-1 for tokens without text, like punctuation)<br>
+ * A stream either holds all tokens of a file (see Lexer.lex()), or is a window that pulls tokens from a lexer when they are
+ * accessed (see Lexer.stream()). A window drops the tokens its reader has released, so it only grows with the longest
+ * unreleased stretch of tokens. Both use the same ring buffer, which simply never wraps when nothing is released
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class TokenStream
+{
+    private static final TokenType[] TYPES = TokenType.values();
+    public static final int MAX_LENGTH = Character.MAX_VALUE;
+    private static final int WINDOW_CAPACITY = 1024;
+    
+    private byte[] types;
+    private int[] starts;
+    private char[] lengths;
+    private int[] lines;
+    private int[] symbols;
+    private int mask; //The capacity is a power of two, (index & mask) is the slot of a token
+    private int first; //The index of the oldest token still in the buffer
+    private int released; //Tokens before this index may be dropped
+    private int size; //The number of tokens added so far (= the index of the next one)
+    private Lexer source; //Lexes more tokens on demand, null once the whole file has been lexed
+    private int warnings; //Warnings the lexer logged while lexing these tokens
+    
+    /**
+     * Constructor for a stream that gets all tokens added up front
+     * 
+     * @param capacity The expected number of tokens
+     */
+    public TokenStream(int capacity)
+    {
+        int powerOfTwo = 16;
+        while(powerOfTwo < capacity)
+        {
+            powerOfTwo *= 2;
+        }
+        allocate(powerOfTwo);
+        this.first = 0;
+        this.released = 0;
+        this.size = 0;
+        this.source = null;
+        this.warnings = 0;
+    }
+    
+    /**
+     * Constructor for a window that pulls its tokens from a lexer
+     * 
+     * @param source The lexer
+     */
+    public TokenStream(Lexer source)
+    {
+        this(WINDOW_CAPACITY);
+        this.source = source;
+    }
+    
+    private void allocate(int capacity)
+    {
+        this.types = new byte[capacity];
+        this.starts = new int[capacity];
+        this.lengths = new char[capacity];
+        this.lines = new int[capacity];
+        this.symbols = new int[capacity];
+        this.mask = capacity - 1;
+    }
+    
+    /**
+     * Appends a token
+     * 
+     * @param type The token type
+     * @param start The offset of the token in the source
+     * @param length The number of characters of the token in the source (at most MAX_LENGTH)
+     * @param line The source code line
+     * @param symbol The interned text, -1 if the token has none
+     */
+    public void add(TokenType type, int start, int length, int line, int symbol)
+    {
+        if(size - first == types.length)
+        {
+            if(first < released)
+            {
+                first++;
+            }
+            else
+            {
+                grow();
+            }
+        }
+        int slot = size & mask;
+        types[slot] = (byte) type.ordinal();
+        starts[slot] = start;
+        lengths[slot] = (char) length;
+        lines[slot] = line;
+        symbols[slot] = symbol;
+        size++;
+    }
+    
+    private void grow()
+    {
+        byte[] oldTypes = types;
+        int[] oldStarts = starts;
+        char[] oldLengths = lengths;
+        int[] oldLines = lines;
+        int[] oldSymbols = symbols;
+        int oldMask = mask;
+        allocate(types.length * 2);
+        for(int index = first; index < size; index++)
+        {
+            int oldSlot = index & oldMask;
+            int slot = index & mask;
+            types[slot] = oldTypes[oldSlot];
+            starts[slot] = oldStarts[oldSlot];
+            lengths[slot] = oldLengths[oldSlot];
+            lines[slot] = oldLines[oldSlot];
+            symbols[slot] = oldSymbols[oldSlot];
+        }
+    }
+    
+    /**
+     * Allows the tokens before the given index to be dropped, the reader won't access them again
+     * 
+     * @param index The index of the first token that is still needed
+     */
+    public void release(int index)
+    {
+        released = Math.max(released, index);
+    }
+    
+    /**
+     * Checks if a token exists, lexing up to it if necessary<br>
+     * This is what readers loop on, size() is only the number of tokens lexed so far
+     * 
+     * @param index The index of the token
+     * @return If the file has that many tokens
+     */
+    public boolean has(int index)
+    {
+        if(index >= size && source != null)
+        {
+            fill(index);
+        }
+        return index < size;
+    }
+    
+    private void fill(int index)
+    {
+        while(index >= size && source != null)
+        {
+            if(!source.pull(this))
+            {
+                source = null;
+            }
+        }
+    }
+    
+    /**
+     * Counts a warning logged by the lexer
+     */
+    public void addWarning()
+    {
+        warnings++;
+    }
+    
+    /**
+     * @return The number of warnings logged while lexing the tokens so far (files with warnings aren't cached, see ModuleCache)
+     */
+    public int getWarnings()
+    {
+        return warnings;
+    }
+    
+    /**
+     * @return The number of tokens lexed so far (all of them, unless this is a window that hasn't been read to the end)
+     */
+    public int size()
+    {
+        return size;
+    }
+    
+    public TokenType getType(int index)
+    {
+        checkIndex(index);
+        return TYPES[types[index & mask]];
+    }
+    
+    /**
+     * @param index The index of the token
+     * @return The text of an identifier or string, the decimal number of a constant, "" for all other tokens
+     */
+    public String getString(int index)
+    {
+        checkIndex(index);
+        int symbol = symbols[index & mask];
+        return symbol == -1 ? "" : Interner.getInstance().get(symbol);
+    }
+    
+    /**
+     * @param index The index of the token
+     * @return The id of the interned text, -1 if the token has none
+     */
+    public int getSymbol(int index)
+    {
+        checkIndex(index);
+        return symbols[index & mask];
+    }
+    
+    /**
+     * Checks the text of a token against a pre-registered one (see Interner), without comparing strings
+     * 
+     * @param index The index of the token
+     * @param symbol The id of the text, e.g. Interner.CLASS
+     * @return If the token has that text
+     */
+    public boolean is(int index, int symbol)
+    {
+        checkIndex(index);
+        return symbols[index & mask] == symbol;
+    }
+    
+    /**
+     * @param index The index of a CONSTANT token
+     * @return The number
+     */
+    public int getValue(int index)
+    {
+        checkIndex(index);
+        return Interner.getInstance().getNumber(symbols[index & mask]);
+    }
+    
+    public int getLine(int index)
+    {
+        checkIndex(index);
+        return lines[index & mask];
+    }
+    
+    /**
+     * @param index The index of the token
+     * @return The offset of the token in the source
+     */
+    public int getStart(int index)
+    {
+        checkIndex(index);
+        return starts[index & mask];
+    }
+    
+    /**
+     * @param index The index of the token
+     * @return The number of characters of the token in the source
+     */
+    public int getLength(int index)
+    {
+        checkIndex(index);
+        return lengths[index & mask];
+    }
+    
+    /**
+     * Creates a token object, only meant for debug output
+     * 
+     * @param index The index of the token
+     * @return
+     */
+    public Token get(int index)
+    {
+        return new Token(getType(index), getString(index), getLine(index));
+    }
+    
+    private void checkIndex(int index)
+    {
+        if(index >= size && source != null)
+        {
+            fill(index);
+        }
+        //Parsers look ahead, running past the last token has to fail like it did with a list
+        if(index < first || index >= size)
+        {
+            throw new IndexOutOfBoundsException("Token index " + index + ", available " + first + " to " + (size - 1));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,95 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Util;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Read-only view of several lists one after another<br>
+ * Nothing is copied, so changes to the underlying lists are visible through the view
+ * 
+ * @author robbi-blechdose
+ * 
+ * @param <T> The element type
+ */
+public class ConcatenatedList<T> extends AbstractList<T>
+{
+    private List<List<T>> segments;
+    
+    /**
+     * Constructor
+     * 
+     * @param segments The lists to view, in order
+     */
+    public ConcatenatedList(List<List<T>> segments)
+    {
+        this.segments = segments;
+    }
+    
+    @Override
+    public T get(int index)
+    {
+        if(index >= 0)
+        {
+            for(List<T> segment : segments)
+            {
+                if(index < segment.size())
+                {
+                    return segment.get(index);
+                }
+                index -= segment.size();
+            }
+        }
+        throw new IndexOutOfBoundsException("Index: " + index);
+    }
+    
+    @Override
+    public int size()
+    {
+        int size = 0;
+        for(List<T> segment : segments)
+        {
+            size += segment.size();
+        }
+        return size;
+    }
+    
+    @Override
+    public Iterator<T> iterator()
+    {
+        //Walk the segments directly instead of going through get() for every element
+        return new Iterator<T>()
+        {
+            private int segment = 0;
+            private Iterator<T> current = segments.isEmpty() ? null : segments.get(0).iterator();
+            
+            @Override
+            public boolean hasNext()
+            {
+                while(current != null && !current.hasNext())
+                {
+                    segment++;
+                    current = segment < segments.size() ? segments.get(segment).iterator() : null;
+                }
+                return current != null;
+            }
+            
+            @Override
+            public T next()
+            {
+                if(!hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                return current.next();
+            }
+        };
+    }
+}
\ No newline at end of file
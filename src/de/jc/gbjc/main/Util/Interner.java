@@ -0,0 +1,281 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Util;
+
+import de.jc.gbjc.main.Constants;
+import java.util.Map;
+
+/**
+ * Project-wide table of all identifiers, strings and constants in the source code<br>
+ * Every distinct text gets an id and is only stored once, lexemes can be looked up directly from the source buffer
+ * without creating a string first<br>
+ * Keywords, built-in functions and stdlib functions are registered up front with fixed ids (the constants below),
+ * so later phases can compare ids or switch over them instead of comparing strings.
+ * The built-in constants (see Constants) are registered up front too, their values can be looked up by id<br>
+ * Thread-safe: adding texts is synchronized, looking them up by id is not (it happens for almost every token),
+ * so the arrays are only ever replaced by filled copies and published through volatile fields
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class Interner
+{
+    //Keywords
+    public static final int CHAR = 0;
+    public static final int INT = 1;
+    public static final int VOID = 2;
+    public static final int SECTION = 3;
+    public static final int CLASS = 4;
+    public static final int IMPORT = 5;
+    public static final int NEW = 6;
+    public static final int RETURN = 7;
+    public static final int IF = 8;
+    public static final int ELSE = 9;
+    public static final int WHILE = 10;
+    public static final int SWITCH = 11;
+    public static final int CASE = 12;
+    public static final int THIS = 13;
+    public static final int ASM = 14;
+    //The interrupt handler
+    public static final int VBLANK = 15;
+    //Built-in functions, translated directly into instructions
+    public static final int HALT = 16;
+    public static final int WAIT_VBLANK = 17;
+    public static final int ENABLE_INTERRUPTS = 18;
+    public static final int DISABLE_INTERRUPTS = 19;
+    public static final int LCD_ON = 20;
+    public static final int SOFTWARE_BREAK = 21;
+    //Stdlib functions that take their arguments in registers
+    public static final int IS_BUTTON_PRESSED = 22;
+    public static final int WAS_BUTTON_PRESSED = 23;
+    public static final int LOAD_PALETTES = 24;
+    public static final int PRINT = 25;
+    public static final int PRINT_NUMBER = 26;
+    public static final int SET_SPRITE_POSITION = 27;
+    public static final int SET_SPRITE_TILE = 28;
+    public static final int SET_SPRITE_ATTRIBUTES = 29;
+    public static final int PLACE_BG_TILE = 30;
+    public static final int PLACE_WIN_TILE = 31;
+    public static final int SET_BG_SCROLL = 32;
+    public static final int SET_WIN_POSITION = 33;
+    public static final int SWITCH_BANK = 34;
+    
+    //The texts of the ids above, in the same order
+    private static final String[] PREDEFINED =
+    {
+        "char", "int", "void", "section", "class", "import", "new", "return", "if", "else", "while", "switch", "case", "this", "Asm",
+        "VBlank",
+        "halt", "waitVBlank", "enableInterrupts", "disableInterrupts", "lcdOn", "softwareBreak",
+        "isButtonPressed", "wasButtonPressed", "loadPalettes", "print", "printNumber", "setSpritePosition", "setSpriteTile",
+        "setSpriteAttributes", "placeBGTile", "placeWinTile", "setBGScroll", "setWinPosition", "switchBank"
+    };
+    
+    //Created up front (after the texts above), so getInstance() doesn't need to lock
+    public static Interner instance = new Interner();
+    
+    private volatile String[] strings; //<id> -> text
+    private int[] hashes; //<id> -> hash of the text
+    private volatile int[] numbers; //<id> -> value, for the decimal texts of constants
+    private volatile String[] constants; //<id> -> value, for the names of built-in constants (null for all other texts)
+    private int[] table; //Open addressing hash table of id + 1, 0 marks a free slot
+    private int size;
+    
+    public Interner()
+    {
+        this.strings = new String[256];
+        this.hashes = new int[256];
+        this.numbers = new int[256];
+        this.constants = new String[256];
+        this.table = new int[512];
+        this.size = 0;
+        
+        for(String s : PREDEFINED)
+        {
+            intern(s);
+        }
+        for(Map.Entry<String, String> constant : Constants.getContants().entrySet())
+        {
+            constants[intern(constant.getKey())] = constant.getValue();
+        }
+    }
+    
+    /**
+     * Returns the id of a text that is part of a char array, adding it if it doesn't exist yet
+     * 
+     * @param text The char array
+     * @param start The index of the first character
+     * @param length The number of characters
+     * @return The id
+     */
+    public synchronized int intern(char[] text, int start, int length)
+    {
+        int hash = 0;
+        for(int i = start; i < start + length; i++)
+        {
+            hash = 31 * hash + text[i];
+        }
+        
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while(table[slot] != 0)
+        {
+            int id = table[slot] - 1;
+            if(hashes[id] == hash && equals(strings[id], text, start, length))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(new String(text, start, length), hash, slot);
+    }
+    
+    /**
+     * Returns the id of a text, adding it if it doesn't exist yet
+     * 
+     * @param s The text
+     * @return The id
+     */
+    public synchronized int intern(String s)
+    {
+        //String.hashCode() is the same hash as the one calculated for char arrays
+        int hash = s.hashCode();
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        while(table[slot] != 0)
+        {
+            int id = table[slot] - 1;
+            if(hashes[id] == hash && strings[id].equals(s))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(s, hash, slot);
+    }
+    
+    /**
+     * @param id The id of a text
+     * @return The text
+     */
+    public String get(int id)
+    {
+        return strings[id];
+    }
+    
+    /**
+     * Stores the value of a constant, so it doesn't have to be parsed again
+     * 
+     * @param id The id of the decimal text of the constant
+     * @param number The value
+     */
+    public synchronized void setNumber(int id, int number)
+    {
+        numbers[id] = number;
+    }
+    
+    /**
+     * @param id The id of the decimal text of a constant
+     * @return The value set with setNumber()
+     */
+    public int getNumber(int id)
+    {
+        return numbers[id];
+    }
+    
+    /**
+     * @param id The id of a text, -1 is allowed (for "no text")
+     * @return The value of the built-in constant of that name, null if there is none
+     */
+    public String getConstant(int id)
+    {
+        return id < 0 ? null : constants[id];
+    }
+    
+    /**
+     * @return The number of distinct texts
+     */
+    public synchronized int size()
+    {
+        return size;
+    }
+    
+    private int add(String s, int hash, int slot)
+    {
+        if(size == strings.length)
+        {
+            String[] newStrings = new String[size * 2];
+            System.arraycopy(strings, 0, newStrings, 0, size);
+            strings = newStrings;
+            int[] newHashes = new int[size * 2];
+            System.arraycopy(hashes, 0, newHashes, 0, size);
+            hashes = newHashes;
+            int[] newNumbers = new int[size * 2];
+            System.arraycopy(numbers, 0, newNumbers, 0, size);
+            numbers = newNumbers;
+            String[] newConstants = new String[size * 2];
+            System.arraycopy(constants, 0, newConstants, 0, size);
+            constants = newConstants;
+        }
+        
+        int id = size++;
+        strings[id] = s;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+        
+        //Keep the table at most half full
+        if(size * 2 > table.length)
+        {
+            rehash();
+        }
+        return id;
+    }
+    
+    private void rehash()
+    {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for(int id = 0; id < size; id++)
+        {
+            int slot = mix(hashes[id]) & mask;
+            while(table[slot] != 0)
+            {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = id + 1;
+        }
+    }
+    
+    /**
+     * Spreads the bits of a hash, so similar texts (e.g. "var1", "var2") don't end up in neighbouring slots
+     */
+    private static int mix(int hash)
+    {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+    
+    private static boolean equals(String s, char[] text, int start, int length)
+    {
+        if(s.length() != length)
+        {
+            return false;
+        }
+        for(int i = 0; i < length; i++)
+        {
+            if(s.charAt(i) != text[start + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public static Interner getInstance()
+    {
+        return instance;
+    }
+}
\ No newline at end of file
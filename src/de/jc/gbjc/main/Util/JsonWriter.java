@@ -0,0 +1,220 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer for the reports of the compiler<br>
+ * Output is indented with two spaces per level
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class JsonWriter
+{
+    private Writer writer;
+    private Deque<Boolean> empty; //For every open object/array: if nothing has been written into it yet
+    private boolean afterName;
+    
+    /**
+     * Constructor
+     * 
+     * @param writer The writer the JSON is written into
+     */
+    public JsonWriter(Writer writer)
+    {
+        this.writer = writer;
+        this.empty = new ArrayDeque<Boolean>();
+        this.afterName = false;
+    }
+    
+    public JsonWriter beginObject() throws IOException
+    {
+        beforeValue();
+        writer.write("{");
+        empty.push(true);
+        return this;
+    }
+    
+    public JsonWriter endObject() throws IOException
+    {
+        return end("}");
+    }
+    
+    public JsonWriter beginArray() throws IOException
+    {
+        beforeValue();
+        writer.write("[");
+        empty.push(true);
+        return this;
+    }
+    
+    public JsonWriter endArray() throws IOException
+    {
+        return end("]");
+    }
+    
+    /**
+     * Writes the name of the next member of an object
+     * 
+     * @param name The name
+     * @return
+     * @throws IOException
+     */
+    public JsonWriter name(String name) throws IOException
+    {
+        beforeValue();
+        writeString(name);
+        writer.write(": ");
+        afterName = true;
+        return this;
+    }
+    
+    public JsonWriter value(String value) throws IOException
+    {
+        beforeValue();
+        if(value == null)
+        {
+            writer.write("null");
+        }
+        else
+        {
+            writeString(value);
+        }
+        return this;
+    }
+    
+    public JsonWriter value(long value) throws IOException
+    {
+        beforeValue();
+        writer.write(Long.toString(value));
+        return this;
+    }
+    
+    public JsonWriter value(double value) throws IOException
+    {
+        beforeValue();
+        writer.write(Double.toString(value));
+        return this;
+    }
+    
+    public JsonWriter value(boolean value) throws IOException
+    {
+        beforeValue();
+        writer.write(Boolean.toString(value));
+        return this;
+    }
+    
+    /**
+     * Writes a line break after the top level value and flushes the writer
+     * 
+     * @throws IOException
+     */
+    public void finish() throws IOException
+    {
+        writer.write("\n");
+        writer.flush();
+    }
+    
+    private JsonWriter end(String bracket) throws IOException
+    {
+        boolean wasEmpty = empty.pop();
+        if(!wasEmpty)
+        {
+            newLine();
+        }
+        writer.write(bracket);
+        return this;
+    }
+    
+    /**
+     * Writes the separator in front of a value (or name) if needed
+     */
+    private void beforeValue() throws IOException
+    {
+        if(afterName)
+        {
+            //The value belongs to the name that was just written
+            afterName = false;
+            return;
+        }
+        if(!empty.isEmpty())
+        {
+            if(!empty.peek())
+            {
+                writer.write(",");
+            }
+            empty.pop();
+            empty.push(false);
+            newLine();
+        }
+    }
+    
+    private void newLine() throws IOException
+    {
+        writer.write("\n");
+        for(int i = 0; i < empty.size(); i++)
+        {
+            writer.write("  ");
+        }
+    }
+    
+    private void writeString(String s) throws IOException
+    {
+        StringBuilder sb = new StringBuilder("\"");
+        for(int i = 0; i < s.length(); i++)
+        {
+            char c = s.charAt(i);
+            switch(c)
+            {
+                case '"':
+                {
+                    sb.append("\\\"");
+                    break;
+                }
+                case '\\':
+                {
+                    sb.append("\\\\");
+                    break;
+                }
+                case '\n':
+                {
+                    sb.append("\\n");
+                    break;
+                }
+                case '\r':
+                {
+                    sb.append("\\r");
+                    break;
+                }
+                case '\t':
+                {
+                    sb.append("\\t");
+                    break;
+                }
+                default:
+                {
+                    if(c < 0x20)
+                    {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        sb.append(c);
+                    }
+                    break;
+                }
+            }
+        }
+        sb.append("\"");
+        writer.write(sb.toString());
+    }
+}
\ No newline at end of file
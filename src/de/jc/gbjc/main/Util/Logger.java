@@ -9,12 +9,16 @@ package de.jc.gbjc.main.Util;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import org.fusesource.jansi.Ansi;
 import org.fusesource.jansi.AnsiConsole;
 
 /**
- * Simple logger implementation utilizing the JANSI library for colored output
+ * Simple logger implementation utilizing the JANSI library for colored output<br>
+ * Thread-safe. Tasks that run concurrently can buffer their messages and have them printed in a fixed order later,
+ * so the output doesn't depend on which thread was faster
  *
  * @author robbi-blechdose
  * 
@@ -31,14 +35,36 @@ public class Logger
     public static final int WARNING = 2;
     public static final int ERROR = 3;
     
+    private int minLevel = DIRECT; //Messages below this level are dropped
+    private ThreadLocal<List<String>> buffer = new ThreadLocal<List<String>>(); //Set while the current thread buffers its messages
+    
     public Logger()
     {
         AnsiConsole.systemInstall();
     }
     
+    /**
+     * Only messages of at least the given level are logged from now on (errors are always logged)
+     * 
+     * @param minLevel The lowest level that is still logged
+     */
+    public void setMinLevel(int minLevel)
+    {
+        this.minLevel = Math.min(minLevel, ERROR);
+    }
+    
     public void log(int level, String s)
     {
-        String toLog = sdf.format(new Date()) + " ";
+        if(level < minLevel)
+        {
+            return;
+        }
+        
+        String toLog;
+        synchronized(sdf)
+        {
+            toLog = sdf.format(new Date()) + " ";
+        }
         
         switch(level)
         {
@@ -69,7 +95,57 @@ public class Logger
             }
         }
         
-        System.out.println(toLog);
+        List<String> lines = buffer.get();
+        if(lines == null)
+        {
+            print(toLog);
+        }
+        else
+        {
+            lines.add(toLog);
+            //Errors end the program, so everything buffered before them has to be printed right away
+            if(level == ERROR)
+            {
+                print(lines);
+                lines.clear();
+            }
+        }
+    }
+    
+    private synchronized void print(String line)
+    {
+        System.out.println(line);
+    }
+    
+    /**
+     * Prints buffered messages (see stopBuffering())
+     * 
+     * @param lines The messages
+     */
+    public synchronized void print(List<String> lines)
+    {
+        for(String line : lines)
+        {
+            System.out.println(line);
+        }
+    }
+    
+    /**
+     * Collects all messages logged by the current thread instead of printing them, until stopBuffering() is called
+     */
+    public void startBuffering()
+    {
+        buffer.set(new ArrayList<String>());
+    }
+    
+    /**
+     * @return The messages logged by the current thread since startBuffering(), to be printed with print()
+     */
+    public List<String> stopBuffering()
+    {
+        List<String> lines = buffer.get();
+        buffer.remove();
+        return lines;
     }
     
     public void log(int level, Exception e)
@@ -80,7 +156,7 @@ public class Logger
         log(level, sw.toString());
     }
     
-    public static Logger getInstance()
+    public static synchronized Logger getInstance()
     {
         if(instance == null)
         {
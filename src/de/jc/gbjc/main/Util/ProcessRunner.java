@@ -0,0 +1,173 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the tools of a toolchain (e.g. RGBDS) directly, without a shell in between<br>
+ * The tools are looked up once in the tool directory (with the .exe ending on Windows) and taken from the PATH if they aren't there.
+ * stderr is merged into stdout, so the output is read by the calling thread alone
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class ProcessRunner
+{
+    private static final boolean WINDOWS = System.getProperty("os.name").toLowerCase().contains("win");
+    
+    private String toolDir;
+    private Map<String, String> tools; //Tool name -> executable
+    
+    /**
+     * Constructor
+     * 
+     * @param toolDir The directory the tools are bundled in
+     */
+    public ProcessRunner(String toolDir)
+    {
+        this.toolDir = toolDir;
+        this.tools = new HashMap<String, String>();
+    }
+    
+    /**
+     * Finds the executable of a tool: the bundled one if it exists, otherwise the one on the PATH<br>
+     * A bundled tool that isn't executable is reported (once) and running it fails
+     * 
+     * @param name The name of the tool, e.g. "rgbasm"
+     * @return The path to the executable (or just the name if it's taken from the PATH)
+     */
+    public synchronized String findTool(String name)
+    {
+        String tool = tools.get(name);
+        if(tool == null)
+        {
+            File file = new File(toolDir, WINDOWS ? name + ".exe" : name);
+            if(file.isFile())
+            {
+                tool = file.getAbsolutePath();
+                //Bundled binaries might have lost their executable bit (e.g. when the compiler was unpacked from a zip file),
+                //the installation is left as it is, the user has to fix it
+                if(!file.canExecute())
+                {
+                    Logger.getInstance().log(Logger.ERROR, tool + " is not executable. Make it executable with \"chmod +x " + tool + "\".");
+                }
+            }
+            else
+            {
+                tool = name;
+            }
+            tools.put(name, tool);
+        }
+        return tool;
+    }
+    
+    /**
+     * Runs a tool and waits for it to finish
+     * 
+     * @param name The name of the tool
+     * @param arguments The arguments passed to the tool as they are (no quoting needed)
+     * @return The exit code, the output and the duration
+     * @throws IOException If the tool couldn't be started
+     */
+    public Result run(String name, List<String> arguments) throws IOException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(findTool(name));
+        command.addAll(arguments);
+        
+        long startTime = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        
+        List<String> output = new ArrayList<String>();
+        BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try
+        {
+            String line;
+            while((line = input.readLine()) != null)
+            {
+                output.add(line);
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+        
+        int exitCode;
+        try
+        {
+            exitCode = process.waitFor();
+        }
+        catch(InterruptedException e)
+        {
+            process.destroy();
+            throw new IOException("Interrupted while waiting for " + name + ".", e);
+        }
+        
+        return new Result(command, exitCode, output, System.nanoTime() - startTime);
+    }
+    
+    /**
+     * The result of a finished tool
+     */
+    public static class Result
+    {
+        private List<String> command;
+        private int exitCode;
+        private List<String> output;
+        private long durationNanos;
+        
+        private Result(List<String> command, int exitCode, List<String> output, long durationNanos)
+        {
+            this.command = Collections.unmodifiableList(command);
+            this.exitCode = exitCode;
+            this.output = Collections.unmodifiableList(output);
+            this.durationNanos = durationNanos;
+        }
+        
+        /**
+         * @return The executable followed by the arguments
+         */
+        public List<String> getCommand()
+        {
+            return command;
+        }
+        
+        public int getExitCode()
+        {
+            return exitCode;
+        }
+        
+        public boolean isSuccess()
+        {
+            return exitCode == 0;
+        }
+        
+        /**
+         * @return The lines written to stdout and stderr, in the order they were written
+         */
+        public List<String> getOutput()
+        {
+            return output;
+        }
+        
+        public long getDurationNanos()
+        {
+            return durationNanos;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,270 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.main.Util;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the wall time, the allocated memory and the amount of processed items (tokens, nodes, instructions) of every
+ * compiler phase (-timings)
+ * 
+ * @author robbi-blechdose
+ * 
+ */
+public class Timings
+{
+    public static Timings instance;
+    
+    private boolean enabled;
+    private List<Phase> phases; //In the order the phases ended
+    private long startTime;
+    
+    public Timings()
+    {
+        this.phases = new ArrayList<Phase>();
+        this.startTime = System.nanoTime();
+    }
+    
+    /**
+     * Phases are only recorded while enabled, so runs without -timings (and benchmarks) don't collect them
+     * 
+     * @param enabled
+     */
+    public void setEnabled(boolean enabled)
+    {
+        this.enabled = enabled;
+    }
+    
+    /**
+     * Starts measuring a phase, the measurement is recorded when end() is called on the returned phase
+     * 
+     * @param name The name of the phase, e.g. "lex"
+     * @param file The file the phase works on, null if it works on the whole project
+     * @return The running phase
+     */
+    public Phase begin(String name, String file)
+    {
+        return new Phase(name, file);
+    }
+    
+    private synchronized void add(Phase phase)
+    {
+        if(enabled)
+        {
+            phases.add(phase);
+        }
+    }
+    
+    /**
+     * @return All finished phases, in the order they ended
+     */
+    public synchronized List<Phase> getPhases()
+    {
+        return new ArrayList<Phase>(phases);
+    }
+    
+    /**
+     * Prints every phase and the totals per phase name
+     */
+    public void print()
+    {
+        Logger.getInstance().log(Logger.INFO, "Compiler phase timings:");
+        for(Phase phase : getPhases())
+        {
+            Logger.getInstance().log(Logger.INFO, String.format("%-22s %-12s %9.3f ms %10d KB %s",
+                    phase.getName(), phase.getFile() == null ? "" : phase.getFile(), phase.getWallNanos() / 1000000.0,
+                    phase.getAllocatedBytes() / 1024, phase.getCounts().isEmpty() ? "" : phase.getCounts().toString()));
+        }
+        Logger.getInstance().log(Logger.INFO, "Totals:");
+        for(Map.Entry<String, long[]> total : getTotals().entrySet())
+        {
+            Logger.getInstance().log(Logger.INFO, String.format("%-22s %9.3f ms %10d KB", total.getKey(),
+                    total.getValue()[0] / 1000000.0, total.getValue()[1] / 1024));
+        }
+        Logger.getInstance().log(Logger.INFO, String.format("%-22s %9.3f ms", "(whole run)", (System.nanoTime() - startTime) / 1000000.0));
+    }
+    
+    /**
+     * Writes all phases as JSON
+     * 
+     * @param path The file to write to
+     */
+    public void write(String path)
+    {
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "utf-8")))
+        {
+            JsonWriter json = new JsonWriter(writer);
+            json.beginObject();
+            json.name("totalMs").value((System.nanoTime() - startTime) / 1000000.0);
+            
+            json.name("phases").beginArray();
+            for(Phase phase : getPhases())
+            {
+                json.beginObject();
+                json.name("name").value(phase.getName());
+                json.name("file").value(phase.getFile());
+                json.name("timeMs").value(phase.getWallNanos() / 1000000.0);
+                json.name("allocatedBytes").value(phase.getAllocatedBytes());
+                for(Map.Entry<String, Long> count : phase.getCounts().entrySet())
+                {
+                    json.name(count.getKey()).value(count.getValue());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            
+            json.name("totals").beginObject();
+            for(Map.Entry<String, long[]> total : getTotals().entrySet())
+            {
+                json.name(total.getKey()).beginObject();
+                json.name("timeMs").value(total.getValue()[0] / 1000000.0);
+                json.name("allocatedBytes").value(total.getValue()[1]);
+                json.endObject();
+            }
+            json.endObject();
+            
+            json.endObject();
+            json.finish();
+        }
+        catch(IOException e)
+        {
+            Logger.getInstance().log(Logger.ERROR, "Failed to write timings.");
+            Logger.getInstance().log(Logger.ERROR, e);
+        }
+    }
+    
+    /**
+     * @return Phase name -> {wall time in nanoseconds, allocated bytes}, summed up over all files
+     */
+    private Map<String, long[]> getTotals()
+    {
+        Map<String, long[]> totals = new LinkedHashMap<String, long[]>();
+        for(Phase phase : getPhases())
+        {
+            long[] total = totals.get(phase.getName());
+            if(total == null)
+            {
+                total = new long[2];
+                totals.put(phase.getName(), total);
+            }
+            total[0] += phase.getWallNanos();
+            total[1] += phase.getAllocatedBytes();
+        }
+        return totals;
+    }
+    
+    public static synchronized Timings getInstance()
+    {
+        if(instance == null)
+        {
+            instance = new Timings();
+        }
+        return instance;
+    }
+    
+    /**
+     * A single measured phase
+     */
+    public class Phase
+    {
+        private String name;
+        private String file;
+        private long start;
+        private long startAllocated;
+        private long wallNanos;
+        private long allocatedBytes;
+        private Map<String, Long> counts;
+        
+        private Phase(String name, String file)
+        {
+            this.name = name;
+            this.file = file;
+            this.counts = new LinkedHashMap<String, Long>();
+            this.startAllocated = getThreadAllocatedBytes();
+            this.start = System.nanoTime();
+        }
+        
+        /**
+         * Records how many items of a kind this phase handled
+         * 
+         * @param what What was counted, e.g. "tokens"
+         * @param count The amount
+         * @return
+         */
+        public Phase count(String what, long count)
+        {
+            counts.put(what, count);
+            return this;
+        }
+        
+        /**
+         * Stops measuring and records the phase
+         */
+        public void end()
+        {
+            wallNanos = System.nanoTime() - start;
+            long allocated = getThreadAllocatedBytes();
+            allocatedBytes = (allocated < 0 || startAllocated < 0) ? -1 : allocated - startAllocated;
+            add(this);
+        }
+        
+        public String getName()
+        {
+            return name;
+        }
+        
+        public String getFile()
+        {
+            return file;
+        }
+        
+        public long getWallNanos()
+        {
+            return wallNanos;
+        }
+        
+        /**
+         * @return The bytes allocated by the current thread during this phase, -1 if the JVM can't measure it
+         */
+        public long getAllocatedBytes()
+        {
+            return allocatedBytes;
+        }
+        
+        public Map<String, Long> getCounts()
+        {
+            return counts;
+        }
+    }
+    
+    /**
+     * @return The bytes allocated by the current thread so far, -1 if the JVM doesn't support measuring it
+     */
+    public static long getThreadAllocatedBytes()
+    {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(bean instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if(sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled())
+            {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -18,7 +18,10 @@ public class VarHelper
 {
     private int bitNum;
     private VariableType varType;
-
+    private int frameOffset; //Stack offset inside the function frame (without temporary pushes), set by the Resolver
+    private int errorLine;
+    private String errorMessage; //Set if accessing this variable is an error
+    
     /**
      * Constructor
      * 
@@ -26,9 +29,37 @@ public class VarHelper
      * @param varType The type of this variable
      */
     public VarHelper(int bitNum, VariableType varType)
+    {
+        this(bitNum, varType, 0);
+    }
+    
+    /**
+     * Constructor
+     * 
+     * @param bitNum The number of bits this variable has
+     * @param varType The type of this variable
+     * @param frameOffset The stack offset of this variable inside the function frame
+     */
+    public VarHelper(int bitNum, VariableType varType, int frameOffset)
     {
         this.bitNum = bitNum;
         this.varType = varType;
+        this.frameOffset = frameOffset;
+        this.errorLine = -1;
+        this.errorMessage = null;
+    }
+    
+    /**
+     * Marks the access to this variable as an error<br>
+     * The error is only reported once the code generator actually uses the variable
+     * 
+     * @param line The line the error occured on
+     * @param message A description of the error
+     */
+    public void setError(int line, String message)
+    {
+        this.errorLine = line;
+        this.errorMessage = message;
     }
 
     public int getBitNum()
@@ -40,4 +71,19 @@ public class VarHelper
     {
         return varType;
     }
+    
+    public int getFrameOffset()
+    {
+        return frameOffset;
+    }
+    
+    public int getErrorLine()
+    {
+        return errorLine;
+    }
+    
+    public String getErrorMessage()
+    {
+        return errorMessage;
+    }
 }
\ No newline at end of file
@@ -11,14 +11,14 @@ INCLUDE "stdlib/hardware.inc"
 
  SECTION "GBPrinterVars", HRAM
 
-hChecksum: DS 2
-hMapTilePointer: DS 2
-hTileBytePointer: DS 2
+hChecksum:: DS 2
+hMapTilePointer:: DS 2
+hTileBytePointer:: DS 2
 
  SECTION "GBPrinter", ROM0
 
 ; Sends one byte out via the serial port, and simultaneously receives one
-sendByte:
+sendByte::
     ldh     [rSB], a
     ld      a, $81
     ldh     [rSC], a
@@ -28,13 +28,13 @@ sendByte:
     jr      nz, .waitSend
     ret
 
-initData:
+initData::
 DB $88, $33, $01, $00, $00, $00, $01, $00, $00, $00
 
 ; Sends the init packet
 ; And then checks if the printer is connected (response $81 $00 = connected ; $FF $FF = not connected)
 ; Returns 1 in bc if connection is OK, 0 if it's not
-initPrinter:
+initPrinter::
     ld      hl, initData
     ld      b, 9
 .loop:
@@ -71,14 +71,14 @@ initPrinter:
     ld      c, a
     ret
 
-dataHeader:
+dataHeader::
 DB $88, $33, $04, $00, $80, $02
 
-dataEndPacket:
+dataEndPacket::
 DB $88, $33, $04, $00, $00, $00, $04, $00, $00, $00
 
 ; Transfers data from the window layer to the printer
-transferData:
+transferData::
     ld      hl, _SCRN1
     ld      a, l
     ld      [hMapTilePointer], a
@@ -233,11 +233,11 @@ transferData:
     pop     hl
     ret
 
-NULPacket:
+NULPacket::
 DB $88, $33, $0F, $00, $00, $00, $0F, $00, $00, $00
 
 ; Checks the printer's status
-getStatus:
+getStatus::
     ld      hl, NULPacket
     ld      b, 10
 .loop:
@@ -252,11 +252,11 @@ getStatus:
 
     ret
 
-startPrintPacket:
+startPrintPacket::
 DB $88, $33, $02, $00, $04, $00, $01, $13, $E4, $40, $3E, $01, $00, $00
 
 ; Sends a "start print" packet to the printer
-startPrint:
+startPrint::
     ld      hl, startPrintPacket
     ld      b, 14
 .loop:
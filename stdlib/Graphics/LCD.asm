@@ -11,7 +11,7 @@ INCLUDE "stdlib/hardware.inc"
 
  SECTION "Std_LCD", ROM0
 
-lcdOff:
+lcdOff::
     rst     $00 ; Wait for VBlank
     xor     a
     ld      [rLCDC], a
@@ -21,7 +21,7 @@ lcdOff:
 ; ld a, isOBJPal (0 = BG pal, 1 = OBJ Pal)
 ; ld hl, pointerToPalettes
 ; call loadPalettes
-loadPalettes:
+loadPalettes::
     ; Check palette type to be written
     and     a ; Faster than "cp 0"
     jr      z, .bgPal
@@ -14,7 +14,7 @@ INCLUDE "stdlib/Graphics/LCD.asm"
  SECTION "Std_Printer", ROM0
 
 ; Loads the charset as well as the GBC palettes (required if we are on GBC)
-loadCharset:
+loadCharset::
     ld      a, BANK(GraphicsCharset)
     ld      [rROMB0], a
 
@@ -74,7 +74,7 @@ loadCharset:
 ; ld c, y
 ; ld hl, pointerToData (Data must be ASCII, but charmapped (see charmap.asm))
 ; call print
-print:
+print::
     xor     a
     ld      [rVBK], a
 
@@ -110,7 +110,7 @@ print:
 ; ld l, y
 ; ld d, char
 ; call printNumber
-printNumber:
+printNumber::
     xor     a
     ld      [rVBK], a
 
@@ -142,7 +142,7 @@ printNumber:
     ld      [hl], a
     ret
 
-Palettes:
+Palettes::
 ; Use DW (B << 10) | (G << 5) | R
 ; Palette 0
 DW (26 << 10) | (26 << 5) | 26
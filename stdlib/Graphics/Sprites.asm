@@ -22,12 +22,12 @@ shadowOAM::
 
  SECTION "DMA Routine", HRAM
 
-dmaTransfer:
+dmaTransfer::
     DS 10
 
  SECTION "DMA", ROM0
 
-DMATransfer:
+DMATransfer::
     ld      a, HIGH(shadowOAM)
     ld      [rDMA], a
     ld      a, $28
@@ -35,9 +35,9 @@ DMATransfer:
     dec     a
     jr      nz, .wait
     ret
-DMATransferEnd:
+DMATransferEnd::
 
-copyDMARoutine:
+copyDMARoutine::
     ld      hl, DMATransfer
     ld      de, dmaTransfer
     ld      bc, DMATransferEnd - DMATransfer
@@ -45,7 +45,7 @@ copyDMARoutine:
     ;call    memcpy
     ;ret
 
-memcpy:
+memcpy::
 .copyLoop:
     ld      a, [hl+]
     ld      [de], a
@@ -56,7 +56,7 @@ memcpy:
     jr      nz, .copyLoop
     ret
 
-clearOAM:
+clearOAM::
     ld      hl, shadowOAM
     ld      b, 160
     xor     a
@@ -73,7 +73,7 @@ clearOAM:
 ; ld b, xPosition
 ; ld c, yPosition
 ; call setSpritePosition
-setSpritePosition:
+setSpritePosition::
     ; Each entry is 4 bytes big (also, we can do this in a without overflowing since there are only 40 sprites)
     add     a, a
     add     a, a
@@ -92,7 +92,7 @@ setSpritePosition:
 ; ld a, spriteIndex
 ; ld b, tileId
 ; call setSpriteTile
-setSpriteTile:
+setSpriteTile::
     ; Each entry is 4 bytes big (also, we can do this in a without overflowing since there are only 40 sprites)
     add     a, a
     add     a, a
@@ -113,7 +113,7 @@ setSpriteTile:
 ; ld a, spriteIndex
 ; ld b, spriteAttributes
 ; call setSpriteAttributes
-setSpriteAttributes:
+setSpriteAttributes::
     ; Each entry is 4 bytes big (also, we can do this in a without overflowing since there are only 40 sprites)
     add     a, a
     add     a, a
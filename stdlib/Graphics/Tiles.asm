@@ -18,7 +18,7 @@ INCLUDE "stdlib/hardware.inc"
 ; push pointerToTileData
 ; call loadTiles
 ; add sp, 6
-loadTiles:
+loadTiles::
     ld      hl, sp + 8
     ld      a, [hl]
     ld      [rVBK], a
@@ -74,7 +74,7 @@ loadTiles:
 ; ld c, xPos
 ; ld d, yPos
 ; call placeBGTile
-placeBGTile:
+placeBGTile::
     ld      l, d
     ld      de, _SCRN0
     jr      placeTile
@@ -86,7 +86,7 @@ placeBGTile:
 ; ld c, xPos
 ; ld d, yPos
 ; call placeWinTile
-placeWinTile:
+placeWinTile::
     ld      l, d
     ld      de, _SCRN1
     ;jr      setTile ; Unnecessary
@@ -100,7 +100,7 @@ placeWinTile:
 ; ld l, yPos
 ; ld de, VRAM location (_SCRN0 or _SCRN1)
 ; call placeTile
-placeTile:
+placeTile::
     ld      [rVBK], a
 
     ; Put the tile ID into a
@@ -124,11 +124,11 @@ placeTile:
 
     ret
 
-loadBGMap:
+loadBGMap::
     ld      de, _SCRN0
     jr      loadMap
 
-loadWinMap:
+loadWinMap::
     ld      de, _SCRN1
     ;jr      loadMap ; Unnecessary
 
@@ -144,7 +144,7 @@ loadWinMap:
 ; push ySize
 ; call loadMap
 ; add sp, 12
-loadMap:
+loadMap::
     ld      hl, sp + 12
     ld      a, [hl]
     ld      [rVBK], a
@@ -212,7 +212,7 @@ loadMap:
 ; ld a, xScroll
 ; ld b, yScroll
 ; call setBGScroll
-setBGScroll:
+setBGScroll::
     ld      [rSCX], a
     ld      a, b
     ld      [rSCY], a
@@ -222,7 +222,7 @@ setBGScroll:
 ; ld a, xPos
 ; ld b, yPos
 ; call setWinPosition
-setWinPosition:
+setWinPosition::
     ld      [rWX], a
     ld      a, b
     ld      [rWY], a
@@ -10,8 +10,8 @@
 
  SECTION "Temp", HRAM
 
-hTemp: DS 8
-hOverflow: DS 2
+hTemp:: DS 8
+hOverflow:: DS 2
 
  SECTION "Maths", ROM0
 
@@ -23,7 +23,7 @@ hOverflow: DS 2
 ; Returns:
 ; d: quotient
 ; a: remainder
-_div8_8:
+_div8_8::
     xor     a
     ld      b, 8
 .loop:
@@ -47,7 +47,7 @@ _div8_8:
 ; Returns:
 ; hl: quotient
 ; a: remainder
-_div16_8:
+_div16_8::
     xor     a
     ld      b, 16
 .loop:
@@ -72,7 +72,7 @@ _div16_8:
 ; Returns:
 ; bc: quotient
 ; de: remainder
-_div16_16:
+_div16_16::
     ld      hl, hTemp
     ld      [hl], e
     inc     hl
@@ -127,7 +127,7 @@ _div16_16:
 ; Returns:
 ; l: result
 ; h: overflow byte (also stored in HRAM)
-_mul8_8:
+_mul8_8::
     ld      l, 0
     ld      d, l
 
@@ -156,7 +156,7 @@ _mul8_8:
 ; Returns:
 ; hl: result
 ; a: overflow byte (also stored in HRAM)
-_mul16_8:
+_mul16_8::
     ld      c, 0
     ld      h, c
     ld      l, h
@@ -188,7 +188,7 @@ _mul16_8:
 ; Returns:
 ; hl: result
 ; de: overflow bytes (also stored in HRAM)
-_mul16_6:
+_mul16_6::
     ld      hl, 0
 
     sla     e ; optimised 1st iteration
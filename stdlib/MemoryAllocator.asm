@@ -21,23 +21,23 @@ INCLUDE "stdlib/hardware.inc"
 ; Data...
 
  ; Allocate 2K of memory
-Heap:
+Heap::
 DS 2 * 1024
 .end:
 
 SECTION "MemAllocatorVars", HRAM
 
-hBiggestBlockPtr: DS 2
-hBiggestBlockSize: DS 2
-hPreviousBlockPtr: DS 2
-hCurrentBlockPtr: DS 2
-hRequestSize: DS 2
-hRequestSizePlusHeader: DS 2
-hNextPtr: DS 2
+hBiggestBlockPtr:: DS 2
+hBiggestBlockSize:: DS 2
+hPreviousBlockPtr:: DS 2
+hCurrentBlockPtr:: DS 2
+hRequestSize:: DS 2
+hRequestSizePlusHeader:: DS 2
+hNextPtr:: DS 2
 
  SECTION "MemAllocator", ROM0
 
-initHeap:
+initHeap::
     ld      hl, Heap
     ld      bc, (Heap.end - Heap) - 6 ; Size of first block: entire heap (minus metadata)
     ; Set size
@@ -71,7 +71,7 @@ initHeap:
 ; Returns:
 ; hl: pointer to memory block, if one was found
 ; carry flag: set if a block was found
-malloc:
+malloc::
     ; Set smallest block pointer to NULL
     xor     a
     ldh     [hBiggestBlockPtr], a
@@ -247,7 +247,7 @@ malloc:
 
 ; Old TODO: Check next pointer as NULL pointer - I don't think this is still relevant, but maybe it should be checked again just to make sure
 ; hl: Pointer to block to be freed
-free:
+free::
     push    hl
     ; Set the block itself to be free
     ld      a, [hl]
@@ -13,23 +13,23 @@ INCLUDE "stdlib/hardware.inc"
 
  SECTION "GBPrinterVars", HRAM
 
-hReceived: DS 1
+hReceived:: DS 1
 
  SECTION "UtilsVars", HRAM
 
-hPad: DS 1
-hPadLast: DS 1
+hPad:: DS 1
+hPadLast:: DS 1
 
  SECTION "Stack", WRAM0
 
-wStack:
+wStack::
     DS 256
-wStackEnd:
+wStackEnd::
 
  SECTION "Header", ROM0[$0000]
 
 ; $0000 - $003F: RST handlers.
-waitVBlank:
+waitVBlank::
     ld      a, [rLY]
     cp      145 ; Check LCDC y coordinate, see if we're in VBlank
     jr      nz, waitVBlank ; If we're not in VBlank, wait until we are
@@ -88,7 +88,7 @@ REPT 8
     nop
 ENDR
 ; $0058
-serial:
+serial::
     push    af
     ldh     a, [rSB]
     ldh     [hReceived], a
@@ -117,7 +117,7 @@ ENDR
 ; -> Interrupts
 ; -> 0ing out variables
 ; -> Initializing the heap
-startup:
+startup::
     ld      sp, wStackEnd
     ld      a, IEF_SERIAL | IEF_VBLANK
     ld      [rIE], a
@@ -137,7 +137,7 @@ INCLUDE "stdlib/MemoryAllocator.asm"
 ; a: Index
 ; c: Maximum index of the table
 ; de: Base address of the table
-jumpTableCaller:
+jumpTableCaller::
     cp      c
     ret     nc
     add     a, a
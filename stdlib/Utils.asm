@@ -11,7 +11,7 @@ INCLUDE "stdlib/hardware.inc"
 
  SECTION "Utils", ROM0
 
-readPad:
+readPad::
     ldh     a, [hPad]
     ldh     [hPadLast], a
 
@@ -47,7 +47,7 @@ readPad:
 ; call isButtonPressed
 ; Returns:
 ; If button is pressed: c = 1, else c = 0
-isButtonPressed:
+isButtonPressed::
     ld      a, [hPad]
     and     c
     jr      z, .notPressed
@@ -62,7 +62,7 @@ isButtonPressed:
 ; call wasButtonPressed
 ; Returns:
 ; If button was pressed: c = 1, else c = 0
-wasButtonPressed:
+wasButtonPressed::
     ld      a, [hPadLast]
     and     c
     jr      z, .notPressed
@@ -73,7 +73,7 @@ wasButtonPressed:
     ret
 
 ; Used to switch between single- and double-speed on GBC
-switchSpeed:
+switchSpeed::
     ; Save interrupts
     ldh     a, [rIE]
     ld      b, a
@@ -0,0 +1,916 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs generated assembly without assembling it, just enough of the Game Boy CPU to check what the generated code computes<br>
+ * Only the Z and C flags are kept and only the instructions the code generator uses inline are supported,
+ * calls into the stdlib (or anything else that isn't in the file) are reported as errors<br>
+ * Code labels are the index of the instruction they point to, variables (DS) are placed from $C000 on
+ * and the other data (DB, DW) from $4000 on
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class AsmInterpreter
+{
+    private static final int MAX_STEPS = 1000000;
+    private static final int RAM_START = 0xC000;
+    private static final int DATA_START = 0x4000;
+    private static final int STACK_START = 0xFFFE;
+    private static final int RETURN_ADDRESS = 0xFFFF; //Returning here ends the run
+
+    private List<String[]> program; //Mnemonic followed by the operands
+    private List<Integer> lineNumbers;
+    private Map<String, Integer> labels;
+    private Map<String, Integer> sizes; //The number of bytes reserved by DS, by label
+    private List<String[]> words; //Address and expression of DW values, resolved once all labels are known
+    private int[] memory;
+
+    private int a, b, c, d, e, h, l, sp, pc;
+    private boolean zero, carry;
+
+    /**
+     * Constructor, reads the assembly
+     *
+     * @param asm The contents of a generated .asm file
+     */
+    public AsmInterpreter(String asm)
+    {
+        program = new ArrayList<String[]>();
+        lineNumbers = new ArrayList<Integer>();
+        labels = new HashMap<String, Integer>();
+        sizes = new HashMap<String, Integer>();
+        words = new ArrayList<String[]>();
+        memory = new int[0x10000];
+
+        boolean ram = false;
+        int ramPosition = RAM_START;
+        int dataPosition = DATA_START;
+        List<String> pendingLabels = new ArrayList<String>();
+        String[] lines = asm.split("\r?\n");
+        for(int i = 0; i < lines.length; i++)
+        {
+            String line = stripComment(lines[i]);
+            //Labels start at the beginning of the line, everything else is indented or a known keyword
+            int colon = line.indexOf(':');
+            if(colon > 0 && !Character.isWhitespace(line.charAt(0)) && line.substring(0, colon).matches("[A-Za-z_.][A-Za-z0-9_.]*"))
+            {
+                pendingLabels.add(line.substring(0, colon));
+                //Exported labels end with ::
+                int end = colon + 1;
+                if(end < line.length() && line.charAt(end) == ':')
+                {
+                    end++;
+                }
+                line = line.substring(end);
+            }
+            line = line.trim();
+            if(line.isEmpty())
+            {
+                continue;
+            }
+
+            String[] parts = line.split("\\s+", 2);
+            String keyword = parts[0].toUpperCase();
+            String rest = parts.length > 1 ? parts[1].trim() : "";
+            if(keyword.equals("SECTION"))
+            {
+                ram = rest.contains("WRAM") || rest.contains("HRAM") || rest.contains("SRAM");
+                defineLabels(pendingLabels, ram ? ramPosition : dataPosition);
+            }
+            else if(keyword.equals("INCLUDE") || keyword.equals("EXPORT") || keyword.equals("GLOBAL") || keyword.equals("PURGE"))
+            {
+                //Includes only bring in the stdlib and the charmap, neither has code the tests run
+            }
+            else if(keyword.equals("DS"))
+            {
+                int size = (int) evaluate(rest);
+                for(String label : pendingLabels)
+                {
+                    sizes.put(label, size);
+                }
+                if(ram)
+                {
+                    defineLabels(pendingLabels, ramPosition);
+                    ramPosition += size;
+                }
+                else
+                {
+                    defineLabels(pendingLabels, dataPosition);
+                    dataPosition += size;
+                }
+            }
+            else if(keyword.equals("DB") || keyword.equals("DW"))
+            {
+                defineLabels(pendingLabels, dataPosition);
+                for(String value : splitOperands(rest))
+                {
+                    if(value.startsWith("\""))
+                    {
+                        for(char ch : value.substring(1, value.length() - 1).toCharArray())
+                        {
+                            memory[dataPosition++] = ch & 0xFF;
+                        }
+                    }
+                    else if(keyword.equals("DB"))
+                    {
+                        memory[dataPosition++] = (int) evaluate(value) & 0xFF;
+                    }
+                    else
+                    {
+                        words.add(new String[] {String.valueOf(dataPosition), value});
+                        dataPosition += 2;
+                    }
+                }
+            }
+            else
+            {
+                defineLabels(pendingLabels, program.size());
+                List<String> operands = splitOperands(rest);
+                String[] ins = new String[operands.size() + 1];
+                ins[0] = parts[0].toLowerCase();
+                for(int j = 0; j < operands.size(); j++)
+                {
+                    ins[j + 1] = operands.get(j);
+                }
+                program.add(ins);
+                lineNumbers.add(i + 1);
+            }
+        }
+        defineLabels(pendingLabels, ram ? ramPosition : dataPosition);
+
+        for(String[] word : words)
+        {
+            int address = Integer.parseInt(word[0]);
+            int value = (int) evaluate(word[1]);
+            memory[address] = value & 0xFF;
+            memory[address + 1] = (value >> 8) & 0xFF;
+        }
+    }
+
+    private void defineLabels(List<String> pending, int value)
+    {
+        for(String label : pending)
+        {
+            labels.put(label, value);
+        }
+        pending.clear();
+    }
+
+    private static String stripComment(String line)
+    {
+        boolean inString = false;
+        for(int i = 0; i < line.length(); i++)
+        {
+            char ch = line.charAt(i);
+            if(ch == '"')
+            {
+                inString = !inString;
+            }
+            else if(ch == ';' && !inString)
+            {
+                return line.substring(0, i);
+            }
+        }
+        return line;
+    }
+
+    private static List<String> splitOperands(String text)
+    {
+        List<String> operands = new ArrayList<String>();
+        if(text.isEmpty())
+        {
+            return operands;
+        }
+        boolean inString = false;
+        int depth = 0;
+        int start = 0;
+        for(int i = 0; i < text.length(); i++)
+        {
+            char ch = text.charAt(i);
+            if(ch == '"')
+            {
+                inString = !inString;
+            }
+            else if(!inString && (ch == '(' || ch == '['))
+            {
+                depth++;
+            }
+            else if(!inString && (ch == ')' || ch == ']'))
+            {
+                depth--;
+            }
+            else if(!inString && depth == 0 && ch == ',')
+            {
+                operands.add(text.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        operands.add(text.substring(start).trim());
+        return operands;
+    }
+
+    /**
+     * @param label A label of a variable
+     * @return Its address
+     */
+    public int getAddress(String label)
+    {
+        Integer address = labels.get(label);
+        if(address == null)
+        {
+            throw new IllegalArgumentException("Unknown label: " + label);
+        }
+        return address;
+    }
+
+    /**
+     * @param label A label of a variable
+     * @return The number of bytes reserved for it
+     */
+    public int getSize(String label)
+    {
+        Integer size = sizes.get(label);
+        if(size == null)
+        {
+            throw new IllegalArgumentException("Not a variable: " + label);
+        }
+        return size;
+    }
+
+    public int read(int address)
+    {
+        return memory[address & 0xFFFF];
+    }
+
+    public void write(int address, int value)
+    {
+        memory[address & 0xFFFF] = value & 0xFF;
+    }
+
+    /**
+     * Calls a function and runs until it returns
+     *
+     * @param label The label of the function
+     * @throws IllegalStateException If the code does something the interpreter doesn't support, or doesn't return
+     */
+    public void call(String label)
+    {
+        sp = STACK_START;
+        push(RETURN_ADDRESS);
+        pc = getAddress(label);
+        for(int steps = 0; steps < MAX_STEPS; steps++)
+        {
+            if(pc == RETURN_ADDRESS)
+            {
+                if(sp != STACK_START)
+                {
+                    throw new IllegalStateException(label + " returned with sp off by " + (sp - STACK_START));
+                }
+                return;
+            }
+            if(pc < 0 || pc >= program.size())
+            {
+                throw new IllegalStateException("Execution left the code (at " + pc + ")");
+            }
+
+            String[] ins = program.get(pc);
+            int line = lineNumbers.get(pc);
+            pc++;
+            try
+            {
+                execute(ins);
+            }
+            catch(RuntimeException ex)
+            {
+                throw new IllegalStateException("Line " + line + " (" + join(ins) + "): " + ex.getMessage(), ex);
+            }
+        }
+        throw new IllegalStateException(label + " didn't return within " + MAX_STEPS + " instructions");
+    }
+
+    private void execute(String[] ins)
+    {
+        String op1 = ins.length > 1 ? ins[1] : null;
+        String op2 = ins.length > 2 ? ins[2] : null;
+        String last = ins[ins.length - 1];
+        switch(ins[0])
+        {
+            case "nop":
+            {
+                break;
+            }
+            case "ld":
+            case "ldi":
+            case "ldd":
+            {
+                if(is16Bit(op1))
+                {
+                    //Also covers "ld hl, sp + n", sp is known to evaluate()
+                    setRegister16(op1, is16Bit(op2) ? getRegister16(op2) : (int) evaluate(op2));
+                }
+                else
+                {
+                    set8(op1, get8(op2));
+                }
+                if(!ins[0].equals("ld"))
+                {
+                    setRegister16("hl", getRegister16("hl") + (ins[0].equals("ldi") ? 1 : -1));
+                }
+                break;
+            }
+            case "add":
+            {
+                if(ins.length == 3 && op1.equals("hl"))
+                {
+                    int result = getRegister16("hl") + getRegister16(op2);
+                    carry = result > 0xFFFF;
+                    setRegister16("hl", result);
+                }
+                else if(ins.length == 3 && op1.equals("sp"))
+                {
+                    sp = (sp + (int) evaluate(op2)) & 0xFFFF;
+                }
+                else
+                {
+                    a = arithmetic(a + get8(last));
+                }
+                break;
+            }
+            case "adc":
+            {
+                a = arithmetic(a + get8(last) + (carry ? 1 : 0));
+                break;
+            }
+            case "sub":
+            {
+                a = arithmetic(a - get8(last));
+                break;
+            }
+            case "sbc":
+            {
+                a = arithmetic(a - get8(last) - (carry ? 1 : 0));
+                break;
+            }
+            case "cp":
+            {
+                arithmetic(a - get8(last));
+                break;
+            }
+            case "and":
+            {
+                a = logic(a & get8(last));
+                break;
+            }
+            case "or":
+            {
+                a = logic(a | get8(last));
+                break;
+            }
+            case "xor":
+            {
+                a = logic(a ^ get8(last));
+                break;
+            }
+            case "cpl":
+            {
+                a = ~a & 0xFF;
+                break;
+            }
+            case "scf":
+            {
+                carry = true;
+                break;
+            }
+            case "ccf":
+            {
+                carry = !carry;
+                break;
+            }
+            case "swap":
+            {
+                int value = get8(op1);
+                value = ((value << 4) | (value >> 4)) & 0xFF;
+                set8(op1, value);
+                zero = value == 0;
+                carry = false;
+                break;
+            }
+            case "rra":
+            {
+                int value = a | (carry ? 0x100 : 0);
+                carry = (a & 1) != 0;
+                a = value >> 1;
+                zero = false;
+                break;
+            }
+            case "inc":
+            case "dec":
+            {
+                int delta = ins[0].equals("inc") ? 1 : -1;
+                if(is16Bit(op1))
+                {
+                    setRegister16(op1, getRegister16(op1) + delta);
+                }
+                else
+                {
+                    int value = (get8(op1) + delta) & 0xFF;
+                    set8(op1, value);
+                    zero = value == 0;
+                }
+                break;
+            }
+            case "push":
+            {
+                push(getRegister16(op1));
+                break;
+            }
+            case "pop":
+            {
+                setRegister16(op1, pop());
+                break;
+            }
+            case "jp":
+            case "jr":
+            {
+                if(ins.length == 2 && op1.equals("hl"))
+                {
+                    pc = getRegister16("hl");
+                }
+                else if(ins.length == 2 || isConditionMet(op1))
+                {
+                    pc = getCodeLabel(last);
+                }
+                break;
+            }
+            case "call":
+            {
+                if(ins.length == 2 || isConditionMet(op1))
+                {
+                    int target = getCodeLabel(last);
+                    push(pc);
+                    pc = target;
+                }
+                break;
+            }
+            case "ret":
+            {
+                if(ins.length == 1 || isConditionMet(op1))
+                {
+                    pc = pop();
+                }
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException("Unsupported instruction");
+            }
+        }
+    }
+
+    private int arithmetic(int result)
+    {
+        carry = result < 0 || result > 0xFF;
+        zero = (result & 0xFF) == 0;
+        return result & 0xFF;
+    }
+
+    private int logic(int result)
+    {
+        carry = false;
+        zero = result == 0;
+        return result;
+    }
+
+    private boolean isConditionMet(String condition)
+    {
+        switch(condition)
+        {
+            case "z":
+            {
+                return zero;
+            }
+            case "nz":
+            {
+                return !zero;
+            }
+            case "c":
+            {
+                return carry;
+            }
+            case "nc":
+            {
+                return !carry;
+            }
+        }
+        throw new IllegalStateException("Unknown condition " + condition);
+    }
+
+    private int getCodeLabel(String label)
+    {
+        Integer target = labels.get(label);
+        if(target == null || target >= program.size())
+        {
+            throw new IllegalStateException("Jump to " + label + ", which isn't code in this file");
+        }
+        return target;
+    }
+
+    private void push(int value)
+    {
+        sp = (sp - 1) & 0xFFFF;
+        write(sp, value >> 8);
+        sp = (sp - 1) & 0xFFFF;
+        write(sp, value);
+    }
+
+    private int pop()
+    {
+        int value = read(sp) | (read(sp + 1) << 8);
+        sp = (sp + 2) & 0xFFFF;
+        return value;
+    }
+
+    private static boolean is16Bit(String operand)
+    {
+        return operand.equals("af") || operand.equals("bc") || operand.equals("de") || operand.equals("hl") || operand.equals("sp");
+    }
+
+    private int getRegister16(String register)
+    {
+        switch(register)
+        {
+            case "af":
+            {
+                return (a << 8) | (zero ? 0x80 : 0) | (carry ? 0x10 : 0);
+            }
+            case "bc":
+            {
+                return (b << 8) | c;
+            }
+            case "de":
+            {
+                return (d << 8) | e;
+            }
+            case "hl":
+            {
+                return (h << 8) | l;
+            }
+            case "sp":
+            {
+                return sp;
+            }
+        }
+        throw new IllegalStateException("Not a register pair: " + register);
+    }
+
+    private void setRegister16(String register, int value)
+    {
+        value &= 0xFFFF;
+        switch(register)
+        {
+            case "af":
+            {
+                a = value >> 8;
+                zero = (value & 0x80) != 0;
+                carry = (value & 0x10) != 0;
+                break;
+            }
+            case "bc":
+            {
+                b = value >> 8;
+                c = value & 0xFF;
+                break;
+            }
+            case "de":
+            {
+                d = value >> 8;
+                e = value & 0xFF;
+                break;
+            }
+            case "hl":
+            {
+                h = value >> 8;
+                l = value & 0xFF;
+                break;
+            }
+            case "sp":
+            {
+                sp = value;
+                break;
+            }
+            default:
+            {
+                throw new IllegalStateException("Not a register pair: " + register);
+            }
+        }
+    }
+
+    /**
+     * Reads a byte operand: a register, memory or a number
+     */
+    private int get8(String operand)
+    {
+        switch(operand)
+        {
+            case "a":
+            {
+                return a;
+            }
+            case "b":
+            {
+                return b;
+            }
+            case "c":
+            {
+                return c;
+            }
+            case "d":
+            {
+                return d;
+            }
+            case "e":
+            {
+                return e;
+            }
+            case "h":
+            {
+                return h;
+            }
+            case "l":
+            {
+                return l;
+            }
+        }
+        if(operand.startsWith("["))
+        {
+            return read(getMemoryAddress(operand));
+        }
+        return (int) evaluate(operand) & 0xFF;
+    }
+
+    private void set8(String operand, int value)
+    {
+        value &= 0xFF;
+        switch(operand)
+        {
+            case "a":
+            {
+                a = value;
+                return;
+            }
+            case "b":
+            {
+                b = value;
+                return;
+            }
+            case "c":
+            {
+                c = value;
+                return;
+            }
+            case "d":
+            {
+                d = value;
+                return;
+            }
+            case "e":
+            {
+                e = value;
+                return;
+            }
+            case "h":
+            {
+                h = value;
+                return;
+            }
+            case "l":
+            {
+                l = value;
+                return;
+            }
+        }
+        if(operand.startsWith("["))
+        {
+            write(getMemoryAddress(operand), value);
+            return;
+        }
+        throw new IllegalStateException("Can't write to " + operand);
+    }
+
+    /**
+     * @return The address of a memory operand, [hl+] and [hl-] change hl afterwards
+     */
+    private int getMemoryAddress(String operand)
+    {
+        String inner = operand.substring(1, operand.length() - 1).replace(" ", "");
+        int hl = getRegister16("hl");
+        switch(inner)
+        {
+            case "hl":
+            {
+                return hl;
+            }
+            case "hl+":
+            case "hli":
+            {
+                setRegister16("hl", hl + 1);
+                return hl;
+            }
+            case "hl-":
+            case "hld":
+            {
+                setRegister16("hl", hl - 1);
+                return hl;
+            }
+            case "bc":
+            case "de":
+            {
+                return getRegister16(inner);
+            }
+            case "c":
+            {
+                return 0xFF00 + c;
+            }
+        }
+        return (int) evaluate(inner) & 0xFFFF;
+    }
+
+    /**
+     * Calculates an expression of numbers ($hex, %binary and decimal), labels and sp with + - * / & | ^ << >> and parentheses
+     */
+    private long evaluate(String expression)
+    {
+        ExpressionParser parser = new ExpressionParser(expression.replace(" ", ""));
+        long value = parser.parseBinary(0);
+        if(parser.position != parser.text.length())
+        {
+            throw new IllegalStateException("Can't evaluate " + expression);
+        }
+        return value;
+    }
+
+    private static String join(String[] ins)
+    {
+        StringBuilder sb = new StringBuilder(ins[0]);
+        for(int i = 1; i < ins.length; i++)
+        {
+            sb.append(i == 1 ? " " : ", ").append(ins[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Precedence climbing over the operators of an expression
+     */
+    private class ExpressionParser
+    {
+        private final String[][] levels = {{"|"}, {"^"}, {"&"}, {"<<", ">>"}, {"+", "-"}, {"*", "/"}};
+
+        private String text;
+        private int position;
+
+        private ExpressionParser(String text)
+        {
+            this.text = text;
+            this.position = 0;
+        }
+
+        private long parseBinary(int level)
+        {
+            if(level == levels.length)
+            {
+                return parseUnary();
+            }
+            long value = parseBinary(level + 1);
+            while(true)
+            {
+                String operator = null;
+                for(String s : levels[level])
+                {
+                    if(text.startsWith(s, position))
+                    {
+                        operator = s;
+                    }
+                }
+                if(operator == null)
+                {
+                    return value;
+                }
+                position += operator.length();
+                long right = parseBinary(level + 1);
+                switch(operator)
+                {
+                    case "|":
+                    {
+                        value |= right;
+                        break;
+                    }
+                    case "^":
+                    {
+                        value ^= right;
+                        break;
+                    }
+                    case "&":
+                    {
+                        value &= right;
+                        break;
+                    }
+                    case "<<":
+                    {
+                        value <<= right;
+                        break;
+                    }
+                    case ">>":
+                    {
+                        value >>= right;
+                        break;
+                    }
+                    case "+":
+                    {
+                        value += right;
+                        break;
+                    }
+                    case "-":
+                    {
+                        value -= right;
+                        break;
+                    }
+                    case "*":
+                    {
+                        value *= right;
+                        break;
+                    }
+                    default:
+                    {
+                        value /= right;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private long parseUnary()
+        {
+            if(position >= text.length())
+            {
+                throw new IllegalStateException("Unexpected end of " + text);
+            }
+            char ch = text.charAt(position);
+            if(ch == '-')
+            {
+                position++;
+                return -parseUnary();
+            }
+            if(ch == '(')
+            {
+                position++;
+                long value = parseBinary(0);
+                if(position >= text.length() || text.charAt(position) != ')')
+                {
+                    throw new IllegalStateException("Missing ) in " + text);
+                }
+                position++;
+                return value;
+            }
+
+            int start = position;
+            if(ch == '$' || ch == '%')
+            {
+                position++;
+            }
+            while(position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_' || text.charAt(position) == '.'))
+            {
+                position++;
+            }
+            String token = text.substring(start, position);
+            if(token.startsWith("$"))
+            {
+                return Long.parseLong(token.substring(1), 16);
+            }
+            if(token.startsWith("%"))
+            {
+                return Long.parseLong(token.substring(1), 2);
+            }
+            if(!token.isEmpty() && Character.isDigit(token.charAt(0)))
+            {
+                return Long.parseLong(token);
+            }
+            if(token.equals("sp"))
+            {
+                return sp;
+            }
+            return getAddress(token);
+        }
+    }
+}
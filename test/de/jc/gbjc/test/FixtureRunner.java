@@ -0,0 +1,326 @@
+/**
+ * The GB-J Compiler
+ * Copyright (C) 2019 robbi-blechdose
+ * Licensed under GNU AGPLv3
+ * (See LICENSE.txt for full license)
+ */
+package de.jc.gbjc.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compiles every .gbj file of the fixture directory with and without optimizations and checks what the generated code computes<br>
+ * A fixture describes its runs in comments, e.g.<br>
+ * //run x=20 y=5 -> r1=15 r2=25<br>
+ * sets the global variables x and y, calls main() in the AsmInterpreter and expects r1 and r2 to hold the given values
+ * (negative numbers are written in two's complement), at every optimization level<br>
+ * A directory is a project of several files, main.gbj and the files it imports. It is compiled, assembled and linked
+ * with the bundled RGBDS, which has to produce a ROM (imported files are assembled into objects of their own)<br>
+ * The compiler runs in its own JVM, like it does for users, so System.exit() in the compiler can't end the tests
+ *
+ * @author robbi-blechdose
+ *
+ */
+public class FixtureRunner
+{
+    private static final String[] OPTIMIZATION_LEVELS = {"-O0", "-O2"};
+    private static final String RUN_PREFIX = "//run ";
+    private static final long TIMEOUT_SECONDS = 120;
+
+    private int runs;
+    private List<String> failures = new ArrayList<String>();
+    private File toolDir; //The copy of the bundled RGBDS, null until the first project is linked
+
+    /**
+     * Usage: FixtureRunner [fixture dir] [work dir]
+     *
+     * @param args
+     */
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        File fixtureDir = new File(args.length > 0 ? args[0] : "test/fixtures");
+        File workDir = new File(args.length > 1 ? args[1] : "build/test/fixtures");
+        File[] files = fixtureDir.listFiles();
+        if(files == null)
+        {
+            System.out.println("No fixtures in " + fixtureDir);
+            System.exit(1);
+        }
+        Arrays.sort(files);
+
+        FixtureRunner runner = new FixtureRunner();
+        for(File file : files)
+        {
+            if(file.getName().endsWith(".gbj"))
+            {
+                runner.test(file, workDir);
+            }
+            else if(file.isDirectory())
+            {
+                runner.link(file, workDir);
+            }
+        }
+
+        for(String failure : runner.failures)
+        {
+            System.out.println("FAILED: " + failure);
+        }
+        System.out.println(runner.runs + " runs, " + runner.failures.size() + " failed.");
+        if(!runner.failures.isEmpty())
+        {
+            System.exit(1);
+        }
+    }
+
+    private void test(File fixture, File workDir) throws IOException, InterruptedException
+    {
+        List<String> lines = Files.readAllLines(fixture.toPath(), StandardCharsets.UTF_8);
+        List<String> runLines = new ArrayList<String>();
+        for(String line : lines)
+        {
+            if(line.trim().startsWith(RUN_PREFIX))
+            {
+                runLines.add(line.trim().substring(RUN_PREFIX.length()).trim());
+            }
+        }
+        if(runLines.isEmpty())
+        {
+            failures.add(fixture.getName() + " has no " + RUN_PREFIX.trim() + " lines");
+            return;
+        }
+
+        for(String level : OPTIMIZATION_LEVELS)
+        {
+            String asm = compile(fixture, level, new File(workDir, level.substring(1)));
+            if(asm == null)
+            {
+                continue;
+            }
+            for(String run : runLines)
+            {
+                runs++;
+                String name = fixture.getName() + " " + level + " [" + run + "]";
+                try
+                {
+                    String error = execute(asm, run);
+                    if(error != null)
+                    {
+                        failures.add(name + ": " + error);
+                    }
+                }
+                catch(RuntimeException e)
+                {
+                    failures.add(name + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Compiles a fixture with -noasm
+     *
+     * @return The generated assembly, null if the compiler failed
+     */
+    private String compile(File fixture, String level, File dir) throws IOException, InterruptedException
+    {
+        String fileName = fixture.getName().substring(0, fixture.getName().length() - 4);
+        File asmFile = new File(dir, "build/" + fileName + ".asm");
+        new File(dir, "build").mkdirs();
+        Files.deleteIfExists(asmFile.toPath());
+        Files.copy(fixture.toPath(), new File(dir, fixture.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        String name = fixture.getName() + " " + level;
+        if(!runCompiler(name, dir, new File(dir, fileName + ".log"), asmFile, "-noasm", level, fixture.getName()))
+        {
+            return null;
+        }
+        return new String(Files.readAllBytes(asmFile.toPath()), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compiles a project, assembles every file into an object and links them into a ROM
+     *
+     * @param project The directory holding main.gbj and the files it imports
+     */
+    private void link(File project, File workDir) throws IOException, InterruptedException
+    {
+        if(toolDir == null)
+        {
+            //Checkouts and zip files don't always keep the executable bit, the copy gets it without touching the repository
+            toolDir = new File(workDir, "RGBDS");
+            copyDirectory(new File("RGBDS"), toolDir);
+            for(File tool : toolDir.listFiles())
+            {
+                tool.setExecutable(true);
+            }
+        }
+
+        for(String level : OPTIMIZATION_LEVELS)
+        {
+            runs++;
+            File dir = new File(workDir, level.substring(1) + "/" + project.getName());
+            File rom = new File(dir, "build/" + project.getName() + ".gb");
+            new File(dir, "build").mkdirs();
+            Files.deleteIfExists(rom.toPath());
+            copyDirectory(project, dir);
+            //The stdlib is included relative to the project, like in a project next to the compiler
+            copyDirectory(new File("stdlib"), new File(dir, "stdlib"));
+
+            runCompiler(project.getName() + " " + level, dir, new File(dir, project.getName() + ".log"), rom,
+                        "-cROM_MBC5", "-rNONE", "-gDMG", "-n" + project.getName(), level, "main.gbj");
+        }
+    }
+
+    /**
+     * Runs the compiler, the copy of the bundled RGBDS (if there is one) is found through the PATH
+     *
+     * @param name The name of the run for failures
+     * @param output The file the compiler has to write
+     * @param args The options and files passed to the compiler
+     * @return If the compiler wrote the file without logging an error
+     */
+    private boolean runCompiler(String name, File dir, File log, File output, String... args) throws IOException, InterruptedException
+    {
+        List<String> command = new ArrayList<String>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        command.add("-cp");
+        command.add(absoluteClassPath());
+        command.add("de.jc.gbjc.main.Main");
+        command.add("-noObjWarn");
+        command.addAll(Arrays.asList(args));
+
+        ProcessBuilder builder = new ProcessBuilder(command).directory(dir).redirectErrorStream(true).redirectOutput(log);
+        if(toolDir != null)
+        {
+            builder.environment().put("PATH", toolDir.getAbsolutePath() + File.pathSeparator + System.getenv("PATH"));
+        }
+        Process process = builder.start();
+        if(!process.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+        {
+            process.destroyForcibly();
+            failures.add(name + ": the compiler timed out");
+            return false;
+        }
+
+        //The compiler exits with 0 even on errors, only the missing file tells
+        String text = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        if(!output.isFile() || text.contains("ERR:"))
+        {
+            failures.add(name + ": the compiler failed\n" + text);
+            return false;
+        }
+        return true;
+    }
+
+    private static void copyDirectory(File from, File to) throws IOException
+    {
+        to.mkdirs();
+        for(File file : from.listFiles())
+        {
+            if(file.isDirectory())
+            {
+                copyDirectory(file, new File(to, file.getName()));
+            }
+            else
+            {
+                Files.copy(file.toPath(), new File(to, file.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Runs main() once
+     *
+     * @param run The inputs and expected outputs, e.g. "x=20 y=5 -> r1=15"
+     * @return A description of the wrong outputs, null if all of them are right
+     */
+    private static String execute(String asm, String run)
+    {
+        String[] sides = run.split("->");
+        if(sides.length != 2)
+        {
+            throw new IllegalArgumentException("Expected inputs -> outputs");
+        }
+        Map<String, Long> inputs = parseAssignments(sides[0]);
+        Map<String, Long> outputs = parseAssignments(sides[1]);
+
+        AsmInterpreter interpreter = new AsmInterpreter(asm);
+        for(Map.Entry<String, Long> input : inputs.entrySet())
+        {
+            String label = "w" + input.getKey();
+            int address = interpreter.getAddress(label);
+            for(int i = 0; i < interpreter.getSize(label); i++)
+            {
+                interpreter.write(address + i, (int) (input.getValue() >> (8 * i)));
+            }
+        }
+
+        interpreter.call("main");
+
+        StringBuilder errors = new StringBuilder();
+        for(Map.Entry<String, Long> output : outputs.entrySet())
+        {
+            String label = "w" + output.getKey();
+            int address = interpreter.getAddress(label);
+            int size = interpreter.getSize(label);
+            long actual = 0;
+            for(int i = 0; i < size; i++)
+            {
+                actual |= (long) interpreter.read(address + i) << (8 * i);
+            }
+            long mask = (1L << (8 * size)) - 1;
+            if(actual != (output.getValue() & mask))
+            {
+                errors.append(errors.length() > 0 ? ", " : "").append(output.getKey()).append(" is ").append(actual)
+                      .append(" instead of ").append(output.getValue() & mask);
+            }
+        }
+        return errors.length() > 0 ? errors.toString() : null;
+    }
+
+    private static Map<String, Long> parseAssignments(String text)
+    {
+        Map<String, Long> values = new LinkedHashMap<String, Long>();
+        for(String s : text.trim().split("\\s+"))
+        {
+            if(s.isEmpty())
+            {
+                continue;
+            }
+            String[] parts = s.split("=");
+            if(parts.length != 2)
+            {
+                throw new IllegalArgumentException("Expected name=value instead of " + s);
+            }
+            values.put(parts[0], Long.parseLong(parts[1]));
+        }
+        return values;
+    }
+
+    /**
+     * The compiler runs in the directory of the fixture, so relative class path entries have to be made absolute
+     */
+    private static String absoluteClassPath()
+    {
+        StringBuilder sb = new StringBuilder();
+        for(String entry : System.getProperty("java.class.path").split(File.pathSeparator))
+        {
+            if(sb.length() > 0)
+            {
+                sb.append(File.pathSeparator);
+            }
+            sb.append(new File(entry).getAbsolutePath());
+        }
+        return sb.toString();
+    }
+}